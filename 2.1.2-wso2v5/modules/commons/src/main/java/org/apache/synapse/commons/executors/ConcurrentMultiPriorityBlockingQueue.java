@@ -0,0 +1,506 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.commons.executors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A MultiPriorityBlockingQueue which does not take a global lock. Each priority has its own
+ * lock free queue and the next queue to take an element from is selected by a deficit round
+ * robin, where the priority of a queue is its quantum: the selector serves up to priority
+ * elements from a queue before it moves on to the next one, and an empty queue gives up the
+ * rest of its quantum. This gives the same weighted share as the PRRNextQueueAlgorithm, any
+ * NextQueueAlgorithm given to the queue is not used.</p>
+ *
+ * <p>Threads waiting for an element or for space in a queue are parked and unparked one at a
+ * time, so that a producer only pays for a wake up when a consumer is actually waiting.</p>
+ *
+ * @param <E> E should implement the Importance interface.
+ */
+public class ConcurrentMultiPriorityBlockingQueue<E> extends MultiPriorityBlockingQueue<E> {
+
+    /** Lanes corresponding to the internal queues, in the descending order of priority */
+    private final Lane<E>[] lanes;
+
+    /** Number of items in the queue */
+    private final AtomicInteger count = new AtomicInteger(0);
+
+    /** The lane the selector currently serves */
+    private final AtomicInteger cursor = new AtomicInteger(0);
+
+    /** Threads waiting for an element */
+    private final WaitQueue notEmpty = new WaitQueue();
+
+    /**
+     * Create a queue with the given queues. </p>
+     *
+     * <p> The internal queues only define the priorities and the capacities, the elements are
+     * kept in the lock free queues of this class.</p>
+     *
+     * @param queues list of InternalQueue to be used
+     * @param isFixedQueues weather fixed size queues are used
+     */
+    public ConcurrentMultiPriorityBlockingQueue(List<InternalQueue<E>> queues,
+                                                boolean isFixedQueues) {
+        super(queues, isFixedQueues, null);
+
+        List<InternalQueue<E>> sorted = getQueues();
+        // a generic array can not be created directly, every element is a Lane<E> though
+        @SuppressWarnings("unchecked")
+        Lane<E>[] created = (Lane<E>[]) new Lane<?>[sorted.size()];
+        lanes = created;
+        for (int i = 0; i < lanes.length; i++) {
+            InternalQueue<E> q = sorted.get(i);
+            lanes[i] = new Lane<E>(q.getPriority(),
+                    isFixedQueues ? q.getCapacity() : Integer.MAX_VALUE);
+        }
+        if (lanes.length > 0) {
+            lanes[0].deficit.set(lanes[0].quantum);
+        }
+    }
+
+    /**
+     * Put the specified value in to the queue. The put will block until space available
+     * in the corresponding internal queue.
+     *
+     * @param e object that implements the Importance interface
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public void put(E e) throws InterruptedException {
+        offer(e, 0, false);
+    }
+
+    /**
+     * Add the element if space available in the internal queue corresponding to the
+     * priority of the object.
+     *
+     * @param e element to be added
+     * @return true if element is added
+     */
+    public boolean offer(E e) {
+        Lane<E> lane = getLane(e);
+        if (lane.tryOffer(e)) {
+            added();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Try to add the element within the given time period. Wait the specified time for
+     * space to be available in the internal queue with the corresponding priority.
+     *
+     * @param e element to be added
+     * @param timeout time to wait if space not available
+     * @param unit time unit
+     * @return true if the element is added
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        return offer(e, unit.toNanos(timeout), true);
+    }
+
+    private boolean offer(E e, long nanos, boolean timed) throws InterruptedException {
+        Lane<E> lane = getLane(e);
+        long deadline = timed ? System.nanoTime() + nanos : 0;
+        boolean signalled = false;
+        try {
+            for (;;) {
+                if (lane.tryOffer(e)) {
+                    added();
+                    if (lane.size.get() < lane.capacity) {
+                        // pass on to the next producer while there is space
+                        lane.notFull.signal();
+                    }
+                    signalled = false;
+                    return true;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                long remaining = 0;
+                if (timed) {
+                    remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                }
+
+                lane.notFull.enqueue();
+                if (lane.size.get() >= lane.capacity) {
+                    park(timed, remaining);
+                }
+                signalled = !lane.notFull.dequeue();
+            }
+        } finally {
+            if (signalled && lane.size.get() < lane.capacity) {
+                lane.notFull.signal();
+            }
+        }
+    }
+
+    /**
+     * Get an element. Block until an element is available
+     *
+     * @return an element
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public E take() throws InterruptedException {
+        return poll(0, false);
+    }
+
+    /**
+     * Get the next element. If an element is not available wait the specified timeout.
+     *
+     * @param timeout waiting time for element to be available
+     * @param unit time unit
+     * @return an object
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return poll(unit.toNanos(timeout), true);
+    }
+
+    private E poll(long nanos, boolean timed) throws InterruptedException {
+        long deadline = timed ? System.nanoTime() + nanos : 0;
+        boolean signalled = false;
+        try {
+            for (;;) {
+                E e = poll();
+                if (e != null) {
+                    signalled = false;
+                    return e;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                long remaining = 0;
+                if (timed) {
+                    remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                }
+
+                notEmpty.enqueue();
+                if (count.get() <= 0) {
+                    park(timed, remaining);
+                }
+                signalled = !notEmpty.dequeue();
+            }
+        } finally {
+            if (signalled && count.get() > 0) {
+                notEmpty.signal();
+            }
+        }
+    }
+
+    /**
+     * Get the next element without blocking.
+     *
+     * @return the next element or null if the queue is empty
+     */
+    public E poll() {
+        if (count.get() <= 0) {
+            return null;
+        }
+
+        E e = null;
+        Lane<E> lane = null;
+        int n = lanes.length;
+        // at most two rounds of the selector, each lane at least gets a fresh quantum
+        for (int i = 0; i < 2 * n && e == null; i++) {
+            int current = cursor.get();
+            lane = lanes[current];
+            if (lane.deficit.getAndDecrement() > 0) {
+                e = lane.poll();
+                if (e == null) {
+                    // an empty lane gives up the rest of its quantum
+                    lane.deficit.set(0);
+                }
+            }
+            if (e == null) {
+                int next = current == n - 1 ? 0 : current + 1;
+                if (cursor.compareAndSet(current, next)) {
+                    lanes[next].deficit.set(lanes[next].quantum);
+                }
+            }
+        }
+
+        if (e == null) {
+            // the selector lost all its races, fall back to the priority order
+            for (Lane<E> l : lanes) {
+                e = l.poll();
+                if (e != null) {
+                    lane = l;
+                    break;
+                }
+            }
+        }
+
+        if (e != null) {
+            removed(lane);
+        }
+        return e;
+    }
+
+    /**
+     * We always give high priority to highest priority elements. We try to drain all the
+     * high priority items first.
+     *
+     * @param c collection to drain the items
+     * @return number of elements copied
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * We always give high priority to highest priority elements. We try to drain all the
+     * high priority items first.
+     *
+     * @param c collection to drain the items
+     * @param maxElements maximum elements to copy
+     * @return number of elements copied
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        int elementsCopied = 0;
+        for (Lane<E> lane : lanes) {
+            while (elementsCopied < maxElements) {
+                E e = lane.poll();
+                if (e == null) {
+                    break;
+                }
+                removed(lane);
+                c.add(e);
+                elementsCopied++;
+            }
+        }
+        return elementsCopied;
+    }
+
+    public E peek() {
+        for (Lane<E> lane : lanes) {
+            E e = lane.items.peek();
+            if (e != null) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    public int remainingCapacity() {
+        long remaining = 0;
+        for (Lane<E> lane : lanes) {
+            remaining += lane.capacity - lane.size.get();
+        }
+        return remaining > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) remaining;
+    }
+
+    public int size() {
+        // an element is counted once it is visible, it may be taken before that
+        return Math.max(count.get(), 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean remove(Object o) {
+        for (Lane<E> lane : lanes) {
+            if (lane.items.remove(o)) {
+                lane.size.decrementAndGet();
+                count.decrementAndGet();
+                lane.notFull.signal();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean contains(Object o) {
+        for (Lane<E> lane : lanes) {
+            if (lane.items.contains(o)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void clear() {
+        for (Lane<E> lane : lanes) {
+            while (lane.poll() != null) {
+                removed(lane);
+            }
+        }
+    }
+
+    public Object[] toArray() {
+        return snapshot().toArray();
+    }
+
+    @SuppressWarnings({"SuspiciousToArrayCall"})
+    public <T> T[] toArray(T[] a) {
+        return snapshot().toArray(a);
+    }
+
+    public Iterator<E> iterator() {
+        final Iterator<E> it = snapshot().iterator();
+        return new Iterator<E>() {
+            private E last;
+
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            public E next() {
+                last = it.next();
+                return last;
+            }
+
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                ConcurrentMultiPriorityBlockingQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    private List<E> snapshot() {
+        List<E> list = new ArrayList<E>();
+        for (Lane<E> lane : lanes) {
+            list.addAll(lane.items);
+        }
+        return list;
+    }
+
+    private void added() {
+        count.incrementAndGet();
+        notEmpty.signal();
+    }
+
+    private void removed(Lane<E> lane) {
+        count.decrementAndGet();
+        lane.notFull.signal();
+    }
+
+    private void park(boolean timed, long nanos) {
+        if (timed) {
+            LockSupport.parkNanos(this, nanos);
+        } else {
+            LockSupport.park(this);
+        }
+    }
+
+    private Lane<E> getLane(Object e) {
+        int priority = ((Importance) e).getPriority();
+        for (Lane<E> lane : lanes) {
+            if (lane.priority == priority) {
+                return lane;
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+
+    /**
+     * The elements of a single priority
+     */
+    private static final class Lane<E> {
+        final int priority;
+        /** Number of elements served from this lane in a round of the selector */
+        final int quantum;
+        final int capacity;
+        final ConcurrentLinkedQueue<E> items = new ConcurrentLinkedQueue<E>();
+        /** Number of elements in the lane, including the ones being inserted */
+        final AtomicInteger size = new AtomicInteger(0);
+        /** Number of elements the lane may still serve in the current round */
+        final AtomicInteger deficit = new AtomicInteger(0);
+        /** Threads waiting for space in this lane */
+        final WaitQueue notFull = new WaitQueue();
+
+        Lane(int priority, int capacity) {
+            this.priority = priority;
+            this.quantum = Math.max(priority, 1);
+            this.capacity = capacity;
+        }
+
+        boolean tryOffer(E e) {
+            for (;;) {
+                int current = size.get();
+                if (current >= capacity) {
+                    return false;
+                }
+                if (size.compareAndSet(current, current + 1)) {
+                    items.offer(e);
+                    return true;
+                }
+            }
+        }
+
+        E poll() {
+            E e = items.poll();
+            if (e != null) {
+                size.decrementAndGet();
+            }
+            return e;
+        }
+    }
+
+    /**
+     * Threads parked until they are signalled. A thread registers itself before it checks the
+     * state it waits for one last time and parks, so that a signal given in between is not
+     * lost. A thread which finds it has been signalled but cannot use the signal passes it on.
+     */
+    private static final class WaitQueue {
+        private final ConcurrentLinkedQueue<Thread> threads = new ConcurrentLinkedQueue<Thread>();
+
+        void enqueue() {
+            threads.add(Thread.currentThread());
+        }
+
+        /**
+         * @return false if the thread has already been dequeued by a signal
+         */
+        boolean dequeue() {
+            return threads.remove(Thread.currentThread());
+        }
+
+        void signal() {
+            Thread t = threads.poll();
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+    }
+}
@@ -49,6 +49,8 @@ public class PriorityExecutorFactory {
 
     public static final QName NEXT_QUEUE_ATT = new QName(ExecutorConstants.NEXT_QUEUE);
 
+    public static final QName CONCURRENT_ATT = new QName(ExecutorConstants.CONCURRENT);
+
     public static final QName MAX_ATT = new QName(ExecutorConstants.MAX);
     public static final QName CORE_ATT = new QName(ExecutorConstants.CORE);
     public static final QName KEEP_ALIVE_ATT = new QName(ExecutorConstants.KEEP_ALIVE);
@@ -97,12 +99,28 @@ public class PriorityExecutorFactory {
                 isFixedSize = Boolean.parseBoolean(fixedSizeAtt.getAttributeValue());
             }
 
+            boolean isConcurrent = false;
+
+            OMAttribute concurrentAtt = queuesEle.getAttribute(CONCURRENT_ATT);
+            if (concurrentAtt != null) {
+                isConcurrent = Boolean.parseBoolean(concurrentAtt.getAttributeValue());
+            }
+
+            if (isConcurrent && nqa != null) {
+                handlerException(ExecutorConstants.NEXT_QUEUE + " cannot be used with " +
+                        ExecutorConstants.CONCURRENT + " queues");
+            }
+
             // create the queue configuration
             List<InternalQueue<Runnable>> intQueues
                     = createQueues(queueQName, queuesEle, isFixedSize);
 
-            MultiPriorityBlockingQueue<Runnable> queue =
-                    new MultiPriorityBlockingQueue<Runnable>(intQueues, isFixedSize, nqa);
+            MultiPriorityBlockingQueue<Runnable> queue;
+            if (isConcurrent) {
+                queue = new ConcurrentMultiPriorityBlockingQueue<Runnable>(intQueues, isFixedSize);
+            } else {
+                queue = new MultiPriorityBlockingQueue<Runnable>(intQueues, isFixedSize, nqa);
+            }
 
             executor.setQueue(queue);
         } else {
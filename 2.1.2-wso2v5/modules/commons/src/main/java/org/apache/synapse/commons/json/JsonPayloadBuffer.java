@@ -0,0 +1,262 @@
+/**
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.synapse.commons.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The single retained copy of the JSON payload of a message. The payload is pulled from its
+ * source stream on demand into heap chunks of growing size, and every consumer of the
+ * payload (the formatter, JSON path evaluation, the XML conversion, message cloning) reads it
+ * through its own cheap view instead of making a private copy. Once the source is exhausted
+ * the buffer never changes again, so a buffer may be shared by cloned messages.
+ */
+final class JsonPayloadBuffer {
+
+    private static final int INITIAL_CHUNK_SIZE = 4 * 1024;
+    private static final int MAX_CHUNK_SIZE = 1024 * 1024;
+
+    private InputStream source;
+
+    /** Chunks filled so far, only the last one may be partially filled */
+    private final List<byte[]> chunks = new ArrayList<byte[]>();
+
+    /** Number of bytes in the last chunk */
+    private int lastFilled;
+
+    /** Number of bytes read from the source */
+    private volatile long size;
+
+    private volatile boolean complete;
+
+    JsonPayloadBuffer(InputStream source) {
+        this.source = source;
+        if (source == null) {
+            complete = true;
+        }
+    }
+
+    /**
+     * Read from the source until at least <code>position + 1</code> bytes are buffered
+     *
+     * @param position the position which should be available
+     * @return false if the payload ends before the given position
+     * @throws IOException if the source can not be read
+     */
+    private synchronized boolean fill(long position) throws IOException {
+        while (size <= position && !complete) {
+            byte[] last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            if (last == null || lastFilled == last.length) {
+                int capacity = last == null ? INITIAL_CHUNK_SIZE :
+                        Math.min(last.length * 2, MAX_CHUNK_SIZE);
+                last = new byte[capacity];
+                chunks.add(last);
+                lastFilled = 0;
+            }
+            // read straight in to the chunk, there is no intermediate copy
+            int n = source.read(last, lastFilled, last.length - lastFilled);
+            if (n < 0) {
+                complete = true;
+                source = null;
+            } else {
+                lastFilled += n;
+                size += n;
+            }
+        }
+        return position < size;
+    }
+
+    /**
+     * Read the whole payload from the source
+     *
+     * @return the length of the payload
+     * @throws IOException if the source can not be read
+     */
+    long fillCompletely() throws IOException {
+        fill(Long.MAX_VALUE - 1);
+        return size;
+    }
+
+    /**
+     * Copy the bytes at the given position into the given array
+     *
+     * @return the number of bytes copied or -1 at the end of the payload
+     */
+    int read(long position, byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= size && !fill(position)) {
+            return -1;
+        }
+
+        int copied = 0;
+        synchronized (this) {
+            long chunkStart = 0;
+            int lastIndex = chunks.size() - 1;
+            for (int i = 0; i <= lastIndex; i++) {
+                byte[] chunk = chunks.get(i);
+                int filled = i == lastIndex ? lastFilled : chunk.length;
+                if (position < chunkStart + filled) {
+                    int offset = (int) (position - chunkStart);
+                    int n = Math.min(len - copied, filled - offset);
+                    System.arraycopy(chunk, offset, b, off + copied, n);
+                    copied += n;
+                    position += n;
+                    if (copied == len) {
+                        break;
+                    }
+                }
+                chunkStart += chunk.length;
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Write the whole payload to the given stream
+     */
+    void writeTo(OutputStream out) throws IOException {
+        byte[] transfer = new byte[INITIAL_CHUNK_SIZE];
+        long position = 0;
+        int n;
+        while ((n = read(position, transfer, 0, transfer.length)) > 0) {
+            out.write(transfer, 0, n);
+            position += n;
+        }
+    }
+
+    byte[] toByteArray() throws IOException {
+        long length = fillCompletely();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("JSON payload is too large for a byte array : " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        int position = 0;
+        while (position < bytes.length) {
+            position += read(position, bytes, position, bytes.length - position);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return a new stream reading the payload from its beginning, which can be closed
+     */
+    InputStream newInputStream() {
+        return new PayloadInputStream(this, false);
+    }
+
+    /**
+     * @return a new stream reading the payload from its beginning, which can not be closed,
+     *         marked or skipped, closing or resetting it starts over from the beginning
+     */
+    InputStream newReadOnlyStream() {
+        return new PayloadInputStream(this, true);
+    }
+
+    /**
+     * Get the buffer a stream returned by this class reads from
+     *
+     * @param in any stream
+     * @return the buffer or null if the stream does not read from a payload buffer
+     */
+    static JsonPayloadBuffer getBuffer(InputStream in) {
+        return in instanceof PayloadInputStream ? ((PayloadInputStream) in).buffer : null;
+    }
+
+    /**
+     * A view over the payload with its own position
+     */
+    static final class PayloadInputStream extends InputStream {
+
+        private final JsonPayloadBuffer buffer;
+        private final boolean readOnly;
+        private final byte[] single = new byte[1];
+        private long position;
+        private long mark;
+
+        PayloadInputStream(JsonPayloadBuffer buffer, boolean readOnly) {
+            this.buffer = buffer;
+            this.readOnly = readOnly;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int n = read(single, 0, 1);
+            return n < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = buffer.read(position, b, off, len);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (readOnly || n <= 0) {
+                return 0;
+            }
+            long target = position + n;
+            if (target > buffer.size) {
+                buffer.fill(target - 1);
+                target = Math.min(target, buffer.size);
+            }
+            long skipped = target - position;
+            position = target;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(0, buffer.size - position));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            if (!readOnly) {
+                mark = position;
+            }
+        }
+
+        @Override
+        public synchronized void reset() {
+            position = readOnly ? 0 : mark;
+        }
+
+        @Override
+        public void close() {
+            if (readOnly) {
+                position = 0;
+            }
+        }
+    }
+}
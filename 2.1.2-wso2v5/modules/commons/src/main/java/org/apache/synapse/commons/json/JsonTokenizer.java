@@ -0,0 +1,266 @@
+/**
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.synapse.commons.json;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A minimal pull tokenizer for strict JSON. Separators are consumed implicitly, a string
+ * followed by a colon is reported as a field name. Values which are not of interest can be
+ * skipped without decoding their strings.
+ */
+final class JsonTokenizer {
+
+    static final int END = 0;
+    static final int START_OBJECT = 1;
+    static final int END_OBJECT = 2;
+    static final int START_ARRAY = 3;
+    static final int END_ARRAY = 4;
+    static final int FIELD_NAME = 5;
+    static final int STRING = 6;
+    static final int NUMBER = 7;
+    static final int TRUE = 8;
+    static final int FALSE = 9;
+    static final int NULL = 10;
+
+    private final Reader reader;
+    private final char[] buffer = new char[1024];
+    private int pos;
+    private int limit;
+
+    private final StringBuilder text = new StringBuilder();
+
+    JsonTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @return the next token
+     * @throws IOException if the input can not be read or is not valid JSON
+     */
+    int next() throws IOException {
+        int c = nextSignificant();
+        while (c == ',' || c == ':') {
+            c = nextSignificant();
+        }
+        switch (c) {
+            case -1:
+                return END;
+            case '{':
+                return START_OBJECT;
+            case '}':
+                return END_OBJECT;
+            case '[':
+                return START_ARRAY;
+            case ']':
+                return END_ARRAY;
+            case '"':
+                readString(true);
+                int n = peekSignificant();
+                if (n == ':') {
+                    pos++;
+                    return FIELD_NAME;
+                }
+                return STRING;
+            case 't':
+                expectLiteral("rue");
+                return TRUE;
+            case 'f':
+                expectLiteral("alse");
+                return FALSE;
+            case 'n':
+                expectLiteral("ull");
+                return NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    readNumber((char) c);
+                    return NUMBER;
+                }
+                throw new MalformedJsonException("Unexpected character '" + (char) c +
+                        "' in JSON input");
+        }
+    }
+
+    /**
+     * @return the field name, the string value or the literal text of the number last read
+     */
+    String getText() {
+        return text.toString();
+    }
+
+    /**
+     * Skip the rest of the object or array whose start token has just been read
+     */
+    void skipContainer() throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int c = read();
+            switch (c) {
+                case -1:
+                    throw new MalformedJsonException("Unexpected end of JSON input");
+                case '{':
+                case '[':
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    depth--;
+                    break;
+                case '"':
+                    readString(false);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void readString(boolean decode) throws IOException {
+        text.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new MalformedJsonException("Unterminated string in JSON input");
+            }
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                int e = read();
+                if (!decode) {
+                    continue;
+                }
+                switch (e) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        text.append((char) e);
+                        break;
+                    case 'b':
+                        text.append('\b');
+                        break;
+                    case 'f':
+                        text.append('\f');
+                        break;
+                    case 'n':
+                        text.append('\n');
+                        break;
+                    case 'r':
+                        text.append('\r');
+                        break;
+                    case 't':
+                        text.append('\t');
+                        break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int d = Character.digit(read(), 16);
+                            if (d < 0) {
+                                throw new MalformedJsonException(
+                                        "Invalid unicode escape in JSON input");
+                            }
+                            code = code * 16 + d;
+                        }
+                        text.append((char) code);
+                        break;
+                    default:
+                        throw new MalformedJsonException("Invalid escape sequence in JSON input");
+                }
+            } else if (decode) {
+                text.append((char) c);
+            }
+        }
+    }
+
+    private void readNumber(char first) throws IOException {
+        text.setLength(0);
+        text.append(first);
+        while (true) {
+            if (pos == limit && !fillBuffer()) {
+                return;
+            }
+            char c = buffer[pos];
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' ||
+                    c == '-') {
+                text.append(c);
+                pos++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void expectLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw new MalformedJsonException("Invalid literal in JSON input");
+            }
+        }
+    }
+
+    private int nextSignificant() throws IOException {
+        int c = read();
+        while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+            c = read();
+        }
+        return c;
+    }
+
+    private int peekSignificant() throws IOException {
+        while (true) {
+            if (pos == limit && !fillBuffer()) {
+                return -1;
+            }
+            char c = buffer[pos];
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                pos++;
+            } else {
+                return c;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fillBuffer()) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    private boolean fillBuffer() throws IOException {
+        int n = reader.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    /**
+     * Thrown when the input is not valid JSON, as opposed to failures of the input itself
+     */
+    static final class MalformedJsonException extends IOException {
+
+        MalformedJsonException(String message) {
+            super(message);
+        }
+    }
+}
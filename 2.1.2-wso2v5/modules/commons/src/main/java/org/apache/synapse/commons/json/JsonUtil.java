@@ -27,13 +27,13 @@ import javax.xml.stream.XMLEventWriter;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
-import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.io.SequenceInputStream;
 import java.util.Iterator;
 
 public final class JsonUtil {
@@ -74,7 +74,7 @@ public final class JsonUtil {
                         if (json.markSupported()) {
                             json.reset();
                         }
-                        IOUtils.copy(json, out); // Write the JSON stream
+                        copyJsonStream(json, out); // Write the JSON stream
                     } catch (IOException e) {
                         logger.error("#writeAsJson. Could not write JSON stream. MessageID: "
                                 + messageContext.getMessageID() + ". Error>> " + e.getLocalizedMessage());
@@ -87,7 +87,7 @@ public final class JsonUtil {
                 writeAsJson(element, out);
             } else { // element == null.
                 try {
-                    IOUtils.copy(json, out); // Write the JSON stream
+                    copyJsonStream(json, out); // Write the JSON stream
                 } catch (IOException e) {
                     logger.error("#writeAsJson. Could not write JSON stream. MessageID: "
                             + messageContext.getMessageID() + ". Error>> " + e.getLocalizedMessage());
@@ -338,7 +338,7 @@ public final class JsonUtil {
         boolean isObject = false;
         boolean isArray = false;
         if (inputStream != null) {
-            InputStream json = toReadOnlyStream(inputStream);
+            InputStream json = toReadOnlyStream(inputStream); // shares the buffer of a cloned payload
             messageContext.setProperty(ORG_APACHE_SYNAPSE_COMMONS_JSON_JSON_INPUT_STREAM, json);
             // read ahead few characters to see if the stream is valid...
             try {
@@ -549,6 +549,10 @@ public final class JsonUtil {
             logger.error("#copyOfJsonPayload. Cannot copy JSON stream from message context. [null] stream.");
             return null;
         }
+        JsonPayloadBuffer buffer = JsonPayloadBuffer.getBuffer(jsonStream);
+        if (buffer != null) { // a new view of the payload buffer, no need to copy the payload
+            return closable ? buffer.newInputStream() : buffer.newReadOnlyStream();
+        }
         org.apache.commons.io.output.ByteArrayOutputStream out = new org.apache.commons.io.output.ByteArrayOutputStream();
         try {
             IOUtils.copy(jsonStream, out);
@@ -576,6 +580,10 @@ public final class JsonUtil {
             logger.error("#cachedCopyOfJsonPayload. Cannot copy JSON stream from message context. [null] stream.");
             return null;
         }
+        JsonPayloadBuffer buffer = JsonPayloadBuffer.getBuffer(jsonStream);
+        if (buffer != null) { // views of the payload buffer are as cheap as a cached copy
+            return buffer.newReadOnlyStream();
+        }
         String inputStreamCache = Long.toString(jsonStream.hashCode());
         Object o = messageContext.getProperty(inputStreamCache);
         if (o instanceof InputStream) {
@@ -636,6 +644,10 @@ public final class JsonUtil {
             return new byte[0];
         }
         try {
+            JsonPayloadBuffer buffer = JsonPayloadBuffer.getBuffer(is);
+            if (buffer != null) {
+                return buffer.toByteArray(); // sized exactly, no intermediate buffers
+            }
             return IOUtils.toByteArray(is); // IOUtils.toByteArray() doesn't close the input stream.
         } catch (IOException e) {
             logger.warn("#jsonPayloadToByteArray. Could not convert JSON stream to byte array.");
@@ -708,6 +720,13 @@ public final class JsonUtil {
         }
         InputStream json = jsonStream(sourceMc, true);
         try {
+            JsonPayloadBuffer buffer = JsonPayloadBuffer.getBuffer(json);
+            if (buffer != null) {
+                // the clones share the payload, which never changes once it has been read
+                buffer.fillCompletely();
+                newJsonPayload(targetMc, buffer.newInputStream(), true, true);
+                return true;
+            }
             byte[] stream = IOUtils.toByteArray(json);
             newJsonPayload(targetMc, new ByteArrayInputStream(stream), true, true);
         } catch (IOException e) {
@@ -730,7 +749,9 @@ public final class JsonUtil {
 
     /**
      * Returns a read only, re-readable input stream for an input stream. <br/>
-     * The returned input stream cannot be closed, marked, or skipped, but it can be reset to the beginning of the stream.
+     * The returned input stream cannot be closed, marked, or skipped, but it can be reset to the beginning of the stream.<br/>
+     * The content is read into a single buffer on demand. Wrapping a stream returned by this method
+     * does not copy the content again but shares the buffer.
      * @param inputStream Input stream to be wrapped
      * @return {@link java.io.InputStream}
      */
@@ -738,7 +759,20 @@ public final class JsonUtil {
         if (inputStream == null) {
             return null;
         }
-        return new ReadOnlyBIS(inputStream);
+        JsonPayloadBuffer buffer = JsonPayloadBuffer.getBuffer(inputStream);
+        if (buffer == null) {
+            buffer = new JsonPayloadBuffer(inputStream);
+        }
+        return buffer.newReadOnlyStream();
+    }
+
+    private static void copyJsonStream(InputStream json, OutputStream out) throws IOException {
+        JsonPayloadBuffer buffer = JsonPayloadBuffer.getBuffer(json);
+        if (buffer != null) {
+            buffer.writeTo(out);
+        } else {
+            IOUtils.copy(json, out);
+        }
     }
 
     /**
@@ -775,6 +809,11 @@ public final class JsonUtil {
             logger.error("#newJavaScriptSourceReader. Could not create a JavaScript source. Error>>> No JSON stream found.");
             return null;
         }
+        JsonPayloadBuffer buffer = JsonPayloadBuffer.getBuffer(jsonStream);
+        if (buffer != null) { // read the payload buffer in place
+            return new InputStreamReader(new SequenceInputStream(new ByteArrayInputStream(new byte[]{'('}),
+                    new SequenceInputStream(buffer.newInputStream(), new ByteArrayInputStream(new byte[]{')'}))));
+        }
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         try {
             out.write('(');
@@ -787,49 +826,4 @@ public final class JsonUtil {
         }
         return new InputStreamReader(new ByteArrayInputStream(out.toByteArray()));
     }
-
-    /**
-     * An Un-closable, Read-Only, Reusable, BufferedInputStream
-     */
-    private static class ReadOnlyBIS extends BufferedInputStream {
-        private static final String LOG_STREAM = "org.apache.synapse.commons.json.JsonReadOnlyStream";
-        private static final Log logger = LogFactory.getLog(LOG_STREAM);
-
-        public ReadOnlyBIS(InputStream inputStream) {
-            super(inputStream);
-            super.mark(Integer.MAX_VALUE);
-            if (logger.isDebugEnabled()) {
-                logger.debug("<init>");
-            }
-        }
-
-        @Override
-        public void close() throws IOException {
-            super.reset();
-            //super.mark(Integer.MAX_VALUE);
-            if (logger.isDebugEnabled()) {
-                logger.debug("#close");
-            }
-        }
-
-        @Override
-        public void mark(int readlimit) {
-            if (logger.isDebugEnabled()) {
-                logger.debug("#mark");
-            }
-        }
-
-        @Override
-        public boolean markSupported() {
-            return true; //but we don't mark.
-        }
-
-        @Override
-        public long skip(long n) {
-            if (logger.isDebugEnabled()) {
-                logger.debug("#skip");
-            }
-            return 0;
-        }
-    }
 }
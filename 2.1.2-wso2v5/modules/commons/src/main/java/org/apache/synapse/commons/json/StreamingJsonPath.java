@@ -0,0 +1,255 @@
+/**
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.synapse.commons.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluates a definite JSON path such as <tt>$.order.items[0].id</tt> or
+ * <tt>$['order']['type']</tt> incrementally over a JSON stream, without building an object tree
+ * and without reading past the selected value. Values which are not of interest are skipped without being decoded.<br/>
+ * Only scalar results are produced, formatted the same way a full JSON path evaluation formats
+ * them. A <tt>null</tt> result means the path could not be answered by this evaluator (the value
+ * is missing, is an object, an array or a decimal number, or the input is not strict JSON) and
+ * the path has to be evaluated over the whole payload instead. If an object has duplicate keys,
+ * the first one is used.
+ */
+public final class StreamingJsonPath {
+
+    private final String path;
+
+    /** Field names (String) and array indexes (Integer) of the path */
+    private final List<Object> segments;
+
+    private StreamingJsonPath(String path, List<Object> segments) {
+        this.path = path;
+        this.segments = segments;
+    }
+
+    /**
+     * Compiles a JSON path.
+     * @param path JSON path expression
+     * @return the compiled path or <tt>null</tt> if the expression is not a definite path
+     */
+    public static StreamingJsonPath compile(String path) {
+        if (path == null) {
+            return null;
+        }
+        String p = path.trim();
+        if (!p.startsWith("$")) {
+            return null;
+        }
+        List<Object> segments = new ArrayList<Object>();
+        int i = 1;
+        while (i < p.length()) {
+            char c = p.charAt(i);
+            if (c == '.') {
+                int start = ++i;
+                while (i < p.length() && isNameChar(p.charAt(i))) {
+                    i++;
+                }
+                if (i == start) {
+                    return null; // deep scan, wildcard or an empty name
+                }
+                segments.add(p.substring(start, i));
+            } else if (c == '[') {
+                int end = p.indexOf(']', i);
+                if (end < 0) {
+                    return null;
+                }
+                String selector = p.substring(i + 1, end).trim();
+                Object segment = toSegment(selector);
+                if (segment == null) {
+                    return null;
+                }
+                segments.add(segment);
+                i = end + 1;
+            } else {
+                return null;
+            }
+        }
+        return segments.isEmpty() ? null : new StreamingJsonPath(path, segments);
+    }
+
+    private static boolean isNameChar(char c) {
+        return c != '.' && c != '[' && c != ']' && c != '*' && c != '@' && c != '(' &&
+                c != ')' && c != '?' && c != '\'' && c != '"' && c != ',' &&
+                !Character.isWhitespace(c);
+    }
+
+    private static Object toSegment(String selector) {
+        if (selector.length() >= 2 && (selector.charAt(0) == '\'' || selector.charAt(0) == '"')) {
+            char quote = selector.charAt(0);
+            String name = selector.substring(1, selector.length() - 1);
+            if (selector.charAt(selector.length() - 1) != quote ||
+                    name.indexOf('\'') >= 0 || name.indexOf('"') >= 0) {
+                return null; // unions of names
+            }
+            return name;
+        }
+        if (selector.length() == 0 || selector.length() > 9) {
+            return null;
+        }
+        for (int i = 0; i < selector.length(); i++) {
+            if (!Character.isDigit(selector.charAt(i))) {
+                return null; // wildcards, slices, unions, filters and scripts
+            }
+        }
+        return Integer.valueOf(selector);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Evaluates the path over a JSON stream encoded in UTF-8.
+     * @param json JSON input stream, read only as far as the selected value
+     * @return String value of the selected scalar, or <tt>null</tt> if the path has to be evaluated
+     * by other means.
+     * @throws IOException if the stream cannot be read
+     */
+    public String evaluate(InputStream json) throws IOException {
+        return evaluate(new InputStreamReader(json, "UTF-8"));
+    }
+
+    /**
+     * Evaluates the path over a JSON string.
+     * @see #evaluate(java.io.InputStream)
+     */
+    public String evaluate(String json) {
+        try {
+            return evaluate(new StringReader(json));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private String evaluate(Reader json) throws IOException {
+        JsonTokenizer tokenizer = new JsonTokenizer(json);
+        int token;
+        try {
+            token = tokenizer.next();
+            for (Object segment : segments) {
+                if (segment instanceof String) {
+                    token = findField(tokenizer, token, (String) segment);
+                } else {
+                    token = findElement(tokenizer, token, (Integer) segment);
+                }
+                if (token == JsonTokenizer.END) {
+                    return null;
+                }
+            }
+        } catch (JsonTokenizer.MalformedJsonException e) {
+            return null; // not strict JSON, left to the full evaluation to report or accept
+        }
+        return toString(tokenizer, token);
+    }
+
+    /**
+     * @return the first token of the value of the field, or END if it is not found
+     */
+    private static int findField(JsonTokenizer tokenizer, int token, String name)
+            throws IOException {
+        if (token != JsonTokenizer.START_OBJECT) {
+            return JsonTokenizer.END;
+        }
+        while (true) {
+            token = tokenizer.next();
+            if (token != JsonTokenizer.FIELD_NAME) {
+                return JsonTokenizer.END;
+            }
+            boolean found = name.equals(tokenizer.getText());
+            token = tokenizer.next();
+            if (found) {
+                return token;
+            }
+            skip(tokenizer, token);
+        }
+    }
+
+    /**
+     * @return the first token of the element, or END if it is not found
+     */
+    private static int findElement(JsonTokenizer tokenizer, int token, int index)
+            throws IOException {
+        if (token != JsonTokenizer.START_ARRAY) {
+            return JsonTokenizer.END;
+        }
+        for (int i = 0; ; i++) {
+            token = tokenizer.next();
+            if (token == JsonTokenizer.END_ARRAY || token == JsonTokenizer.END) {
+                return JsonTokenizer.END;
+            }
+            if (i == index) {
+                return token;
+            }
+            skip(tokenizer, token);
+        }
+    }
+
+    private static void skip(JsonTokenizer tokenizer, int token) throws IOException {
+        if (token == JsonTokenizer.START_OBJECT || token == JsonTokenizer.START_ARRAY) {
+            tokenizer.skipContainer();
+        } else if (token == JsonTokenizer.END || token == JsonTokenizer.END_OBJECT ||
+                token == JsonTokenizer.END_ARRAY || token == JsonTokenizer.FIELD_NAME) {
+            throw new JsonTokenizer.MalformedJsonException("Unexpected token in JSON input");
+        }
+    }
+
+    private static String toString(JsonTokenizer tokenizer, int token) {
+        switch (token) {
+            case JsonTokenizer.STRING:
+                return tokenizer.getText();
+            case JsonTokenizer.TRUE:
+                return "true";
+            case JsonTokenizer.FALSE:
+                return "false";
+            case JsonTokenizer.NULL:
+                return "null";
+            case JsonTokenizer.NUMBER:
+                return toInteger(tokenizer.getText());
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Integers are formatted the way they are parsed by a JSON path evaluation, decimal
+     * numbers are left to it as their formatting depends on the parser.
+     */
+    private static String toInteger(String number) {
+        int start = number.startsWith("-") ? 1 : 0;
+        if (number.length() == start || number.length() > 18) {
+            return null;
+        }
+        for (int i = start; i < number.length(); i++) {
+            if (!Character.isDigit(number.charAt(i))) {
+                return null;
+            }
+        }
+        return Long.toString(Long.parseLong(number));
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.commons.executors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test the ConcurrentMultiPriorityBlockingQueue operations in single and multi threaded
+ * environments.
+ */
+public class ConcurrentMultiPriorityBlockingQueueTest
+        extends MultiPriorityBlockingQueueAbstractTest {
+
+    private static final int ITEMS = 100;
+
+    private MultiPriorityBlockingQueue<DummyTask> queue;
+
+    private final int[] priorities = {10, 1};
+    private final int[] sizes = {ITEMS, ITEMS};
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        queue = createConcurrentFixedQueue(2, sizes, priorities);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+
+        queue.clear();
+    }
+
+    public void testOfferAndTake() throws InterruptedException {
+        for (int i = 0; i < ITEMS; i++) {
+            assertTrue(queue.offer(new DummyTask(10)));
+            assertTrue(queue.offer(new DummyTask(1)));
+        }
+        assertFalse("The queue of the priority is full", queue.offer(new DummyTask(10)));
+        assertEquals(ITEMS * 2, queue.size());
+        assertEquals(0, queue.remainingCapacity());
+
+        for (int i = 0; i < ITEMS * 2; i++) {
+            assertNotNull(queue.take());
+        }
+        assertEquals(0, queue.size());
+        assertNull(queue.poll());
+        assertEquals(ITEMS * 2, queue.remainingCapacity());
+    }
+
+    public void testWeightedShare() {
+        for (int i = 0; i < 20; i++) {
+            queue.offer(new DummyTask(10));
+            queue.offer(new DummyTask(1));
+        }
+
+        // each round serves 10 elements of priority 10 and 1 of priority 1
+        int high = 0;
+        for (int i = 0; i < 22; i++) {
+            if (queue.poll().getPriority() == 10) {
+                high++;
+            }
+        }
+        assertEquals(20, high);
+
+        // once a queue is empty, the others get all the share
+        int low = 0;
+        DummyTask task;
+        while ((task = queue.poll()) != null) {
+            assertEquals(1, task.getPriority());
+            low++;
+        }
+        assertEquals(18, low);
+    }
+
+    public void testPollTimeout() throws InterruptedException {
+        long start = System.nanoTime();
+        assertNull(queue.poll(100, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+
+        assertFalse(queue.contains(null));
+        DummyTask task = new DummyTask(1);
+        queue.offer(task);
+        assertTrue(queue.contains(task));
+        assertSame(task, queue.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    public void testBlockingPutAndTake() throws InterruptedException {
+        for (int i = 0; i < ITEMS; i++) {
+            queue.put(new DummyTask(1));
+        }
+
+        final AtomicInteger done = new AtomicInteger(0);
+        Thread producer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    queue.put(new DummyTask(1));
+                    done.incrementAndGet();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertEquals("The put should block while the queue is full", 0, done.get());
+
+        queue.take();
+        producer.join(5000);
+        assertEquals(1, done.get());
+        assertEquals(ITEMS, queue.size());
+
+        queue.clear();
+        Thread consumer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    queue.take();
+                    done.incrementAndGet();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        consumer.start();
+        consumer.join(200);
+        assertEquals("The take should block while the queue is empty", 1, done.get());
+
+        queue.offer(new DummyTask(10));
+        consumer.join(5000);
+        assertEquals(2, done.get());
+    }
+
+    public void testConcurrentProducersAndConsumers() throws InterruptedException {
+        final int producers = 8;
+        final int consumers = 8;
+        final int itemsPerProducer = 5000;
+        final ConcurrentHashMap<DummyTask, Boolean> taken =
+                new ConcurrentHashMap<DummyTask, Boolean>();
+        final AtomicInteger duplicates = new AtomicInteger(0);
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < producers; i++) {
+            final int priority = priorities[i % priorities.length];
+            threads.add(new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < itemsPerProducer; j++) {
+                            queue.put(new DummyTask(priority));
+                        }
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            }));
+        }
+        for (int i = 0; i < consumers; i++) {
+            threads.add(new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < itemsPerProducer; j++) {
+                            DummyTask task = queue.take();
+                            if (taken.put(task, Boolean.TRUE) != null) {
+                                duplicates.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            }));
+        }
+
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join(30000);
+            assertFalse("Producers and consumers should not dead lock", t.isAlive());
+        }
+
+        assertEquals(0, duplicates.get());
+        assertEquals(producers * itemsPerProducer, taken.size());
+        assertEquals(0, queue.size());
+        assertEquals(ITEMS * 2, queue.remainingCapacity());
+    }
+}
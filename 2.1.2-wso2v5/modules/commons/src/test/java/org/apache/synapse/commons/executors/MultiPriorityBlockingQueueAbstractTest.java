@@ -62,4 +62,19 @@ public abstract class MultiPriorityBlockingQueueAbstractTest extends TestCase {
         return new MultiPriorityBlockingQueue(
                 internalQueueList, true, new PRRNextQueueAlgorithm());
     }
+
+    protected MultiPriorityBlockingQueue<DummyTask> createConcurrentFixedQueue(
+            int noQueues, int[] sizes, int[] priorities) {
+        List<InternalQueue<DummyTask>> internalQueueList =
+                new ArrayList<InternalQueue<DummyTask>>();
+
+        for (int i = 0; i < noQueues; i++) {
+            InternalQueue<DummyTask> intQueue =
+                    new FixedSizeQueue<DummyTask>(priorities[i], sizes[i]);
+
+            internalQueueList.add(intQueue);
+        }
+
+        return new ConcurrentMultiPriorityBlockingQueue<DummyTask>(internalQueueList, true);
+    }
 }
@@ -0,0 +1,124 @@
+/**
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.synapse.commons.json;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class StreamingJsonPathTest extends TestCase {
+
+    private static final String order = "{\n" +
+                                        "  \"order\" : {\n" +
+                                        "    \"id\" : 1024,\n" +
+                                        "    \"note\" : \"fragile \\\"glass\\\" \\u00e9\",\n" +
+                                        "    \"skipped\" : {\"a\" : [1, {\"b\" : \"]}\"}], \"c\" : null},\n" +
+                                        "    \"items\" : [\n" +
+                                        "      {\"sku\" : \"A1\", \"qty\" : 2, \"price\" : 1.50},\n" +
+                                        "      {\"sku\" : \"B2\", \"qty\" : -1, \"gift\" : true}\n" +
+                                        "    ],\n" +
+                                        "    \"discount\" : null\n" +
+                                        "  }\n" +
+                                        "}\n";
+
+    public void testCompile() {
+        assertNotNull(StreamingJsonPath.compile("$.order.items[1].sku"));
+        assertNotNull(StreamingJsonPath.compile("$['order'][\"items\"][0]"));
+        assertNull(StreamingJsonPath.compile("$"));
+        assertNull(StreamingJsonPath.compile("$..sku"));
+        assertNull(StreamingJsonPath.compile("$.order.items[*].sku"));
+        assertNull(StreamingJsonPath.compile("$.order.items[0:1]"));
+        assertNull(StreamingJsonPath.compile("$.order.items[?(@.qty > 1)]"));
+        assertNull(StreamingJsonPath.compile("$['order','items']"));
+        assertNull(StreamingJsonPath.compile("order.id"));
+    }
+
+    public void testScalars() throws IOException {
+        assertEquals("1024", evaluate("$.order.id"));
+        assertEquals("fragile \"glass\" \u00e9", evaluate("$.order.note"));
+        assertEquals("B2", evaluate("$.order.items[1].sku"));
+        assertEquals("-1", evaluate("$['order']['items'][1]['qty']"));
+        assertEquals("true", evaluate("$.order.items[1].gift"));
+        assertEquals("null", evaluate("$.order.discount"));
+    }
+
+    public void testLeftToFullEvaluation() throws IOException {
+        // containers, decimal numbers and missing values
+        assertNull(evaluate("$.order.items"));
+        assertNull(evaluate("$.order.skipped"));
+        assertNull(evaluate("$.order.items[0].price"));
+        assertNull(evaluate("$.order.items[2].sku"));
+        assertNull(evaluate("$.order.missing"));
+        assertNull(evaluate("$.order.id.value"));
+        // not strict JSON
+        assertNull(StreamingJsonPath.compile("$.a").evaluate("{'a' : 1}"));
+    }
+
+    public void testStopsAtValue() throws IOException {
+        // anything after the value is never read
+        String truncated = "{\"id\" : \"x1\", \"rest\" : [1, 2";
+        assertEquals("x1", StreamingJsonPath.compile("$.id").evaluate(truncated));
+        assertNull(StreamingJsonPath.compile("$.other").evaluate(truncated));
+    }
+
+    public void testPayloadBuffer() throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 20000; i++) {
+            sb.append(i).append(',');
+        }
+        sb.append("\"last\"]");
+        byte[] payload = sb.toString().getBytes("UTF-8");
+
+        InputStream json = JsonUtil.toReadOnlyStream(new ByteArrayInputStream(payload));
+        JsonPayloadBuffer buffer = JsonPayloadBuffer.getBuffer(json);
+        assertNotNull(buffer);
+        // a stream of the same buffer is not wrapped again
+        assertSame(buffer, JsonPayloadBuffer.getBuffer(JsonUtil.toReadOnlyStream(json)));
+
+        assertEquals("0", StreamingJsonPath.compile("$[0]").evaluate(json));
+        json.reset();
+        assertEquals("last", StreamingJsonPath.compile("$[20000]").evaluate(json));
+
+        // views read independently from the beginning
+        InputStream view = buffer.newInputStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[777];
+        int n;
+        while ((n = view.read(chunk)) > 0) {
+            out.write(chunk, 0, n);
+        }
+        assertEquals(payload.length, out.size());
+        assertEquals(sb.toString(), new String(buffer.toByteArray(), "UTF-8"));
+
+        out.reset();
+        buffer.writeTo(out);
+        assertEquals(sb.toString(), out.toString("UTF-8"));
+
+        json.close(); // resets a read only stream
+        assertEquals('[', json.read());
+    }
+
+    private String evaluate(String path) throws IOException {
+        InputStream json = JsonUtil.toReadOnlyStream(new ByteArrayInputStream(order.getBytes("UTF-8")));
+        return StreamingJsonPath.compile(path).evaluate(json);
+    }
+}
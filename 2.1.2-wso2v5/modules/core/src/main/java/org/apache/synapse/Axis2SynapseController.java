@@ -192,6 +192,13 @@ public class Axis2SynapseController implements SynapseController {
     public void destroy() {
 
         try {
+            // stop expiring the callbacks of the outgoing messages
+            SynapseCallbackReceiver callbackReceiver =
+                    serverContextInformation.getSynapseCallbackReceiver();
+            if (callbackReceiver != null) {
+                callbackReceiver.destroy();
+            }
+
             // only if we have created the server
             if (serverConfigurationInformation.isCreateNewInstance()) {
 
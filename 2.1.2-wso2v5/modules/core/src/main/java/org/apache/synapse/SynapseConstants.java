@@ -238,6 +238,15 @@ public final class SynapseConstants {
          */
         public static final long DEFAULT_TIMEOUT_HANDLER_INTERVAL = 15000;
 
+        /** The System property that states the tick duration of the callback timeout wheel */
+        public static final String TIMEOUT_WHEEL_TICK = "synapse.timeout_wheel_tick";
+
+        /**
+         * Duration of a tick of the wheel expiring the callbacks, callbacks expire at most this
+         * long after their timeout
+         */
+        public static final long DEFAULT_TIMEOUT_WHEEL_TICK = 1000;
+
         /**
          * The default endpoint suspend duration on failure (i hour)
          */
@@ -727,6 +727,13 @@ public class SynapseConfigUtils {
 
     }
 
+    public static long getTimeoutWheelTick() {
+        return Long.parseLong(SynapsePropertiesLoader.getPropertyValue(
+                SynapseConstants.TIMEOUT_WHEEL_TICK,
+                String.valueOf(SynapseConstants.DEFAULT_TIMEOUT_WHEEL_TICK)));
+
+    }
+
     public static long getGlobalTimeoutInterval() {
         return Long.parseLong(SynapsePropertiesLoader.getPropertyValue(
                 SynapseConstants.GLOBAL_TIMEOUT_INTERVAL,
@@ -57,6 +57,7 @@ import org.apache.synapse.message.processor.MessageProcessor;
 import org.apache.synapse.message.store.MessageStore;
 import org.apache.synapse.registry.Registry;
 import org.apache.synapse.rest.API;
+import org.apache.synapse.rest.APIRoutingIndex;
 import org.apache.synapse.util.xpath.ext.SynapseXpathFunctionContextProvider;
 import org.apache.synapse.util.xpath.ext.SynapseXpathVariableResolver;
 import org.apache.synapse.util.xpath.ext.XpathExtensionUtil;
@@ -177,6 +178,12 @@ public class SynapseConfiguration implements ManagedLifecycle, SynapseArtifact {
 
     private Map<String, API> apiTable = new ConcurrentHashMap<String, API>();
 
+    /**
+     * Routing index over the above APIs, replaced whenever the APIs change
+     */
+    private volatile APIRoutingIndex apiRoutingIndex =
+            new APIRoutingIndex(Collections.<API>emptyList());
+
     /**
      * Description/documentation of the configuration
      */
@@ -347,6 +354,7 @@ public class SynapseConfiguration implements ManagedLifecycle, SynapseArtifact {
                 }
             }
             apiTable.put(name, api);
+            rebuildAPIRoutingIndex();
         } else {
             handleException("Duplicate resource definition by the name: " + name);
         }
@@ -363,6 +371,7 @@ public class SynapseConfiguration implements ManagedLifecycle, SynapseArtifact {
                 }
             }        	
             apiTable.put(name, api);
+            rebuildAPIRoutingIndex();
         }
     }
 
@@ -378,11 +387,26 @@ public class SynapseConfiguration implements ManagedLifecycle, SynapseArtifact {
         API api = apiTable.get(name);
         if (api != null) {
             apiTable.remove(name);
+            rebuildAPIRoutingIndex();
         } else {
             handleException("No API exists by the name: " + name);
         }
     }
 
+    /**
+     * Get the routing index used to dispatch messages to the APIs of this configuration
+     *
+     * @return the index over the currently deployed APIs
+     */
+    public APIRoutingIndex getAPIRoutingIndex() {
+        return apiRoutingIndex;
+    }
+
+    private synchronized void rebuildAPIRoutingIndex() {
+        // built from the current table, so the last rebuild always sees the last change
+        apiRoutingIndex = new APIRoutingIndex(apiTable.values());
+    }
+
     /**
      * Return the template specified with the given key
      *
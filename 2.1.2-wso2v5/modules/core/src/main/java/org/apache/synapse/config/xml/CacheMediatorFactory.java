@@ -21,6 +21,8 @@ package org.apache.synapse.config.xml;
 
 import org.apache.synapse.Mediator;
 import org.apache.synapse.mediators.builtin.CacheMediator;
+import org.apache.synapse.mediators.builtin.cache.OffHeapResponseCacheStore;
+import org.apache.synapse.mediators.builtin.cache.ResponseCacheStore;
 import org.apache.axiom.om.OMElement;
 import org.apache.axiom.om.OMAttribute;
 import org.wso2.caching.CachingConstants;
@@ -39,9 +41,13 @@ import java.util.Properties;
  *   &lt;onCacheHit [sequence="key"]&gt;
  *     (mediator)+
  *   &lt;/onCacheHit&gt;?
- *   &lt;implementation type=(memory | disk) maxSize="int"/&gt;
+ *   &lt;implementation type=(memory | disk | offheap) maxSize="int" [class="store class"]/&gt;
  * &lt;/cache&gt;
  * </pre>
+ *
+ * With the offheap implementation the responses are kept in a
+ * {@link org.apache.synapse.mediators.builtin.cache.ResponseCacheStore}, maxSize being its
+ * capacity in bytes. The class attribute plugs in a store other than the default off-heap one.
  */
 public class CacheMediatorFactory extends AbstractMediatorFactory {
 
@@ -55,6 +61,7 @@ public class CacheMediatorFactory extends AbstractMediatorFactory {
     private static final QName ATT_SEQUENCE = new QName("sequence");
     private static final QName ATT_TYPE = new QName("type");
     private static final QName ATT_SIZE = new QName("maxSize");
+    private static final QName ATT_CLASS = new QName("class");
     private static final QName ON_CACHE_HIT_Q =
         new QName(XMLConfigConstants.SYNAPSE_NAMESPACE, "onCacheHit");
     private static final QName IMPLEMENTATION_Q =
@@ -146,6 +153,11 @@ public class CacheMediatorFactory extends AbstractMediatorFactory {
                     if (CachingConstants.TYPE_MEMORY.equals(type) && sizeAttr != null &&
                         sizeAttr.getAttributeValue() != null) {
                         cache.setInMemoryCacheSize(Integer.parseInt(sizeAttr.getAttributeValue()));
+                    } else if (CacheMediator.TYPE_OFF_HEAP.equals(type)) {
+                        cache.setCacheStore(createCacheStore(implElem.getAttribute(ATT_CLASS)));
+                        if (sizeAttr != null && sizeAttr.getAttributeValue() != null) {
+                            cache.setCacheStoreSize(Long.parseLong(sizeAttr.getAttributeValue()));
+                        }
                     } else if (CachingConstants.TYPE_DISK.equals(type)) {
                         log.warn("Disk based and hirearchycal caching is not implemented yet");
                         if (sizeAttr != null && sizeAttr.getAttributeValue() != null) {
@@ -163,6 +175,30 @@ public class CacheMediatorFactory extends AbstractMediatorFactory {
         return cache;
     }
 
+    private ResponseCacheStore createCacheStore(OMAttribute classAttr) {
+        if (classAttr == null || classAttr.getAttributeValue() == null) {
+            return new OffHeapResponseCacheStore();
+        }
+        try {
+            Class storeClass = Class.forName(classAttr.getAttributeValue());
+            Object o = storeClass.newInstance();
+            if (o instanceof ResponseCacheStore) {
+                return (ResponseCacheStore) o;
+            } else {
+                handleException("Specified class for the cache store is not a " +
+                    "ResponseCacheStore. It *must* implement " +
+                    "org.apache.synapse.mediators.builtin.cache.ResponseCacheStore interface");
+            }
+        } catch (ClassNotFoundException e) {
+            handleException("Unable to load the cache store class", e);
+        } catch (IllegalAccessException e) {
+            handleException("Unable to access the cache store class", e);
+        } catch (InstantiationException e) {
+            handleException("Unable to instantiate the cache store class", e);
+        }
+        return null;
+    }
+
     private boolean isValidScope(String scope, String id) {
         if (CachingConstants.SCOPE_PER_HOST.equals(scope)) {
             return true;
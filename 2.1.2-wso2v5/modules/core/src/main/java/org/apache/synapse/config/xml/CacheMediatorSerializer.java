@@ -22,6 +22,7 @@ package org.apache.synapse.config.xml;
 import org.apache.axiom.om.OMElement;
 import org.apache.synapse.Mediator;
 import org.apache.synapse.mediators.builtin.CacheMediator;
+import org.apache.synapse.mediators.builtin.cache.OffHeapResponseCacheStore;
 
 /**
  * Serializes the Cache mediator to the XML configuration specified
@@ -97,6 +98,19 @@ public class CacheMediatorSerializer extends AbstractMediatorSerializer {
                 cache.addChild(implElem);
             }
 
+            if (mediator.getCacheStore() != null) {
+                OMElement implElem = fac.createOMElement("implementation", synNS);
+                implElem.addAttribute(fac.createOMAttribute("type", nullNS,
+                    CacheMediator.TYPE_OFF_HEAP));
+                implElem.addAttribute(fac.createOMAttribute("maxSize", nullNS,
+                    Long.toString(mediator.getCacheStoreSize())));
+                if (!(mediator.getCacheStore() instanceof OffHeapResponseCacheStore)) {
+                    implElem.addAttribute(fac.createOMAttribute("class", nullNS,
+                        mediator.getCacheStore().getClass().getName()));
+                }
+                cache.addChild(implElem);
+            }
+
             if (mediator.getDiskCacheSize() != 0) {
                 OMElement implElem = fac.createOMElement("implementation", synNS);
                 implElem.addAttribute(fac.createOMAttribute("type", nullNS, "disk"));
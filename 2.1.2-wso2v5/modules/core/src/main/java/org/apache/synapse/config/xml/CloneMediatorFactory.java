@@ -35,7 +35,7 @@ import java.util.Properties;
  * different message contexts and mediated using the specified targets
  *
  * <pre>
- * &lt;clone [continueParent=(true | false)]&gt;
+ * &lt;clone [continueParent=(true | false)] [fork=(true | false)]&gt;
  *   &lt;target [to="uri"] [soapAction="qname"] [sequence="sequence_ref"]
  *          [endpoint="endpoint_ref"]&gt;
  *     &lt;sequence&gt;
@@ -62,6 +62,7 @@ public class CloneMediatorFactory extends AbstractMediatorFactory {
     private static final QName ID_Q
             = new QName(XMLConfigConstants.NULL_NAMESPACE, "id");
     private static final QName SEQUENTIAL_Q = new QName("sequential");
+    private static final QName ATT_FORK = new QName("fork");
 
     /**
      * This method implements the createMediator method of the MediatorFactory interface
@@ -96,6 +97,11 @@ public class CloneMediatorFactory extends AbstractMediatorFactory {
         }
 
         mediator.setSequential(!asynchronousExe);
+
+        OMAttribute fork = elem.getAttribute(ATT_FORK);
+        if (fork != null) {
+            mediator.setFork(JavaUtils.isTrueExplicitly(fork.getAttributeValue()));
+        }
         
         Iterator targetElements = elem.getChildrenWithName(TARGET_Q);
         while (targetElements.hasNext()) {
@@ -30,7 +30,7 @@ import java.util.Iterator;
  * This will serialize the CloneMediator to the xml configuration as specified bellow
  *
  * <pre>
- *  &lt;clone [continueParent=(true | false)]&gt;
+ *  &lt;clone [continueParent=(true | false)] [fork=(true | false)]&gt;
  *   &lt;target [to="uri"] [soapAction="qname"] [sequence="sequence_ref"]
  *          [endpoint="endpoint_ref"]&gt;
  *     &lt;sequence&gt;
@@ -70,6 +70,10 @@ public class CloneMediatorSerializer extends AbstractMediatorSerializer {
             cloneElem.addAttribute("sequential", "true", nullNS);
         }
 
+        if (clone.isFork()) {
+            cloneElem.addAttribute("fork", "true", nullNS);
+        }
+
         for (Object o : clone.getTargets()) {
             if (o instanceof Target) {
                 cloneElem.addChild(TargetSerializer.serializeTarget((Target) o));
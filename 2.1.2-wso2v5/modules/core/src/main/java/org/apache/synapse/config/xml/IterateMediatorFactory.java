@@ -21,6 +21,7 @@ package org.apache.synapse.config.xml;
 
 import org.apache.axiom.om.OMAttribute;
 import org.apache.axiom.om.OMElement;
+import org.apache.axis2.util.JavaUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.synapse.Mediator;
@@ -39,7 +40,7 @@ import java.util.Properties;
  * <p/>
  * <pre>
  * &lt;iterate [continueParent=(true | false)] [preservePayload=(true | false)]
- *          (attachPath="xpath")? expression="xpath"&gt;
+ *          [fork=(true | false)] (attachPath="xpath")? expression="xpath"&gt;
  *   &lt;target [to="uri"] [soapAction="qname"] [sequence="sequence_ref"]
  *          [endpoint="endpoint_ref"]&gt;
  *     &lt;sequence&gt;
@@ -64,6 +65,7 @@ public class IterateMediatorFactory extends AbstractMediatorFactory {
     private static final QName ATT_PREPLD = new QName("preservePayload");
     private static final QName ATT_ATTACHPATH = new QName("attachPath");
     private static final QName ATT_SEQUENCIAL = new QName("sequential");
+    private static final QName ATT_FORK = new QName("fork");
 
     private static final QName ID_Q
             = new QName(XMLConfigConstants.NULL_NAMESPACE, "id");
@@ -97,6 +99,11 @@ public class IterateMediatorFactory extends AbstractMediatorFactory {
                     Boolean.valueOf(preservePayload.getAttributeValue()));
         }
 
+        OMAttribute fork = elem.getAttribute(ATT_FORK);
+        if (fork != null) {
+            mediator.setFork(JavaUtils.isTrueExplicitly(fork.getAttributeValue()));
+        }
+
         OMAttribute expression = elem.getAttribute(ATT_EXPRN);
         if (expression != null) {
             try {
@@ -29,7 +29,7 @@ import org.apache.synapse.mediators.eip.splitter.IterateMediator;
  *
  * <pre>
  * &lt;iterate [continueParent=(true | false)] [preservePayload=(true | false)]
- *          (attachPath="xpath")? expression="xpath"&gt;
+ *          [fork=(true | false)] (attachPath="xpath")? expression="xpath"&gt;
  *   &lt;target [to="uri"] [soapAction="qname"] [sequence="sequence_ref"]
  *          [endpoint="endpoint_ref"]&gt;
  *     &lt;sequence&gt;
@@ -75,6 +75,10 @@ public class IterateMediatorSerializer extends AbstractMediatorSerializer {
             itrElem.addAttribute("preservePayload", Boolean.toString(true), nullNS);
         }
 
+        if (itrMed.isFork()) {
+            itrElem.addAttribute("fork", Boolean.toString(true), nullNS);
+        }
+
         if (itrMed.getAttachPath() != null && !".".equals(itrMed.getAttachPath().toString())) {
             SynapseXPathSerializer.serializeXPath(itrMed.getAttachPath(), itrElem, "attachPath");
         }
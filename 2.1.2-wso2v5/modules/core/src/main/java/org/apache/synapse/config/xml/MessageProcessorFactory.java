@@ -52,6 +52,9 @@ public class MessageProcessorFactory {
     public static final String FORWARDING_PROCESSOR =
             "org.apache.synapse.message.processor.impl.forwarder.ScheduledMessageForwardingProcessor";
 
+    public static final String EVENT_DRIVEN_FORWARDING_PROCESSOR =
+            "org.apache.synapse.message.processor.impl.forwarder.EventDrivenMessageForwardingProcessor";
+
     public static final QName CLASS_Q = new QName(XMLConfigConstants.NULL_NAMESPACE, "class");
     public static final QName TARGET_ENDPOINT_Q = new QName(XMLConfigConstants.NULL_NAMESPACE, "targetEndpoint");
     public static final QName SEQUENCE_Q = new QName(XMLConfigConstants.NULL_NAMESPACE, "sequence");
@@ -101,7 +104,8 @@ public class MessageProcessorFactory {
             handleException("Can't create Message processor without a name ");
         }
 
-        if (FORWARDING_PROCESSOR.equals(clssAtt.getAttributeValue())) {
+        if (FORWARDING_PROCESSOR.equals(clssAtt.getAttributeValue()) ||
+                EVENT_DRIVEN_FORWARDING_PROCESSOR.equals(clssAtt.getAttributeValue())) {
             OMAttribute targetSequenceAtt = elem.getAttribute(TARGET_ENDPOINT_Q);
 
             if (targetSequenceAtt != null) {
@@ -50,6 +50,9 @@ public class MessageProcessorSerializer {
     public static final String FORWARDING_PROCESSOR =
             "org.apache.synapse.message.processor.impl.forwarder.ScheduledMessageForwardingProcessor";
 
+    public static final String EVENT_DRIVEN_FORWARDING_PROCESSOR =
+            "org.apache.synapse.message.processor.impl.forwarder.EventDrivenMessageForwardingProcessor";
+
     protected static final OMFactory fac = OMAbstractFactory.getOMFactory();
     protected static final OMNamespace synNS = SynapseConstants.SYNAPSE_OMNAMESPACE;
     protected static final OMNamespace nullNS = fac.createOMNamespace(
@@ -77,7 +80,8 @@ public class MessageProcessorSerializer {
             handleException("Message store Name not specified");
         }
 
-        if (FORWARDING_PROCESSOR.equals(processor.getClass().getName())) {
+        if (FORWARDING_PROCESSOR.equals(processor.getClass().getName()) ||
+                EVENT_DRIVEN_FORWARDING_PROCESSOR.equals(processor.getClass().getName())) {
             if (processor.getTargetEndpoint() != null) {
                 processorElem.addAttribute(fac.createOMAttribute("targetEndpoint", nullNS, processor.getTargetEndpoint()));
             } else {
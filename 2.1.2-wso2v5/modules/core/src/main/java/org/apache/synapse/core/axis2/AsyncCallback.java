@@ -45,6 +45,8 @@ public class AsyncCallback implements AxisCallback {
     private long timeOutOn;
     /** Action to perform when timeout occurs */
     private int timeOutAction = SynapseConstants.NONE;
+    /** The expiry of this callback, scheduled while it waits for a response */
+    private volatile CallbackTimeoutWheel.Timeout timeout;
 
     public AsyncCallback( org.apache.axis2.context.MessageContext messageContext,MessageContext synapseOutMsgCtx) {
         this.synapseOutMsgCtx = synapseOutMsgCtx;
@@ -99,4 +101,18 @@ public class AsyncCallback implements AxisCallback {
     public void setTimeOutAction(int timeOutAction) {
         this.timeOutAction = timeOutAction;
     }
+
+    void setTimeout(CallbackTimeoutWheel.Timeout timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Cancel the expiry of this callback, as it is no longer waiting for a response
+     */
+    void cancelTimeout() {
+        CallbackTimeoutWheel.Timeout t = timeout;
+        if (t != null) {
+            t.cancel();
+        }
+    }
 }
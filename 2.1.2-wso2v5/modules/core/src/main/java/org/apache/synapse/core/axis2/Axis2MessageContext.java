@@ -42,6 +42,7 @@ import org.apache.synapse.endpoints.Endpoint;
 import org.apache.synapse.mediators.base.SequenceMediator;
 import org.apache.synapse.mediators.template.InvokeMediator;
 import org.apache.synapse.mediators.template.TemplateMediator;
+import org.apache.synapse.util.CopyOnWritePropertyMap;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -69,7 +70,7 @@ public class Axis2MessageContext implements MessageContext {
     /**
      * Synapse Message Context properties
      */
-    private final Map<String, Object> properties = new HashMap<String, Object>();
+    private Map<String, Object> properties = new HashMap<String, Object>();
 
     /**
      * Local entries fetched from the configuration or from the registry for the transactional
@@ -300,6 +301,20 @@ public class Axis2MessageContext implements MessageContext {
         return properties.keySet();
     }
 
+    /**
+     * Share the given snapshot of the properties of a parent message with this message
+     * context, instead of copying them. The snapshot is never modified, the properties set
+     * or removed on this message context are kept apart.
+     *
+     * @param sharedProperties the properties of the parent message
+     * @see org.apache.synapse.util.CopyOnWritePropertyMap
+     */
+    public void setSharedProperties(Map<String, Object> sharedProperties) {
+        Map<String, Object> newProperties = new CopyOnWritePropertyMap(sharedProperties);
+        newProperties.putAll(properties);
+        properties = newProperties;
+    }
+
     /**
      * Constructor for the Axis2MessageContext inside Synapse
      *
@@ -0,0 +1,139 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.core.axis2;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.util.concurrent.TimingWheel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Expires the callbacks of the SynapseCallbackReceiver. The timeouts of the callbacks are kept
+ * on a {@link TimingWheel}, which a dedicated thread advances every tick, so the cost of expiring
+ * callbacks depends on the number of callbacks expiring and not on the number of pending
+ * callbacks. The expired callbacks are handed over to the TimeoutHandler.
+ */
+public class CallbackTimeoutWheel implements Runnable {
+
+    private static final Log log = LogFactory.getLog(CallbackTimeoutWheel.class);
+
+    private static final int WHEEL_SIZE = 512;
+
+    private final TimeoutHandler timeoutHandler;
+    private final long tickDuration;
+    private final TimingWheel<Timeout> wheel;
+
+    private volatile boolean running = false;
+    private Thread worker;
+
+    /**
+     * Create a timing wheel
+     * @param timeoutHandler handler of the expired callbacks
+     * @param tickDuration duration of a tick in milliseconds
+     */
+    public CallbackTimeoutWheel(TimeoutHandler timeoutHandler, long tickDuration) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("The tick duration must be positive");
+        }
+        this.timeoutHandler = timeoutHandler;
+        this.tickDuration = tickDuration;
+        this.wheel = new TimingWheel<Timeout>(WHEEL_SIZE, tickDuration, System.currentTimeMillis());
+    }
+
+    public synchronized void start() {
+        if (!running) {
+            running = true;
+            worker = new Thread(this, "synapse-callback-timeout");
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    /**
+     * Schedule the expiry of a pending callback
+     * @param key the message ID the callback is registered with
+     * @param callback the callback
+     * @param expiryTime time at which the callback expires
+     * @return the scheduled timeout, which should be cancelled when the callback is no longer
+     * pending
+     */
+    public Timeout schedule(Object key, AsyncCallback callback, long expiryTime) {
+        Timeout timeout = new Timeout(key, callback);
+        timeout.scheduled = wheel.schedule(timeout, expiryTime);
+        return timeout;
+    }
+
+    public void run() {
+        List<Timeout> expired = new ArrayList<Timeout>();
+        while (running) {
+            // wake up at the start of the next tick
+            long sleepTime = tickDuration - System.currentTimeMillis() % tickDuration;
+            try {
+                Thread.sleep(sleepTime);
+            } catch (InterruptedException ignore) {
+                continue;
+            }
+
+            wheel.advance(System.currentTimeMillis(), expired);
+            for (Timeout timeout : expired) {
+                try {
+                    timeoutHandler.expire(timeout.key, timeout.callback);
+                } catch (Throwable t) {
+                    log.error("Error while expiring the callback for message ID : " +
+                            timeout.key, t);
+                }
+            }
+            expired.clear();
+        }
+    }
+
+    /**
+     * The scheduled expiry of a callback
+     */
+    public final class Timeout {
+
+        private final Object key;
+        private final AsyncCallback callback;
+        private volatile TimingWheel.Timeout<Timeout> scheduled;
+
+        private Timeout(Object key, AsyncCallback callback) {
+            this.key = key;
+            this.callback = callback;
+        }
+
+        /**
+         * Cancel the expiry as the callback is no longer pending
+         * @return false if the callback has already expired
+         */
+        public boolean cancel() {
+            return wheel.cancel(scheduled);
+        }
+    }
+}
@@ -43,6 +43,7 @@ import org.apache.synapse.config.SynapseConfigUtils;
 import org.apache.synapse.config.SynapseConfiguration;
 import org.apache.synapse.endpoints.AbstractEndpoint;
 import org.apache.synapse.endpoints.Endpoint;
+import org.apache.synapse.endpoints.EndpointRequestTracker;
 import org.apache.synapse.endpoints.FailoverEndpoint;
 import org.apache.synapse.endpoints.dispatch.Dispatcher;
 import org.apache.synapse.transport.nhttp.NhttpConstants;
@@ -67,6 +68,12 @@ public class SynapseCallbackReceiver extends CallbackReceiver {
 
     private static final Log log = LogFactory.getLog(SynapseCallbackReceiver.class);
 
+    /** Handles the callbacks which time out */
+    private final TimeoutHandler timeoutHandler;
+
+    /** Expires the callbacks which are waiting for a response when their timeouts pass */
+    private final CallbackTimeoutWheel timeoutWheel;
+
     /** This is the synchronized callbackStore that maps outgoing messageID's to callback objects */
 //    private final Map<String, AxisCallback> callbackStore;  // will made thread safe in the constructor
 
@@ -82,13 +89,25 @@ public class SynapseCallbackReceiver extends CallbackReceiver {
 //        callbackStore = Collections.synchronizedMap(new HashMap<String, AxisCallback>());
 
         // create the Timer object and a TimeoutHandler task
-        TimeoutHandler timeoutHandler = new TimeoutHandler(callbackStore, contextInformation);
+        timeoutHandler = new TimeoutHandler(callbackStore, contextInformation);
         
         Timer timeOutTimer = synCfg.getSynapseTimer();
         long timeoutHandlerInterval = SynapseConfigUtils.getTimeoutHandlerInterval();
 
         // schedule timeout handler to run every n seconds (n : specified or defaults to 15s)
         timeOutTimer.schedule(timeoutHandler, 0, timeoutHandlerInterval);
+
+        // callbacks are expired by a thread of their own, not to hold up the shared timer
+        timeoutWheel = new CallbackTimeoutWheel(timeoutHandler,
+                SynapseConfigUtils.getTimeoutWheelTick());
+        timeoutWheel.start();
+    }
+
+    /**
+     * Stop expiring the callbacks, once the server shuts down
+     */
+    public void destroy() {
+        timeoutWheel.stop();
     }
 
     public int getCallbackCount() {
@@ -97,6 +116,11 @@ public class SynapseCallbackReceiver extends CallbackReceiver {
 
     public void addCallback(String MsgID, AxisCallback callback) {
         callbackStore.put(MsgID, callback);
+        if (callback instanceof AsyncCallback) {
+            AsyncCallback asyncCallback = (AsyncCallback) callback;
+            asyncCallback.setTimeout(timeoutWheel.schedule(MsgID, asyncCallback,
+                    timeoutHandler.getExpiryTime(asyncCallback)));
+        }
         if (log.isDebugEnabled()) {
             log.debug("Callback added. Total callbacks waiting for : " + callbackStore.size());
         }
@@ -122,7 +146,12 @@ public class SynapseCallbackReceiver extends CallbackReceiver {
         if (messageCtx.getProperty(NhttpConstants.HTTP_202_RECEIVED) != null && "true".equals(
                 messageCtx.getProperty(NhttpConstants.HTTP_202_RECEIVED))) {
             if (callbackStore.containsKey(messageCtx.getMessageID())) {
-                callbackStore.remove(messageCtx.getMessageID());
+                Object callback = callbackStore.remove(messageCtx.getMessageID());
+                if (callback instanceof AsyncCallback) {
+                    ((AsyncCallback) callback).cancelTimeout();
+                    EndpointRequestTracker.complete(
+                            ((AsyncCallback) callback).getSynapseOutMsgCtx());
+                }
                 if (log.isDebugEnabled()) {
                     log.debug("CallBack registered with Message id : " + messageCtx.getMessageID() +
                             " removed from the " +
@@ -163,6 +192,7 @@ public class SynapseCallbackReceiver extends CallbackReceiver {
             }
             
             if (callback != null) {
+                callback.cancelTimeout();
                 handleMessage(messageID, messageCtx, ((AsyncCallback) callback).getSynapseOutMsgCtx(),
                         (AsyncCallback)callback);
                 
@@ -190,6 +220,10 @@ public class SynapseCallbackReceiver extends CallbackReceiver {
      */
     private void handleMessage(String messageID ,MessageContext response,
         org.apache.synapse.MessageContext synapseOutMsgCtx, AsyncCallback callback) throws AxisFault {
+
+        // the request has completed, for the load of the endpoint it was sent through
+        EndpointRequestTracker.complete(synapseOutMsgCtx);
+
         // apply the tenant information to the out message context
         TenantInfoConfigurator configurator = synapseOutMsgCtx.getEnvironment()
                 .getTenantInfoConfigurator();
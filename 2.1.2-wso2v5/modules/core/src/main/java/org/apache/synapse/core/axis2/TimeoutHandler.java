@@ -28,28 +28,28 @@ import org.apache.synapse.ServerContextInformation;
 import org.apache.synapse.aspects.statistics.StatisticsCleaner;
 import org.apache.synapse.aspects.statistics.StatisticsCollector;
 import org.apache.synapse.config.SynapseConfigUtils;
+import org.apache.synapse.endpoints.EndpointRequestTracker;
 import org.apache.synapse.endpoints.dispatch.SALSessions;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * An object of this class is registered to be invoked in some predefined time intervals. This
- * checks the timeouts of callbacks stored in the SynapseCallbackReceiver and removes all expired
- * callbacks. Timeouts of the callbacks are stored as the time, not the duration. So that the
- * time or the interval of invoking this class does not affect the correctness of the timeouts,
- * although longer intervals would introduce larger error between the actual timeout and the
- * specified timeout.
+ * An object of this class handles the timeouts of the callbacks stored in the
+ * SynapseCallbackReceiver. The CallbackTimeoutWheel hands over each callback whose timeout has
+ * passed, which is then removed and, if specified, reported to the client as a fault. Timeouts
+ * of the callbacks are stored as the time, not the duration, and a callback expires at most one
+ * tick of the wheel after its timeout.
  *
- * For each invocation this gets a time value to be compared against the timeouts of the callback
- * objects. This time is the System.currentTimeMillis() for Java 1.4 and System.nanoTime() for
- * Java 1.5 and later.
+ * The handler is also registered to be invoked in some predefined time intervals, to clear the
+ * expired statistics and sessions.
  */
 public class TimeoutHandler extends TimerTask {
 
     private static final Log log = LogFactory.getLog(TimeoutHandler.class);
 
-    /** The callback map - already a Collections.synchronized() hash map */
-    private final Map callbackStore;
+    /** The callback map - a thread safe map */
+    private final ConcurrentMap callbackStore;
     /** a lock to prevent concurrent execution while ensuring least overhead */
     private final Object lock = new Object();
     private boolean alreadyExecuting = false;
@@ -59,7 +59,7 @@ public class TimeoutHandler extends TimerTask {
     private StatisticsCleaner statisticsCleaner;
     private ServerContextInformation contextInfo = null;
 
-    public TimeoutHandler(Map callbacks, ServerContextInformation contextInfo) {
+    public TimeoutHandler(ConcurrentMap callbacks, ServerContextInformation contextInfo) {
         this.callbackStore = callbacks;
         this.contextInfo = contextInfo;
         this.globalTimeout = SynapseConfigUtils.getGlobalTimeoutInterval();
@@ -69,8 +69,7 @@ public class TimeoutHandler extends TimerTask {
     }
 
     /**
-     * Checks if the timeout has expired for each callback in the callback store. If expired, removes
-     * the callback. If specified sends a fault message to the client about the timeout.
+     * Clears the expired statistics and sessions
      */
     public void run() {
         if (alreadyExecuting) return;
@@ -78,13 +77,13 @@ public class TimeoutHandler extends TimerTask {
         synchronized(lock) {
             alreadyExecuting = true;
             try {
-                processCallbacks();
+                cleanup();
             } catch (Exception ignore) {}
             alreadyExecuting = false;
         }
     }
 
-    private void processCallbacks() {
+    private void cleanup() {
 
         //clear the expired statistics
         if (statisticsCleaner == null) {
@@ -99,82 +98,68 @@ public class TimeoutHandler extends TimerTask {
 
         //clear all the expired sessions
         SALSessions.getInstance().clearSessions();
+    }
 
-        // checks if callback store contains at least one entry before proceeding. otherwise getting
-        // the time for doing nothing would be a inefficient task.
-
-        // we have to synchronize this on the callbackStore as iterators of thread safe collections
-        // are not thread safe. callbackStore can be modified
-        // concurrently by the SynapseCallbackReceiver.
-        synchronized(callbackStore) {
-
-            if (callbackStore.size() > 0) {
-
-                long currentTime = currentTime();
-
-                List toRemove = new ArrayList();
-
-                for (Object key : callbackStore.keySet()) {
-
-                    AsyncCallback callback = (AsyncCallback) callbackStore.get(key);
-                    if (callback == null) {
-                        if (log.isDebugEnabled()) {
-                            log.debug("There is no callback for key :" + key);
-                        }
-                        continue;
-                    }
-                    if (callback.getTimeOutAction() != SynapseConstants.NONE) {
+    /**
+     * Get the time at which a callback expires. Callbacks without a timeout action expire after
+     * the global timeout, to ensure system stability over time.
+     *
+     * @param callback the callback
+     * @return the expiry time of the callback
+     */
+    public long getExpiryTime(AsyncCallback callback) {
+        if (callback.getTimeOutAction() != SynapseConstants.NONE) {
+            return callback.getTimeOutOn();
+        }
+        return callback.getTimeOutOn() + globalTimeout;
+    }
 
-                        if (callback.getTimeOutOn() <= currentTime) {
-                            //callbackStore.remove(key);
-                            toRemove.add(key);
-                            if (callback.getTimeOutAction() == SynapseConstants.DISCARD_AND_FAULT) {
+    /**
+     * Expire a callback whose timeout has passed. The callback is removed from the callback
+     * store, unless a response has already taken it, and if specified a fault message is sent
+     * to the client about the timeout.
+     *
+     * @param key the message ID the callback is registered with
+     * @param callback the expired callback
+     */
+    public void expire(Object key, AsyncCallback callback) {
 
-                                // actiavte the fault sequence of the current sequence mediator
-                                MessageContext msgContext = callback.getSynapseOutMsgCtx();
+        if (!callbackStore.remove(key, callback)) {
+            // a response has taken the callback or another one is registered with the same ID
+            return;
+        }
 
-                                // add an error code to the message context, so that error sequences
-                                // can identify the cause of error
-                                msgContext.setProperty(SynapseConstants.ERROR_CODE,
-                                        SynapseConstants.HANDLER_TIME_OUT);
-                                msgContext.setProperty(SynapseConstants.ERROR_MESSAGE,
-                                        SEND_TIMEOUT_MESSAGE);
+        MessageContext msgContext = callback.getSynapseOutMsgCtx();
+        // complete the request before a fault handler sends the message again
+        EndpointRequestTracker.complete(msgContext);
 
-                                Stack faultStack = msgContext.getFaultStack();
+        if (!"true".equals(msgContext.getProperty(SynapseConstants.OUT_ONLY))) {
+            if (callback.getTimeOutAction() == SynapseConstants.NONE) {
+                log.warn("Expiring message ID : " + key + "; dropping message after " +
+                        "global timeout of : " + (globalTimeout / 1000) + " seconds");
+            } else {
+                log.warn("Expiring message ID : " + key + "; dropping message after timeout");
+            }
+        }
 
-                                for (int j = 0; j < faultStack.size(); j++) {
-                                    Object o = faultStack.pop();
-                                    if (o instanceof FaultHandler) {
-                                        ((FaultHandler) o).handleFault(msgContext);
-                                    }
-                                }
+        if (callback.getTimeOutAction() == SynapseConstants.DISCARD_AND_FAULT) {
 
-                            }
-                        }
+            // add an error code to the message context, so that error sequences
+            // can identify the cause of error
+            msgContext.setProperty(SynapseConstants.ERROR_CODE,
+                    SynapseConstants.HANDLER_TIME_OUT);
+            msgContext.setProperty(SynapseConstants.ERROR_MESSAGE,
+                    SEND_TIMEOUT_MESSAGE);
 
-                    } else if (currentTime > globalTimeout + callback.getTimeOutOn()) {
-                        toRemove.add(key);
-                    }
-                }
+            // actiavte the fault sequence of the current sequence mediator
+            Stack faultStack = msgContext.getFaultStack();
 
-                for(Object key : toRemove) {
-                    if (!"true".equals(((AsyncCallback) callbackStore.get(key)).getSynapseOutMsgCtx().getProperty(SynapseConstants.OUT_ONLY))) {
-                        log.warn("Expiring message ID : " + key + "; dropping message after " +
-                                "global timeout of : " + (globalTimeout / 1000) + " seconds");
-                    }
-                    callbackStore.remove(key);
+            for (int j = 0; j < faultStack.size(); j++) {
+                Object o = faultStack.pop();
+                if (o instanceof FaultHandler) {
+                    ((FaultHandler) o).handleFault(msgContext);
                 }
             }
         }
     }
-
-    /**
-     * Returns the current time.
-     *
-     * @return  System.currentTimeMillis() on Java 1.4
-     *          System.nanoTime() on Java 1.5 (todo: implement)
-     */
-    private long currentTime() {
-        return System.currentTimeMillis();
-    }
 }
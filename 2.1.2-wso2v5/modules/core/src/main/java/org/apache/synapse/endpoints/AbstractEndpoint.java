@@ -114,6 +114,19 @@ public abstract class AbstractEndpoint extends FaultHandler implements Endpoint,
         return metricsMBean;
     }
 
+    /**
+     * Get the metrics collector of the endpoint, creating one which is not registered for JMX
+     * if the endpoint has none, as it is the case for anonymous endpoints. Load aware load
+     * balance algorithms rely on the metrics of every endpoint they balance among.
+     * @return the metrics collector of the endpoint
+     */
+    public synchronized EndpointView ensureMetricsMBean() {
+        if (metricsMBean == null) {
+            metricsMBean = new EndpointView(endpointName, this, false);
+        }
+        return metricsMBean;
+    }
+
     public EndpointContext getContext() {
         return context;
     }
@@ -190,10 +203,7 @@ public abstract class AbstractEndpoint extends FaultHandler implements Endpoint,
                 log.warn("Endpoint Name not found. Skipped JMX statistics collection for this endpoint");
                 return;
             }*/
-            metricsMBean = new EndpointView(endpointName, this);
-            if(metricsMBean != null) {
-                metricsMBean.destroy();
-            }
+            metricsMBean = new EndpointView(endpointName, this, false);
 
             MBeanRegistrar.getInstance().registerMBean(metricsMBean, "Endpoint", endpointName);
         }
@@ -329,8 +339,18 @@ public abstract class AbstractEndpoint extends FaultHandler implements Endpoint,
             synCtx.getEnvelope().build();
         }
 
+        // track the request until a response, an error or a timeout completes it
+        EndpointRequestTracker tracker = EndpointRequestTracker.start(this, synCtx);
+
         // Send the message through this endpoint
-        synCtx.getEnvironment().send(definition, synCtx);
+        try {
+            synCtx.getEnvironment().send(definition, synCtx);
+        } catch (RuntimeException e) {
+            if (tracker != null) {
+                tracker.complete();
+            }
+            throw e;
+        }
     }
 
     /**
@@ -0,0 +1,106 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.endpoints;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseConstants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tracks a request sent through an endpoint until it completes, maintaining the number of
+ * active requests and the response time in the {@link EndpointView} of the endpoint and of the
+ * endpoints containing it, which load aware load balance algorithms are based on. The tracker
+ * is kept in the message and completed once, whichever of the response, the error or the
+ * timeout of the request comes first.
+ */
+public final class EndpointRequestTracker {
+
+    /** The message property holding the tracker, which is not copied to a cloned message */
+    public static final String TRACKER = "_ENDPOINT_REQUEST_TRACKER_";
+
+    private final EndpointView[] views;
+    private final long startTime = System.currentTimeMillis();
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+
+    private EndpointRequestTracker(EndpointView[] views) {
+        this.views = views;
+    }
+
+    /**
+     * Start tracking a request which is about to be sent through the given endpoint
+     * @param endpoint the leaf endpoint sending the message
+     * @param synCtx the message being sent
+     * @return the tracker, or null if the request is not tracked
+     */
+    static EndpointRequestTracker start(Endpoint endpoint, MessageContext synCtx) {
+        if ("true".equals(synCtx.getProperty(SynapseConstants.OUT_ONLY))) {
+            return null; // no response to wait for
+        }
+        List<EndpointView> views = new ArrayList<EndpointView>(2);
+        Endpoint e = endpoint;
+        while (e != null) {
+            EndpointView view = e.getMetricsMBean();
+            if (view != null && !views.contains(view)) {
+                views.add(view);
+            }
+            e = e instanceof AbstractEndpoint ? ((AbstractEndpoint) e).getParentEndpoint() : null;
+        }
+        if (views.isEmpty()) {
+            return null;
+        }
+
+        // a message sent again, after a failover for an instance, ends its previous request
+        complete(synCtx);
+
+        EndpointRequestTracker tracker =
+                new EndpointRequestTracker(views.toArray(new EndpointView[views.size()]));
+        for (EndpointView view : tracker.views) {
+            view.requestStarted();
+        }
+        synCtx.setProperty(TRACKER, tracker);
+        return tracker;
+    }
+
+    /**
+     * Complete the request of the given message, if it is being tracked and not completed yet
+     * @param synCtx the message sent through an endpoint
+     */
+    public static void complete(MessageContext synCtx) {
+        if (synCtx == null) {
+            return;
+        }
+        Object tracker = synCtx.getProperty(TRACKER);
+        if (tracker instanceof EndpointRequestTracker) {
+            ((EndpointRequestTracker) tracker).complete();
+        }
+    }
+
+    void complete() {
+        if (completed.compareAndSet(false, true)) {
+            long responseTime = System.currentTimeMillis() - startTime;
+            for (EndpointView view : views) {
+                view.requestCompleted(responseTime);
+            }
+        }
+    }
+}
@@ -26,6 +26,7 @@ import org.apache.commons.logging.LogFactory;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class is the metrics collector and JMX control point for Endpoints
@@ -88,15 +89,37 @@ public class EndpointView implements EndpointViewMBean, MessageLevelMetricsColle
     private Queue<Integer> suspensionCounts = new LinkedList<Integer>();
     private Queue<Integer> timeoutCounts = new LinkedList<Integer>();
 
+    /** Weight of the latest response in the moving average of the response time */
+    private static final double RESPONSE_TIME_SMOOTHING = 0.2;
+
+    /** Requests sent through the endpoint which are yet to complete */
+    private final AtomicInteger activeRequests = new AtomicInteger(0);
+    /** Moving average of the response time in milliseconds, held as the bits of a double */
+    private final AtomicLong avgResponseTime = new AtomicLong(Double.doubleToLongBits(0));
+
     /**
      * Create a new MBean to manage the given endpoint
      * @param endpointName the name of the endpoint
      * @param endpoint the actual endpoint
      */
     public EndpointView(final String endpointName, Endpoint endpoint) {
+        this(endpointName, endpoint, true);
+    }
+
+    /**
+     * Create a new MBean to manage the given endpoint
+     * @param endpointName the name of the endpoint
+     * @param endpoint the actual endpoint
+     * @param trackHistory whether the suspensions and timeouts of the last 15 minutes are kept,
+     *                     which takes a periodic task on the shared scheduler
+     */
+    public EndpointView(final String endpointName, Endpoint endpoint, boolean trackHistory) {
         this.endpointName = endpointName;
         this.endpoint = endpoint;
 
+        if (!trackHistory) {
+            return;
+        }
         this.future = scheduler.scheduleAtFixedRate(new Runnable() {
             public void run() {
                 if (suspensionCounts.size() == 15) {
@@ -113,7 +136,9 @@ public class EndpointView implements EndpointViewMBean, MessageLevelMetricsColle
     }
 
     public void destroy() {
-        future.cancel(true);
+        if (future != null) {
+            future.cancel(true);
+        }
         suspensionCounts.clear();
         timeoutCounts.clear();
     }
@@ -394,6 +419,40 @@ public class EndpointView implements EndpointViewMBean, MessageLevelMetricsColle
         return getTotal(timeoutCounts, 15);
     }
 
+    public int getActiveRequests() {
+        return activeRequests.get();
+    }
+
+    public double getAvgResponseTime() {
+        return Double.longBitsToDouble(avgResponseTime.get());
+    }
+
+    /**
+     * Record a request sent through the endpoint, which is active until
+     * {@link #requestCompleted(long)} is called for it
+     */
+    void requestStarted() {
+        activeRequests.incrementAndGet();
+    }
+
+    /**
+     * Record the completion of an active request, with an exponentially weighted moving
+     * average of the response time, so that recent responses weigh more
+     * @param responseTime time taken by the request in milliseconds
+     */
+    void requestCompleted(long responseTime) {
+        activeRequests.decrementAndGet();
+        while (true) {
+            long current = avgResponseTime.get();
+            double avg = Double.longBitsToDouble(current);
+            double next = avg == 0 ? responseTime :
+                    avg + RESPONSE_TIME_SMOOTHING * (responseTime - avg);
+            if (avgResponseTime.compareAndSet(current, Double.doubleToLongBits(next))) {
+                return;
+            }
+        }
+    }
+
     private int getTotal(Queue<Integer> queue, int count) {
         int sum = 0;
         Integer[] array = queue.toArray(new Integer[queue.size()]);
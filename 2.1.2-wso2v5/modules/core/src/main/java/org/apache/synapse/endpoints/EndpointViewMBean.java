@@ -56,6 +56,8 @@ public interface EndpointViewMBean {
     public int getLastMinuteEndpointTimeouts();
     public int getLast5MinuteEndpointTimeouts();
     public int getLast15MinuteEndpointTimeouts();
+    public int getActiveRequests();
+    public double getAvgResponseTime();
 
     // JMX Operations
     public void switchOn() throws Exception;
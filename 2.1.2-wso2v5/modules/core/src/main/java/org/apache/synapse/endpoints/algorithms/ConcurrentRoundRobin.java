@@ -0,0 +1,143 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.endpoints.algorithms;
+
+import org.apache.axis2.clustering.Member;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.endpoints.Endpoint;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A round robin load balancing algorithm which selects endpoints without locking, so that
+ * concurrent messages do not wait for each other. Unlike {@link RoundRobin} the position is
+ * kept by the algorithm instance and is not replicated to the other members of a cluster.
+ */
+public class ConcurrentRoundRobin implements LoadbalanceAlgorithm {
+
+    private static final Log log = LogFactory.getLog(ConcurrentRoundRobin.class);
+
+    private List<Endpoint> endpoints = null;
+
+    private List<Member> members;
+
+    private final AtomicInteger currentEndpoint = new AtomicInteger(0);
+
+    private final AtomicInteger currentMember = new AtomicInteger(0);
+
+    public ConcurrentRoundRobin() {
+
+    }
+
+    public ConcurrentRoundRobin(List<Endpoint> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    public void setApplicationMembers(List<Member> members) {
+        this.members = members;
+    }
+
+    public void setEndpoints(List<Endpoint> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    public void setLoadBalanceEndpoint(Endpoint endpoint) {
+    }
+
+    /**
+     * Choose the next active endpoint in turn. If there are no active endpoints available,
+     * returns null.
+     *
+     * @param synCtx           MessageContext instance which holds all per-message properties
+     * @param algorithmContext The context in which holds run time states related to the algorithm
+     * @return endpoint to send the next message
+     */
+    public Endpoint getNextEndpoint(MessageContext synCtx, AlgorithmContext algorithmContext) {
+        return nextReadyEndpoint(endpoints, currentEndpoint);
+    }
+
+    /**
+     * Scan the endpoints once, starting from the next position of the given counter, for an
+     * endpoint ready to send
+     *
+     * @param endpoints endpoints to choose from
+     * @param counter   position of the round robin
+     * @return the endpoint or null if none is ready to send
+     */
+    static Endpoint nextReadyEndpoint(List<Endpoint> endpoints, AtomicInteger counter) {
+        int size = endpoints.size();
+        for (int attempts = 0; attempts < size; attempts++) {
+            Endpoint endpoint = endpoints.get(nextIndex(counter, size));
+            if (endpoint.readyToSend()) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the next position of the given counter, between 0 and size - 1
+     */
+    static int nextIndex(AtomicInteger counter, int size) {
+        return (counter.getAndIncrement() & Integer.MAX_VALUE) % size;
+    }
+
+    public Member getNextApplicationMember(AlgorithmContext algorithmContext) {
+        return nextActiveMember(members, currentMember);
+    }
+
+    static Member nextActiveMember(List<Member> members, AtomicInteger counter) {
+        int size = members.size();
+        if (size == 0) {
+            return null;
+        }
+        Member current = null;
+        for (int attempts = 0; attempts < size; attempts++) {
+            current = members.get(nextIndex(counter, size));
+            if (!current.isSuspended()) {
+                break;
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Members       : " + size);
+            log.debug("Current member: " + current);
+        }
+        return current;
+    }
+
+    @Override
+    public LoadbalanceAlgorithm clone() {
+        return new ConcurrentRoundRobin();
+    }
+
+    public void reset(AlgorithmContext algorithmContext) {
+        if (log.isDebugEnabled()) {
+            log.debug("Resetting the Concurrent Round Robin loadbalancing algorithm ...");
+        }
+        currentEndpoint.set(0);
+        currentMember.set(0);
+    }
+
+    public String getName() {
+        return "ConcurrentRoundRobin";
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.endpoints.algorithms;
+
+import org.apache.synapse.endpoints.EndpointView;
+
+/**
+ * A least response time load balancing algorithm. Two endpoints are picked at random as in
+ * {@link PowerOfTwoChoices}, and the one expected to respond sooner is used: the moving
+ * average of its response time, weighted by the requests it is still processing. Endpoints
+ * which have not responded yet are tried first.
+ */
+public class LeastResponseTime extends PowerOfTwoChoices {
+
+    @Override
+    protected double getLoad(EndpointView view) {
+        if (view == null) {
+            return 0;
+        }
+        return (view.getAvgResponseTime() + 1) * (view.getActiveRequests() + 1);
+    }
+
+    @Override
+    public LoadbalanceAlgorithm clone() {
+        return new LeastResponseTime();
+    }
+
+    @Override
+    public String getName() {
+        return "LeastResponseTime";
+    }
+}
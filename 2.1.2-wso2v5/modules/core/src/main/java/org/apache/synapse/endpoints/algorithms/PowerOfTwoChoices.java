@@ -0,0 +1,162 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.endpoints.algorithms;
+
+import org.apache.axis2.clustering.Member;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.ManagedLifecycle;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.core.SynapseEnvironment;
+import org.apache.synapse.endpoints.AbstractEndpoint;
+import org.apache.synapse.endpoints.Endpoint;
+import org.apache.synapse.endpoints.EndpointView;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A least outstanding requests load balancing algorithm based on the power of two choices.
+ * Instead of searching all the endpoints for the least loaded one, two endpoints are picked at
+ * random and the less loaded of them is used, which spreads the load nearly as well without
+ * any shared state between concurrent messages. The load of an endpoint is the number of
+ * requests sent through it which have not completed yet, as recorded in its
+ * {@link EndpointView}. If neither endpoint is ready to send, the next ready endpoint is
+ * chosen in round robin order.
+ */
+public class PowerOfTwoChoices implements LoadbalanceAlgorithm, ManagedLifecycle {
+
+    private static final Log log = LogFactory.getLog(PowerOfTwoChoices.class);
+
+    private static final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
+    private List<Endpoint> endpoints = null;
+
+    private List<Member> members;
+
+    private final AtomicInteger currentEndpoint = new AtomicInteger(0);
+
+    private final AtomicInteger currentMember = new AtomicInteger(0);
+
+    public void setApplicationMembers(List<Member> members) {
+        this.members = members;
+    }
+
+    public void setEndpoints(List<Endpoint> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    public void setLoadBalanceEndpoint(Endpoint endpoint) {
+    }
+
+    /**
+     * Make sure every endpoint collects the metrics the algorithm is based on, including the
+     * anonymous ones which are not managed through JMX
+     *
+     * @param se the Synapse environment
+     */
+    public void init(SynapseEnvironment se) {
+        if (endpoints == null) {
+            return;
+        }
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.getMetricsMBean() == null && endpoint instanceof AbstractEndpoint) {
+                ((AbstractEndpoint) endpoint).ensureMetricsMBean();
+            }
+        }
+    }
+
+    public void destroy() {
+    }
+
+    /**
+     * Choose the less loaded of two endpoints picked at random. If there are no active
+     * endpoints available, returns null.
+     *
+     * @param synCtx           MessageContext instance which holds all per-message properties
+     * @param algorithmContext The context in which holds run time states related to the algorithm
+     * @return endpoint to send the next message
+     */
+    public Endpoint getNextEndpoint(MessageContext synCtx, AlgorithmContext algorithmContext) {
+        int size = endpoints.size();
+        if (size == 0) {
+            return null;
+        }
+        if (size == 1) {
+            Endpoint endpoint = endpoints.get(0);
+            return endpoint.readyToSend() ? endpoint : null;
+        }
+
+        Random r = random.get();
+        int first = r.nextInt(size);
+        int second = r.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Endpoint a = endpoints.get(first);
+        Endpoint b = endpoints.get(second);
+        boolean aReady = a.readyToSend();
+        boolean bReady = b.readyToSend();
+
+        if (aReady && bReady) {
+            return getLoad(b.getMetricsMBean()) < getLoad(a.getMetricsMBean()) ? b : a;
+        } else if (aReady) {
+            return a;
+        } else if (bReady) {
+            return b;
+        }
+        return ConcurrentRoundRobin.nextReadyEndpoint(endpoints, currentEndpoint);
+    }
+
+    /**
+     * Get the load of an endpoint, the lower the better
+     *
+     * @param view metrics of the endpoint, null if the endpoint does not collect metrics
+     * @return the load of the endpoint
+     */
+    protected double getLoad(EndpointView view) {
+        return view == null ? 0 : view.getActiveRequests();
+    }
+
+    public Member getNextApplicationMember(AlgorithmContext algorithmContext) {
+        return ConcurrentRoundRobin.nextActiveMember(members, currentMember);
+    }
+
+    @Override
+    public LoadbalanceAlgorithm clone() {
+        return new PowerOfTwoChoices();
+    }
+
+    public void reset(AlgorithmContext algorithmContext) {
+        if (log.isDebugEnabled()) {
+            log.debug("Resetting the " + getName() + " loadbalancing algorithm ...");
+        }
+        currentEndpoint.set(0);
+        currentMember.set(0);
+    }
+
+    public String getName() {
+        return "PowerOfTwoChoices";
+    }
+}
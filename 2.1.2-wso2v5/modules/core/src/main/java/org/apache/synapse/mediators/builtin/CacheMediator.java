@@ -23,6 +23,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.soap.SOAPException;
 import javax.xml.stream.XMLStreamException;
@@ -44,6 +45,7 @@ import org.apache.synapse.ManagedLifecycle;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseException;
 import org.apache.synapse.SynapseLog;
+import org.apache.synapse.commons.jmx.MBeanRegistrar;
 import org.apache.synapse.continuation.ContinuationStackManager;
 import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.core.axis2.Axis2MessageContext;
@@ -51,6 +53,10 @@ import org.apache.synapse.core.axis2.Axis2Sender;
 import org.apache.synapse.mediators.AbstractMediator;
 import org.apache.synapse.mediators.FlowContinuableMediator;
 import org.apache.synapse.mediators.base.SequenceMediator;
+import org.apache.synapse.mediators.builtin.cache.CachedResponse;
+import org.apache.synapse.mediators.builtin.cache.ResponseCacheStore;
+import org.apache.synapse.mediators.builtin.cache.ResponseCacheStoreView;
+import org.apache.synapse.mediators.builtin.cache.StreamingDigestGenerator;
 import org.apache.synapse.util.FixedByteArrayOutputStream;
 import org.apache.synapse.util.MessageHelper;
 import org.wso2.caching.CachableResponse;
@@ -90,16 +96,48 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
 
     private String cacheKey = "synapse.cache_key";
 
+    /** Implementation type of a cache kept in a {@link ResponseCacheStore} */
+    public static final String TYPE_OFF_HEAP = "offheap";
+    public static final long DEFAULT_CACHE_STORE_SIZE = 256 * 1024 * 1024;
+    private static final String CACHE_STORE_MBEAN_CATEGORY = "ResponseCache";
+    /** Operation context properties handing a cache miss over to the collector */
+    private static final String CACHE_STORE = "synapse.cache_store";
+    private static final String CACHE_STORE_KEY = "synapse.cache_store_key";
+    private static final String CACHE_STORE_TIMEOUT = "synapse.cache_store_timeout";
+
+    /** The store of the responses, if the responses are not kept in the cache manager */
+    private ResponseCacheStore cacheStore = null;
+    /** Capacity of the store in bytes */
+    private long cacheStoreSize = DEFAULT_CACHE_STORE_SIZE;
+    /** Name of the store of a cache mediator without an id, unique among all the cache mediators */
+    private String cacheStoreName = null;
+    private static final AtomicInteger unnamedCacheStores = new AtomicInteger();
+
     public void init(SynapseEnvironment se) {
         if (onCacheHitSequence != null) {
             onCacheHitSequence.init(se);
         }
+        if (cacheStore != null) {
+            if (id == null) {
+                // the position of the mediator in its sequence, the sequence is not known here
+                cacheStoreName = CACHE_KEY_PREFIX + "mediator" + getMediatorPosition() + "_" +
+                        unnamedCacheStores.incrementAndGet();
+            }
+            cacheStore.init(cacheStoreSize);
+            MBeanRegistrar.getInstance().registerMBean(new ResponseCacheStoreView(cacheStore),
+                    CACHE_STORE_MBEAN_CATEGORY, getCacheName());
+        }
     }
 
     public void destroy() {
         if (onCacheHitSequence != null) {
             onCacheHitSequence.destroy();
         }
+        if (cacheStore != null) {
+            MBeanRegistrar.getInstance().unRegisterMBean(CACHE_STORE_MBEAN_CATEGORY,
+                    getCacheName());
+            cacheStore.destroy();
+        }
     }
 
     public boolean mediate(MessageContext synCtx) {
@@ -123,8 +161,9 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
 //            log.debug("Caching mediator does not support SOAP 1.2");
 //            return true;
 //        }
-        // if maxMessageSize is specified check for the message size before processing
-        if (maxMessageSize > 0) {
+        // if maxMessageSize is specified check for the message size before processing, the
+        // size of a request hashed from the raw stream is checked once the stream has been read
+        if (maxMessageSize > 0 && !isHashedFromStream(synCtx)) {
             FixedByteArrayOutputStream fbaos = new FixedByteArrayOutputStream(maxMessageSize);
             try {
                 MessageHelper.cloneSOAPEnvelope(synCtx.getEnvelope()).serialize(fbaos);
@@ -178,6 +217,9 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
 
             } else {
                 result = processRequestMessage(synCtx, synLog, cacheManager);
+                if (result) {
+                    buildConsumedRequest(synCtx);
+                }
             }
 
         } catch (ClusteringFault clusteringFault) {
@@ -227,6 +269,13 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
                 ((Axis2MessageContext)synCtx).getAxis2MessageContext();
         OperationContext operationContext = msgCtx.getOperationContext();
 
+        ResponseCacheStore store =
+                (ResponseCacheStore) operationContext.getPropertyNonReplicable(CACHE_STORE);
+        if (store != null) {
+            storeResponse(synCtx, synLog, operationContext, store);
+            return;
+        }
+
         CachableResponse response =
                 (CachableResponse) operationContext.getPropertyNonReplicable(CachingConstants.CACHED_OBJECT);
         if (response != null) {
@@ -313,15 +362,27 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
         try {
             requestHash = digestGenerator.getDigest(
                 ((Axis2MessageContext) synCtx).getAxis2MessageContext());
-            synCtx.setProperty(CachingConstants.REQUEST_HASH, requestHash);
         } catch (CachingException e) {
             handleException("Error in calculating the hash value of the request", e, synCtx);
         }
 
+        Integer requestSize = (Integer) ((Axis2MessageContext) synCtx).getAxis2MessageContext().
+                getProperty(StreamingDigestGenerator.REQUEST_SIZE);
+        if (maxMessageSize > 0 && requestSize != null && requestSize > maxMessageSize) {
+            synLog.traceOrDebug("Message size exceeds the upper bound for caching, " +
+                        "request will not be cached");
+            return true;
+        }
+        synCtx.setProperty(CachingConstants.REQUEST_HASH, requestHash);
+
         if (synLog.isTraceOrDebugEnabled()) {
             synLog.traceOrDebug("Generated request hash : " + requestHash);
         }
 
+        if (cacheStore != null) {
+            return processRequestWithStore(synCtx, synLog, requestHash);
+        }
+
         ServiceName service;
         if (id != null) {
             service = new ServiceName(id);
@@ -345,73 +406,10 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
                     synLog.traceOrDebug("Cache-hit for message ID : " + synCtx.getMessageID());
                 }
                 cachedResponse.setInUse(true);
-                // mark as a response and replace envelope from cache
-                synCtx.setResponse(true);
                 opCtx.setNonReplicableProperty(CachingConstants.CACHED_OBJECT, cachedResponse);
 
-                SOAPEnvelope omSOAPEnv = null;
-
-                try {
-                	if (msgCtx.isDoingREST()) {
-                		omSOAPEnv = SOAPMessageHelper.buildSOAPEnvelopeFromBytes(
-                				cachedResponse.getResponseEnvelope(), cachedResponse.isSOAP11());
-                		msgCtx.removeProperty("NO_ENTITY_BODY");
-                		msgCtx.removeProperty(Constants.Configuration.CONTENT_TYPE);
-                		Map<String, Object> headerProperties = cachedResponse.getHeaderProperties();
-                		msgCtx.setProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS, 
-                				headerProperties.get(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS));
-                		msgCtx.setProperty(Constants.Configuration.MESSAGE_TYPE, 
-                				headerProperties.get(Constants.Configuration.MESSAGE_TYPE));
-                	} else {
-                		omSOAPEnv = SOAPMessageHelper.buildSOAPEnvelopeFromBytes(
-                				cachedResponse.getResponseEnvelope(),msgCtx.isSOAP11());
-                	}
-                    if (omSOAPEnv != null) {
-                        synCtx.setEnvelope(omSOAPEnv);
-                    }
-                } catch (AxisFault axisFault) {
-                    handleException("Error setting response envelope from cache : "
-                            + cacheKey, synCtx);
-                } catch (IOException ioe) {
-                    handleException("Error setting response envelope from cache : "
-                            + cacheKey, ioe, synCtx);
-                } catch (SOAPException soape) {
-                    handleException("Error setting response envelope from cache : "
-                            + cacheKey, soape, synCtx);
-                }
-
-                // take specified action on cache hit
-                if (onCacheHitSequence != null) {
-                    // if there is an onCacheHit use that for the mediation
-                    synLog.traceOrDebug("Delegating message to the onCachingHit "
-                            + "Anonymous sequence");
-                    ContinuationStackManager.
-                            addReliantContinuationState(synCtx, 0, getMediatorPosition());
-                    if (onCacheHitSequence.mediate(synCtx)) {
-                        ContinuationStackManager.removeReliantContinuationState(synCtx);
-                    }
-
-                } else if (onCacheHitRef != null) {
-
-                    if (synLog.isTraceOrDebugEnabled()) {
-                        synLog.traceOrDebug("Delegating message to the onCachingHit " +
-                                "sequence : " + onCacheHitRef);
-                    }
-                    ContinuationStackManager.updateSeqContinuationState(synCtx, getMediatorPosition());
-                    synCtx.getSequence(onCacheHitRef).mediate(synCtx);
-
-                } else {
-
-                    if (synLog.isTraceOrDebugEnabled()) {
-                        synLog.traceOrDebug("Request message " + synCtx.getMessageID() +
-                                " was served from the cache : " + cacheKey);
-                    }
-                    // send the response back if there is not onCacheHit is specified
-                    synCtx.setTo(null);
-                    Axis2Sender.sendBack(synCtx);
-                }
-                // stop any following mediators from executing
-                return false;
+                return serveCachedResponse(synCtx, synLog, cachedResponse.getResponseEnvelope(),
+                        cachedResponse.isSOAP11(), cachedResponse.getHeaderProperties());
 
             } else {
                 cachedResponse.reincarnate(timeout);
@@ -446,6 +444,226 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
         return true;
     }
 
+    /**
+     * Processes a request message through a cache kept in the response cache store. On a
+     * miss the store and the key of the response are handed over to the collector through
+     * the operation context.
+     *
+     * @param synCtx         incoming request message
+     * @param synLog         the Synapse log to use
+     * @param requestHash    the request hash that has already been computed
+     * @return should this mediator terminate further processing?
+     */
+    private boolean processRequestWithStore(MessageContext synCtx, SynapseLog synLog,
+                                            String requestHash) {
+
+        org.apache.axis2.context.MessageContext msgCtx =
+                ((Axis2MessageContext) synCtx).getAxis2MessageContext();
+        OperationContext opCtx = msgCtx.getOperationContext();
+        opCtx.setNonReplicableProperty(CachingConstants.REQUEST_HASH, requestHash);
+
+        String key = getCacheName() + ":" + requestHash;
+        CachedResponse cachedResponse = cacheStore.get(key);
+        if (cachedResponse == null) {
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Cache-miss for message ID : " + synCtx.getMessageID());
+            }
+            opCtx.setNonReplicableProperty(CACHE_STORE, cacheStore);
+            opCtx.setNonReplicableProperty(CACHE_STORE_KEY, key);
+            opCtx.setNonReplicableProperty(CACHE_STORE_TIMEOUT, timeout);
+            return true;
+        }
+
+        if (synLog.isTraceOrDebugEnabled()) {
+            synLog.traceOrDebug("Cache-hit for message ID : " + synCtx.getMessageID());
+        }
+
+        Map<String, Object> headerProperties = new HashMap<String, Object>();
+        headerProperties.put(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS,
+                cachedResponse.getTransportHeaders());
+        headerProperties.put(Constants.Configuration.MESSAGE_TYPE,
+                cachedResponse.getMessageType());
+        return serveCachedResponse(synCtx, synLog, cachedResponse.getEnvelope(),
+                cachedResponse.isSOAP11(), headerProperties);
+    }
+
+    /**
+     * Replaces the envelope of the request with a cached response, and takes the action
+     * specified for a cache hit.
+     *
+     * @param synCtx           incoming request message
+     * @param synLog           the Synapse log to use
+     * @param envelope         the serialized response envelope
+     * @param soap11           whether the response is SOAP 1.1, used for REST messages
+     * @param headerProperties transport headers and message type of the response, used for
+     *                         REST messages
+     * @return false, as the following mediators should not process the message
+     */
+    private boolean serveCachedResponse(MessageContext synCtx, SynapseLog synLog,
+                                        byte[] envelope, boolean soap11,
+                                        Map<String, Object> headerProperties) {
+
+        org.apache.axis2.context.MessageContext msgCtx =
+                ((Axis2MessageContext) synCtx).getAxis2MessageContext();
+        // mark as a response and replace envelope from cache
+        synCtx.setResponse(true);
+
+        SOAPEnvelope omSOAPEnv = null;
+
+        try {
+        	if (msgCtx.isDoingREST()) {
+        		omSOAPEnv = SOAPMessageHelper.buildSOAPEnvelopeFromBytes(envelope, soap11);
+        		msgCtx.removeProperty("NO_ENTITY_BODY");
+        		msgCtx.removeProperty(Constants.Configuration.CONTENT_TYPE);
+        		msgCtx.setProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS, 
+        				headerProperties.get(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS));
+        		msgCtx.setProperty(Constants.Configuration.MESSAGE_TYPE, 
+        				headerProperties.get(Constants.Configuration.MESSAGE_TYPE));
+        	} else {
+        		omSOAPEnv = SOAPMessageHelper.buildSOAPEnvelopeFromBytes(
+        				envelope, msgCtx.isSOAP11());
+        	}
+            if (omSOAPEnv != null) {
+                synCtx.setEnvelope(omSOAPEnv);
+            }
+        } catch (AxisFault axisFault) {
+            handleException("Error setting response envelope from cache : "
+                    + cacheKey, synCtx);
+        } catch (IOException ioe) {
+            handleException("Error setting response envelope from cache : "
+                    + cacheKey, ioe, synCtx);
+        } catch (SOAPException soape) {
+            handleException("Error setting response envelope from cache : "
+                    + cacheKey, soape, synCtx);
+        }
+
+        // take specified action on cache hit
+        if (onCacheHitSequence != null) {
+            // if there is an onCacheHit use that for the mediation
+            synLog.traceOrDebug("Delegating message to the onCachingHit "
+                    + "Anonymous sequence");
+            ContinuationStackManager.
+                    addReliantContinuationState(synCtx, 0, getMediatorPosition());
+            if (onCacheHitSequence.mediate(synCtx)) {
+                ContinuationStackManager.removeReliantContinuationState(synCtx);
+            }
+
+        } else if (onCacheHitRef != null) {
+
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Delegating message to the onCachingHit " +
+                        "sequence : " + onCacheHitRef);
+            }
+            ContinuationStackManager.updateSeqContinuationState(synCtx, getMediatorPosition());
+            synCtx.getSequence(onCacheHitRef).mediate(synCtx);
+
+        } else {
+
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Request message " + synCtx.getMessageID() +
+                        " was served from the cache : " + cacheKey);
+            }
+            // send the response back if there is not onCacheHit is specified
+            synCtx.setTo(null);
+            Axis2Sender.sendBack(synCtx);
+        }
+        // stop any following mediators from executing
+        return false;
+    }
+
+    /**
+     * Stores a response message in the response cache store of the request side cache
+     * mediator.
+     *
+     * @param synCtx         the current message (response)
+     * @param synLog         the Synapse log to use
+     * @param opCtx          the operation context holding the store and the key
+     * @param store          the response cache store
+     */
+    private void storeResponse(MessageContext synCtx, SynapseLog synLog,
+                               OperationContext opCtx, ResponseCacheStore store) {
+
+        org.apache.axis2.context.MessageContext msgCtx =
+                ((Axis2MessageContext) synCtx).getAxis2MessageContext();
+        String key = (String) opCtx.getPropertyNonReplicable(CACHE_STORE_KEY);
+        Long responseTimeout = (Long) opCtx.getPropertyNonReplicable(CACHE_STORE_TIMEOUT);
+        opCtx.removePropertyNonReplicable(CACHE_STORE);
+        opCtx.removePropertyNonReplicable(CACHE_STORE_KEY);
+        opCtx.removePropertyNonReplicable(CACHE_STORE_TIMEOUT);
+
+        if (synLog.isTraceOrDebugEnabled()) {
+            synLog.traceOrDebug("Storing the response for the message with ID : " +
+                    synCtx.getMessageID() + " in the response cache store with key : " + key);
+        }
+
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        try {
+            synCtx.getEnvelope().serialize(outStream);
+        } catch (XMLStreamException e) {
+            handleException("Unable to set the response to the Cache", e, synCtx);
+        }
+
+        String messageType = null;
+        Map<String, String> headers = new HashMap<String, String>();
+        if (msgCtx.isDoingREST()) {
+            messageType = (String) msgCtx.getProperty(Constants.Configuration.MESSAGE_TYPE);
+            Map transportHeaders = (Map) msgCtx.getProperty(
+                    org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS);
+            if (transportHeaders != null) {
+                for (Object o : transportHeaders.entrySet()) {
+                    Map.Entry header = (Map.Entry) o;
+                    if (header.getKey() != null && header.getValue() != null) {
+                        headers.put(header.getKey().toString(), header.getValue().toString());
+                    }
+                }
+            }
+        }
+
+        store.put(key, new CachedResponse(outStream.toByteArray(), synCtx.isSOAP11(),
+                messageType, headers), responseTimeout != null ? responseTimeout : timeout);
+    }
+
+    /**
+     * Whether the hash of the given request is computed from the raw pass-through stream,
+     * without building the message
+     *
+     * @param synCtx the current message
+     * @return true if the request is hashed by a {@link StreamingDigestGenerator}
+     */
+    private boolean isHashedFromStream(MessageContext synCtx) {
+        return !synCtx.isResponse() && digestGenerator instanceof StreamingDigestGenerator &&
+                StreamingDigestGenerator.isStreamable(
+                        ((Axis2MessageContext) synCtx).getAxis2MessageContext());
+    }
+
+    /**
+     * Builds a request which is not served from the cache, if its raw stream has been read
+     * for computing the hash and could not be handed back to the pass-through pipe.
+     *
+     * @param synCtx the current message
+     */
+    private void buildConsumedRequest(MessageContext synCtx) {
+        try {
+            StreamingDigestGenerator.buildIfConsumed(
+                    ((Axis2MessageContext) synCtx).getAxis2MessageContext());
+        } catch (IOException e) {
+            handleException("Error while building the request", e, synCtx);
+        } catch (XMLStreamException e) {
+            handleException("Error while building the request", e, synCtx);
+        }
+    }
+
+    /**
+     * @return the id of the mediator, or a name unique to this mediator when it has no id, so that
+     *         the statistics of each cache store are registered under their own name
+     */
+    private String getCacheName() {
+        if (id != null) {
+            return id;
+        }
+        return cacheStoreName != null ? cacheStoreName : cacheKey;
+    }
+
     private void cacheNewResponse(org.apache.axis2.context.MessageContext msgContext,
                                   ServiceName serviceName, RequestHash requestHash,
                                   CacheManager cacheManager,
@@ -569,6 +787,28 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
         this.maxMessageSize = maxMessageSize;
     }
 
+    public ResponseCacheStore getCacheStore() {
+        return cacheStore;
+    }
+
+    /**
+     * Keep the responses in the given store instead of the cache manager. The store is
+     * initialized and destroyed along with this mediator.
+     *
+     * @param cacheStore the response cache store
+     */
+    public void setCacheStore(ResponseCacheStore cacheStore) {
+        this.cacheStore = cacheStore;
+    }
+
+    public long getCacheStoreSize() {
+        return cacheStoreSize;
+    }
+
+    public void setCacheStoreSize(long cacheStoreSize) {
+        this.cacheStoreSize = cacheStoreSize;
+    }
+
     public SOAPFactory getSOAPFactory(org.apache.axis2.context.MessageContext msgContext) throws AxisFault {
         String nsURI = msgContext.getEnvelope().getNamespace().getNamespaceURI();
         if (SOAP12Constants.SOAP_ENVELOPE_NAMESPACE_URI.equals(nsURI)) {
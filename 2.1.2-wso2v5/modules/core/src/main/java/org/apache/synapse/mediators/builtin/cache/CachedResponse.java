@@ -0,0 +1,66 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.mediators.builtin.cache;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A response message kept in a {@link ResponseCacheStore}. Holds the serialized envelope
+ * along with the transport level details needed to send it back for a REST request.
+ */
+public class CachedResponse {
+
+    private final byte[] envelope;
+
+    private final boolean soap11;
+
+    private final String messageType;
+
+    private final Map<String, String> transportHeaders;
+
+    public CachedResponse(byte[] envelope, boolean soap11, String messageType,
+                          Map<String, String> transportHeaders) {
+        this.envelope = envelope;
+        this.soap11 = soap11;
+        this.messageType = messageType;
+        if (transportHeaders != null) {
+            this.transportHeaders = transportHeaders;
+        } else {
+            this.transportHeaders = Collections.emptyMap();
+        }
+    }
+
+    public byte[] getEnvelope() {
+        return envelope;
+    }
+
+    public boolean isSOAP11() {
+        return soap11;
+    }
+
+    public String getMessageType() {
+        return messageType;
+    }
+
+    public Map<String, String> getTransportHeaders() {
+        return transportHeaders;
+    }
+}
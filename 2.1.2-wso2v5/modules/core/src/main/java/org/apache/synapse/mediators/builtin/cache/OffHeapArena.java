@@ -0,0 +1,240 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.mediators.builtin.cache;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Memory outside the Java heap, divided into blocks of a fixed size. The memory is reserved
+ * in slabs of direct buffers as it is needed, up to the capacity of the arena, and the
+ * blocks are recycled through a free list so that the arena never allocates more than its
+ * capacity. Allocating and freeing blocks is synchronized, while the content of the blocks
+ * is accessed without locking by the single owner of the blocks.
+ */
+class OffHeapArena {
+
+    private static final int MAX_SLAB_SIZE = 64 * 1024 * 1024;
+
+    private final int blockSize;
+    private final int blocksPerSlab;
+    private final int totalBlocks;
+
+    private final ByteBuffer[] slabs;
+    private final int[] freeBlocks;
+    private int freeCount = 0;
+    /** blocks with an index from this onwards have never been handed out */
+    private int nextFreshBlock = 0;
+    private boolean destroyed = false;
+
+    OffHeapArena(long capacity, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive : " + blockSize);
+        }
+        long blocks = capacity / blockSize;
+        if (blocks < 1) {
+            blocks = 1;
+        } else if (blocks > Integer.MAX_VALUE - 8) {
+            blocks = Integer.MAX_VALUE - 8;
+        }
+        this.blockSize = blockSize;
+        this.totalBlocks = (int) blocks;
+        this.blocksPerSlab = Math.max(1, MAX_SLAB_SIZE / blockSize);
+        this.slabs = new ByteBuffer[(totalBlocks + blocksPerSlab - 1) / blocksPerSlab];
+        this.freeBlocks = new int[totalBlocks];
+    }
+
+    int getBlockSize() {
+        return blockSize;
+    }
+
+    int getTotalBlocks() {
+        return totalBlocks;
+    }
+
+    synchronized int getAvailableBlocks() {
+        return freeCount + totalBlocks - nextFreshBlock;
+    }
+
+    /**
+     * @param length number of bytes
+     * @return the number of blocks needed to hold the given number of bytes
+     */
+    long blocksFor(long length) {
+        return Math.max(1, (length + blockSize - 1) / blockSize);
+    }
+
+    /**
+     * Allocate blocks
+     *
+     * @param count number of blocks
+     * @return indexes of the allocated blocks, or null if not enough blocks are free
+     */
+    synchronized int[] allocate(int count) {
+        if (destroyed || count > freeCount + totalBlocks - nextFreshBlock) {
+            return null;
+        }
+        int[] blocks = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (freeCount > 0) {
+                blocks[i] = freeBlocks[--freeCount];
+            } else {
+                int block = nextFreshBlock++;
+                int slab = block / blocksPerSlab;
+                if (slabs[slab] == null) {
+                    int slabBlocks = Math.min(blocksPerSlab, totalBlocks - slab * blocksPerSlab);
+                    slabs[slab] = ByteBuffer.allocateDirect(slabBlocks * blockSize);
+                }
+                blocks[i] = block;
+            }
+        }
+        return blocks;
+    }
+
+    synchronized void free(int[] blocks) {
+        if (destroyed || blocks == null) {
+            return;
+        }
+        for (int block : blocks) {
+            freeBlocks[freeCount++] = block;
+        }
+    }
+
+    /**
+     * Drop the memory of the arena. The direct buffers are released once they are garbage
+     * collected.
+     */
+    synchronized void destroy() {
+        destroyed = true;
+        for (int i = 0; i < slabs.length; i++) {
+            slabs[i] = null;
+        }
+    }
+
+    private ByteBuffer block(int block) {
+        ByteBuffer slab;
+        synchronized (this) {
+            slab = slabs[block / blocksPerSlab];
+        }
+        if (slab == null) {
+            throw new IllegalStateException("The off-heap memory has been released");
+        }
+        ByteBuffer buffer = slab.duplicate();
+        int position = (block % blocksPerSlab) * blockSize;
+        buffer.limit(position + blockSize);
+        buffer.position(position);
+        return buffer;
+    }
+
+    /**
+     * Writes bytes sequentially into a set of blocks
+     */
+    class BlockOutputStream extends OutputStream {
+
+        private final int[] blocks;
+        private int index = 0;
+        private ByteBuffer current;
+
+        BlockOutputStream(int[] blocks) {
+            this.blocks = blocks;
+        }
+
+        @Override
+        public void write(int b) {
+            ensureSpace();
+            current.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                ensureSpace();
+                int n = Math.min(len, current.remaining());
+                current.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void ensureSpace() {
+            if (current == null || !current.hasRemaining()) {
+                if (index == blocks.length) {
+                    throw new IndexOutOfBoundsException("Not enough blocks for the content");
+                }
+                current = block(blocks[index++]);
+            }
+        }
+    }
+
+    /**
+     * Reads the given number of bytes sequentially from a set of blocks
+     */
+    class BlockInputStream extends InputStream {
+
+        private final int[] blocks;
+        private int index = 0;
+        private int remaining;
+        private ByteBuffer current;
+
+        BlockInputStream(int[] blocks, int length) {
+            this.blocks = blocks;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() {
+            if (!ensureData()) {
+                return -1;
+            }
+            remaining--;
+            return current.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensureData()) {
+                return -1;
+            }
+            int n = Math.min(Math.min(len, current.remaining()), remaining);
+            current.get(b, off, n);
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return remaining;
+        }
+
+        private boolean ensureData() {
+            if (remaining <= 0) {
+                return false;
+            }
+            if (current == null || !current.hasRemaining()) {
+                current = block(blocks[index++]);
+            }
+            return true;
+        }
+    }
+}
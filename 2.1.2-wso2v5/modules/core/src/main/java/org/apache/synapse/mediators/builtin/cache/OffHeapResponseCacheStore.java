@@ -0,0 +1,576 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.mediators.builtin.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.util.concurrent.TimingWheel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link ResponseCacheStore} which keeps the cached responses outside the Java heap, so
+ * that large caches do not add to the garbage collection pauses. The capacity of the store
+ * is bounded in bytes.
+ * <p>
+ * Responses are admitted with the W-TinyLFU policy. A new response first enters a small
+ * LRU window. Responses leaving the window compete with the least recently used response of
+ * the main space, and the one accessed less often according to a frequency sketch is
+ * evicted. The main space is a segmented LRU, where responses accessed again are protected
+ * from eviction. This keeps responses which are requested often even when a burst of one
+ * time requests flows through the cache.
+ * <p>
+ * Expiry times are tracked on a timing wheel which is advanced by a background thread, so no
+ * sweeps over the cache are made while messages are mediated. Lookups never block, accesses
+ * are recorded in a lossy buffer and applied to the policy when its lock is free.
+ */
+public class OffHeapResponseCacheStore implements ResponseCacheStore {
+
+    private static final Log log = LogFactory.getLog(OffHeapResponseCacheStore.class);
+
+    public static final int DEFAULT_BLOCK_SIZE = 8 * 1024;
+    public static final long DEFAULT_EXPIRY_TICK = 1000;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int READ_DRAIN_THRESHOLD = 32;
+
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+    private long expiryTick = DEFAULT_EXPIRY_TICK;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /** Guards the eviction policy, the timing wheel and the weights */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final AccessOrder window = new AccessOrder();
+    private final AccessOrder probation = new AccessOrder();
+    private final AccessOrder protectedSpace = new AccessOrder();
+
+    private final AtomicReferenceArray<Entry> readBuffer =
+            new AtomicReferenceArray<Entry>(READ_BUFFER_SIZE);
+    private final AtomicLong reads = new AtomicLong(0);
+
+    private OffHeapArena arena;
+    private FrequencySketch sketch;
+    private TimingWheel<Entry> timerWheel;
+    private ScheduledExecutorService expiryScheduler;
+
+    private long maxWeight;
+    private long windowMaxWeight;
+    private long protectedMaxWeight;
+    private long windowWeight = 0;
+    private long protectedWeight = 0;
+    private volatile long totalWeight = 0;
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+    private final AtomicLong expirations = new AtomicLong(0);
+
+    public void init(long capacity) {
+        arena = new OffHeapArena(capacity, blockSize);
+        maxWeight = (long) arena.getTotalBlocks() * blockSize;
+        windowMaxWeight = Math.max(blockSize, maxWeight / 100);
+        protectedMaxWeight = (maxWeight - windowMaxWeight) * 80 / 100;
+
+        // assume an average response of a couple of blocks to size the sketch
+        sketch = new FrequencySketch(Math.min(arena.getTotalBlocks() / 2 + 1, 1 << 22));
+        timerWheel = new TimingWheel<Entry>(512, expiryTick, System.currentTimeMillis());
+
+        expiryScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ResponseCacheExpiry");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        expiryScheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    evictionLock.lock();
+                    try {
+                        drainReadBuffer();
+                        expireEntries(System.currentTimeMillis());
+                    } finally {
+                        evictionLock.unlock();
+                    }
+                } catch (Throwable t) {
+                    log.error("Error while removing the expired responses from the cache", t);
+                }
+            }
+        }, expiryTick, expiryTick, TimeUnit.MILLISECONDS);
+    }
+
+    public CachedResponse get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || !entry.ready ||
+                (entry.expireTime > 0 && entry.expireTime <= System.currentTimeMillis()) ||
+                !entry.retain()) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        CachedResponse response;
+        try {
+            response = read(entry);
+        } catch (IOException e) {
+            log.error("Unable to read the cached response for the key : " + key, e);
+            misses.incrementAndGet();
+            return null;
+        } finally {
+            entry.release();
+        }
+
+        hits.incrementAndGet();
+        recordRead(entry);
+        return response;
+    }
+
+    public void put(String key, CachedResponse response, long timeToLive) {
+        byte[] header;
+        try {
+            header = writeHeader(response);
+        } catch (IOException e) {
+            log.error("Unable to cache the response for the key : " + key, e);
+            return;
+        }
+        int length = header.length + response.getEnvelope().length;
+        long blocks = arena.blocksFor(length);
+        if (blocks * blockSize > maxWeight - windowMaxWeight) {
+            if (log.isDebugEnabled()) {
+                log.debug("Response of " + length + " bytes is too large to be cached");
+            }
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(key, (int) blocks * blockSize, timeToLive > 0 ? now + timeToLive : 0);
+
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            expireEntries(now);
+
+            Entry existing = entries.get(key);
+            if (existing != null) {
+                discard(existing);
+            }
+
+            sketch.increment(entry.hash);
+            entry.queue = WINDOW;
+            window.add(entry);
+            windowWeight += entry.weight;
+            totalWeight += entry.weight;
+            evict();
+            if (entry.retired) {
+                // not admitted, the responses in the cache are accessed more often
+                return;
+            }
+
+            entry.blocks = arena.allocate((int) blocks);
+            if (entry.blocks == null) {
+                // we shouldn't get here as the weights follow the blocks in use
+                log.warn("Off-heap cache memory exhausted, unable to cache the response");
+                discard(entry);
+                return;
+            }
+            if (entry.expireTime > 0) {
+                entry.timer = timerWheel.schedule(entry, entry.expireTime);
+            }
+            // keep the blocks until they are written, even if the entry is evicted meanwhile
+            entry.refs.incrementAndGet();
+            entries.put(key, entry);
+        } finally {
+            evictionLock.unlock();
+        }
+
+        try {
+            OffHeapArena.BlockOutputStream out = arena.new BlockOutputStream(entry.blocks);
+            out.write(header, 0, header.length);
+            out.write(response.getEnvelope(), 0, response.getEnvelope().length);
+            entry.length = length;
+            entry.ready = true;
+        } catch (RuntimeException e) {
+            log.error("Unable to cache the response for the key : " + key, e);
+            evictionLock.lock();
+            try {
+                discard(entry);
+            } finally {
+                evictionLock.unlock();
+            }
+        } finally {
+            entry.release();
+        }
+    }
+
+    public void remove(String key) {
+        evictionLock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                discard(entry);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public void destroy() {
+        if (expiryScheduler != null) {
+            expiryScheduler.shutdownNow();
+        }
+        evictionLock.lock();
+        try {
+            for (Entry entry : entries.values()) {
+                discard(entry);
+            }
+            if (arena != null) {
+                arena.destroy();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Set the size of the blocks the off-heap memory is divided into. Each response takes
+     * a whole number of blocks. Must be set before the store is initialized.
+     *
+     * @param blockSize block size in bytes
+     */
+    public void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Set the interval at which the expired responses are removed. Must be set before the
+     * store is initialized.
+     *
+     * @param expiryTick interval in milliseconds
+     */
+    public void setExpiryTick(long expiryTick) {
+        this.expiryTick = expiryTick;
+    }
+
+    public long getExpiryTick() {
+        return expiryTick;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getExpirationCount() {
+        return expirations.get();
+    }
+
+    public long getEntryCount() {
+        return entries.size();
+    }
+
+    public long getSize() {
+        return totalWeight;
+    }
+
+    public long getCapacity() {
+        return maxWeight;
+    }
+
+    private void recordRead(Entry entry) {
+        long count = reads.getAndIncrement();
+        readBuffer.lazySet((int) (count & READ_BUFFER_MASK), entry);
+        if ((count % READ_DRAIN_THRESHOLD) == 0 && evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffer() {
+        for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+            Entry entry = readBuffer.getAndSet(i, null);
+            if (entry != null && !entry.retired) {
+                onAccess(entry);
+            }
+        }
+    }
+
+    private void onAccess(Entry entry) {
+        sketch.increment(entry.hash);
+        if (entry.queue == WINDOW) {
+            window.moveToTail(entry);
+        } else if (entry.queue == PROBATION) {
+            probation.remove(entry);
+            entry.queue = PROTECTED;
+            protectedSpace.add(entry);
+            protectedWeight += entry.weight;
+            while (protectedWeight > protectedMaxWeight) {
+                Entry demoted = protectedSpace.first();
+                protectedSpace.remove(demoted);
+                protectedWeight -= demoted.weight;
+                demoted.queue = PROBATION;
+                probation.add(demoted);
+            }
+        } else {
+            protectedSpace.moveToTail(entry);
+        }
+    }
+
+    /**
+     * Move the responses which overflow the window to the main space, and evict responses
+     * until the store is within its capacity.
+     */
+    private void evict() {
+        while (windowWeight > windowMaxWeight) {
+            Entry entry = window.first();
+            window.remove(entry);
+            windowWeight -= entry.weight;
+            entry.queue = PROBATION;
+            probation.add(entry);
+        }
+
+        while (totalWeight > maxWeight) {
+            Entry victim = probation.first();
+            Entry candidate = probation.last();
+            if (victim == null) {
+                victim = protectedSpace.first();
+                if (victim == null) {
+                    victim = window.first();
+                }
+                if (victim == null) {
+                    break;
+                }
+                evict(victim);
+            } else if (victim == candidate) {
+                evict(victim);
+            } else if (sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+                evict(victim);
+            } else {
+                evict(candidate);
+            }
+        }
+    }
+
+    private void evict(Entry entry) {
+        discard(entry);
+        evictions.incrementAndGet();
+    }
+
+    private void expireEntries(long now) {
+        List<Entry> expired = new ArrayList<Entry>();
+        timerWheel.advance(now, expired);
+        for (Entry entry : expired) {
+            if (!entry.retired) {
+                entry.timer = null;
+                discard(entry);
+                expirations.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Remove an entry from the store. The memory of the entry is freed once the lookups in
+     * progress are done with it.
+     *
+     * @param entry the entry to be removed
+     */
+    private void discard(Entry entry) {
+        if (entry.retired) {
+            return;
+        }
+        entry.retired = true;
+        if (entry.queue == WINDOW) {
+            window.remove(entry);
+            windowWeight -= entry.weight;
+        } else if (entry.queue == PROBATION) {
+            probation.remove(entry);
+        } else {
+            protectedSpace.remove(entry);
+            protectedWeight -= entry.weight;
+        }
+        totalWeight -= entry.weight;
+        timerWheel.cancel(entry.timer);
+        entries.remove(entry.key, entry);
+        entry.release();
+    }
+
+    private byte[] writeHeader(CachedResponse response) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeBoolean(response.isSOAP11());
+        writeString(out, response.getMessageType());
+        out.writeInt(response.getTransportHeaders().size());
+        for (Map.Entry<String, String> header : response.getTransportHeaders().entrySet()) {
+            writeString(out, header.getKey());
+            writeString(out, header.getValue());
+        }
+        out.writeInt(response.getEnvelope().length);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private CachedResponse read(Entry entry) throws IOException {
+        DataInputStream in = new DataInputStream(
+                arena.new BlockInputStream(entry.blocks, entry.length));
+        boolean soap11 = in.readBoolean();
+        String messageType = readString(in);
+        int headerCount = in.readInt();
+        Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < headerCount; i++) {
+            headers.put(readString(in), readString(in));
+        }
+        byte[] envelope = new byte[in.readInt()];
+        in.readFully(envelope);
+        return new CachedResponse(envelope, soap11, messageType, headers);
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * A cached response. The blocks of the entry are reference counted, the store holds one
+     * reference while the entry is cached and each lookup holds one while it reads the entry.
+     */
+    private final class Entry {
+        private final String key;
+        private final int hash;
+        private final int weight;
+        private final long expireTime;
+        private final AtomicInteger refs = new AtomicInteger(1);
+        private volatile int[] blocks;
+        private volatile int length;
+        private volatile boolean ready = false;
+
+        // guarded by the eviction lock
+        private int queue;
+        private boolean retired = false;
+        private Entry prev;
+        private Entry next;
+        private TimingWheel.Timeout<Entry> timer;
+
+        private Entry(String key, int weight, long expireTime) {
+            this.key = key;
+            this.hash = key != null ? key.hashCode() : 0;
+            this.weight = weight;
+            this.expireTime = expireTime;
+        }
+
+        private boolean retain() {
+            while (true) {
+                int count = refs.get();
+                if (count == 0) {
+                    return false;
+                }
+                if (refs.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void release() {
+            if (refs.decrementAndGet() == 0) {
+                arena.free(blocks);
+            }
+        }
+    }
+
+    /**
+     * A list of entries from the least to the most recently used
+     */
+    private final class AccessOrder {
+        private final Entry head = new Entry(null, 0, 0);
+
+        private AccessOrder() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        private void add(Entry entry) {
+            entry.prev = head.prev;
+            entry.next = head;
+            head.prev.next = entry;
+            head.prev = entry;
+        }
+
+        private void remove(Entry entry) {
+            entry.prev.next = entry.next;
+            entry.next.prev = entry.prev;
+            entry.prev = null;
+            entry.next = null;
+        }
+
+        private void moveToTail(Entry entry) {
+            remove(entry);
+            add(entry);
+        }
+
+        private Entry first() {
+            return head.next != head ? head.next : null;
+        }
+
+        private Entry last() {
+            return head.prev != head ? head.prev : null;
+        }
+    }
+}
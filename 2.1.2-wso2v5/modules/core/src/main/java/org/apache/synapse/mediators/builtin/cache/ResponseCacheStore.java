@@ -0,0 +1,80 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.mediators.builtin.cache;
+
+/**
+ * A store of the response messages cached by the cache mediator. The store owns the
+ * memory used by the cached responses and decides which responses are kept when it is
+ * full, so that the mediator does not have to manage the cache on the message path.
+ * Implementations must be thread safe.
+ */
+public interface ResponseCacheStore {
+
+    /**
+     * Prepare the store for use
+     *
+     * @param capacity maximum number of bytes of the responses kept in the store
+     */
+    public void init(long capacity);
+
+    /**
+     * Look up a response
+     *
+     * @param key key of the response
+     * @return the response or null if it is not cached or has expired
+     */
+    public CachedResponse get(String key);
+
+    /**
+     * Cache a response, replacing any response already cached with the same key. The store
+     * may decide not to keep the response if it is not worth more than the responses it
+     * would have to evict.
+     *
+     * @param key key of the response
+     * @param response the response to be cached
+     * @param timeToLive time in milliseconds the response is valid, or 0 to keep it until
+     * it is evicted
+     */
+    public void put(String key, CachedResponse response, long timeToLive);
+
+    public void remove(String key);
+
+    /**
+     * Release all the resources held by the store
+     */
+    public void destroy();
+
+    public long getHitCount();
+
+    public long getMissCount();
+
+    public long getEvictionCount();
+
+    public long getExpirationCount();
+
+    public long getEntryCount();
+
+    /**
+     * @return number of bytes used by the cached responses
+     */
+    public long getSize();
+
+    public long getCapacity();
+}
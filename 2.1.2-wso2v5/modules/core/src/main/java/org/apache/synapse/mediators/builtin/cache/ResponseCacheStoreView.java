@@ -0,0 +1,66 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.mediators.builtin.cache;
+
+/**
+ * Exposes the statistics of a {@link ResponseCacheStore} through JMX
+ */
+public class ResponseCacheStoreView implements ResponseCacheStoreViewMBean {
+
+    private ResponseCacheStore store;
+
+    public ResponseCacheStoreView(ResponseCacheStore store) {
+        this.store = store;
+    }
+
+    public long getHitCount() {
+        return store.getHitCount();
+    }
+
+    public long getMissCount() {
+        return store.getMissCount();
+    }
+
+    public double getHitRatio() {
+        long hits = store.getHitCount();
+        long lookups = hits + store.getMissCount();
+        return lookups > 0 ? (double) hits / lookups : 0;
+    }
+
+    public long getEvictionCount() {
+        return store.getEvictionCount();
+    }
+
+    public long getExpirationCount() {
+        return store.getExpirationCount();
+    }
+
+    public long getEntryCount() {
+        return store.getEntryCount();
+    }
+
+    public long getSize() {
+        return store.getSize();
+    }
+
+    public long getCapacity() {
+        return store.getCapacity();
+    }
+}
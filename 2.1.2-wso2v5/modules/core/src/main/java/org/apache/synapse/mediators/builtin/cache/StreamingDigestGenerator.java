@@ -0,0 +1,348 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+
+package org.apache.synapse.mediators.builtin.cache;
+
+import org.apache.axiom.om.util.StAXUtils;
+import org.apache.axiom.soap.SOAP11Constants;
+import org.apache.axiom.soap.SOAP12Constants;
+import org.apache.axiom.soap.SOAPConstants;
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.axis2.Constants;
+import org.apache.axis2.context.MessageContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.transport.passthru.PassThroughConstants;
+import org.apache.synapse.transport.passthru.Pipe;
+import org.apache.synapse.transport.passthru.config.PassThroughConfiguration;
+import org.apache.synapse.transport.passthru.util.RelayUtils;
+import org.wso2.caching.CachingException;
+import org.wso2.caching.digest.DigestGenerator;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Digest generator which computes the request hash straight from the raw bytes of a
+ * pass-through request, without building the SOAP envelope. XML payloads are hashed over a
+ * canonical view of their StAX events, so that insignificant whitespace, namespace prefixes
+ * and the order of the attributes do not change the hash, and only the content of the SOAP
+ * body (or the whole document of a POX request) is taken into account. Other payloads are
+ * hashed over their bytes. Messages which have already been built are hashed over the events
+ * of the envelope, which gives the same hash as the raw stream of the same XML payload.
+ * <p/>
+ * The bytes read off the pipe are handed back to the message context as the buffered input
+ * stream of the message, so that the message can still be built later. If they fit into a
+ * single pass-through buffer they are also written back to the pipe, so that a cache miss can
+ * relay the untouched stream. Larger messages have to be built on a cache miss, which is done
+ * by {@link #buildIfConsumed(MessageContext)}.
+ */
+public class StreamingDigestGenerator implements DigestGenerator {
+
+    private static final Log log = LogFactory.getLog(StreamingDigestGenerator.class);
+
+    /** Size in bytes of a request which has been hashed from the raw stream */
+    public static final String REQUEST_SIZE = "synapse.cache.request_size";
+
+    /** Set when the raw stream could not be handed back to the pipe */
+    private static final String STREAM_CONSUMED = "synapse.cache.stream_consumed";
+
+    private static final String MD5_DIGEST_ALGORITHM = "MD5";
+
+    private static final byte START_ELEMENT = 1;
+    private static final byte END_ELEMENT = 2;
+    private static final byte ATTRIBUTE = 3;
+    private static final byte TEXT = 4;
+    private static final byte SEPARATOR = 0;
+
+    public String getDigest(MessageContext msgContext) throws CachingException {
+        MessageDigest digest = newDigest();
+        try {
+            if (msgContext.getTo() != null && msgContext.getTo().getAddress() != null) {
+                update(digest, msgContext.getTo().getAddress());
+            }
+            update(digest, (String) msgContext.getProperty(Constants.Configuration.HTTP_METHOD));
+
+            if (isStreamable(msgContext)) {
+                Pipe pipe = (Pipe) msgContext.getProperty(PassThroughConstants.PASS_THROUGH_PIPE);
+                byte[] content = readContent(msgContext, pipe);
+                msgContext.setProperty(REQUEST_SIZE, content.length);
+                if (content.length > 0) {
+                    if (isXML(msgContext)) {
+                        XMLStreamReader reader = StAXUtils.createXMLStreamReader(
+                                new ByteArrayInputStream(content));
+                        try {
+                            update(digest, reader);
+                        } finally {
+                            reader.close();
+                        }
+                    } else {
+                        digest.update(content);
+                    }
+                }
+            } else {
+                SOAPEnvelope envelope = msgContext.getEnvelope();
+                if (envelope != null) {
+                    update(digest, envelope.getXMLStreamReader());
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new CachingException("Error in reading the request payload", e);
+        } catch (IOException e) {
+            throw new CachingException("Error in reading the request stream", e);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Builds the message if its raw stream has been read by this generator and could not be
+     * handed back to the pipe. This has to be called before a request which is not served
+     * from the cache is mediated further.
+     *
+     * @param msgContext the request message
+     * @throws IOException if the message cannot be built
+     * @throws XMLStreamException if the message cannot be built
+     */
+    public static void buildIfConsumed(MessageContext msgContext)
+            throws IOException, XMLStreamException {
+        if (Boolean.TRUE.equals(msgContext.getProperty(STREAM_CONSUMED))) {
+            msgContext.removeProperty(STREAM_CONSUMED);
+            RelayUtils.buildMessage(msgContext);
+        }
+    }
+
+    /**
+     * Whether the given message is a pass-through message which has not been built yet
+     *
+     * @param msgContext the request message
+     * @return true if the payload is still in the pass-through pipe
+     */
+    public static boolean isStreamable(MessageContext msgContext) {
+        return msgContext.getProperty(PassThroughConstants.PASS_THROUGH_PIPE) != null &&
+                !Boolean.TRUE.equals(msgContext.getProperty(
+                        PassThroughConstants.MESSAGE_BUILDER_INVOKED));
+    }
+
+    private byte[] readContent(MessageContext msgContext, Pipe pipe) throws IOException {
+        BufferedInputStream bufferedInputStream = (BufferedInputStream) msgContext.getProperty(
+                PassThroughConstants.BUFFERED_INPUT_STREAM);
+        if (bufferedInputStream != null) {
+            // the stream has already been read off the pipe and handed back, e.g. by a
+            // streaming XPath, so just read it once more
+            bufferedInputStream.reset();
+            bufferedInputStream.mark(Integer.MAX_VALUE);
+            byte[] content = readFully(bufferedInputStream);
+            bufferedInputStream.reset();
+            return content;
+        }
+
+        byte[] content = readFully(pipe.getInputStream());
+
+        bufferedInputStream = new BufferedInputStream(new ByteArrayInputStream(content),
+                Math.max(content.length, 1));
+        bufferedInputStream.mark(content.length + 1);
+        msgContext.setProperty(PassThroughConstants.BUFFERED_INPUT_STREAM, bufferedInputStream);
+
+        if (content.length <= getPipeBufferSize()) {
+            OutputStream out = pipe.resetOutputStream();
+            out.write(content);
+            pipe.setRawSerializationComplete(true);
+        } else {
+            if (log.isDebugEnabled()) {
+                log.debug("Request of " + content.length + " bytes does not fit into the " +
+                        "pipe buffer, it will be built on a cache miss");
+            }
+            msgContext.setProperty(STREAM_CONSUMED, Boolean.TRUE);
+        }
+        return content;
+    }
+
+    private int getPipeBufferSize() {
+        PassThroughConfiguration conf = PassThroughConfiguration.getInstance();
+        int size = conf.getIOBufferSize();
+        for (int sizeClass : conf.getIOBufferSizeClasses()) {
+            size = Math.min(size, sizeClass);
+        }
+        return size;
+    }
+
+    private boolean isXML(MessageContext msgContext) {
+        Object contentType = msgContext.getProperty(Constants.Configuration.CONTENT_TYPE);
+        return contentType == null || contentType.toString().toLowerCase().indexOf("xml") != -1;
+    }
+
+    /**
+     * Updates the digest with the canonical form of the payload read from the given reader.
+     * If the document is a SOAP envelope only the children of the body are taken into account.
+     *
+     * @param digest the digest to be updated
+     * @param reader reader positioned at the start of the document or the root element
+     * @throws XMLStreamException if the payload cannot be read
+     */
+    static void update(MessageDigest digest, XMLStreamReader reader)
+            throws XMLStreamException {
+
+        int depth = 0;
+        // depth of the outermost elements of the payload, 0 until the payload is found
+        int payloadDepth = 0;
+        boolean soap = false;
+        StringBuilder text = new StringBuilder();
+
+        int event = reader.getEventType();
+        while (true) {
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    if (depth == 1) {
+                        soap = isSOAPElement(reader, SOAPConstants.SOAPENVELOPE_LOCAL_NAME);
+                        if (!soap) {
+                            payloadDepth = 1;
+                        }
+                    } else if (soap && depth == 2 && payloadDepth == 0 &&
+                            isSOAPElement(reader, SOAPConstants.BODY_LOCAL_NAME)) {
+                        payloadDepth = 3;
+                    }
+
+                    if (payloadDepth > 0 && depth >= payloadDepth) {
+                        updateText(digest, text);
+                        digest.update(START_ELEMENT);
+                        updateName(digest, reader.getNamespaceURI(), reader.getLocalName());
+
+                        Map<String, String> attributes = new TreeMap<String, String>();
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            String ns = reader.getAttributeNamespace(i);
+                            attributes.put((ns == null ? "" : ns) + "}" +
+                                    reader.getAttributeLocalName(i),
+                                    reader.getAttributeValue(i));
+                        }
+                        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                            digest.update(ATTRIBUTE);
+                            update(digest, attribute.getKey());
+                            update(digest, attribute.getValue());
+                        }
+                    }
+                    break;
+
+                case XMLStreamConstants.END_ELEMENT:
+                    if (payloadDepth > 0 && depth >= payloadDepth) {
+                        updateText(digest, text);
+                        digest.update(END_ELEMENT);
+                    } else if (soap && depth == 2 && payloadDepth == 3) {
+                        // end of the body, nothing after it is part of the payload
+                        return;
+                    }
+                    depth--;
+                    break;
+
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (payloadDepth > 0 && depth >= payloadDepth) {
+                        text.append(reader.getText());
+                    }
+                    break;
+
+                default:
+                    break;
+            }
+
+            if (!reader.hasNext()) {
+                break;
+            }
+            event = reader.next();
+        }
+        updateText(digest, text);
+    }
+
+    private static boolean isSOAPElement(XMLStreamReader reader, String localName) {
+        String ns = reader.getNamespaceURI();
+        return localName.equals(reader.getLocalName()) &&
+                (SOAP11Constants.SOAP_ENVELOPE_NAMESPACE_URI.equals(ns) ||
+                        SOAP12Constants.SOAP_ENVELOPE_NAMESPACE_URI.equals(ns));
+    }
+
+    private static void updateName(MessageDigest digest, String ns, String localName) {
+        update(digest, ns == null ? "" : ns);
+        update(digest, localName);
+    }
+
+    private static void updateText(MessageDigest digest, StringBuilder text) {
+        if (text.length() == 0) {
+            return;
+        }
+        String value = text.toString().trim();
+        text.setLength(0);
+        if (value.length() > 0) {
+            digest.update(TEXT);
+            update(digest, value);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            try {
+                digest.update(value.getBytes("UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                // UTF-8 is always supported
+                digest.update(value.getBytes());
+            }
+        }
+        digest.update(SEPARATOR);
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(MD5_DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 digest algorithm is not available", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -25,9 +25,12 @@ import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseException;
 import org.apache.synapse.continuation.ContinuationStackManager;
 import org.apache.synapse.endpoints.Endpoint;
+import org.apache.synapse.mediators.MediatorWorker;
 import org.apache.synapse.mediators.base.SequenceMediator;
 import org.apache.axis2.addressing.EndpointReference;
 
+import java.util.concurrent.Executor;
+
 /**
  * A bean class that holds the target (i.e. sequence or endpoint) information for a message
  * as used by common EIP mediators
@@ -66,6 +69,20 @@ public class Target {
      * mediation returns <code>false</code>, <code>true</code> otherwise
      */
     public boolean mediate(MessageContext synCtx) {
+        return mediate(synCtx, null);
+    }
+
+    /**
+     * process the message through this target, mediating it asynchronously using the given
+     * executor instead of the Synapse thread pool
+     *
+     * @param synCtx - MessageContext to be mediated
+     * @param executor - executor for the asynchronous mediation, or <code>null</code> to
+     * inject the message to the Synapse environment
+     * @return <code>false</code> if the target is mediated as synchronous and the sequence
+     * mediation returns <code>false</code>, <code>true</code> otherwise
+     */
+    public boolean mediate(MessageContext synCtx, Executor executor) {
 
         boolean returnValue = true;
 
@@ -98,7 +115,7 @@ public class Target {
                 if (log.isDebugEnabled()) {
                     log.debug("Asynchronously mediating using the in-lined anonymous sequence");
                 }
-                synCtx.getEnvironment().injectAsync(synCtx, sequence);
+                injectAsync(synCtx, sequence, executor);
             } else {
                 if (log.isDebugEnabled()) {
                     log.debug("Synchronously mediating using the in-lined anonymous sequence");
@@ -119,7 +136,7 @@ public class Target {
                         log.debug("Asynchronously mediating using the sequence " +
                                 "named : " + sequenceRef);
                     }
-                    synCtx.getEnvironment().injectAsync(synCtx, refSequence);
+                    injectAsync(synCtx, refSequence, executor);
                 } else {
                     if (log.isDebugEnabled()) {
                         log.debug("Synchronously mediating using the sequence " +
@@ -161,6 +178,14 @@ public class Target {
         return returnValue;
     }
 
+    private void injectAsync(MessageContext synCtx, SequenceMediator seq, Executor executor) {
+        if (executor != null) {
+            executor.execute(new MediatorWorker(seq, synCtx));
+        } else {
+            synCtx.getEnvironment().injectAsync(synCtx, seq);
+        }
+    }
+
     private void handleException(String message) {
         log.error(message);
         throw new SynapseException(message);
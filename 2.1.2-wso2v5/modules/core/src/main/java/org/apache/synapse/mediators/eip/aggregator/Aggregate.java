@@ -23,19 +23,21 @@ import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseLog;
 import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.mediators.eip.EIPConstants;
+import org.apache.synapse.util.concurrent.TimingWheel;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.util.TimerTask;
 
 /**
  * An instance of this class is created to manage each aggregation group, and it holds
  * the aggregation properties and the messages collected during aggregation. This class also
- * times out itself after the timeout expires it
+ * times out itself after the timeout expires it, by being scheduled on the timeout wheel of
+ * the aggregate mediator. All the state of an aggregation group is guarded by the group
+ * itself, so that different groups can be aggregated concurrently.
  */
-public class Aggregate extends TimerTask {
+public class Aggregate implements Runnable {
 
     private static final Log log = LogFactory.getLog(Aggregate.class);
 
@@ -50,9 +52,11 @@ public class Aggregate extends TimerTask {
     /** The AggregateMediator that should be invoked on completion of the aggregation */
     private AggregateMediator aggregateMediator = null;
     private List<MessageContext> messages = new ArrayList<MessageContext>();
-    private boolean locked = false;
-    private boolean completed = false;
+    private volatile boolean completed = false;
     private SynapseEnvironment synEnv = null;
+    /** The wheel on which the timeout of this aggregation is scheduled, if any */
+    private TimingWheel<Aggregate> timeoutWheel = null;
+    private TimingWheel.Timeout<Aggregate> timeout = null;
 
     /**
      * Save aggregation properties and timeout
@@ -84,9 +88,13 @@ public class Aggregate extends TimerTask {
      * Add a message to the interlan message list
      *
      * @param synCtx message to be added into this aggregation group
-     * @return true if the message was added or false if not
+     * @return true if the message was added or false if not, i.e. if the maximum number of
+     * messages has been collected or the aggregation has already been completed
      */
     public synchronized boolean addMessage(MessageContext synCtx) {
+        if (completed) {
+            return false;
+        }
         if (maxCount <= 0 || (maxCount > 0 && messages.size() < maxCount)) {
             messages.add(synCtx);
             return true;
@@ -219,19 +227,30 @@ public class Aggregate extends TimerTask {
         this.expiryTimeMillis = expiryTimeMillis;
     }
 
+    /**
+     * Schedule the timeout of this aggregation on the given wheel, unless the aggregation has
+     * already been completed
+     *
+     * @param wheel the timeout wheel of the aggregate mediator
+     */
+    synchronized void scheduleTimeout(TimingWheel<Aggregate> wheel) {
+        if (!completed && expiryTimeMillis > 0) {
+            timeoutWheel = wheel;
+            timeout = wheel.schedule(this, expiryTimeMillis);
+        }
+    }
+
+    /**
+     * Invoked by the timeout wheel when this aggregation has timed out. The completion is
+     * handed over to the Synapse worker pool, as the wheel should not be held up.
+     */
     public void run() {
-        while (true) {
-            if (completed) {
-                break;
-            }
-            if (getLock()) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Time : " + System.currentTimeMillis() + " and this aggregator " +
-                            "expired at : " + expiryTimeMillis);
-                }
-                synEnv.getExecutorService().execute(new AggregateTimeout(this));
-                break;
+        if (!completed) {
+            if (log.isDebugEnabled()) {
+                log.debug("Time : " + System.currentTimeMillis() + " and this aggregator " +
+                        "expired at : " + expiryTimeMillis);
             }
+            synEnv.getExecutorService().execute(new AggregateTimeout(this));
         }
     }
 
@@ -246,12 +265,22 @@ public class Aggregate extends TimerTask {
         }
     }
 
-    public synchronized boolean getLock() {
-        return !locked;
-    }
-
-    public void releaseLock() {
-        locked = false;
+    /**
+     * Mark this aggregation as completed and cancel its timeout. Only the first caller
+     * succeeds, so that the aggregated message is only generated once.
+     *
+     * @return true if the aggregation was completed by this call
+     */
+    public synchronized boolean markCompleted() {
+        if (completed) {
+            return false;
+        }
+        completed = true;
+        if (timeout != null) {
+            timeoutWheel.cancel(timeout);
+            timeout = null;
+        }
+        return true;
     }
 
     public boolean isCompleted() {
@@ -39,13 +39,16 @@ import org.apache.synapse.mediators.base.SequenceMediator;
 import org.apache.synapse.mediators.eip.EIPConstants;
 import org.apache.synapse.mediators.eip.EIPUtils;
 import org.apache.synapse.util.MessageHelper;
+import org.apache.synapse.util.concurrent.TimingWheel;
 import org.apache.synapse.util.xpath.SynapseXPath;
 import org.jaxen.JaxenException;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Aggregate a number of messages that are determined to be for a particular group, and combine
@@ -55,7 +58,8 @@ import java.util.Map;
  * let any other (i.e. non aggregatable) messages flow through
  * An instance of this mediator will register with a Timer to be notified after a specified timeout,
  * so that aggregations that never would complete could be timed out and cleared from memory and
- * any fault conditions handled
+ * any fault conditions handled. The timeouts of all the aggregations are kept on a single timing
+ * wheel, which is advanced by one periodic task of the Synapse timer
  */
 public class AggregateMediator extends AbstractMediator implements ManagedLifecycle,
                                                                    FlowContinuableMediator {
@@ -87,17 +91,23 @@ public class AggregateMediator extends AbstractMediator implements ManagedLifecy
     /** Inline sequence definition holder that holds the onComplete sequence */
     private SequenceMediator onCompleteSequence = null;
 
-    /** The active aggregates currently being processd */
-    private Map<String, Aggregate> activeAggregates =
-        Collections.synchronizedMap(new HashMap<String, Aggregate>());
+    /** The active aggregates currently being processd, in a map sharded by the correlation */
+    private ConcurrentMap<String, Aggregate> activeAggregates =
+        new ConcurrentHashMap<String, Aggregate>(64, 0.75f, AGGREGATE_MAP_SHARDS);
 
     private String id = null;
 
     /** Property which contains the Enclosing element of the aggregated message */
     private String enclosingElementPropertyName = null;
 
-    /** Lock object to provide the synchronized access to the activeAggregates on checking */
-    private final Object lock = new Object();
+    /** The timing wheel on which the timeouts of the aggregates are scheduled */
+    private volatile TimingWheel<Aggregate> timeoutWheel = null;
+    /** The task of the Synapse timer advancing the timing wheel */
+    private TimerTask timeoutTicker = null;
+
+    private static final int AGGREGATE_MAP_SHARDS = 64;
+    private static final int TIMEOUT_WHEEL_SIZE = 512;
+    private static final long TIMEOUT_TICK_MILLIS = 100;
 
     /** Reference to the synapse environment */
     private SynapseEnvironment synapseEnv;
@@ -132,6 +142,12 @@ public class AggregateMediator extends AbstractMediator implements ManagedLifecy
     }
 
     public void destroy() {
+        synchronized (this) {
+            if (timeoutTicker != null) {
+                timeoutTicker.cancel();
+                timeoutTicker = null;
+            }
+        }
         if (onCompleteSequence != null) {
             onCompleteSequence.destroy();
         } else if (onCompleteSequenceRef != null) {
@@ -168,7 +184,7 @@ public class AggregateMediator extends AbstractMediator implements ManagedLifecy
         }
 
         try {
-            Aggregate aggregate = null;
+            Aggregate aggregate;
             String correlationIdName = (id != null ? EIPConstants.AGGREGATE_CORRELATION + "." + id :
                     EIPConstants.AGGREGATE_CORRELATION);
             // if a correlateExpression is provided and there is a coresponding
@@ -182,49 +198,9 @@ public class AggregateMediator extends AbstractMediator implements ManagedLifecy
                     }
                 }
             }
+            String correlation;
             if (result != null) {
-
-                while (aggregate == null) {
-
-                    synchronized (lock) {
-
-                        if (activeAggregates.containsKey(correlateExpression.toString())) {
-
-                            aggregate = activeAggregates.get(correlateExpression.toString());
-                            if (aggregate != null) {
-                                if (!aggregate.getLock()) {
-                                    aggregate = null;
-                                }
-                            }
-
-                        } else {
-
-                            if (synLog.isTraceOrDebugEnabled()) {
-                                synLog.traceOrDebug("Creating new Aggregator - " +
-                                        (completionTimeoutMillis > 0 ? "expires in : "
-                                                + (completionTimeoutMillis / 1000) + "secs" :
-                                                "without expiry time"));
-                            }
-
-                            Double minMsg = Double.parseDouble(minMessagesToComplete.evaluateValue(synCtx));
-                            Double maxMsg = Double.parseDouble(maxMessagesToComplete.evaluateValue(synCtx));
-                    
-                            aggregate = new Aggregate(
-                                    synCtx.getEnvironment(),
-                                    correlateExpression.toString(),
-                                    completionTimeoutMillis,
-                                    minMsg.intValue(),
-                                    maxMsg.intValue(), this);
-
-                            if (completionTimeoutMillis > 0) {
-                                synCtx.getConfiguration().getSynapseTimer().
-                                        schedule(aggregate, completionTimeoutMillis);
-                            }
-                            aggregate.getLock();
-                            activeAggregates.put(correlateExpression.toString(), aggregate);
-                        }
-                    }
-                }
+                correlation = correlateExpression.toString();
 
             } else if (synCtx.getProperty(correlationIdName) != null) {
                 // if the correlattion cannot be found using the correlateExpression then
@@ -233,59 +209,8 @@ public class AggregateMediator extends AbstractMediator implements ManagedLifecy
                 // which thus can be used to uniquely group messages into aggregates
 
                 Object o = synCtx.getProperty(correlationIdName);
-                String correlation;
-
                 if (o != null && o instanceof String) {
                     correlation = (String) o;
-                    while (aggregate == null) {
-                        synchronized (lock) {
-                            if (activeAggregates.containsKey(correlation)) {
-                                aggregate = activeAggregates.get(correlation);
-                                if (aggregate != null) {
-                                    if (!aggregate.getLock()) {
-                                        aggregate = null;
-                                    }
-                                } else {
-                                    break;
-                                }
-                            } else {
-                                if (synLog.isTraceOrDebugEnabled()) {
-                                    synLog.traceOrDebug("Creating new Aggregator - " +
-                                            (completionTimeoutMillis > 0 ? "expires in : "
-                                                    + (completionTimeoutMillis / 1000) + "secs" :
-                                                    "without expiry time"));
-                                }
-
-                                Double minMsg = -1.0;
-                                if (minMessagesToComplete != null) {
-                                    minMsg = Double.parseDouble(minMessagesToComplete.evaluateValue(synCtx));
-                                }
-                                Double maxMsg = -1.0;
-                                if (maxMessagesToComplete != null) {
-                                    maxMsg = Double.parseDouble(maxMessagesToComplete.evaluateValue(synCtx));
-                                }
-
-                                aggregate = new Aggregate(
-                                        synCtx.getEnvironment(),
-                                        correlation,
-                                        completionTimeoutMillis,
-                                        minMsg.intValue(),
-                                        maxMsg.intValue(), this);
-
-                                if (completionTimeoutMillis > 0) {
-                                    synchronized(aggregate) {
-                                        if (!aggregate.isCompleted()) {
-                                            synCtx.getConfiguration().getSynapseTimer().
-                                                schedule(aggregate, completionTimeoutMillis);
-                                        }
-                                    }
-                                }
-                                aggregate.getLock();
-                                activeAggregates.put(correlation, aggregate);
-                            }
-                        }
-                    }
-                    
                 } else {
                     synLog.traceOrDebug("Unable to find aggrgation correlation property");
                     return true;
@@ -295,39 +220,40 @@ public class AggregateMediator extends AbstractMediator implements ManagedLifecy
                 return true;
             }
 
-            // if there is an aggregate continue on aggregation
-            if (aggregate != null) {
-            	//this is a temporary fix           	
-                synCtx.getEnvelope().build();
-                boolean collected = aggregate.addMessage(synCtx);
-                if (synLog.isTraceOrDebugEnabled()) {
-                    if (collected) {
-                        synLog.traceOrDebug("Collected a message during aggregation");
-                        if (synLog.isTraceTraceEnabled()) {
-                            synLog.traceTrace("Collected message : " + synCtx);
-                        }
-                    }
+            //this is a temporary fix
+            synCtx.getEnvelope().build();
+
+            // collect the message into the active aggregate of the correlation. If that has
+            // just been completed by another message or its timeout, it is removed and the
+            // message starts a new aggregate
+            boolean collected;
+            while (true) {
+                aggregate = getAggregate(synCtx, synLog, correlation);
+                collected = aggregate.addMessage(synCtx);
+                if (collected || !aggregate.isCompleted()) {
+                    break;
                 }
-                
-                // check the completeness of the aggregate and if completed aggregate the messages
-                // if not completed return false and block the message sequence till it completes
-
-                if (aggregate.isComplete(synLog)) {
-                    synLog.traceOrDebug("Aggregation completed - invoking onComplete");
-                    boolean onCompleteSeqResult = completeAggregate(aggregate);
-                    
-                    synLog.traceOrDebug("End : Aggregate mediator");
-                    return onCompleteSeqResult;
-                } else {
-                    aggregate.releaseLock();
+                activeAggregates.remove(correlation, aggregate);
+            }
+
+            if (synLog.isTraceOrDebugEnabled()) {
+                if (collected) {
+                    synLog.traceOrDebug("Collected a message during aggregation");
+                    if (synLog.isTraceTraceEnabled()) {
+                        synLog.traceTrace("Collected message : " + synCtx);
+                    }
                 }
+            }
 
-            } else {
-                // if the aggregation correlation cannot be found then continue the message on the
-                // normal path by returning true
+            // check the completeness of the aggregate and if completed aggregate the messages
+            // if not completed return false and block the message sequence till it completes
 
-                synLog.traceOrDebug("Unable to find an aggregate for this message - skip");
-                return true;
+            if (aggregate.isComplete(synLog)) {
+                synLog.traceOrDebug("Aggregation completed - invoking onComplete");
+                boolean onCompleteSeqResult = completeAggregate(aggregate);
+
+                synLog.traceOrDebug("End : Aggregate mediator");
+                return onCompleteSeqResult;
             }
 
         } catch (JaxenException e) {
@@ -360,6 +286,99 @@ public class AggregateMediator extends AbstractMediator implements ManagedLifecy
         return result;
     }
 
+    /**
+     * Get the active aggregate of the given correlation, creating and registering a new one
+     * if there is none. The timeout of a new aggregate is scheduled on the timeout wheel.
+     *
+     * @param synCtx the message being aggregated
+     * @param synLog the Synapse log to use
+     * @param correlation the correlation of the message
+     * @return the active aggregate of the correlation
+     */
+    private Aggregate getAggregate(MessageContext synCtx, SynapseLog synLog, String correlation) {
+
+        Aggregate aggregate = activeAggregates.get(correlation);
+        if (aggregate != null) {
+            return aggregate;
+        }
+
+        if (synLog.isTraceOrDebugEnabled()) {
+            synLog.traceOrDebug("Creating new Aggregator - " +
+                    (completionTimeoutMillis > 0 ? "expires in : "
+                            + (completionTimeoutMillis / 1000) + "secs" :
+                            "without expiry time"));
+        }
+
+        Double minMsg = -1.0;
+        if (minMessagesToComplete != null) {
+            minMsg = Double.parseDouble(minMessagesToComplete.evaluateValue(synCtx));
+        }
+        Double maxMsg = -1.0;
+        if (maxMessagesToComplete != null) {
+            maxMsg = Double.parseDouble(maxMessagesToComplete.evaluateValue(synCtx));
+        }
+
+        Aggregate newAggregate = new Aggregate(
+                synCtx.getEnvironment(),
+                correlation,
+                completionTimeoutMillis,
+                minMsg.intValue(),
+                maxMsg.intValue(), this);
+
+        aggregate = activeAggregates.putIfAbsent(correlation, newAggregate);
+        if (aggregate != null) {
+            // another message of the same correlation got there first
+            return aggregate;
+        }
+
+        if (completionTimeoutMillis > 0) {
+            newAggregate.scheduleTimeout(getTimeoutWheel(synCtx));
+        }
+        return newAggregate;
+    }
+
+    private TimingWheel<Aggregate> getTimeoutWheel(MessageContext synCtx) {
+        TimingWheel<Aggregate> wheel = timeoutWheel;
+        if (wheel == null) {
+            synchronized (this) {
+                wheel = timeoutWheel;
+                if (wheel == null) {
+                    long tick = Math.max(Math.min(completionTimeoutMillis, TIMEOUT_TICK_MILLIS), 1);
+                    final TimingWheel<Aggregate> newWheel = new TimingWheel<Aggregate>(
+                            TIMEOUT_WHEEL_SIZE, tick, System.currentTimeMillis());
+                    timeoutTicker = new TimerTask() {
+                        public void run() {
+                            expireAggregates(newWheel);
+                        }
+                    };
+                    synCtx.getConfiguration().getSynapseTimer().scheduleAtFixedRate(
+                            timeoutTicker, tick, tick);
+                    wheel = newWheel;
+                    timeoutWheel = wheel;
+                }
+            }
+        }
+        return wheel;
+    }
+
+    /**
+     * Advance the timing wheel and time out the expired aggregates. This runs on the Synapse
+     * timer, the aggregates hand the actual work over to the worker pool.
+     *
+     * @param wheel the timing wheel of this mediator
+     */
+    private void expireAggregates(TimingWheel<Aggregate> wheel) {
+        try {
+            List<Aggregate> expired = new ArrayList<Aggregate>();
+            wheel.advance(System.currentTimeMillis(), expired);
+            for (Aggregate aggregate : expired) {
+                aggregate.run();
+            }
+        } catch (Throwable t) {
+            log.error("Error while processing the aggregate timeouts", t);
+        }
+    }
+
     /**
      * Invoked by the Aggregate objects that are timed out, to signal timeout/completion of
      * itself
@@ -367,7 +386,6 @@ public class AggregateMediator extends AbstractMediator implements ManagedLifecy
      */
     public boolean completeAggregate(Aggregate aggregate) {
 
-        boolean markedCompletedNow = false;
         boolean wasComplete = aggregate.isCompleted();
         if (wasComplete) {
             return false;
@@ -377,16 +395,8 @@ public class AggregateMediator extends AbstractMediator implements ManagedLifecy
             log.debug("Aggregation completed or timed out");
         }
 
-        // cancel the timer
-        synchronized(this) {
-            if (!aggregate.isCompleted()) {
-                aggregate.cancel();
-                aggregate.setCompleted(true);
-                markedCompletedNow = true;
-            }
-        }
-
-        if (!markedCompletedNow) {
+        // cancel the timeout, only the first one to complete the aggregate continues
+        if (!aggregate.markCompleted()) {
             return false;
         }
         
@@ -409,7 +419,7 @@ public class AggregateMediator extends AbstractMediator implements ManagedLifecy
             }
         }
 
-        activeAggregates.remove(aggregate.getCorrelation());
+        activeAggregates.remove(aggregate.getCorrelation(), aggregate);
 
         if ((correlateExpression != null &&
             !correlateExpression.toString().equals(aggregate.getCorrelation())) ||
@@ -37,10 +37,13 @@ import org.apache.synapse.mediators.base.SequenceMediator;
 import org.apache.synapse.mediators.eip.EIPConstants;
 import org.apache.synapse.mediators.eip.Target;
 import org.apache.synapse.util.MessageHelper;
+import org.apache.synapse.util.concurrent.ForkExecutor;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * This mediator will clone the message into multiple messages and mediate as specified in the
@@ -64,6 +67,12 @@ public class CloneMediator extends AbstractMediator implements ManagedLifecycle,
 
     private boolean sequential = false;
 
+    /**
+     * Fork lightweight copies of the message, which share the properties of the parent and are
+     * mediated through the bounded fork executor, instead of full clones of the message context
+     */
+    private boolean fork = false;
+
     /** Reference to the synapse environment */
     private SynapseEnvironment synapseEnv;
 
@@ -93,15 +102,21 @@ public class CloneMediator extends AbstractMediator implements ManagedLifecycle,
         // mediate the cloned messages using the targets
         Iterator<Target> iter = targets.iterator();
         int i = 0;
+
+        // in the fork mode all the copies share a single snapshot of the properties
+        Map<String, Object> sharedProperties =
+                fork ? MessageHelper.getSharedProperties(synCtx) : null;
+        Executor executor = fork ? ForkExecutor.getInstance() : null;
         while (iter.hasNext()) {
             if (synLog.isTraceOrDebugEnabled()) {
                 synLog.traceOrDebug("Submitting " + (i+1) + " of " + targets.size() +
                     " messages for " + (isSequential() ? "sequential processing" : "parallel processing"));
             }
 
-            MessageContext clonedMsgCtx = getClonedMessageContext(synCtx, i++, targets.size());
+            MessageContext clonedMsgCtx = getClonedMessageContext(synCtx, i++, targets.size(),
+                    sharedProperties);
             ContinuationStackManager.addReliantContinuationState(clonedMsgCtx, i - 1, getMediatorPosition());
-            iter.next().mediate(clonedMsgCtx);
+            iter.next().mediate(clonedMsgCtx, executor);
         }
 
         // if the continuation of the parent message is stopped from here set the RESPONSE_WRITTEN
@@ -150,16 +165,24 @@ public class CloneMediator extends AbstractMediator implements ManagedLifecycle,
      * @param synCtx          - MessageContext which is subjected to the cloning
      * @param messageSequence - the position of this message of the cloned set
      * @param messageCount    - total of cloned copies
+     * @param sharedProperties - properties of the parent to be shared by a forked message, or
+     *                          null if the message should be cloned
      *
      * @return MessageContext the cloned message context
      */
     private MessageContext getClonedMessageContext(MessageContext synCtx, int messageSequence,
-                                                   int messageCount) {
+                                                   int messageCount,
+                                                   Map<String, Object> sharedProperties) {
 
         MessageContext newCtx = null;
         try {
-        	
-            newCtx = MessageHelper.cloneMessageContext(synCtx);
+
+            if (sharedProperties != null) {
+                newCtx = MessageHelper.forkMessageContext(synCtx, sharedProperties,
+                        MessageHelper.cloneSOAPEnvelope(synCtx.getEnvelope()));
+            } else {
+                newCtx = MessageHelper.cloneMessageContext(synCtx);
+            }
             // Set isServerSide property in the cloned message context
             ((Axis2MessageContext) newCtx).getAxis2MessageContext().setServerSide(
                     ((Axis2MessageContext) synCtx).getAxis2MessageContext().isServerSide());
@@ -188,6 +211,14 @@ public class CloneMediator extends AbstractMediator implements ManagedLifecycle,
     //                        Getters and Setters                                        //
     ///////////////////////////////////////////////////////////////////////////////////////
 
+    public boolean isFork() {
+        return fork;
+    }
+
+    public void setFork(boolean fork) {
+        this.fork = fork;
+    }
+
     public boolean isContinueParent() {
         return continueParent;
     }
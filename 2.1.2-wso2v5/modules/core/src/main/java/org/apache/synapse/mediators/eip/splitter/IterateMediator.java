@@ -40,11 +40,14 @@ import org.apache.synapse.mediators.eip.EIPConstants;
 import org.apache.synapse.mediators.eip.EIPUtils;
 import org.apache.synapse.mediators.eip.Target;
 import org.apache.synapse.util.MessageHelper;
+import org.apache.synapse.util.concurrent.ForkExecutor;
 import org.apache.synapse.util.xpath.SynapseXPath;
 import org.jaxen.JaxenException;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * Splits a message using an XPath expression and creates a new message to hold
@@ -78,6 +81,12 @@ public class IterateMediator extends AbstractMediator implements ManagedLifecycl
 
     private String id = null;
 
+    /**
+     * Fork lightweight messages for the iterations, which share the properties of the parent
+     * and are mediated through the bounded fork executor, instead of full clones of the parent
+     */
+    private boolean fork = false;
+
     private SynapseEnvironment synapseEnv;
 
     /**
@@ -126,6 +135,11 @@ public class IterateMediator extends AbstractMediator implements ManagedLifecycl
             int msgCount = splitElements.size();
             int msgNumber = 0;
 
+            // in the fork mode all the iterations share a single snapshot of the properties
+            Map<String, Object> sharedProperties =
+                    fork ? MessageHelper.getSharedProperties(synCtx) : null;
+            Executor executor = fork ? ForkExecutor.getInstance() : null;
+
             // iterate through the list
             for (Object o : splitElements) {
 
@@ -142,11 +156,11 @@ public class IterateMediator extends AbstractMediator implements ManagedLifecycl
                              " messages for processing in sequentially"));
                 }
 
-                MessageContext itereatedMsgCtx =
-                        getIteratedMessage(synCtx, msgNumber++, msgCount, envelope, (OMNode) o);
+                MessageContext itereatedMsgCtx = getIteratedMessage(synCtx, msgNumber++,
+                        msgCount, envelope, (OMNode) o, sharedProperties);
                 ContinuationStackManager.
                         addReliantContinuationState(itereatedMsgCtx, 0, getMediatorPosition());
-                target.mediate(itereatedMsgCtx);
+                target.mediate(itereatedMsgCtx, executor);
             }
 
         } catch (JaxenException e) {
@@ -198,30 +212,15 @@ public class IterateMediator extends AbstractMediator implements ManagedLifecycl
      * @param msgCount  - total number of messages in the split
      * @param envelope  - envelope to be used in the iteration
      * @param o         - element which participates in the iteration replacement
+     * @param sharedProperties - properties of the parent to be shared by a forked message, or
+     *                    null if the message should be cloned
      * @return newCtx created by the iteration
      * @throws AxisFault if there is a message creation failure
      * @throws JaxenException if the expression evauation failure
      */
     private MessageContext getIteratedMessage(MessageContext synCtx, int msgNumber, int msgCount,
-        SOAPEnvelope envelope, OMNode o) throws AxisFault, JaxenException {
-        
-        // clone the message for the mediation in iteration
-        MessageContext newCtx = MessageHelper.cloneMessageContext(synCtx);
-
-        if (id != null) {
-            // set the parent correlation details to the cloned MC -
-            //                              for the use of aggregation like tasks
-            newCtx.setProperty(EIPConstants.AGGREGATE_CORRELATION + "." + id,
-                    synCtx.getMessageID());
-            // set the messageSequence property for possibal aggreagtions
-            newCtx.setProperty(
-                    EIPConstants.MESSAGE_SEQUENCE + "." + id,
-                    msgNumber + EIPConstants.MESSAGE_SEQUENCE_DELEMITER + msgCount);
-        } else {
-            newCtx.setProperty(
-                    EIPConstants.MESSAGE_SEQUENCE,
-                    msgNumber + EIPConstants.MESSAGE_SEQUENCE_DELEMITER + msgCount);
-        }
+        SOAPEnvelope envelope, OMNode o, Map<String, Object> sharedProperties)
+        throws AxisFault, JaxenException {
 
         // get a clone of the envelope to be attached
         SOAPEnvelope newEnvelope = MessageHelper.cloneSOAPEnvelope(envelope);
@@ -253,8 +252,31 @@ public class IterateMediator extends AbstractMediator implements ManagedLifecycl
             newEnvelope.getBody().addChild(o);
         }
 
-        // set the envelope and mediate as specified in the target
-        newCtx.setEnvelope(newEnvelope);
+        MessageContext newCtx;
+        if (sharedProperties != null) {
+            // fork the message with the prepared envelope, without cloning the parent envelope
+            newCtx = MessageHelper.forkMessageContext(synCtx, sharedProperties, newEnvelope);
+        } else {
+            // clone the message for the mediation in iteration
+            newCtx = MessageHelper.cloneMessageContext(synCtx);
+            // set the envelope and mediate as specified in the target
+            newCtx.setEnvelope(newEnvelope);
+        }
+
+        if (id != null) {
+            // set the parent correlation details to the cloned MC -
+            //                              for the use of aggregation like tasks
+            newCtx.setProperty(EIPConstants.AGGREGATE_CORRELATION + "." + id,
+                    synCtx.getMessageID());
+            // set the messageSequence property for possibal aggreagtions
+            newCtx.setProperty(
+                    EIPConstants.MESSAGE_SEQUENCE + "." + id,
+                    msgNumber + EIPConstants.MESSAGE_SEQUENCE_DELEMITER + msgCount);
+        } else {
+            newCtx.setProperty(
+                    EIPConstants.MESSAGE_SEQUENCE,
+                    msgNumber + EIPConstants.MESSAGE_SEQUENCE_DELEMITER + msgCount);
+        }
 
         return newCtx;
     }
@@ -311,6 +333,14 @@ public class IterateMediator extends AbstractMediator implements ManagedLifecycl
         this.id = id;
     }
 
+    public boolean isFork() {
+        return fork;
+    }
+
+    public void setFork(boolean fork) {
+        this.fork = fork;
+    }
+
     public void init(SynapseEnvironment se) {
 
         synapseEnv = se;
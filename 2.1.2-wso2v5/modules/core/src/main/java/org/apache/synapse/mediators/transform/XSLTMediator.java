@@ -23,11 +23,15 @@ import org.apache.axiom.om.OMElement;
 import org.apache.axiom.om.OMNode;
 import org.apache.axiom.soap.SOAPEnvelope;
 import org.apache.axis2.AxisFault;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.ManagedLifecycle;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseException;
 import org.apache.synapse.SynapseLog;
 import org.apache.synapse.config.Entry;
 import org.apache.synapse.config.SynapseConfigUtils;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.config.SynapsePropertiesLoader;
 import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.mediators.AbstractMediator;
 import org.apache.synapse.mediators.Value;
@@ -39,8 +43,12 @@ import org.apache.synapse.util.xpath.SourceXPathSupport;
 import org.apache.synapse.util.xpath.SynapseXPath;
 
 import javax.xml.transform.*;
+import javax.xml.transform.stax.StAXSource;
 import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The XSLT mediator performs an XSLT transformation requested, using
@@ -59,7 +67,7 @@ import java.util.*;
  *  -Djavax.xml.transform.TransformerFactory=org.apache.xalan.xsltc.trax.TransformerFactoryImpl
  * 
  */
-public class XSLTMediator extends AbstractMediator {
+public class XSLTMediator extends AbstractMediator implements ManagedLifecycle {
 
     private static class ErrorListenerImpl implements ErrorListener {
         private final SynapseLog synLog;
@@ -145,10 +153,12 @@ public class XSLTMediator extends AbstractMediator {
 
     /**
      * Cache multiple templates
-     * Unique string used as a key for each template
-     * The Template instance used to create a Transformer object. This is  thread-safe
+     * Unique string (the evaluated XSLT key) used as a key for each template
+     * The Template instance used to create a Transformer object. This is  thread-safe and
+     * looked up without locking
      */
-    private Map<String, Templates> cachedTemplatesMap = new Hashtable<String, Templates>();
+    private final Map<String, CachedTemplates> cachedTemplatesMap =
+            new ConcurrentHashMap<String, CachedTemplates>();
 
     /**
      * The TransformerFactory instance which use to create Templates. This is not thread-safe.
@@ -157,14 +167,92 @@ public class XSLTMediator extends AbstractMediator {
     private final TransformerFactory transFact = TransformerFactory.newInstance();
 
     /**
-     * Lock used to ensure thread-safe creation and use of the above Transformer
+     * Lock used to ensure thread-safe use of the above TransformerFactory. Only held while
+     * compiling a stylesheet
      */
     private final Object transformerLock = new Object();
 
+    /**
+     * Whether the above TransformerFactory accepts a StAXSource, checked on first compilation
+     */
+    private volatile boolean staxSourceSupported = false;
+
+    private static final int DEFAULT_TRANSFORMER_POOL_SIZE = 32;
+
+    /**
+     * Maximum number of idle Transformer instances kept for reuse per compiled stylesheet
+     */
+    private static final int TRANSFORMER_POOL_SIZE = getTransformerPoolSize();
+
+    private static int getTransformerPoolSize() {
+        String value = SynapsePropertiesLoader.getPropertyValue(
+                "synapse.xslt.transformer.pool.size", null);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LogFactory.getLog(XSLTMediator.class).warn("Invalid value : " + value +
+                        " for the property : synapse.xslt.transformer.pool.size, using the " +
+                        "default value : " + DEFAULT_TRANSFORMER_POOL_SIZE);
+            }
+        }
+        return DEFAULT_TRANSFORMER_POOL_SIZE;
+    }
+
+    /**
+     * The compiled templates of a stylesheet, the version of the entry they were compiled
+     * from and a pool of Transformers created from them
+     */
+    private static class CachedTemplates {
+        private final Templates templates;
+        private final long version;
+        private final Queue<Transformer> idleTransformers =
+                new ConcurrentLinkedQueue<Transformer>();
+        private final AtomicInteger idleCount = new AtomicInteger(0);
+
+        CachedTemplates(Templates templates, long version) {
+            this.templates = templates;
+            this.version = version;
+        }
+
+        Transformer borrowTransformer() throws TransformerConfigurationException {
+            Transformer transformer = idleTransformers.poll();
+            if (transformer != null) {
+                idleCount.decrementAndGet();
+                return transformer;
+            }
+            return templates.newTransformer();
+        }
+
+        /**
+         * Reset the transformer to the state it was created in (no parameters, default
+         * error listener and URI resolver) and keep it for the next message
+         */
+        void returnTransformer(Transformer transformer) {
+            if (idleCount.get() >= TRANSFORMER_POOL_SIZE) {
+                return;
+            }
+            try {
+                transformer.reset();
+            } catch (UnsupportedOperationException e) {
+                return; // cannot be reused safely
+            }
+            idleCount.incrementAndGet();
+            idleTransformers.offer(transformer);
+        }
+    }
+
     /**
      * The source builder factory to use.
      */
     private SourceBuilderFactory sourceBuilderFactory = new StreamSourceBuilderFactory();
+
+    /**
+     * The source builder factory used instead of the default one when the source has not been
+     * built yet and the transformer factory accepts StAX sources.
+     */
+    private static final SourceBuilderFactory STAX_SOURCE_BUILDER_FACTORY =
+            new StAXSourceBuilderFactory();
     
     /**
      * The result builder factory to use.
@@ -216,37 +304,29 @@ public class XSLTMediator extends AbstractMediator {
         // Derive actual key from message context
         String generatedXsltKey = xsltKey.evaluateValue(synCtx);
 
-        // get templates from generatedXsltKey
-        Templates cachedTemplates = null;
-
         if (synLog.isTraceTraceEnabled()) {
             synLog.traceTrace("Transformation source : " + sourceNode.toString());
         }
 
-        // determine if it is needed to create or create the template
-        if (isCreationOrRecreationRequired(synCtx)) {
+        // get templates from generatedXsltKey, the lock is only taken to compile them
+        CachedTemplates cachedTemplates = cachedTemplatesMap.get(generatedXsltKey);
+        if (isCreationOrRecreationRequired(synCtx, generatedXsltKey, cachedTemplates)) {
             // many threads can see this and come here for acquiring the lock
             synchronized (transformerLock) {
                 // only first thread should create the template
-                if (isCreationOrRecreationRequired(synCtx)) {
+                cachedTemplates = cachedTemplatesMap.get(generatedXsltKey);
+                if (isCreationOrRecreationRequired(synCtx, generatedXsltKey, cachedTemplates)) {
                     cachedTemplates = createTemplate(synCtx, synLog, generatedXsltKey);
-                } else {
-                    cachedTemplates = cachedTemplatesMap.get(generatedXsltKey);
                 }
             }
         }
-        else{
-            //If already cached template then load it from cachedTemplatesMap
-            synchronized (transformerLock){
-                cachedTemplates = cachedTemplatesMap.get(generatedXsltKey);
-            }
-        }
 
+        Transformer transformer = null;
+        boolean reusable = false;
         try {
             // perform transformation
-            Transformer transformer = null;
             try {
-                transformer = cachedTemplates.newTransformer();
+                transformer = cachedTemplates.borrowTransformer();
             } catch (NullPointerException ex) {
                 handleException("Unable to create Transformer using cached template", ex, synCtx);
             }
@@ -256,6 +336,9 @@ public class XSLTMediator extends AbstractMediator {
             }
 
             transformer.setErrorListener(new ErrorListenerImpl(synLog, "XSLT transformation"));
+            // a pooled transformer is reset, which drops the resolver for document() calls
+            transformer.setURIResolver(
+                    new CustomJAXPURIResolver(resourceMap, synCtx.getConfiguration()));
             
             String outputMethod = transformer.getOutputProperty(OutputKeys.METHOD);
             String encoding = transformer.getOutputProperty(OutputKeys.ENCODING);
@@ -278,8 +361,16 @@ public class XSLTMediator extends AbstractMediator {
             SynapseEnvironment synEnv = synCtx.getEnvironment();
             ResultBuilder resultBuilder =
                     resultBuilderFactory.createResultBuilder(synEnv, output);
-            SourceBuilder sourceBuilder = sourceBuilderFactory.createSourceBuilder(synEnv);
-            
+            SourceBuilder sourceBuilder;
+            if (staxSourceSupported && sourceBuilderFactory instanceof StreamSourceBuilderFactory
+                    && !sourceNode.isComplete()) {
+                // the source is still (partly) in the pass through stream, let the transformer
+                // pull it instead of serializing it to a buffer and parsing it again
+                sourceBuilder = STAX_SOURCE_BUILDER_FACTORY.createSourceBuilder(synEnv);
+            } else {
+                sourceBuilder = sourceBuilderFactory.createSourceBuilder(synEnv);
+            }
+
             if (synLog.isTraceOrDebugEnabled()) {
                 synLog.traceOrDebug("Using " + sourceBuilder.getClass().getName());
                 synLog.traceOrDebug("Using " + resultBuilder.getClass().getName());
@@ -291,6 +382,7 @@ public class XSLTMediator extends AbstractMediator {
             } finally {
                 sourceBuilder.release();
             }
+            reusable = true;
 
             synLog.traceOrDebug("Transformation completed - processing result");
 
@@ -359,6 +451,11 @@ public class XSLTMediator extends AbstractMediator {
 
         } catch (TransformerException e) {
             handleException("Error performing XSLT transformation using : " + xsltKey, e, synCtx);
+        } finally {
+            // a transformer which failed half way is not reused
+            if (reusable) {
+                cachedTemplates.returnTransformer(transformer);
+            }
         }
     }
 
@@ -369,25 +466,18 @@ public class XSLTMediator extends AbstractMediator {
      * @param generatedXsltKey evaluated xslt key(real key value) for dynamic or static key 
      * @return cached template
      */
-    private Templates createTemplate(MessageContext synCtx, SynapseLog synLog, String generatedXsltKey) {
+    private CachedTemplates createTemplate(MessageContext synCtx, SynapseLog synLog,
+                                           String generatedXsltKey) {
         // Assign created template
-        Templates cachedTemplates = null;
-
-        // Set an error listener (SYNAPSE-307).
-        transFact.setErrorListener(new ErrorListenerImpl(synLog, "stylesheet parsing"));
-        // Allow xsl:import and xsl:include resolution
-        transFact.setURIResolver(new CustomJAXPURIResolver(resourceMap,
-                synCtx.getConfiguration()));
+        CachedTemplates cachedTemplates = null;
 
         try {
-            cachedTemplates = transFact.newTemplates(
-                    SynapseConfigUtils.getStreamSource(synCtx.getEntry(generatedXsltKey)));
+            cachedTemplates = compileTemplates(synCtx.getEntry(generatedXsltKey),
+                    synCtx.getConfiguration(), generatedXsltKey,
+                    new ErrorListenerImpl(synLog, "stylesheet parsing"));
             if (cachedTemplates == null) {
                 // if cached template creation failed
                 handleException("Error compiling the XSLT with key : " + xsltKey, synCtx);
-            } else {
-                // if cached template is created then put it in to cachedTemplatesMap
-                cachedTemplatesMap.put(generatedXsltKey, cachedTemplates);
             }
         } catch (Exception e) {
             handleException("Error creating XSLT transformer using : " + xsltKey, e, synCtx);
@@ -395,32 +485,117 @@ public class XSLTMediator extends AbstractMediator {
         return cachedTemplates;
     }
 
+    /**
+     * Compile the given stylesheet and put it in to the cachedTemplatesMap. Must be called
+     * holding the transformerLock
+     *
+     * @param stylesheet the resource to be compiled
+     * @param synCfg the configuration used to resolve xsl:import and xsl:include
+     * @param generatedXsltKey evaluated xslt key of the stylesheet
+     * @param errorListener error listener used while parsing the stylesheet
+     * @return cached template or null if the stylesheet could not be compiled
+     * @throws TransformerConfigurationException if the stylesheet is invalid
+     */
+    private CachedTemplates compileTemplates(Object stylesheet, SynapseConfiguration synCfg,
+                                             String generatedXsltKey, ErrorListener errorListener)
+            throws TransformerConfigurationException {
+
+        // Set an error listener (SYNAPSE-307).
+        transFact.setErrorListener(errorListener);
+        // Allow xsl:import and xsl:include resolution
+        transFact.setURIResolver(new CustomJAXPURIResolver(resourceMap, synCfg));
+        staxSourceSupported = transFact.getFeature(StAXSource.FEATURE);
+
+        Templates templates = transFact.newTemplates(
+                SynapseConfigUtils.getStreamSource(stylesheet));
+        if (templates == null) {
+            return null;
+        }
+        // the version of the entry just fetched, a newer version is compiled again
+        Entry dp = synCfg.getEntryDefinition(generatedXsltKey);
+        CachedTemplates cachedTemplates =
+                new CachedTemplates(templates, dp != null ? dp.getVersion() : 0);
+        cachedTemplatesMap.put(generatedXsltKey, cachedTemplates);
+        return cachedTemplates;
+    }
+
     /**
      * Utility method to determine weather it is needed to create a XSLT template
      *
      * @param synCtx current message
+     * @param generatedXsltKey evaluated xslt key
+     * @param cachedTemplates the templates currently cached for the key, if any
      * @return true if it is needed to create a new XSLT template
      */
-    private boolean isCreationOrRecreationRequired(MessageContext synCtx) {
-
-        // Derive actual key from message context
-        String generatedXsltKey = xsltKey.evaluateValue(synCtx);
+    private boolean isCreationOrRecreationRequired(MessageContext synCtx, String generatedXsltKey,
+                                                   CachedTemplates cachedTemplates) {
 
-        // if there are no cachedTemplates inside cachedTemplatesMap or
         // if the template related to this generated key is not cached
         // then it need to be cached
-        if (cachedTemplatesMap.isEmpty() || !cachedTemplatesMap.containsKey(generatedXsltKey)) {
+        if (cachedTemplates == null) {
             // this is a creation case
             return true;
         } else {
             // build transformer - if necessary
             Entry dp = synCtx.getConfiguration().getEntryDefinition(generatedXsltKey);
-            // if the xsltKey refers to a dynamic resource, and if it has been expired
-            // it is a recreation case
-            return dp != null && dp.isDynamic() && (!dp.isCached() || dp.isExpired());
+            // if the xsltKey refers to a dynamic resource, and if it has been expired or
+            // reloaded with a new version it is a recreation case
+            return dp != null && dp.isDynamic() && (!dp.isCached() || dp.isExpired() ||
+                    dp.getVersion() != cachedTemplates.version);
         }
     }
 
+    /**
+     * Compile a statically referenced stylesheet when the mediator is deployed, so that the
+     * first messages do not pay for it. A stylesheet which can not be compiled yet (e.g. the
+     * registry is not available) is compiled on first use as before.
+     *
+     * @param se the Synapse environment
+     */
+    public void init(SynapseEnvironment se) {
+        String key = xsltKey != null ? xsltKey.getKeyValue() : null;
+        if (key == null || se.getSynapseConfiguration() == null) {
+            return;
+        }
+
+        SynapseConfiguration synCfg = se.getSynapseConfiguration();
+        try {
+            synchronized (transformerLock) {
+                if (cachedTemplatesMap.containsKey(key)) {
+                    return;
+                }
+                Object stylesheet = synCfg.getEntry(key);
+                if (stylesheet == null) {
+                    return;
+                }
+                compileTemplates(stylesheet, synCfg, key, new ErrorListener() {
+                    public void warning(TransformerException e) {
+                        log.debug("Warning encountered during stylesheet parsing : " + e);
+                    }
+
+                    public void error(TransformerException e) throws TransformerException {
+                        throw e;
+                    }
+
+                    public void fatalError(TransformerException e) throws TransformerException {
+                        throw e;
+                    }
+                });
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Compiled the XSLT with key : " + key);
+            }
+        } catch (Exception e) {
+            log.warn("Unable to compile the XSLT with key : " + key + " at deployment, it " +
+                    "will be compiled when the first message is mediated. Reason : " +
+                    e.getMessage());
+        }
+    }
+
+    public void destroy() {
+        cachedTemplatesMap.clear();
+    }
+
     public SynapseXPath getSource() {
         return source.getXPath();
     }
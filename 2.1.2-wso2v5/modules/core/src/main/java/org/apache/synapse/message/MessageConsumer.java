@@ -20,6 +20,8 @@ package org.apache.synapse.message;
 
 import org.apache.synapse.MessageContext;
 
+import java.util.List;
+
 public interface MessageConsumer {
     /**
      * Receives the next message from the store.
@@ -28,7 +30,16 @@ public interface MessageConsumer {
     MessageContext receive();
 
     /**
-     * Acknowledges the last message received so that it will be removed from the store.
+     * Receives up to the given number of messages from the store in one go. An implementation
+     * which cannot receive messages in batches may return less messages than available.
+     * @param maxMessages maximum number of messages to receive.
+     * @return Messages received from the store, or an empty list if there are no messages.
+     */
+    List<MessageContext> receive(int maxMessages);
+
+    /**
+     * Acknowledges the last message, or the last batch of messages, received so that it will
+     * be removed from the store.
      * @return {@code true} if the acknowledgement is successful. {@code false} otherwise.
      */
     boolean ack();
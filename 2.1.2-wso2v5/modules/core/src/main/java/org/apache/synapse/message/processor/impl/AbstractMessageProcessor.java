@@ -26,8 +26,10 @@ import org.apache.synapse.config.SynapseConfiguration;
 import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.message.MessageConsumer;
 import org.apache.synapse.message.processor.MessageProcessor;
+import org.apache.synapse.message.processor.MessageProcessorConstants;
 
 import java.util.Map;
+import java.util.StringTokenizer;
 
 /**
  * Class <code>AbstractMessageProcessor</code> is handles Message processing of the messages
@@ -125,6 +127,41 @@ public abstract class AbstractMessageProcessor implements MessageProcessor {
         return true;
     }
 
+    /**
+     * Checks whether this processor should run on the given server, as per the pinned servers
+     * parameter of the processor
+     *
+     * @param serverName name of the server
+     * @return true if the processor is not pinned or pinned on the given server
+     */
+    protected boolean isPinnedServer(String serverName) {
+        boolean pinned = false;
+        Object pinnedServersObj = this.parameters.get(MessageProcessorConstants.PINNED_SERVER);
+
+        if (pinnedServersObj != null && pinnedServersObj instanceof String) {
+
+            String pinnedServers = (String) pinnedServersObj;
+            StringTokenizer st = new StringTokenizer(pinnedServers, " ,");
+
+            while (st.hasMoreTokens()) {
+                String token = st.nextToken().trim();
+                if (serverName.equals(token)) {
+                    pinned = true;
+                    break;
+                }
+            }
+            if (!pinned) {
+                logger.info("Message processor '" + name + "' pinned on '" + pinnedServers + "' not starting on" +
+                        " this server '" + serverName + "'");
+            }
+        } else {
+            // this means we have to use the default value that is to start the message processor
+            pinned = true;
+        }
+
+        return pinned;
+    }
+
     public void setTargetEndpoint(String targetEndpoint) {
         this.targetEndpoint = targetEndpoint;
     }
@@ -33,7 +33,6 @@ import org.quartz.*;
 import org.quartz.impl.StdSchedulerFactory;
 import java.util.Map;
 import java.util.Properties;
-import java.util.StringTokenizer;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.quartz.SimpleScheduleBuilder.simpleSchedule;
@@ -401,34 +400,6 @@ public abstract class ScheduledMessageProcessor extends AbstractMessageProcessor
         return config;
     }
 
-    private boolean isPinnedServer(String serverName) {
-        boolean pinned = false;
-        Object pinnedServersObj = this.parameters.get(MessageProcessorConstants.PINNED_SERVER);
-
-        if (pinnedServersObj != null && pinnedServersObj instanceof String) {
-
-            String pinnedServers = (String) pinnedServersObj;
-            StringTokenizer st = new StringTokenizer(pinnedServers, " ,");
-
-            while (st.hasMoreTokens()) {
-                String token = st.nextToken().trim();
-                if (serverName.equals(token)) {
-                    pinned = true;
-                    break;
-                }
-            }
-            if (!pinned) {
-                logger.info("Message processor '" + name + "' pinned on '" + pinnedServers + "' not starting on" +
-                        " this server '" + serverName + "'");
-            }
-        } else {
-            // this means we have to use the default value that is to start the message processor
-            pinned = true;
-        }
-
-        return pinned;
-    }
-
     /**
      * Quarts does not except 0 for its schedule interval. Therefore when the interval is zero we have
      * to handle as a separate case.
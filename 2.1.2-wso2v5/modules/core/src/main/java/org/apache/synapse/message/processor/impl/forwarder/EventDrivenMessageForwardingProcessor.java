@@ -0,0 +1,583 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+
+package org.apache.synapse.message.processor.impl.forwarder;
+
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.Mediator;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseConstants;
+import org.apache.synapse.SynapseException;
+import org.apache.synapse.core.SynapseEnvironment;
+import org.apache.synapse.endpoints.Endpoint;
+import org.apache.synapse.message.processor.MessageProcessorConstants;
+import org.apache.synapse.message.processor.impl.AbstractMessageProcessor;
+import org.apache.synapse.message.senders.blocking.BlockingMsgSender;
+import org.apache.synapse.message.store.AbstractMessageStore;
+import org.apache.synapse.message.store.MessageStore;
+import org.apache.synapse.message.store.MessageStoreObserver;
+import org.apache.synapse.util.concurrent.SynapseThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Forwarding processor which is driven by the message store instead of a Quartz schedule. The
+ * processor observes the store and wakes up as soon as a message is added, takes up to
+ * <code>batch.size</code> messages from the store and sends up to
+ * <code>max.concurrent.sends</code> of them at a time to the target endpoint. A batch is
+ * acknowledged once all of its messages are delivered. The messages which could not be
+ * delivered are retried with a retry interval which doubles on each failure up to
+ * <code>client.max.retry.interval</code>. Stores which cannot notify the processor, such as a
+ * JMS store fed by other servers, are polled every <code>interval</code> milliseconds.
+ * <p/>
+ * Messages are delivered at least once, if the processor is deactivated while retrying a batch
+ * the messages of the batch which have already been delivered are sent again on activation.
+ * Messages are delivered in order only when a single message is sent at a time, which is the
+ * default.
+ */
+public class EventDrivenMessageForwardingProcessor extends AbstractMessageProcessor
+        implements MessageStoreObserver {
+
+    private static final Log log = LogFactory.getLog(EventDrivenMessageForwardingProcessor.class);
+
+    private int batchSize = 50;
+
+    private int maxConcurrentSends = 1;
+
+    /** Interval at which the store is polled, if it does not notify the processor */
+    private long interval = 1000;
+
+    private long retryInterval = 1000;
+
+    private long maxRetryInterval = 60000;
+
+    /** Number of attempts before deactivating the processor, -1 to retry forever */
+    private int maxDeliverAttempts = -1;
+
+    private String faultSeq = null;
+
+    private String replySeq = null;
+
+    private String[] nonRetryStatusCodes = null;
+
+    private BlockingMsgSender sender;
+
+    /** Executor for the concurrent sends, null if messages are sent one at a time */
+    private ExecutorService sendExecutor;
+
+    private Thread dispatcher;
+
+    private final Object signal = new Object();
+
+    /** Whether messages have been added since the dispatcher last looked at the store */
+    private boolean messagesAdded = false;
+
+    private volatile boolean running = false;
+
+    private final AtomicBoolean isActivated = new AtomicBoolean(true);
+
+    private final AtomicBoolean isPaused = new AtomicBoolean(false);
+
+    public void init(SynapseEnvironment se) {
+        super.init(se);
+
+        if (!isPinnedServer(se.getServerContextInformation().getServerConfigurationInformation()
+                .getServerName())) {
+            // If it is not a pinned server we do not start the message processor in that server
+            setActivated(false);
+        }
+
+        MessageStore store = configuration.getMessageStore(messageStore);
+        if (store == null) {
+            throw new SynapseException("Message store : " + messageStore + " of the message " +
+                    "processor : " + getName() + " does not exist");
+        }
+        if (store instanceof AbstractMessageStore) {
+            ((AbstractMessageStore) store).registerObserver(this);
+        }
+
+        sender = createMessageSender(parameters);
+        if (maxConcurrentSends > 1) {
+            sendExecutor = Executors.newFixedThreadPool(maxConcurrentSends,
+                    new SynapseThreadFactory(new ThreadGroup(getName() + "-senders"),
+                            getName() + "-sender"));
+        }
+
+        start();
+    }
+
+    public void setParameters(Map<String, Object> parameters) {
+        super.setParameters(parameters);
+        if (parameters == null || parameters.isEmpty()) {
+            return;
+        }
+
+        batchSize = getIntParameter(ForwardingProcessorConstants.BATCH_SIZE, batchSize);
+        maxConcurrentSends = getIntParameter(
+                ForwardingProcessorConstants.MAX_CONCURRENT_SENDS, maxConcurrentSends);
+        interval = getIntParameter(MessageProcessorConstants.INTERVAL, (int) interval);
+        retryInterval = getIntParameter(
+                MessageProcessorConstants.RETRY_INTERVAL, (int) retryInterval);
+        maxRetryInterval = getIntParameter(
+                ForwardingProcessorConstants.MAX_RETRY_INTERVAL, (int) maxRetryInterval);
+        maxDeliverAttempts = getIntParameter(
+                MessageProcessorConstants.MAX_DELIVER_ATTEMPTS, maxDeliverAttempts);
+
+        Object o = parameters.get(ForwardingProcessorConstants.FAULT_SEQUENCE);
+        if (o != null) {
+            faultSeq = o.toString();
+        }
+        o = parameters.get(ForwardingProcessorConstants.REPLY_SEQUENCE);
+        if (o != null) {
+            replySeq = o.toString();
+        }
+        o = parameters.get(ForwardingProcessorConstants.NON_RETRY_STATUS_CODES);
+        if (o != null) {
+            nonRetryStatusCodes = o.toString().split(",");
+        }
+        o = parameters.get(MessageProcessorConstants.IS_ACTIVATED);
+        if (o != null) {
+            isActivated.set(Boolean.valueOf(o.toString()));
+        }
+
+        if (batchSize < 1 || maxConcurrentSends < 1) {
+            throw new SynapseException("The batch size and the number of concurrent sends of " +
+                    "the message processor : " + getName() + " must be positive");
+        }
+        if (interval < 1) {
+            // an interval of 0 throttles a scheduled processor, which is never needed here
+            interval = 1000;
+        }
+    }
+
+    private int getIntParameter(String name, int defaultValue) {
+        Object o = parameters.get(name);
+        if (o != null) {
+            try {
+                return Integer.parseInt(o.toString().trim());
+            } catch (NumberFormatException e) {
+                log.error("Invalid value : " + o + " for the parameter : " + name + " of the " +
+                        "message processor : " + getName() + ", using the default value : " +
+                        defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Creates the sender which delivers the messages to the target endpoint
+     *
+     * @param params parameters of the processor
+     * @return an initialized message sender
+     */
+    protected BlockingMsgSender createMessageSender(Map<String, Object> params) {
+        String axis2repo = (String) params.get(ForwardingProcessorConstants.AXIS2_REPO);
+        String axis2Config = (String) params.get(ForwardingProcessorConstants.AXIS2_CONFIG);
+
+        BlockingMsgSender sender = new BlockingMsgSender();
+        if (axis2repo != null) {
+            sender.setClientRepository(axis2repo);
+        }
+        if (axis2Config != null) {
+            sender.setAxis2xml(axis2Config);
+        }
+        sender.init();
+        return sender;
+    }
+
+    public boolean start() {
+        if (running) {
+            return false;
+        }
+        if (isActivated.get()) {
+            setMessageConsumer(configuration.getMessageStore(messageStore).getConsumer());
+        }
+        running = true;
+        dispatcher = new Thread(new Dispatcher(), "MessageProcessor-" + getName());
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+
+        if (log.isDebugEnabled()) {
+            log.debug("Started message processor. [" + getName() + "].");
+        }
+        return true;
+    }
+
+    public boolean stop() {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+            try {
+                dispatcher.join(retryInterval + interval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            dispatcher = null;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Stopped message processor [" + getName() + "].");
+        }
+        return true;
+    }
+
+    public void destroy() {
+        stop();
+
+        MessageStore store = configuration.getMessageStore(messageStore);
+        if (store instanceof AbstractMessageStore) {
+            ((AbstractMessageStore) store).unregisterObserver(this);
+        }
+        if (sendExecutor != null) {
+            sendExecutor.shutdownNow();
+        }
+
+        if (getMessageConsumer() != null) {
+            if (!getMessageConsumer().cleanup()) {
+                log.error("[" + getName() + "] Could not cleanup message consumer.");
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Successfully destroyed message processor [" + getName() + "].");
+        }
+    }
+
+    public boolean deactivate() {
+        if (!isActivated.get()) {
+            return false;
+        }
+        setActivated(false);
+        if (messageConsumer != null) {
+            // This is to remove the consumer from the queue.
+            messageConsumer.cleanup();
+        }
+        log.info("Successfully deactivated the message processor [" + getName() + "]");
+        return true;
+    }
+
+    public boolean activate() {
+        if (isActivated.get()) {
+            return false;
+        }
+        if (messageConsumer == null) {
+            // This is for the message processors who are deactivated at startup time.
+            setMessageConsumer(configuration.getMessageStore(messageStore).getConsumer());
+        }
+        isPaused.set(false);
+        setActivated(true);
+        wakeUp();
+        log.info("Successfully re-activated the message processor [" + getName() + "]");
+        return true;
+    }
+
+    public boolean isDeactivated() {
+        return !isActivated.get();
+    }
+
+    public boolean isActive() {
+        return isActivated.get();
+    }
+
+    public void pauseService() {
+        isPaused.set(true);
+    }
+
+    public void resumeService() {
+        isPaused.set(false);
+    }
+
+    public boolean isPaused() {
+        return isPaused.get();
+    }
+
+    private void setActivated(boolean activated) {
+        isActivated.set(activated);
+        if (parameters != null) {
+            parameters.put(MessageProcessorConstants.IS_ACTIVATED, String.valueOf(activated));
+        }
+    }
+
+    public void messageAdded(String messageId) {
+        wakeUp();
+    }
+
+    public void messageRemoved(String messageId) {
+        // nothing to do
+    }
+
+    private void wakeUp() {
+        synchronized (signal) {
+            messagesAdded = true;
+            signal.notifyAll();
+        }
+    }
+
+    /**
+     * Wait till a message is added to the store or the polling interval elapses
+     */
+    private void await() throws InterruptedException {
+        synchronized (signal) {
+            if (!messagesAdded) {
+                signal.wait(interval);
+            }
+            messagesAdded = false;
+        }
+    }
+
+    /**
+     * Forwards a batch of messages, retrying the failed messages till all of them are delivered
+     *
+     * @param batch the messages to be forwarded
+     * @throws InterruptedException if the processor is stopped while waiting to retry
+     */
+    private void forward(List<MessageContext> batch) throws InterruptedException {
+        List<MessageContext> pending = batch;
+        int attempts = 0;
+
+        while (running && isActivated.get()) {
+            pending = sendAll(pending);
+            if (pending.isEmpty()) {
+                messageConsumer.ack();
+                if (isPaused()) {
+                    resumeService();
+                    log.info("Resuming the service of message processor [" + getName() + "]");
+                }
+                return;
+            }
+
+            attempts++;
+            if (maxDeliverAttempts > 0 && attempts >= maxDeliverAttempts) {
+                log.warn("Message processor [" + getName() + "] could not deliver " +
+                        pending.size() + " messages in " + attempts + " attempts");
+                deactivate();
+                return;
+            }
+
+            if (!isPaused()) {
+                pauseService();
+                log.info("Pausing the service of message processor [" + getName() + "]");
+            }
+
+            long delay = getRetryDelay(attempts);
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to send " + pending.size() + " messages, retrying after " +
+                        delay + "ms with attempt count - " + attempts);
+            }
+            Thread.sleep(delay);
+        }
+    }
+
+    long getRetryDelay(int attempts) {
+        long delay = retryInterval;
+        for (int i = 1; i < attempts && delay < maxRetryInterval; i++) {
+            delay *= 2;
+        }
+        return Math.min(delay, maxRetryInterval);
+    }
+
+    /**
+     * Sends the given messages, concurrently if configured so
+     *
+     * @param messages messages to be sent
+     * @return the messages which could not be delivered
+     */
+    private List<MessageContext> sendAll(List<MessageContext> messages) {
+        List<MessageContext> failed = new ArrayList<MessageContext>();
+
+        if (sendExecutor == null || messages.size() == 1) {
+            for (MessageContext msgCtx : messages) {
+                if (!send(msgCtx)) {
+                    failed.add(msgCtx);
+                }
+            }
+            return failed;
+        }
+
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(messages.size());
+        for (final MessageContext msgCtx : messages) {
+            results.add(sendExecutor.submit(new Callable<Boolean>() {
+                public Boolean call() {
+                    return send(msgCtx);
+                }
+            }));
+        }
+
+        for (int i = 0; i < messages.size(); i++) {
+            try {
+                if (!results.get(i).get()) {
+                    failed.add(messages.get(i));
+                }
+            } catch (ExecutionException e) {
+                log.error("Message processor [" + getName() + "] failed to send the message " +
+                        "to the endpoint", e.getCause());
+                failed.add(messages.get(i));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.addAll(messages.subList(i, messages.size()));
+                break;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Sends a single message to the target endpoint
+     *
+     * @param messageContext the message to be sent
+     * @return true if the message need not be sent again
+     */
+    private boolean send(MessageContext messageContext) {
+        String endpointName = targetEndpoint;
+        if (endpointName == null) {
+            // for the backward compatibility with the messages stored with a target endpoint
+            endpointName = (String) messageContext.getProperty(
+                    ForwardingProcessorConstants.TARGET_ENDPOINT);
+        }
+        if (endpointName == null) {
+            log.warn("Property " + ForwardingProcessorConstants.TARGET_ENDPOINT +
+                    " not found in the message context , Hence removing the message ");
+            return true;
+        }
+
+        Endpoint ep = messageContext.getEndpoint(endpointName);
+        messageContext.getPropertyKeySet().remove(ForwardingProcessorConstants.BLOCKING_SENDER_ERROR);
+
+        // keep the stored envelope as it is, so that a retry sends a fresh copy of it
+        SOAPEnvelope originalEnvelope = messageContext.getEnvelope();
+        MessageContext outCtx;
+        try {
+            ForwardingService.setFreshEnvelope(messageContext, originalEnvelope);
+            outCtx = sender.send(ep, messageContext);
+        } catch (Exception e) {
+            boolean nonRetry = e instanceof SynapseException && e.getCause() != null &&
+                    isNonRetryErrorCode(e.getCause().getMessage());
+            if (!nonRetry) {
+                log.error("BlockingMessageSender of message processor [" + getName() +
+                        "] failed to send message to the endpoint");
+            }
+            return nonRetry;
+        } finally {
+            messageContext.setEnvelope(originalEnvelope);
+        }
+
+        if (outCtx == null) {
+            // This Means we have invoked an out only operation
+            return true;
+        }
+
+        if ("true".equals(outCtx.getProperty(ForwardingProcessorConstants.BLOCKING_SENDER_ERROR))) {
+            if (isNonRetryErrorCode((String) outCtx.getProperty(SynapseConstants.ERROR_MESSAGE))) {
+                sendThroughReplySeq(outCtx);
+                return true;
+            }
+            log.error("BlockingMessageSender of message processor [" + getName() +
+                    "] failed to send message to the endpoint");
+            sendThroughFaultSeq(outCtx);
+            return false;
+        }
+
+        sendThroughReplySeq(outCtx);
+        if (log.isDebugEnabled()) {
+            log.debug("Successfully sent the message to endpoint [" + ep.getName() + "]" +
+                    " with message processor [" + getName() + "]");
+        }
+        return true;
+    }
+
+    private void sendThroughFaultSeq(MessageContext msgCtx) {
+        Mediator mediator = faultSeq != null ? msgCtx.getSequence(faultSeq) : null;
+        if (mediator == null) {
+            log.warn("Failed to send the message through the fault sequence, Sequence " +
+                    faultSeq + " does not Exist.");
+            return;
+        }
+        mediator.mediate(msgCtx);
+    }
+
+    private void sendThroughReplySeq(MessageContext outCtx) {
+        Mediator mediator = replySeq != null ? outCtx.getSequence(replySeq) : null;
+        if (mediator == null) {
+            deactivate();
+            log.error("Can't Send the Out Message , Sequence " + replySeq + " does not Exist. " +
+                    "Deactivated the message processor");
+            return;
+        }
+        mediator.mediate(outCtx);
+    }
+
+    private boolean isNonRetryErrorCode(String errorMsg) {
+        if (nonRetryStatusCodes != null && errorMsg != null) {
+            for (String code : nonRetryStatusCodes) {
+                if (errorMsg.contains(code)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes the messages from the store as they arrive and forwards them
+     */
+    private class Dispatcher implements Runnable {
+
+        public void run() {
+            while (running) {
+                try {
+                    if (!isActivated.get() || messageConsumer == null) {
+                        await();
+                        continue;
+                    }
+
+                    List<MessageContext> batch = messageConsumer.receive(batchSize);
+                    if (batch.isEmpty()) {
+                        await();
+                        continue;
+                    }
+                    forward(batch);
+
+                } catch (InterruptedException e) {
+                    // stopped
+                    break;
+                } catch (Throwable t) {
+                    // All the possible recoverable exceptions are handled case by case and yet if
+                    // it comes this far we have to deactivate the processor
+                    log.fatal("Deactivating the message processor [" + getName() + "]", t);
+                    deactivate();
+                }
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("Exiting the dispatcher of message processor [" + getName() + "]");
+            }
+        }
+    }
+}
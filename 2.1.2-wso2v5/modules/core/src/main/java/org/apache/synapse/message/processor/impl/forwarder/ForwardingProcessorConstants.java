@@ -59,4 +59,19 @@ public final class ForwardingProcessorConstants {
      * Indicates if the message processor need not retry for certain http status codes
      */
     public static final String NON_RETRY_STATUS_CODES = "non.retry.status.codes";
+
+    /**
+     * Maximum number of messages taken from the store at once by the event driven processor
+     */
+    public static final String BATCH_SIZE = "batch.size";
+
+    /**
+     * Number of messages the event driven processor sends concurrently
+     */
+    public static final String MAX_CONCURRENT_SENDS = "max.concurrent.sends";
+
+    /**
+     * Upper bound of the retry interval, which is doubled on each failed retry
+     */
+    public static final String MAX_RETRY_INTERVAL = "client.max.retry.interval";
 }
@@ -271,22 +271,7 @@ public class ForwardingService implements InterruptableJob, Service {
                     try {
                         // For each retry we need to have a fresh copy of the actual message. otherwise retry may not
                         // work as expected.
-                        messageContext.setEnvelope(MessageHelper.cloneSOAPEnvelope(originalEnvelop));
-
-                        OMElement firstChild = null; //
-                        org.apache.axis2.context.MessageContext origAxis2Ctx = ((Axis2MessageContext) messageContext).getAxis2MessageContext();
-
-                        if (JsonUtil.hasAJsonPayload(origAxis2Ctx)) {
-                            firstChild = origAxis2Ctx.getEnvelope().getBody().getFirstElement();
-                        } // Had to do this because MessageHelper#cloneSOAPEnvelope does not clone OMSourcedElemImpl correctly.
-
-                        if (JsonUtil.hasAJsonPayload(firstChild)) { //
-                            OMElement clonedFirstElement = messageContext.getEnvelope().getBody().getFirstElement();
-                            if (clonedFirstElement != null) {
-                                clonedFirstElement.detach();
-                                messageContext.getEnvelope().getBody().addChild(firstChild);
-                            }
-                        }// Had to do this because MessageHelper#cloneSOAPEnvelope does not clone OMSourcedElemImpl correctly.
+                        setFreshEnvelope(messageContext, originalEnvelop);
 
                         outCtx = sender.send(ep, messageContext);
                         isSuccessful = true;
@@ -379,6 +364,31 @@ public class ForwardingService implements InterruptableJob, Service {
         return true;
     }
 
+    /**
+     * Sets a fresh copy of the given original envelope to the message to be sent
+     *
+     * @param messageContext message to be sent
+     * @param originalEnvelop original envelope of the message
+     */
+    static void setFreshEnvelope(MessageContext messageContext, SOAPEnvelope originalEnvelop) {
+        messageContext.setEnvelope(MessageHelper.cloneSOAPEnvelope(originalEnvelop));
+
+        OMElement firstChild = null; //
+        org.apache.axis2.context.MessageContext origAxis2Ctx = ((Axis2MessageContext) messageContext).getAxis2MessageContext();
+
+        if (JsonUtil.hasAJsonPayload(origAxis2Ctx)) {
+            firstChild = origAxis2Ctx.getEnvelope().getBody().getFirstElement();
+        } // Had to do this because MessageHelper#cloneSOAPEnvelope does not clone OMSourcedElemImpl correctly.
+
+        if (JsonUtil.hasAJsonPayload(firstChild)) { //
+            OMElement clonedFirstElement = messageContext.getEnvelope().getBody().getFirstElement();
+            if (clonedFirstElement != null) {
+                clonedFirstElement.detach();
+                messageContext.getEnvelope().getBody().addChild(firstChild);
+            }
+        }// Had to do this because MessageHelper#cloneSOAPEnvelope does not clone OMSourcedElemImpl correctly.
+    }
+
     public void sendThroughFaultSeq(MessageContext msgCtx) {
         if (faultSeq == null) {
             log.warn("Failed to send the message through the fault sequence, Sequence name " + faultSeq + " does not Exist.");
@@ -21,6 +21,7 @@ package org.apache.synapse.message.store;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.MessageContext;
 import org.apache.synapse.commons.jmx.MBeanRegistrar;
 import org.apache.synapse.config.SynapseConfiguration;
 import org.apache.synapse.core.SynapseEnvironment;
@@ -30,6 +31,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
@@ -82,7 +85,7 @@ public abstract class AbstractMessageStore implements MessageStore {
      * List that holds the MessageStore observers registered with the Message Store
      */
     protected List<MessageStoreObserver> messageStoreObservers =
-            new ArrayList<MessageStoreObserver>();
+            new CopyOnWriteArrayList<MessageStoreObserver>();
 
     protected Lock lock = new ReentrantLock();
 
@@ -142,7 +145,7 @@ public abstract class AbstractMessageStore implements MessageStore {
      * Notify Message Addition to the observers
      * @param messageId of the Message added.
      */
-    protected void notifyMessageAddition(String messageId) {
+    public void notifyMessageAddition(String messageId) {
         for(MessageStoreObserver o : messageStoreObservers) {
             o.messageAdded(messageId);
         }
@@ -152,7 +155,7 @@ public abstract class AbstractMessageStore implements MessageStore {
      * Notify Message removal to the observers
      * @param messageId of the Message added
      */
-    protected void notifyMessageRemoval(String messageId) {
+    public void notifyMessageRemoval(String messageId) {
         for(MessageStoreObserver o : messageStoreObservers) {
             o.messageRemoved(messageId);
         }
@@ -162,6 +165,22 @@ public abstract class AbstractMessageStore implements MessageStore {
         return -1;
     }
 
+    public List<MessageContext> poll(int maxMessages) {
+        List<MessageContext> messages = new ArrayList<MessageContext>();
+        try {
+            while (messages.size() < maxMessages) {
+                MessageContext message = remove();
+                if (message == null) {
+                    break;
+                }
+                messages.add(message);
+            }
+        } catch (NoSuchElementException ignore) {
+            // the store is empty
+        }
+        return messages;
+    }
+
     public Map<String, Object> getParameters() {
         return Collections.unmodifiableMap(parameters);
     }
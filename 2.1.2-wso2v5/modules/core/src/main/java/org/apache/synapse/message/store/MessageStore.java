@@ -87,6 +87,14 @@ public interface MessageStore extends ManagedLifecycle, Nameable, SynapseArtifac
      */
     public MessageContext remove() throws NoSuchElementException;
 
+    /**
+     * Retrieves and removes up to the given number of Messages from the head of this store.
+     *
+     * @param maxMessages maximum number of messages to be removed
+     * @return the removed messages, an empty list if the store is empty
+     */
+    public List<MessageContext> poll(int maxMessages);
+
     /**
      * Delete all the Messages in the Message Store
      */
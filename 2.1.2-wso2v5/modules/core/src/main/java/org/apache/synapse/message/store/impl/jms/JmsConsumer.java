@@ -30,6 +30,9 @@ import javax.jms.Message;
 import javax.jms.ObjectMessage;
 import javax.jms.Session;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class JmsConsumer implements MessageConsumer {
     private static final Log logger = LogFactory.getLog(JmsConsumer.class.getName());
 
@@ -124,6 +127,20 @@ public class JmsConsumer implements MessageConsumer {
         return null;
     }
 
+    /**
+     * Receives a single message only, as only the last received message is acknowledged.
+     */
+    public List<MessageContext> receive(int maxMessages) {
+        List<MessageContext> messages = new ArrayList<MessageContext>();
+        if (maxMessages > 0) {
+            MessageContext message = receive();
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
     public boolean ack() {
         boolean result = cachedMessage.ack();
         if (result) {
@@ -98,6 +98,7 @@ public class JmsProducer implements MessageProducer {
             logger.debug(getId() + ". Stored MessageID : " + synCtx.getMessageID());
         }
         store.enqueued();
+        store.notifyMessageAddition(synCtx.getMessageID());
         return true;
     }
 
@@ -23,6 +23,9 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.message.MessageConsumer;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
 
 public class InMemoryConsumer implements MessageConsumer {
@@ -34,41 +37,57 @@ public class InMemoryConsumer implements MessageConsumer {
     /** ID of this message consumer instance */
     private String idString;
 
-    private MessageContext lastMessage;
-
-    private final Object queueLock;
+    /** Number of messages received since the last ack */
+    private int received;
 
     public InMemoryConsumer(InMemoryStore store) {
         this.store = store;
-        this.queueLock = store.getQLock();
     }
 
     public MessageContext receive() {
-        MessageContext message;
-        synchronized (queueLock) {
+        MessageContext message = queue.peek();
+        if (message == null) {
+            store.drainOverflow();
             message = queue.peek();
-            if (logger.isDebugEnabled()) {
-                if (message != null) {
-                    logger.debug(getId() + " received MessageID : " + message.getMessageID());
-                }
+        }
+        if (logger.isDebugEnabled()) {
+            if (message != null) {
+                logger.debug(getId() + " received MessageID : " + message.getMessageID());
             }
-            lastMessage = message;
-
         }
+        received = message != null ? 1 : 0;
         return message;
     }
 
+    public List<MessageContext> receive(int maxMessages) {
+        List<MessageContext> messages = new ArrayList<MessageContext>();
+        if (queue.isEmpty()) {
+            store.drainOverflow();
+        }
+        Iterator<MessageContext> itr = queue.iterator();
+        while (messages.size() < maxMessages && itr.hasNext()) {
+            messages.add(itr.next());
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug(getId() + " received " + messages.size() + " messages");
+        }
+        received = messages.size();
+        return messages;
+    }
+
     public boolean ack() {
-        if (logger.isDebugEnabled() && lastMessage != null) {
+        if (logger.isDebugEnabled() && received > 0) {
             logger.debug(getId() + " ack");
         }
-        synchronized (queueLock) {
-            Object o = queue.poll();
-            if (o != null) {
+        // a plain ack without a receive acknowledges the head of the store as before
+        int count = Math.max(received, 1);
+        for (int i = 0; i < count; i++) {
+            if (queue.poll() != null) {
                 store.dequeued();
             }
-            lastMessage = null;
         }
+        received = 0;
+        store.drainOverflow();
         return true;
     }
 
@@ -24,6 +24,8 @@ import org.apache.synapse.MessageContext;
 import org.apache.synapse.message.MessageProducer;
 
 import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 public class InMemoryProducer implements MessageProducer {
     private static final Log logger = LogFactory.getLog(InMemoryProducer.class.getName());
@@ -34,19 +36,24 @@ public class InMemoryProducer implements MessageProducer {
     /** */
     private String idString;
 
-    private final Object queueLock;
-
     public InMemoryProducer(InMemoryStore store) {
         this.store = store;
-        this.queueLock = store.getQLock();
     }
 
     public boolean storeMessage(MessageContext synCtx) {
         boolean result = false;
         if (synCtx != null) {
             synCtx.getEnvelope().build();
-            synchronized (queueLock) {
-                result = queue.offer(synCtx);
+            if (store.hasOverflowed()) {
+                // keep the order, earlier messages are still waiting in the overflow store
+                result = store.overflow(synCtx);
+                store.drainOverflow();
+            } else if (queue.offer(synCtx)) {
+                store.enqueued();
+                result = true;
+            } else {
+                // the store is full
+                result = storeToFullStore(synCtx);
             }
             if (!result) {
                 logger.warn(getId() + " ignored MessageID : " + synCtx.getMessageID());
@@ -56,11 +63,38 @@ public class InMemoryProducer implements MessageProducer {
             logger.debug(getId() + " stored MessageID: " + synCtx.getMessageID());
         }
         if (result) {
-            store.enqueued();
+            store.notifyMessageAddition(synCtx.getMessageID());
         }
         return result;
     }
 
+    private boolean storeToFullStore(MessageContext synCtx) {
+        String policy = store.getFullPolicy();
+        if (InMemoryStore.POLICY_BLOCK.equals(policy) && queue instanceof BlockingQueue) {
+            if (logger.isDebugEnabled()) {
+                logger.debug(getId() + " store is full, waiting for space to store MessageID : " +
+                        synCtx.getMessageID());
+            }
+            try {
+                if (((BlockingQueue<MessageContext>) queue).offer(
+                        synCtx, store.getBlockTimeout(), TimeUnit.MILLISECONDS)) {
+                    store.enqueued();
+                    return true;
+                }
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+
+        } else if (InMemoryStore.POLICY_OVERFLOW.equals(policy)) {
+            // the message is counted by the overflow store, until it is moved back
+            return store.overflow(synCtx);
+        }
+
+        return false;
+    }
+
     public boolean cleanup() {
         if (logger.isDebugEnabled()) {
             logger.debug(getId() + " cleanup");
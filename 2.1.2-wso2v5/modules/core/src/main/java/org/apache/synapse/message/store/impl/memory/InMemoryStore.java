@@ -21,24 +21,75 @@ package org.apache.synapse.message.store.impl.memory;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseException;
 import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.message.MessageConsumer;
 import org.apache.synapse.message.MessageProducer;
 import org.apache.synapse.message.store.AbstractMessageStore;
 import org.apache.synapse.message.store.Constants;
+import org.apache.synapse.message.store.MessageStore;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Message store which keeps the messages in memory. By default the store is unbounded. A
+ * capacity can be given with the {@link #CAPACITY} parameter, in which case the messages are
+ * kept in a fixed size array, and the {@link #FULL_POLICY} parameter decides what happens to
+ * a message which arrives at a full store:
+ * <ul>
+ *   <li>reject - the message is not stored (default)</li>
+ *   <li>block - the producer waits for up to {@link #BLOCK_TIMEOUT} milliseconds for space</li>
+ *   <li>overflow - the message is stored in the store named by {@link #OVERFLOW_STORE}, for
+ *   example a persistent JMS store</li>
+ * </ul>
+ * Messages which overflowed are moved back in to this store as soon as messages leave it. While
+ * any of them are still in the overflow store, new messages are sent to the overflow store as
+ * well, so that the messages are still delivered in the order they arrived.
+ * <p>
+ * Both queues used by the store are thread safe and keep their size, so neither producers nor
+ * consumers need any additional locking.
+ */
 public class InMemoryStore extends AbstractMessageStore {
     private static final Log logger = LogFactory.getLog(InMemoryStore.class.getName());
 
-    private Queue<MessageContext> queue = new ConcurrentLinkedQueue<MessageContext>();
+    /** Maximum number of messages kept in the store */
+    public static final String CAPACITY = "store.memory.capacity";
+    /** What to do with a message arriving at a full store, one of reject, block or overflow */
+    public static final String FULL_POLICY = "store.memory.full.policy";
+    /** Time in milliseconds a producer waits for space with the block policy */
+    public static final String BLOCK_TIMEOUT = "store.memory.block.timeout";
+    /** Name of the message store which takes the messages with the overflow policy */
+    public static final String OVERFLOW_STORE = "store.memory.overflow.store";
+
+    public static final String POLICY_REJECT = "reject";
+    public static final String POLICY_BLOCK = "block";
+    public static final String POLICY_OVERFLOW = "overflow";
+
+    private static final long DEFAULT_BLOCK_TIMEOUT = 30000;
+
+    private BlockingQueue<MessageContext> queue = new LinkedBlockingQueue<MessageContext>();
+
+    private int capacity = Integer.MAX_VALUE;
+
+    private String fullPolicy = POLICY_REJECT;
+
+    private long blockTimeout = DEFAULT_BLOCK_TIMEOUT;
+
+    private String overflowStoreName = null;
 
-    private final Object queueLock = new Object();
+    /** Number of messages of this store which are waiting in the overflow store */
+    private final AtomicInteger overflowed = new AtomicInteger(0);
+
+    /** Whether a thread is moving messages back from the overflow store */
+    private final AtomicBoolean draining = new AtomicBoolean(false);
 
     public MessageProducer getProducer() {
         InMemoryProducer producer = new InMemoryProducer(this);
@@ -65,50 +116,54 @@ public class InMemoryStore extends AbstractMessageStore {
     }
 
     public int size() {
-        synchronized (queueLock) {
-            return queue.size();
-        }
+        return queue.size();
     }
 
     public MessageContext remove() throws NoSuchElementException {
-        MessageContext message;
-        synchronized (queueLock) {
-            message = queue.remove();
+        MessageContext message = queue.remove();
+        dequeued();
+        if (logger.isDebugEnabled()) {
+            logger.debug(nameString() + " removed MessageID:" + message.getMessageID() + " => true");
         }
-        if (message != null) {
+        drainOverflow();
+        return message;
+    }
+
+    public List<MessageContext> poll(int maxMessages) {
+        List<MessageContext> messages = new ArrayList<MessageContext>();
+        queue.drainTo(messages, maxMessages);
+        for (int i = 0; i < messages.size(); i++) {
             dequeued();
-            if (logger.isDebugEnabled()) {
-                logger.debug(nameString() + " removed MessageID:" + message.getMessageID() + " => true");
-            }
         }
-        return message;
+        if (logger.isDebugEnabled()) {
+            logger.debug(nameString() + " removed " + messages.size() + " messages");
+        }
+        drainOverflow();
+        return messages;
     }
 
     public void clear() {
-        synchronized (queueLock) {
-            while (!queue.isEmpty()) {
-                remove();
-            }
+        List<MessageContext> messages = new ArrayList<MessageContext>();
+        queue.drainTo(messages);
+        for (int i = 0; i < messages.size(); i++) {
+            dequeued();
         }
         if (logger.isDebugEnabled()) {
             logger.debug(nameString() + " cleared InMemoryStore...");
         }
+        drainOverflow();
     }
 
     public MessageContext remove(final String messageID) {
-        MessageContext message = null;
-        synchronized (queueLock) {
-            for (MessageContext m : queue) {
-                if (m.getMessageID().equals(messageID)) {
-                    message = m;
-                    break;
-                }
+        MessageContext message = get(messageID);
+        if (message != null) {
+            boolean result = queue.remove(message);
+            if (result) {
+                dequeued();
+                drainOverflow();
             }
-            if (message != null) {
-                boolean result = queue.remove(message);
-                if (logger.isDebugEnabled()) {
-                    logger.debug(nameString() + " removed MessageID:" + message.getMessageID() + " => " + result);
-                }
+            if (logger.isDebugEnabled()) {
+                logger.debug(nameString() + " removed MessageID:" + message.getMessageID() + " => " + result);
             }
         }
         return message;
@@ -118,39 +173,73 @@ public class InMemoryStore extends AbstractMessageStore {
         if (index < 0 || index >= queue.size()) {
             return null;
         }
-        MessageContext message = null;
-        synchronized (queueLock) {
-            int i = 0;
-            for (MessageContext m : queue) {
-                if (i == index) {
-                    message = m;
-                    break;
-                }
-                ++i;
+        int i = 0;
+        for (MessageContext m : queue) {
+            if (i == index) {
+                return m;
             }
+            ++i;
         }
-        return message;
+        return null;
     }
 
     public List<MessageContext> getAll() {
-        List<MessageContext> list = new ArrayList<MessageContext>();
-        synchronized (queueLock) {
-            list.addAll(queue);
-        }
-        return list;
+        return new ArrayList<MessageContext>(queue);
     }
 
     public MessageContext get(String messageId) {
-        MessageContext message = null;
-        synchronized (queueLock) {
-            for (MessageContext m : queue) {
-                if (m.getMessageID().equals(messageId)) {
-                    message = m;
-                    break;
-                }
+        for (MessageContext m : queue) {
+            if (m.getMessageID().equals(messageId)) {
+                return m;
             }
         }
-        return message;
+        return null;
+    }
+
+    public void setParameters(Map<String, Object> parameters) {
+        super.setParameters(parameters);
+
+        String capacityParam = (String) this.parameters.get(CAPACITY);
+        if (capacityParam != null) {
+            try {
+                capacity = Integer.parseInt(capacityParam.trim());
+            } catch (NumberFormatException e) {
+                throw new SynapseException("Invalid capacity : " + capacityParam +
+                        " for the message store : " + getName(), e);
+            }
+            if (capacity <= 0) {
+                throw new SynapseException("Capacity of the message store : " + getName() +
+                        " must be a positive number");
+            }
+            queue = new ArrayBlockingQueue<MessageContext>(capacity);
+        }
+
+        String policyParam = (String) this.parameters.get(FULL_POLICY);
+        if (policyParam != null) {
+            policyParam = policyParam.trim();
+            if (!POLICY_REJECT.equals(policyParam) && !POLICY_BLOCK.equals(policyParam) &&
+                    !POLICY_OVERFLOW.equals(policyParam)) {
+                throw new SynapseException("Invalid full policy : " + policyParam +
+                        " for the message store : " + getName());
+            }
+            fullPolicy = policyParam;
+        }
+
+        String timeoutParam = (String) this.parameters.get(BLOCK_TIMEOUT);
+        if (timeoutParam != null) {
+            try {
+                blockTimeout = Long.parseLong(timeoutParam.trim());
+            } catch (NumberFormatException e) {
+                throw new SynapseException("Invalid block timeout : " + timeoutParam +
+                        " for the message store : " + getName(), e);
+            }
+        }
+
+        overflowStoreName = (String) this.parameters.get(OVERFLOW_STORE);
+        if (POLICY_OVERFLOW.equals(fullPolicy) && overflowStoreName == null) {
+            throw new SynapseException("The parameter : " + OVERFLOW_STORE + " is required " +
+                    "for the overflow policy of the message store : " + getName());
+        }
     }
 
     public void init(SynapseEnvironment se) {
@@ -170,8 +259,108 @@ public class InMemoryStore extends AbstractMessageStore {
         super.destroy();
     }
 
+    /**
+     * @deprecated the queue of the store is thread safe, no external locking is needed
+     */
     public Object getQLock() {
-        return queueLock;
+        return this;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public String getFullPolicy() {
+        return fullPolicy;
+    }
+
+    public long getBlockTimeout() {
+        return blockTimeout;
+    }
+
+    /**
+     * Get the store which takes the messages arriving at this store when it is full
+     *
+     * @return the overflow store or null if there is no such store
+     */
+    public MessageStore getOverflowStore() {
+        if (overflowStoreName == null || synapseConfiguration == null) {
+            return null;
+        }
+        return synapseConfiguration.getMessageStore(overflowStoreName);
+    }
+
+    /**
+     * Store a message in the overflow store
+     *
+     * @param synCtx the message
+     * @return true if the overflow store took the message
+     */
+    boolean overflow(MessageContext synCtx) {
+        MessageStore overflowStore = getOverflowStore();
+        if (overflowStore == null) {
+            logger.warn(nameString() + " store is full and the overflow store is not available");
+            return false;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug(nameString() + " storing MessageID : " + synCtx.getMessageID() +
+                    " in the overflow store : " + overflowStore.getName());
+        }
+        overflowed.incrementAndGet();
+        if (overflowStore.getProducer().storeMessage(synCtx)) {
+            return true;
+        }
+        overflowed.decrementAndGet();
+        return false;
+    }
+
+    /**
+     * @return true if messages of this store are waiting in the overflow store
+     */
+    boolean hasOverflowed() {
+        return overflowed.get() > 0;
+    }
+
+    /**
+     * Move the messages waiting in the overflow store back in to this store, in their order,
+     * as long as there is space for them. Only one thread moves messages at a time, the others
+     * return immediately.
+     */
+    void drainOverflow() {
+        if (overflowed.get() == 0 || !draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            MessageStore overflowStore = getOverflowStore();
+            if (overflowStore == null) {
+                return;
+            }
+            MessageConsumer consumer = overflowStore.getConsumer();
+            try {
+                while (overflowed.get() > 0 && queue.remainingCapacity() > 0) {
+                    MessageContext message = consumer.receive();
+                    if (message == null) {
+                        // not visible in the overflow store yet
+                        break;
+                    }
+                    if (!queue.offer(message)) {
+                        // a producer took the space, leave the message in the overflow store
+                        break;
+                    }
+                    consumer.ack();
+                    overflowed.decrementAndGet();
+                    enqueued();
+                    if (logger.isDebugEnabled()) {
+                        logger.debug(nameString() + " moved MessageID : " +
+                                message.getMessageID() + " back from the overflow store");
+                    }
+                }
+            } finally {
+                consumer.cleanup();
+            }
+        } finally {
+            draining.set(false);
+        }
     }
 
     private String nameString() {
@@ -44,6 +44,11 @@ public class API extends AbstractRESTProcessor implements ManagedLifecycle {
     private Map<String,Resource> resources = new LinkedHashMap<String,Resource>();
     private List<Handler> handlers = new ArrayList<Handler>();
 
+    /**
+     * Resources keyed by the HTTP methods they accept, built on first use
+     */
+    private volatile Map<String, Resource[]> resourcesByMethod;
+
     private int protocol = RESTConstants.PROTOCOL_HTTP_AND_HTTPS;
 
     private VersionStrategy versionStrategy = new DefaultStrategy(this);
@@ -135,6 +140,7 @@ public class API extends AbstractRESTProcessor implements ManagedLifecycle {
             }
         }
         resources.put(resource.getName(), resource);
+        resourcesByMethod = null;
     }
 
     private boolean resourceMatches(Resource r1, Resource r2) {
@@ -326,8 +332,11 @@ public class API extends AbstractRESTProcessor implements ManagedLifecycle {
                     msgCtx.getIncomingTransportName() + "://" + hostHeader);
         }
 
-        Set<Resource> acceptableResources = new HashSet<Resource>();
-        for (Resource r : resources.values()) {
+        // only the resources accepting the HTTP method of the request are evaluated
+        String method = (String) msgCtx.getProperty(Constants.Configuration.HTTP_METHOD);
+        synCtx.setProperty(RESTConstants.REST_METHOD, method);
+        List<Resource> acceptableResources = new ArrayList<Resource>();
+        for (Resource r : getResources(method)) {
             if (r.canProcess(synCtx)) {
                 acceptableResources.add(r);
             }
@@ -357,6 +366,44 @@ public class API extends AbstractRESTProcessor implements ManagedLifecycle {
         }
     }
 
+    /**
+     * Get the resources which may accept requests with the given HTTP method
+     *
+     * @param method HTTP method of the request
+     * @return the resources, in the order they were added
+     */
+    private Resource[] getResources(String method) {
+        Map<String, Resource[]> index = resourcesByMethod;
+        if (index == null) {
+            index = new HashMap<String, Resource[]>();
+            List<Resource> anyMethod = new ArrayList<Resource>();
+            for (Resource r : resources.values()) {
+                if (r.getMethods().length == 0) {
+                    anyMethod.add(r);
+                }
+            }
+            index.put(null, anyMethod.toArray(new Resource[anyMethod.size()]));
+
+            for (RESTConstants.METHODS m : RESTConstants.METHODS.values()) {
+                List<Resource> list = new ArrayList<Resource>();
+                for (Resource r : resources.values()) {
+                    // OPTIONS requests are accepted by all resources
+                    if (RESTConstants.METHOD_OPTIONS.equals(m.name()) ||
+                            r.getMethods().length == 0 ||
+                            Arrays.asList(r.getMethods()).contains(m.name())) {
+                        list.add(r);
+                    }
+                }
+                index.put(m.name(), list.toArray(new Resource[list.size()]));
+            }
+            resourcesByMethod = index;
+        }
+
+        Resource[] candidates = index.get(method);
+        // requests with other methods can only be accepted by resources without methods
+        return candidates != null ? candidates : index.get(null);
+    }
+
     private String getHostHeader(org.apache.axis2.context.MessageContext msgCtx) {
         Map transportHeaders = (Map) msgCtx.getProperty(
                 org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS);
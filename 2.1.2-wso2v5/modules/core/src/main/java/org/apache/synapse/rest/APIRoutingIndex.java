@@ -0,0 +1,197 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.apache.synapse.rest;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.rest.version.DefaultStrategy;
+import org.apache.synapse.rest.version.URLBasedVersionStrategy;
+
+import java.util.*;
+
+/**
+ * A routing index over a set of APIs, used to find the APIs which may process a request
+ * without evaluating every deployed API. APIs are kept in a trie keyed by the segments of
+ * their contexts, and APIs with URL based versions are further keyed by the version segment
+ * which follows the context. Looking up a request walks the segments of the request path once,
+ * so the cost depends on the length of the path instead of the number of APIs.<br/>
+ * The index only narrows down the candidates, each candidate is still validated by
+ * {@link API#canProcess(MessageContext)}. Candidates are returned in the same order the APIs
+ * were evaluated before: APIs with a specific version first, then the APIs with the default
+ * version strategy and the root API last, each group in the order of the given collection.
+ * An index is immutable and is replaced as a whole when the deployed APIs change.
+ */
+public class APIRoutingIndex {
+
+    private static final int SPECIFIC_VERSION = 0;
+    private static final int DEFAULT_VERSION = 1;
+    private static final int ROOT_CONTEXT = 2;
+
+    private final Node root = new Node();
+
+    /** APIs keyed by their qualified names, used to dispatch responses */
+    private final Map<String, List<IndexedAPI>> apisByName = new HashMap<String, List<IndexedAPI>>();
+
+    /** All the APIs in the order of evaluation */
+    private final List<API> apis = new ArrayList<API>();
+
+    public APIRoutingIndex(Collection<API> apiCollection) {
+        List<IndexedAPI> indexed = new ArrayList<IndexedAPI>();
+        int ordinal = 0;
+        for (API api : apiCollection) {
+            IndexedAPI entry = new IndexedAPI(api, getGroup(api), ordinal++);
+            indexed.add(entry);
+
+            Node node = root;
+            for (String segment : getSegments(api.getContext())) {
+                Node child = node.children.get(segment);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(segment, child);
+                }
+                node = child;
+            }
+            if (api.getVersionStrategy() instanceof URLBasedVersionStrategy) {
+                add(node.apisByVersion, api.getVersion(), entry);
+            } else {
+                node.apis.add(entry);
+            }
+            add(apisByName, api.getName(), entry);
+        }
+
+        Collections.sort(indexed);
+        for (IndexedAPI entry : indexed) {
+            apis.add(entry.api);
+        }
+    }
+
+    private static int getGroup(API api) {
+        if ("/".equals(api.getContext())) {
+            return ROOT_CONTEXT;
+        } else if (api.getVersionStrategy().getClass().getName().equals(
+                DefaultStrategy.class.getName())) {
+            //APIs whose VersionStrategy is bound to an instance of DefaultStrategy are
+            //evaluated last, otherwise they will be chosen without matching the version.
+            return DEFAULT_VERSION;
+        }
+        return SPECIFIC_VERSION;
+    }
+
+    private static void add(Map<String, List<IndexedAPI>> map, String key, IndexedAPI entry) {
+        List<IndexedAPI> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<IndexedAPI>(1);
+            map.put(key, list);
+        }
+        list.add(entry);
+    }
+
+    /**
+     * Split a context or a request path (without the query) into its segments. The empty
+     * path and the root path, as well as the empty and the root context which prefix every
+     * path, have no segments.
+     */
+    private static String[] getSegments(String path) {
+        if (path.length() == 0 || "/".equals(path)) {
+            return new String[0];
+        }
+        return path.substring(1).split("/", -1);
+    }
+
+    /**
+     * Find the APIs which may process the given message
+     *
+     * @param synCtx the message to be dispatched
+     * @return the candidate APIs in the order they should be evaluated
+     */
+    public List<API> getCandidates(MessageContext synCtx) {
+        List<IndexedAPI> candidates = new ArrayList<IndexedAPI>();
+        if (synCtx.isResponse()) {
+            List<IndexedAPI> named = apisByName.get(
+                    (String) synCtx.getProperty(RESTConstants.SYNAPSE_REST_API));
+            if (named != null) {
+                candidates.addAll(named);
+            }
+        } else {
+            String path = RESTUtils.getFullRequestPath(synCtx);
+            int index = path.indexOf('?');
+            if (index != -1) {
+                path = path.substring(0, index);
+            }
+            if (path.length() > 0 && !path.startsWith("/")) {
+                // not a path an API context could be a prefix of, leave it to the APIs
+                return apis;
+            }
+
+            // an API matches if its context is a prefix of the path (in whole segments)
+            String[] segments = getSegments(path);
+            Node node = root;
+            for (int i = 0; node != null; i++) {
+                String next = i < segments.length ? segments[i] : null;
+                candidates.addAll(node.apis);
+                if (next != null) {
+                    List<IndexedAPI> versioned = node.apisByVersion.get(next);
+                    if (versioned != null) {
+                        candidates.addAll(versioned);
+                    }
+                    node = node.children.get(next);
+                } else {
+                    node = null;
+                }
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Collections.sort(candidates);
+        List<API> result = new ArrayList<API>(candidates.size());
+        for (IndexedAPI entry : candidates) {
+            result.add(entry.api);
+        }
+        return result;
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<String, Node>();
+        /** APIs with this context, which are not versioned by the URL */
+        private final List<IndexedAPI> apis = new ArrayList<IndexedAPI>(1);
+        /** APIs with this context, keyed by the version segment following the context */
+        private final Map<String, List<IndexedAPI>> apisByVersion =
+                new HashMap<String, List<IndexedAPI>>();
+    }
+
+    private static class IndexedAPI implements Comparable<IndexedAPI> {
+        private final API api;
+        private final int group;
+        private final int ordinal;
+
+        IndexedAPI(API api, int group, int ordinal) {
+            this.api = api;
+            this.group = group;
+            this.ordinal = ordinal;
+        }
+
+        public int compareTo(IndexedAPI other) {
+            if (group != other.group) {
+                return group < other.group ? -1 : 1;
+            }
+            return ordinal < other.ordinal ? -1 : (ordinal == other.ordinal ? 0 : 1);
+        }
+    }
+}
@@ -23,9 +23,6 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.core.axis2.Axis2MessageContext;
-import org.apache.synapse.rest.version.DefaultStrategy;
-
-import java.util.*;
 
 /**
  * This class is responsible for receiving requests from various sources and dispatching
@@ -65,27 +62,11 @@ public class RESTRequestHandler {
     }
 
     private boolean dispatchToAPI(MessageContext synCtx) {
-        Collection<API> apiSet = synCtx.getEnvironment().getSynapseConfiguration().getAPIs();
-        Collection<API> defaultStrategyApiSet=new ArrayList<API>();
-
-        API defaultAPI = null;
-        for (API api : apiSet) {
-            if ("/".equals(api.getContext())) {
-                defaultAPI = api;
-            }else if(api.getVersionStrategy().getClass().getName().equals(DefaultStrategy.class.getName())){
-                //APIs whose VersionStrategy is bound to an instance of DefaultStrategy, should be skipped and processed at last.
-                //Otherwise they will be always chosen to process the request without matching the version.
-                defaultStrategyApiSet.add(api);
-            } else if (api.canProcess(synCtx)) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Located specific API: " + api.getName() + " for processing message");
-                }
-                api.process(synCtx);
-                return true;
-            }
-        }
-
-        for (API api : defaultStrategyApiSet) {
+        // only the APIs whose context (and URL version) match the request path are evaluated,
+        // in the order of precedence of the APIs
+        APIRoutingIndex index = synCtx.getEnvironment().getSynapseConfiguration().
+                getAPIRoutingIndex();
+        for (API api : index.getCandidates(synCtx)) {
             if (api.canProcess(synCtx)) {
                 if (log.isDebugEnabled()) {
                     log.debug("Located specific API: " + api.getName() + " for processing message");
@@ -95,11 +76,6 @@ public class RESTRequestHandler {
             }
         }
 
-        if (defaultAPI != null && defaultAPI.canProcess(synCtx)) {
-            defaultAPI.process(synCtx);
-            return true;
-        }
-
         return false;
     }
 }
@@ -29,11 +29,17 @@ public class URITemplateBasedDispatcher implements RESTDispatcher {
 
     public Resource findResource(MessageContext synCtx, Collection<Resource> resources) {
         String url = RESTUtils.getSubRequestPath(synCtx);
+        Map<String,String> variables = null;
         for (Resource r : resources) {
             DispatcherHelper helper = r.getDispatcherHelper();
             if (helper instanceof URITemplateHelper) {
                 URITemplateHelper templateHelper = (URITemplateHelper) helper;
-                Map<String,String> variables = new HashMap<String,String>();
+                if (variables == null) {
+                    variables = new HashMap<String,String>();
+                } else {
+                    // discard anything a failed match may have left behind
+                    variables.clear();
+                }
                 if (templateHelper.getUriTemplate().matches(url, variables)) {
                     for (Map.Entry<String,String> entry : variables.entrySet()) {
                         synCtx.setProperty(RESTConstants.REST_URI_VARIABLE_PREFIX + entry.getKey(),
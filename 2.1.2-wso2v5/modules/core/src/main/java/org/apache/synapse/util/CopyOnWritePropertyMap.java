@@ -0,0 +1,210 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+
+package org.apache.synapse.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Property map of a message context forked from a parent message. All the forks of a message
+ * share a single snapshot of the parent properties, which is never modified, and each fork only
+ * keeps the properties it sets or removes itself. The list values of the snapshot are copied into
+ * each fork when it is created, on the thread forking the message, so that a fork never changes a
+ * list seen by another fork and reading a property never copies it.
+ * This class is not thread safe, just like the map of a message context.
+ */
+public class CopyOnWritePropertyMap extends AbstractMap<String, Object> {
+
+    /** The properties shared by all the forks */
+    private final Map<String, Object> shared;
+
+    /** The properties set by this fork */
+    private final Map<String, Object> overlay = new HashMap<String, Object>();
+
+    /** The shared properties removed by this fork */
+    private Set<String> removed = null;
+
+    @SuppressWarnings("unchecked")
+    public CopyOnWritePropertyMap(Map<String, Object> shared) {
+        this.shared = shared;
+        for (Entry<String, Object> entry : shared.entrySet()) {
+            if (entry.getValue() instanceof ArrayList) {
+                overlay.put(entry.getKey(),
+                        new ArrayList<Object>((ArrayList<Object>) entry.getValue()));
+            }
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (overlay.containsKey(key)) {
+            return overlay.get(key);
+        }
+        if (isRemoved(key)) {
+            return null;
+        }
+        return shared.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return overlay.containsKey(key) || (!isRemoved(key) && shared.containsKey(key));
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        Object old = get(key);
+        overlay.put(key, value);
+        if (removed != null) {
+            removed.remove(key);
+        }
+        return old;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        Object old = get(key);
+        overlay.remove(key);
+        if (shared.containsKey(key)) {
+            if (removed == null) {
+                removed = new HashSet<String>();
+            }
+            removed.add((String) key);
+        }
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        overlay.clear();
+        removed = new HashSet<String>(shared.keySet());
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                int size = overlay.size();
+                for (String key : shared.keySet()) {
+                    if (!overlay.containsKey(key) && !isRemoved(key)) {
+                        size++;
+                    }
+                }
+                return size;
+            }
+        };
+    }
+
+    private boolean isRemoved(Object key) {
+        return removed != null && removed.contains(key);
+    }
+
+    /**
+     * Iterates over a snapshot of the keys, so that removing an entry through the iterator does
+     * not disturb the iteration
+     */
+    private class EntryIterator implements Iterator<Entry<String, Object>> {
+
+        private final Iterator<String> keys;
+        private String current = null;
+
+        EntryIterator() {
+            Set<String> keySet = new HashSet<String>(overlay.keySet());
+            for (String key : shared.keySet()) {
+                if (!isRemoved(key)) {
+                    keySet.add(key);
+                }
+            }
+            keys = keySet.iterator();
+        }
+
+        public boolean hasNext() {
+            return keys.hasNext();
+        }
+
+        public Entry<String, Object> next() {
+            if (!keys.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current = keys.next();
+            return new PropertyEntry(current);
+        }
+
+        public void remove() {
+            if (current == null) {
+                throw new IllegalStateException();
+            }
+            CopyOnWritePropertyMap.this.remove(current);
+            current = null;
+        }
+    }
+
+    private class PropertyEntry implements Entry<String, Object> {
+
+        private final String key;
+
+        PropertyEntry(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Object getValue() {
+            return get(key);
+        }
+
+        public Object setValue(Object value) {
+            return put(key, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry e = (Entry) o;
+            Object value = getValue();
+            return key.equals(e.getKey()) &&
+                    (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+    }
+}
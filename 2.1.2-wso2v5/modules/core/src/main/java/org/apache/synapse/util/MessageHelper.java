@@ -41,6 +41,7 @@ import org.apache.synapse.commons.json.JsonUtil;
 import org.apache.synapse.continuation.ContinuationStackManager;
 import org.apache.synapse.continuation.SeqContinuationState;
 import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.endpoints.EndpointRequestTracker;
 import org.apache.synapse.mediators.eip.EIPConstants;
 import org.apache.synapse.transport.passthru.PassThroughConstants;
 import org.apache.synapse.transport.passthru.Pipe;
@@ -103,6 +104,10 @@ public class MessageHelper {
 
         // copy all the synapse level properties to the newCtx
         for (Object o : synCtx.getPropertyKeySet()) {
+            if (EndpointRequestTracker.TRACKER.equals(o)) {
+                // the request being tracked is the one of the original message
+                continue;
+            }
             // If there are non String keyed properties neglect them rather than trow exception
             if (o instanceof String) {
             	if(synCtx.getProperty((String) o)  != null && synCtx.getProperty((String) o) instanceof StatisticsRecord){
@@ -178,6 +183,101 @@ public class MessageHelper {
         return newCtx;
     }
     
+    /**
+     * Take a snapshot of the properties of the given message, to be shared by all the message
+     * contexts forked from it with {@link #forkMessageContext}. The snapshot should be taken
+     * once, before the first fork, and must not be modified afterwards. List values are copied
+     * into the snapshot here, on the thread of the parent message, so that the forks never read
+     * a list which the parent may still change.
+     *
+     * @param synCtx the parent message
+     * @return the snapshot of the properties
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> getSharedProperties(MessageContext synCtx) {
+        Map<String, Object> shared = new HashMap<String, Object>();
+
+        // set the parent correlation details to the forked MCs -
+        //                              for the use of aggregation like tasks
+        shared.put(EIPConstants.AGGREGATE_CORRELATION, synCtx.getMessageID());
+
+        for (Object o : synCtx.getPropertyKeySet()) {
+            if (EndpointRequestTracker.TRACKER.equals(o)) {
+                // the request being tracked is the one of the parent message
+                continue;
+            }
+            // If there are non String keyed properties neglect them rather than trow exception
+            if (o instanceof String) {
+                Object obj = synCtx.getProperty((String) o);
+                if (obj instanceof StatisticsRecord) {
+                    shared.put(SynapseConstants.STATISTICS_STACK,
+                            StatisticsRecordFactory.getStatisticsRecord(synCtx));
+                } else if (obj instanceof ArrayList) {
+                    shared.put((String) o, cloneArrayList((ArrayList<Object>) obj));
+                } else if (obj != null) {
+                    shared.put((String) o, obj);
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Creates a lightweight fork of the given message for one branch of a split. Unlike
+     * {@link #cloneMessageContext}, the envelope of the parent is not cloned, the given envelope
+     * which has been prepared for the branch is used as it is, and the properties of the parent
+     * are not copied but shared through a {@link CopyOnWritePropertyMap}.
+     *
+     * @param synCtx the parent message
+     * @param sharedProperties the snapshot of the parent properties, as returned by
+     *                         {@link #getSharedProperties}
+     * @param envelope the envelope of the fork, which must not be used by any other message
+     * @return the forked Synapse MessageContext
+     * @throws AxisFault if there is a failure in creating the new Synapse MC
+     */
+    public static MessageContext forkMessageContext(MessageContext synCtx,
+                                                    Map<String, Object> sharedProperties,
+                                                    SOAPEnvelope envelope) throws AxisFault {
+
+        MessageContext newCtx = synCtx.getEnvironment().createMessageContext();
+        Axis2MessageContext axis2MC = (Axis2MessageContext) newCtx;
+        axis2MC.setAxis2MessageContext(cloneAxis2MessageContext(
+                ((Axis2MessageContext) synCtx).getAxis2MessageContext(), envelope));
+
+        newCtx.setConfiguration(synCtx.getConfiguration());
+        newCtx.setEnvironment(synCtx.getEnvironment());
+        newCtx.setContextEntries(synCtx.getContextEntries());
+
+        // copying the core parameters of the synapse MC
+        newCtx.setTo(synCtx.getTo());
+        newCtx.setReplyTo(synCtx.getReplyTo());
+        newCtx.setSoapAction(synCtx.getSoapAction());
+        newCtx.setWSAAction(synCtx.getWSAAction());
+        newCtx.setResponse(synCtx.isResponse());
+
+        axis2MC.setSharedProperties(sharedProperties);
+
+        Stack<FaultHandler> faultStack = synCtx.getFaultStack();
+        for (FaultHandler faultHandler : faultStack) {
+            if (faultHandler != null) {
+                newCtx.pushFaultHandler(faultHandler);
+            }
+        }
+
+        if (synCtx.isContinuationEnabled()) {
+            newCtx.setContinuationEnabled(true);
+            for (ContinuationState continuationState : synCtx.getContinuationStateStack()) {
+                if (continuationState != null) {
+                    newCtx.pushContinuationState(
+                            ContinuationStackManager.getClonedSeqContinuationState(
+                                    (SeqContinuationState) continuationState));
+                }
+            }
+        }
+
+        return newCtx;
+    }
+
     /**
      * This method will deep clone array list by creating a new ArrayList and cloning and adding each element in it
      * */
@@ -229,8 +329,14 @@ public class MessageHelper {
     public static org.apache.axis2.context.MessageContext cloneAxis2MessageContext(
         org.apache.axis2.context.MessageContext mc) throws AxisFault {
 
+        return cloneAxis2MessageContext(mc, cloneSOAPEnvelope(mc.getEnvelope()));
+    }
+
+    private static org.apache.axis2.context.MessageContext cloneAxis2MessageContext(
+        org.apache.axis2.context.MessageContext mc, SOAPEnvelope envelope) throws AxisFault {
+
         org.apache.axis2.context.MessageContext newMC = clonePartially(mc);
-        newMC.setEnvelope(cloneSOAPEnvelope(mc.getEnvelope()));
+        newMC.setEnvelope(envelope);
         // XXX: always this section must come after the above step. ie. after applying Envelope.
         // That is to get the existing headers into the new envelope.
         JsonUtil.cloneJsonPayload(mc, newMC);
@@ -0,0 +1,104 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.util.concurrent;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.config.SynapsePropertiesLoader;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded executor for the branches forked by the clone and iterate mediators. The branches of
+ * a large split are queued up to a fixed bound, and once the queue is full the forking thread
+ * runs the next branch itself. Like the work done by the joining thread of a fork-join pool,
+ * this keeps a split from flooding the Synapse worker pool and throttles the forking thread to
+ * the pace at which the branches are processed.
+ */
+public class ForkExecutor extends ThreadPoolExecutor {
+
+    private static final Log log = LogFactory.getLog(ForkExecutor.class);
+
+    // default values
+    public static final int FORK_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+    public static final int FORK_KEEP_ALIVE = 60;
+    public static final int FORK_THREAD_QLEN = 1024;
+    public static final String FORK_THREAD_GROUP = "synapse-fork-thread-group";
+    public static final String FORK_THREAD_ID_PREFIX = "SynapseForkWorker";
+
+    // property keys
+    public static final String SYN_FORK_THREADS = "synapse.fork.threads";
+    public static final String SYN_FORK_QLEN = "synapse.fork.qlen";
+
+    private static volatile ForkExecutor instance = null;
+
+    /**
+     * @param threads number of threads of the pool
+     * @param qlen    number of branches queued before the forking thread runs them itself
+     */
+    public ForkExecutor(int threads, int qlen) {
+        super(threads, threads, FORK_KEEP_ALIVE, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(qlen),
+                new SynapseThreadFactory(new ThreadGroup(FORK_THREAD_GROUP), FORK_THREAD_ID_PREFIX),
+                new CallerRunsPolicy());
+        allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get the executor shared by all the forking mediators, creating it on first use with the
+     * sizes given in the synapse properties
+     *
+     * @return the shared fork executor
+     */
+    public static ForkExecutor getInstance() {
+        ForkExecutor executor = instance;
+        if (executor == null) {
+            synchronized (ForkExecutor.class) {
+                executor = instance;
+                if (executor == null) {
+                    int threads = getIntProperty(SYN_FORK_THREADS, FORK_THREADS);
+                    int qlen = getIntProperty(SYN_FORK_QLEN, FORK_THREAD_QLEN);
+                    if (log.isDebugEnabled()) {
+                        log.debug("Creating the fork executor with " + threads +
+                                " threads and a queue of " + qlen + " branches");
+                    }
+                    executor = new ForkExecutor(threads, qlen);
+                    instance = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static int getIntProperty(String key, int defaultValue) {
+        String value = SynapsePropertiesLoader.getPropertyValue(key, null);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value : " + value + " for the property : " + key +
+                        ", using the default value : " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.util.concurrent;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A hashed timing wheel, which keeps track of a large number of timeouts at a constant cost per
+ * timeout. The wheel is an array of buckets, one per tick, and each timeout is kept in the bucket
+ * of the tick of its deadline. Advancing the wheel only visits the buckets of the ticks which
+ * have passed, so the cost of finding the expired timeouts depends on the number of timeouts
+ * expiring and not on the number of timeouts pending.
+ * <p/>
+ * A timeout never expires before its expiry time, but may expire up to one tick after it. Each
+ * bucket has its own lock, so timeouts may be scheduled and cancelled from any thread while the
+ * wheel is advanced, without contending with each other most of the time. The wheel does not
+ * advance itself, its owner advances it periodically and acts on the expired items.
+ *
+ * @param <T> type of the items scheduled on the wheel
+ */
+public class TimingWheel<T> {
+
+    /**
+     * A scheduled item, linked into the bucket of its deadline until it expires or is cancelled
+     */
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadline;
+        private Bucket<T> bucket;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        public T getItem() {
+            return item;
+        }
+    }
+
+    private static final class Bucket<T> {
+        private final Timeout<T> head = new Timeout<T>(null, Long.MAX_VALUE);
+
+        private Bucket() {
+            head.prev = head;
+            head.next = head;
+        }
+    }
+
+    private final Bucket<T>[] buckets;
+    private final int mask;
+    private final long tickMillis;
+    /** The last tick processed, timeouts are only ever added to the ticks after it */
+    private volatile long currentTick;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param wheelSize number of buckets, rounded up to a power of two
+     * @param tickMillis duration of a tick in milliseconds
+     * @param now the current time in milliseconds
+     */
+    public TimingWheel(int wheelSize, long tickMillis, long now) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("The tick duration must be positive");
+        }
+        int length = 1;
+        while (length < wheelSize) {
+            length <<= 1;
+        }
+        // a generic array can not be created directly, every element is a Bucket<T> though
+        @SuppressWarnings("unchecked")
+        Bucket<T>[] created = (Bucket<T>[]) new Bucket<?>[length];
+        buckets = created;
+        for (int i = 0; i < length; i++) {
+            buckets[i] = new Bucket<T>();
+        }
+        this.mask = length - 1;
+        this.tickMillis = tickMillis;
+        this.currentTick = now / tickMillis;
+    }
+
+    /**
+     * Schedule an item to expire at the given time. An expiry time which has already passed
+     * expires on the next tick.
+     *
+     * @param item the item
+     * @param expiryTime expiry time in milliseconds
+     * @return the timeout, which can be used to cancel it
+     */
+    public Timeout<T> schedule(T item, long expiryTime) {
+        long tick = (expiryTime + tickMillis - 1) / tickMillis;
+        while (true) {
+            long t = Math.max(tick, currentTick + 1);
+            Timeout<T> timeout = new Timeout<T>(item, t);
+            Bucket<T> bucket = buckets[(int) (t & mask)];
+            synchronized (bucket) {
+                // make sure the wheel has not moved past the tick in the meantime
+                if (t > currentTick) {
+                    timeout.bucket = bucket;
+                    timeout.prev = bucket.head.prev;
+                    timeout.next = bucket.head;
+                    bucket.head.prev.next = timeout;
+                    bucket.head.prev = timeout;
+                    size.incrementAndGet();
+                    return timeout;
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancel a timeout if it has not expired yet
+     *
+     * @param timeout the timeout to be cancelled, may be null
+     * @return true if the timeout has been cancelled, false if it has already expired or has
+     *         been cancelled before
+     */
+    public boolean cancel(Timeout<T> timeout) {
+        if (timeout == null || timeout.bucket == null) {
+            return false;
+        }
+        synchronized (timeout.bucket) {
+            if (timeout.next != null) {
+                unlink(timeout);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Move the wheel to the given time, collecting the items which have expired. The items are
+     * collected instead of acted upon, so that no lock of the wheel is held while doing so.
+     *
+     * @param now the current time in milliseconds
+     * @param expired list to which the expired items are added
+     */
+    public void advance(long now, List<T> expired) {
+        long targetTick = now / tickMillis;
+        long tick = currentTick;
+        if (targetTick <= tick) {
+            return;
+        }
+
+        // a bucket holds the timeouts of all the ticks mapped to it, so visiting each bucket
+        // once is enough when the wheel has fallen behind by a full turn or more
+        boolean behind = targetTick - tick > buckets.length;
+        long steps = Math.min(targetTick - tick, buckets.length);
+        for (long i = 1; i <= steps; i++) {
+            long t = behind ? targetTick : tick + i;
+            currentTick = t;
+            Bucket<T> bucket = buckets[(int) ((tick + i) & mask)];
+            synchronized (bucket) {
+                Timeout<T> timeout = bucket.head.next;
+                while (timeout != bucket.head) {
+                    Timeout<T> next = timeout.next;
+                    if (timeout.deadline <= t) {
+                        unlink(timeout);
+                        expired.add(timeout.item);
+                    }
+                    timeout = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of timeouts which have neither expired nor been cancelled
+     */
+    public int size() {
+        return size.get();
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        timeout.prev.next = timeout.next;
+        timeout.next.prev = timeout.prev;
+        timeout.prev = null;
+        timeout.next = null;
+        size.decrementAndGet();
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.util.jaxp;
+
+import org.apache.axiom.om.OMElement;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.stax.StAXSource;
+
+/**
+ * {@link SourceBuilder} implementation that exposes the AXIOM tree as a {@link StAXSource}.
+ * Parts of the tree that have not been built yet (e.g. the content of a message read from the
+ * pass through pipe) are pulled from the underlying parser while the transformation consumes
+ * them, without serializing the tree and parsing it again. The tree is still cached, so it can
+ * be used after the transformation.
+ * <p>
+ * This requires a {@link javax.xml.transform.TransformerFactory} supporting
+ * {@link StAXSource#FEATURE}.
+ */
+public class StAXSourceBuilder implements SourceBuilder {
+
+    public Source getSource(OMElement node) {
+        return new StAXSource(node.getXMLStreamReader());
+    }
+
+    public void release() {
+        // the reader belongs to the tree, closing it would close the parser of the message
+    }
+}
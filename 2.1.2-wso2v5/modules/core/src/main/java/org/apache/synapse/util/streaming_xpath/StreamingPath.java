@@ -0,0 +1,393 @@
+/*
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.synapse.util.streaming_xpath;
+
+import org.apache.synapse.util.streaming_xpath.compiler.exception.StreamingXPATHCompilerException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A forward-only XPath expression which can be evaluated in a single StAX pass, possibly
+ * together with other expressions (see {@link StreamingXPathAutomaton}). The supported subset is
+ * <pre>
+ * expr      := path | count(path) | local-name(path)
+ * path      := ['/' | '//'] step (('/' | '//') step)* ['/' (@name | text())]
+ * step      := (name | prefix:* | *) ('[' @name [('=' | '!=') literal] ']')*
+ * </pre>
+ * Relative paths are evaluated against the document element, the same way Synapse evaluates
+ * XPaths against the SOAP envelope. Anything outside this subset is rejected with a
+ * {@link StreamingXPATHCompilerException}. Namespace prefixes are kept unresolved, since the
+ * namespaces of a Synapse XPath are usually declared after it has been created.
+ */
+public class StreamingPath {
+
+    public static final int NODES = 0;
+    public static final int COUNT = 1;
+    public static final int LOCAL_NAME = 2;
+
+    public static final int ELEMENT = 0;
+    public static final int ATTRIBUTE = 1;
+    public static final int TEXT = 2;
+
+    private final String expression;
+    private int function = NODES;
+    private int target = ELEMENT;
+    private final List<Step> steps = new ArrayList<Step>();
+    private String attributePrefix;
+    private String attributeName;
+
+    /** Position of the parser in the expression */
+    private int pos;
+
+    /**
+     * Compile the given expression
+     *
+     * @param expression the XPath expression
+     * @throws StreamingXPATHCompilerException if the expression is not in the supported subset
+     */
+    public StreamingPath(String expression) {
+        this.expression = expression;
+        parse();
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public int getFunction() {
+        return function;
+    }
+
+    public int getTarget() {
+        return target;
+    }
+
+    public List<Step> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * @return the prefix of the selected attribute or null if it is not qualified
+     */
+    public String getAttributePrefix() {
+        return attributePrefix;
+    }
+
+    public String getAttributeName() {
+        return attributeName;
+    }
+
+    /**
+     * @return all the namespace prefixes used by the expression
+     */
+    public Set<String> getPrefixes() {
+        Set<String> prefixes = new HashSet<String>();
+        for (Step step : steps) {
+            if (step.getPrefix() != null) {
+                prefixes.add(step.getPrefix());
+            }
+            for (Predicate predicate : step.getPredicates()) {
+                if (predicate.getPrefix() != null) {
+                    prefixes.add(predicate.getPrefix());
+                }
+            }
+        }
+        if (attributePrefix != null) {
+            prefixes.add(attributePrefix);
+        }
+        return prefixes;
+    }
+
+    private void parse() {
+        skipWhitespace();
+        if (lookingAt("count(")) {
+            function = COUNT;
+            pos += "count(".length();
+        } else if (lookingAt("local-name(")) {
+            function = LOCAL_NAME;
+            pos += "local-name(".length();
+        }
+
+        skipWhitespace();
+        parsePath();
+        skipWhitespace();
+
+        if (function != NODES) {
+            expect(')');
+            skipWhitespace();
+            if (target == TEXT) {
+                throw error("text() is only supported as a node-set result");
+            }
+        }
+        if (pos != expression.length()) {
+            throw error("Unexpected character '" + expression.charAt(pos) + "'");
+        }
+    }
+
+    private void parsePath() {
+        boolean descendant;
+        if (lookingAt("//")) {
+            pos += 2;
+            descendant = true;
+        } else if (lookingAt("/")) {
+            pos++;
+            descendant = false;
+        } else {
+            // relative to the document element
+            steps.add(new Step(false, null, null, Collections.<Predicate>emptyList()));
+            descendant = false;
+        }
+
+        while (true) {
+            skipWhitespace();
+            if (descendant && (lookingAt("@") || lookingAt("text()"))) {
+                // would need the descendant-or-self axis
+                throw error("Attributes and text nodes can only be selected from the child axis");
+            }
+            if (lookingAt("@")) {
+                pos++;
+                String[] name = parseQName();
+                attributePrefix = name[0];
+                attributeName = name[1];
+                target = ATTRIBUTE;
+                return;
+            }
+            if (lookingAt("text()")) {
+                pos += "text()".length();
+                target = TEXT;
+                return;
+            }
+
+            steps.add(parseStep(descendant));
+            skipWhitespace();
+            if (lookingAt("//")) {
+                pos += 2;
+                descendant = true;
+            } else if (lookingAt("/")) {
+                pos++;
+                descendant = false;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private Step parseStep(boolean descendant) {
+        String prefix = null;
+        String localName = null;
+        if (lookingAt("*")) {
+            pos++;
+        } else {
+            String[] name = parseNameTest();
+            prefix = name[0];
+            localName = name[1];
+        }
+
+        List<Predicate> predicates = new ArrayList<Predicate>();
+        skipWhitespace();
+        while (lookingAt("[")) {
+            pos++;
+            skipWhitespace();
+            expect('@');
+            String[] name = parseQName();
+            skipWhitespace();
+
+            String value = null;
+            boolean negate = false;
+            if (lookingAt("!=")) {
+                pos += 2;
+                negate = true;
+                value = parseLiteral();
+            } else if (lookingAt("=")) {
+                pos++;
+                value = parseLiteral();
+            }
+            skipWhitespace();
+            expect(']');
+            predicates.add(new Predicate(name[0], name[1], value, negate));
+            skipWhitespace();
+        }
+        return new Step(descendant, prefix, localName, predicates);
+    }
+
+    /**
+     * Parse a name test of an element step, which may also be <code>prefix:*</code>
+     */
+    private String[] parseNameTest() {
+        String first = parseNCName();
+        if (lookingAt(":*")) {
+            pos += 2;
+            return new String[] {first, null};
+        }
+        if (lookingAt(":")) {
+            pos++;
+            return new String[] {first, parseNCName()};
+        }
+        if (lookingAt("(") || lookingAt("::")) {
+            throw error("Functions and axes are not supported");
+        }
+        return new String[] {null, first};
+    }
+
+    private String[] parseQName() {
+        String first = parseNCName();
+        if (lookingAt(":")) {
+            pos++;
+            return new String[] {first, parseNCName()};
+        }
+        return new String[] {null, first};
+    }
+
+    private String parseNCName() {
+        int start = pos;
+        while (pos < expression.length()) {
+            char c = expression.charAt(pos);
+            boolean valid = Character.isLetter(c) || c == '_' ||
+                    (pos > start && (Character.isDigit(c) || c == '-' || c == '.'));
+            if (!valid) {
+                break;
+            }
+            pos++;
+        }
+        if (pos == start) {
+            throw error("Name expected");
+        }
+        return expression.substring(start, pos);
+    }
+
+    private String parseLiteral() {
+        skipWhitespace();
+        if (pos >= expression.length()) {
+            throw error("Literal expected");
+        }
+        char quote = expression.charAt(pos);
+        if (quote != '\'' && quote != '"') {
+            throw error("Literal expected");
+        }
+        int end = expression.indexOf(quote, pos + 1);
+        if (end < 0) {
+            throw error("Unterminated literal");
+        }
+        String value = expression.substring(pos + 1, end);
+        pos = end + 1;
+        return value;
+    }
+
+    private void expect(char c) {
+        if (pos >= expression.length() || expression.charAt(pos) != c) {
+            throw error("'" + c + "' expected");
+        }
+        pos++;
+    }
+
+    private boolean lookingAt(String s) {
+        return expression.startsWith(s, pos);
+    }
+
+    private void skipWhitespace() {
+        while (pos < expression.length() && Character.isWhitespace(expression.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private StreamingXPATHCompilerException error(String message) {
+        return new StreamingXPATHCompilerException(message + " at position " + pos +
+                " of the XPath " + expression);
+    }
+
+    /**
+     * A location step selecting elements from the child or the descendant axis
+     */
+    public static class Step {
+
+        private final boolean descendant;
+        private final String prefix;
+        private final String localName;
+        private final List<Predicate> predicates;
+
+        Step(boolean descendant, String prefix, String localName, List<Predicate> predicates) {
+            this.descendant = descendant;
+            this.prefix = prefix;
+            this.localName = localName;
+            this.predicates = predicates;
+        }
+
+        public boolean isDescendant() {
+            return descendant;
+        }
+
+        /**
+         * @return the namespace prefix or null if the step is not qualified
+         */
+        public String getPrefix() {
+            return prefix;
+        }
+
+        /**
+         * @return the local name or null if the step matches any local name
+         */
+        public String getLocalName() {
+            return localName;
+        }
+
+        public List<Predicate> getPredicates() {
+            return predicates;
+        }
+    }
+
+    /**
+     * An attribute predicate, testing for the existence or the value of an attribute
+     */
+    public static class Predicate {
+
+        private final String prefix;
+        private final String localName;
+        private final String value;
+        private final boolean negate;
+
+        Predicate(String prefix, String localName, String value, boolean negate) {
+            this.prefix = prefix;
+            this.localName = localName;
+            this.value = value;
+            this.negate = negate;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public String getLocalName() {
+            return localName;
+        }
+
+        /**
+         * @return the value to compare with or null if only the existence is tested
+         */
+        public String getValue() {
+            return value;
+        }
+
+        public boolean isNegate() {
+            return negate;
+        }
+    }
+}
@@ -0,0 +1,666 @@
+/*
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.synapse.util.streaming_xpath;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates a set of {@link StreamingPath} expressions in a single forward-only pass over a
+ * StAX stream. The location steps of all the expressions are merged into a trie, so that a
+ * common prefix such as <code>/soapenv:Envelope/soapenv:Body</code> is only matched once, and
+ * subtrees which can not contain a match are skipped without looking at their content. The
+ * pass stops as soon as no further match is possible.
+ *
+ * <p>The results are the string values Synapse computes for the same expressions evaluated over
+ * AXIOM: node-sets are reduced to the concatenated text of the selected nodes, where an element
+ * without text is replaced by its serialized form, and <code>count()</code> results are
+ * formatted as numbers.</p>
+ *
+ * <p>An automaton is immutable once created and may be used by any number of threads.</p>
+ */
+public class StreamingXPathAutomaton {
+
+    private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+    static {
+        outputFactory.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, Boolean.TRUE);
+    }
+
+    private final Node root = new Node(null);
+    private final int size;
+    private final boolean[] resolved;
+    private final int[] functions;
+
+    /**
+     * Compile the given expressions into a single automaton
+     *
+     * @param paths      expressions to evaluate, results are returned in the same order
+     * @param namespaces namespace prefix to URI mappings of each expression
+     */
+    public StreamingXPathAutomaton(List<StreamingPath> paths,
+                                   List<Map<String, String>> namespaces) {
+        this.size = paths.size();
+        this.resolved = new boolean[size];
+        this.functions = new int[size];
+        for (int i = 0; i < size; i++) {
+            functions[i] = paths.get(i).getFunction();
+            resolved[i] = add(i, paths.get(i), namespaces.get(i));
+        }
+    }
+
+    /**
+     * @return the number of expressions evaluated by this automaton
+     */
+    public int size() {
+        return size;
+    }
+
+    private boolean add(int index, StreamingPath path, Map<String, String> namespaces) {
+        for (String prefix : path.getPrefixes()) {
+            if (namespaces.get(prefix) == null) {
+                // left to Jaxen, which reports the unresolved prefix properly
+                return false;
+            }
+        }
+
+        Node node = root;
+        for (StreamingPath.Step step : path.getSteps()) {
+            List<AttributeTest> predicates = new ArrayList<AttributeTest>();
+            for (StreamingPath.Predicate p : step.getPredicates()) {
+                predicates.add(new AttributeTest(resolve(p.getPrefix(), namespaces),
+                        p.getLocalName(), p.getValue(), p.isNegate()));
+            }
+            String uri = step.getPrefix() != null ? namespaces.get(step.getPrefix()) :
+                    (step.getLocalName() != null ? "" : null);
+            node = node.getChild(new ElementTest(step.isDescendant(), uri,
+                    step.getLocalName(), predicates));
+        }
+
+        Target target = new Target(index, path.getFunction(), path.getTarget());
+        if (path.getTarget() == StreamingPath.ATTRIBUTE) {
+            target.attribute = new AttributeTest(
+                    resolve(path.getAttributePrefix(), namespaces),
+                    path.getAttributeName(), null, false);
+        }
+        node.targets.add(target);
+        return true;
+    }
+
+    private static String resolve(String prefix, Map<String, String> namespaces) {
+        return prefix == null ? "" : namespaces.get(prefix);
+    }
+
+    /**
+     * Evaluate all the expressions over the given stream, which should be positioned at the
+     * start of the document
+     *
+     * @param reader the stream to read
+     * @return the results of all the expressions
+     * @throws XMLStreamException if the stream can not be read
+     */
+    public Results evaluate(XMLStreamReader reader) throws XMLStreamException {
+        Evaluation evaluation = new Evaluation();
+        evaluation.run(reader);
+
+        String[] values = new String[size];
+        boolean[] found = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            if (resolved[i]) {
+                values[i] = evaluation.getResult(i);
+                found[i] = evaluation.isFound(i);
+            }
+        }
+        return new Results(values, found);
+    }
+
+    /**
+     * Results of a single pass over a message
+     */
+    public static class Results {
+
+        private final String[] values;
+        private final boolean[] found;
+
+        Results(String[] values, boolean[] found) {
+            this.values = values;
+            this.found = found;
+        }
+
+        /**
+         * @param index index of the expression
+         * @return the string value of the expression or null if it could not be compiled with
+         *         the namespaces given
+         */
+        public String getStringValue(int index) {
+            return values[index];
+        }
+
+        /**
+         * @param index index of the expression
+         * @return the boolean value of the expression as defined by the XPath
+         *         <code>boolean()</code> function or null if it could not be compiled with the
+         *         namespaces given
+         */
+        public Boolean getBooleanValue(int index) {
+            return values[index] != null ? Boolean.valueOf(found[index]) : null;
+        }
+    }
+
+    /**
+     * State of a single pass
+     */
+    private final class Evaluation {
+
+        private final List<Frame> stack = new ArrayList<Frame>();
+        private final List<Capture> captures = new ArrayList<Capture>();
+        private final List<List<Capture>> parts = new ArrayList<List<Capture>>(size);
+        private final int[] counts = new int[size];
+        private final String[] localNames = new String[size];
+
+        /** Number of frames on the stack where a further match is possible */
+        private int live;
+
+        /** Depth within a subtree which is skipped, or zero */
+        private int skipped;
+
+        Evaluation() {
+            for (int i = 0; i < size; i++) {
+                parts.add(new ArrayList<Capture>(1));
+            }
+        }
+
+        void run(XMLStreamReader reader) throws XMLStreamException {
+            Frame document = new Frame();
+            document.matched.add(root);
+            stack.add(document);
+            boolean started = false;
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+
+                if (skipped > 0) {
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        skipped++;
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        skipped--;
+                    }
+                    continue;
+                }
+
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        for (Capture capture : captures) {
+                            capture.start(reader);
+                        }
+                        if (!startElement(reader)) {
+                            skipped = 1;
+                        }
+                        started = true;
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+                        endElement();
+                        break;
+
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.SPACE:
+                    case XMLStreamConstants.CDATA:
+                        for (Capture capture : captures) {
+                            capture.text(reader, event, stack.size() - 1);
+                        }
+                        break;
+
+                    case XMLStreamConstants.COMMENT:
+                        for (Capture capture : captures) {
+                            capture.comment(reader);
+                        }
+                        break;
+
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        for (Capture capture : captures) {
+                            capture.processingInstruction(reader);
+                        }
+                        break;
+
+                    default:
+                        break;
+                }
+
+                if (started && live == 0 && captures.isEmpty()) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Match the current element against the trie
+         *
+         * @return false if nothing can match within the element
+         */
+        private boolean startElement(XMLStreamReader reader) throws XMLStreamException {
+            Frame parent = stack.get(stack.size() - 1);
+            Frame frame = new Frame();
+
+            for (Node node : parent.matched) {
+                for (Node child : node.children) {
+                    if (child.test.matches(reader) && !frame.matched.contains(child)) {
+                        frame.matched.add(child);
+                    }
+                }
+                if (node.hasDescendantChildren) {
+                    frame.inherited.add(node);
+                }
+            }
+            for (Node node : parent.inherited) {
+                for (Node child : node.children) {
+                    if (child.test.descendant && child.test.matches(reader) &&
+                            !frame.matched.contains(child)) {
+                        frame.matched.add(child);
+                    }
+                }
+                if (!frame.inherited.contains(node)) {
+                    frame.inherited.add(node);
+                }
+            }
+
+            for (Node node : frame.matched) {
+                for (Target target : node.targets) {
+                    match(target, reader);
+                }
+                if (!node.children.isEmpty()) {
+                    frame.live = true;
+                }
+            }
+            if (!frame.inherited.isEmpty()) {
+                frame.live = true;
+            }
+
+            if (!frame.live && captures.isEmpty()) {
+                return false;
+            }
+            if (frame.live) {
+                live++;
+            }
+            stack.add(frame);
+            return true;
+        }
+
+        private void endElement() throws XMLStreamException {
+            Frame frame = stack.remove(stack.size() - 1);
+            if (frame.live) {
+                live--;
+            }
+            for (int i = captures.size() - 1; i >= 0; i--) {
+                Capture capture = captures.get(i);
+                if (capture.end(stack.size())) {
+                    captures.remove(i);
+                }
+            }
+        }
+
+        private void match(Target target, XMLStreamReader reader) throws XMLStreamException {
+            int i = target.index;
+            if (target.kind == StreamingPath.ATTRIBUTE) {
+                String value = target.attribute.getValue(reader);
+                if (value == null) {
+                    return;
+                }
+                if (target.function == StreamingPath.COUNT) {
+                    counts[i]++;
+                } else if (target.function == StreamingPath.LOCAL_NAME) {
+                    if (localNames[i] == null) {
+                        localNames[i] = target.attribute.localName;
+                    }
+                } else {
+                    Capture capture = new Capture(stack.size(), false);
+                    capture.text.append(value);
+                    parts.get(i).add(capture);
+                }
+                return;
+            }
+
+            if (target.function == StreamingPath.COUNT) {
+                counts[i]++;
+            } else if (target.function == StreamingPath.LOCAL_NAME) {
+                if (localNames[i] == null) {
+                    localNames[i] = reader.getLocalName();
+                }
+            } else {
+                // the element itself is at the depth of the frame about to be pushed
+                Capture capture = new Capture(stack.size(),
+                        target.kind == StreamingPath.ELEMENT);
+                capture.start(reader);
+                parts.get(i).add(capture);
+                captures.add(capture);
+            }
+        }
+
+        boolean isFound(int i) {
+            if (functions[i] == StreamingPath.COUNT) {
+                return counts[i] != 0;
+            }
+            if (functions[i] == StreamingPath.LOCAL_NAME) {
+                return localNames[i] != null && localNames[i].length() != 0;
+            }
+            return !parts.get(i).isEmpty();
+        }
+
+        String getResult(int i) {
+            if (functions[i] == StreamingPath.COUNT) {
+                return Double.toString(counts[i]);
+            }
+            if (functions[i] == StreamingPath.LOCAL_NAME) {
+                return localNames[i] != null ? localNames[i] : "";
+            }
+            StringBuilder sb = new StringBuilder();
+            for (Capture capture : parts.get(i)) {
+                sb.append(capture.getValue());
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * A node of the trie, matching a single location step
+     */
+    private static final class Node {
+
+        final ElementTest test;
+        final List<Node> children = new ArrayList<Node>();
+        final List<Target> targets = new ArrayList<Target>();
+        boolean hasDescendantChildren;
+
+        Node(ElementTest test) {
+            this.test = test;
+        }
+
+        Node getChild(ElementTest test) {
+            for (Node child : children) {
+                if (child.test.equals(test)) {
+                    return child;
+                }
+            }
+            Node child = new Node(test);
+            children.add(child);
+            if (test.descendant) {
+                hasDescendantChildren = true;
+            }
+            return child;
+        }
+    }
+
+    /**
+     * The nodes matched by an open element
+     */
+    private static final class Frame {
+
+        /** Trie nodes matching the element */
+        final List<Node> matched = new ArrayList<Node>(2);
+
+        /** Trie nodes matching an ancestor, whose descendant steps still apply */
+        final List<Node> inherited = new ArrayList<Node>(1);
+
+        boolean live;
+    }
+
+    /**
+     * An expression ending at a trie node
+     */
+    private static final class Target {
+
+        final int index;
+        final int function;
+        final int kind;
+        AttributeTest attribute;
+
+        Target(int index, int function, int kind) {
+            this.index = index;
+            this.function = function;
+            this.kind = kind;
+        }
+    }
+
+    private static final class ElementTest {
+
+        final boolean descendant;
+        /** Namespace URI, empty for no namespace or null for any namespace */
+        final String uri;
+        /** Local name or null for any name */
+        final String localName;
+        final List<AttributeTest> predicates;
+
+        ElementTest(boolean descendant, String uri, String localName,
+                    List<AttributeTest> predicates) {
+            this.descendant = descendant;
+            this.uri = uri;
+            this.localName = localName;
+            this.predicates = predicates;
+        }
+
+        boolean matches(XMLStreamReader reader) {
+            if (localName != null && !localName.equals(reader.getLocalName())) {
+                return false;
+            }
+            if (uri != null && !uri.equals(nonNull(reader.getNamespaceURI()))) {
+                return false;
+            }
+            for (AttributeTest predicate : predicates) {
+                if (!predicate.matches(reader)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ElementTest)) {
+                return false;
+            }
+            ElementTest that = (ElementTest) o;
+            return descendant == that.descendant && equal(uri, that.uri) &&
+                    equal(localName, that.localName) && predicates.equals(that.predicates);
+        }
+
+        @Override
+        public int hashCode() {
+            return (localName != null ? localName.hashCode() : 0) * 31 + (descendant ? 1 : 0);
+        }
+    }
+
+    private static final class AttributeTest {
+
+        final String uri;
+        final String localName;
+        final String value;
+        final boolean negate;
+
+        AttributeTest(String uri, String localName, String value, boolean negate) {
+            this.uri = uri;
+            this.localName = localName;
+            this.value = value;
+            this.negate = negate;
+        }
+
+        String getValue(XMLStreamReader reader) {
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                if (localName.equals(reader.getAttributeLocalName(i)) &&
+                        uri.equals(nonNull(reader.getAttributeNamespace(i)))) {
+                    return reader.getAttributeValue(i);
+                }
+            }
+            return null;
+        }
+
+        boolean matches(XMLStreamReader reader) {
+            String actual = getValue(reader);
+            if (actual == null) {
+                return false;
+            }
+            return value == null || value.equals(actual) != negate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof AttributeTest)) {
+                return false;
+            }
+            AttributeTest that = (AttributeTest) o;
+            return negate == that.negate && uri.equals(that.uri) &&
+                    localName.equals(that.localName) && equal(value, that.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return localName.hashCode();
+        }
+    }
+
+    /**
+     * A selected element or text node, collecting its direct text and if required its
+     * serialized form while the stream passes over it
+     */
+    private static final class Capture {
+
+        /** Depth of the selected element, its direct text is at this depth */
+        final int depth;
+        final StringBuilder text = new StringBuilder();
+        private StringWriter xml;
+        private XMLStreamWriter writer;
+
+        Capture(int depth, boolean serialize) throws XMLStreamException {
+            this.depth = depth;
+            if (serialize) {
+                xml = new StringWriter();
+                writer = outputFactory.createXMLStreamWriter(xml);
+            }
+        }
+
+        void start(XMLStreamReader reader) throws XMLStreamException {
+            if (writer == null) {
+                return;
+            }
+            writer.writeStartElement(nonNull(reader.getPrefix()), reader.getLocalName(),
+                    nonNull(reader.getNamespaceURI()));
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                String prefix = reader.getNamespacePrefix(i);
+                if (prefix == null || prefix.length() == 0) {
+                    writer.writeDefaultNamespace(nonNull(reader.getNamespaceURI(i)));
+                } else {
+                    writer.writeNamespace(prefix, reader.getNamespaceURI(i));
+                }
+            }
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                String uri = reader.getAttributeNamespace(i);
+                if (uri == null || uri.length() == 0) {
+                    writer.writeAttribute(reader.getAttributeLocalName(i),
+                            reader.getAttributeValue(i));
+                } else {
+                    writer.writeAttribute(nonNull(reader.getAttributePrefix(i)), uri,
+                            reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                }
+            }
+        }
+
+        void text(XMLStreamReader reader, int event, int currentDepth)
+                throws XMLStreamException {
+            if (currentDepth == depth) {
+                text.append(reader.getTextCharacters(), reader.getTextStart(),
+                        reader.getTextLength());
+                if (writer != null && !isBlank(text)) {
+                    // the serialized form is only used for elements without text
+                    writer = null;
+                    xml = null;
+                }
+            }
+            if (writer != null) {
+                if (event == XMLStreamConstants.CDATA) {
+                    writer.writeCData(reader.getText());
+                } else {
+                    writer.writeCharacters(reader.getTextCharacters(), reader.getTextStart(),
+                            reader.getTextLength());
+                }
+            }
+        }
+
+        void comment(XMLStreamReader reader) throws XMLStreamException {
+            if (writer != null) {
+                writer.writeComment(reader.getText());
+            }
+        }
+
+        void processingInstruction(XMLStreamReader reader) throws XMLStreamException {
+            if (writer != null) {
+                writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+            }
+        }
+
+        /**
+         * @param depth depth of the element which has ended
+         * @return true if the selected element has ended
+         */
+        boolean end(int depth) throws XMLStreamException {
+            if (writer != null) {
+                writer.writeEndElement();
+            }
+            if (depth == this.depth) {
+                if (writer != null) {
+                    writer.flush();
+                    writer.close();
+                    writer = null;
+                }
+                return true;
+            }
+            return false;
+        }
+
+        String getValue() {
+            if (xml != null && isBlank(text)) {
+                return xml.toString();
+            }
+            return text.toString();
+        }
+    }
+
+    private static boolean isBlank(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            // U+00A0 (no-break space) is not removed by String.trim
+            if (c > ' ' && c != (char) 160) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String nonNull(String s) {
+        return s == null ? "" : s;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.synapse.util.streaming_xpath;
+
+import org.apache.axiom.om.util.StAXUtils;
+import org.apache.axis2.context.MessageContext;
+import org.apache.synapse.transport.passthru.PassThroughConstants;
+import org.apache.synapse.util.xpath.SynapseXPath;
+import org.jaxen.NamespaceContext;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The streaming XPaths of a single sequence, which are compiled into one
+ * {@link StreamingXPathAutomaton} and evaluated together in a single pass over the pass-through
+ * stream of a message. The results are kept on the message context, so the expressions used by
+ * the filter, switch, property and log mediators of a sequence read the payload only once.
+ *
+ * <p>While a sequence is being built, the factories call {@link #begin()} and {@link #end()}
+ * around its child mediators and every XPath created in between joins the same group. An XPath
+ * created outside of a sequence forms a group of its own.</p>
+ */
+public class StreamingXPathGroup {
+
+    private static final String RESULTS_PROPERTY = "STREAMING_XPATH_RESULTS_";
+
+    private static final AtomicInteger groupCount = new AtomicInteger(0);
+
+    private static final ThreadLocal<StreamingXPathGroup> current =
+            new ThreadLocal<StreamingXPathGroup>();
+
+    private final String resultsProperty = RESULTS_PROPERTY + groupCount.incrementAndGet();
+
+    private final List<SynapseXPath> xpaths = new ArrayList<SynapseXPath>();
+    private final List<StreamingPath> paths = new ArrayList<StreamingPath>();
+
+    private volatile StreamingXPathAutomaton automaton;
+
+    /** Nesting depth of the sequences being built by the current thread */
+    private int depth;
+
+    /**
+     * Start collecting the XPaths created by the current thread into one group, nested calls
+     * keep adding to the group of the outermost call
+     */
+    public static void begin() {
+        StreamingXPathGroup group = current.get();
+        if (group == null) {
+            group = new StreamingXPathGroup();
+            current.set(group);
+        }
+        group.depth++;
+    }
+
+    /**
+     * Stop collecting XPaths for the outermost call of {@link #begin()}
+     */
+    public static void end() {
+        StreamingXPathGroup group = current.get();
+        if (group != null && --group.depth == 0) {
+            current.remove();
+        }
+    }
+
+    /**
+     * @return the group being collected by the current thread or a new group
+     */
+    public static StreamingXPathGroup getCurrent() {
+        StreamingXPathGroup group = current.get();
+        return group != null ? group : new StreamingXPathGroup();
+    }
+
+    /**
+     * Add an expression to the group
+     *
+     * @param xpath the XPath, which provides the namespaces of the expression
+     * @param path  the compiled expression
+     * @return the index of the expression within the group
+     */
+    public synchronized int register(SynapseXPath xpath, StreamingPath path) {
+        xpaths.add(xpath);
+        paths.add(path);
+        automaton = null;
+        return paths.size() - 1;
+    }
+
+    /**
+     * Get the results of all the expressions of the group for the given message, reading the
+     * pass-through stream of the message if they have not been computed for it yet
+     *
+     * @param xpath   the XPath requesting the results
+     * @param msgCtx  the message to evaluate against
+     * @return the results or null if the message has been built and has to be evaluated over
+     *         its envelope
+     * @throws IOException        if the message can not be read
+     * @throws XMLStreamException if the message is not well formed
+     */
+    public StreamingXPathAutomaton.Results getResults(SynapseXPath xpath, MessageContext msgCtx)
+            throws IOException, XMLStreamException {
+
+        Object source = msgCtx.getProperty(PassThroughConstants.PASS_THROUGH_PIPE);
+        CachedResults cached = (CachedResults) msgCtx.getProperty(resultsProperty);
+        if (cached != null && source != null && cached.source == source) {
+            return cached.results;
+        }
+
+        InputStream in = xpath.getMessageInputStreamPT(msgCtx);
+        if (in == null) {
+            return null;
+        }
+
+        XMLStreamReader reader = StAXUtils.createXMLStreamReader(in);
+        StreamingXPathAutomaton.Results results;
+        try {
+            results = getAutomaton().evaluate(reader);
+        } finally {
+            reader.close();
+        }
+
+        if (source != null) {
+            msgCtx.setProperty(resultsProperty, new CachedResults(source, results));
+        }
+        return results;
+    }
+
+    private StreamingXPathAutomaton getAutomaton() {
+        StreamingXPathAutomaton a = automaton;
+        if (a == null) {
+            synchronized (this) {
+                a = automaton;
+                if (a == null) {
+                    a = compile();
+                    automaton = a;
+                }
+            }
+        }
+        return a;
+    }
+
+    private StreamingXPathAutomaton compile() {
+        List<Map<String, String>> namespaces = new ArrayList<Map<String, String>>();
+        for (int i = 0; i < paths.size(); i++) {
+            NamespaceContext context = xpaths.get(i).getNamespaceContext();
+            Map<String, String> map = new HashMap<String, String>();
+            for (String prefix : paths.get(i).getPrefixes()) {
+                String uri = context != null ? context.translateNamespacePrefixToUri(prefix) :
+                        null;
+                if (uri != null) {
+                    map.put(prefix, uri);
+                }
+            }
+            namespaces.add(map);
+        }
+        return new StreamingXPathAutomaton(new ArrayList<StreamingPath>(paths), namespaces);
+    }
+
+    public synchronized int size() {
+        return paths.size();
+    }
+
+    /**
+     * Results of a group, valid as long as the message has the same pass-through pipe
+     */
+    private static class CachedResults {
+
+        private final Object source;
+        private final StreamingXPathAutomaton.Results results;
+
+        CachedResults(Object source, StreamingXPathAutomaton.Results results) {
+            this.source = source;
+            this.results = results;
+        }
+    }
+}
@@ -25,6 +25,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseConstants;
 import org.apache.synapse.commons.json.JsonUtil;
+import org.apache.synapse.commons.json.StreamingJsonPath;
 import org.apache.synapse.config.SynapsePropertiesLoader;
 import org.apache.synapse.config.xml.SynapsePath;
 import org.apache.synapse.core.axis2.Axis2MessageContext;
@@ -41,6 +42,9 @@ public class SynapseJsonPath extends SynapsePath {
 
     private JsonPath jsonPath;
 
+    /** Incremental evaluator of the path, if it is a definite path */
+    private StreamingJsonPath streamingJsonPath;
+
     private boolean isWholeBody = false;
 
     public SynapseJsonPath(String jsonPathExpression)  throws JaxenException {
@@ -51,6 +55,8 @@ public class SynapseJsonPath extends SynapsePath {
         // Check if the JSON path expression evaluates to the whole payload. If so no point in evaluating the path.
         if ("$".equals(jsonPath.getPath().trim()) || "$.".equals(jsonPath.getPath().trim())) {
             isWholeBody = true;
+        } else {
+            streamingJsonPath = StreamingJsonPath.compile(jsonPathExpression);
         }
         this.setPathType(SynapsePath.JSON_PATH);
     }
@@ -62,6 +68,12 @@ public class SynapseJsonPath extends SynapsePath {
         if (isWholeBody) {
             return jsonString;
         }
+        if (streamingJsonPath != null) {
+            String value = streamingJsonPath.evaluate(jsonString);
+            if (value != null) {
+                return value;
+            }
+        }
         Object read;
         read = jsonPath.read(jsonString);
         return (null == read ? "null" : read.toString());
@@ -79,6 +91,8 @@ public class SynapseJsonPath extends SynapsePath {
                         stream = JsonUtil.getJsonPayload(amc);
                     } else {
                         JsonUtil.newJsonPayload(amc, stream, true, true);
+                        // read through the payload buffer, the pipe can be read only once
+                        stream = JsonUtil.getJsonPayload(amc);
                     }
                 } else {
                     // Message Already built.
@@ -107,6 +121,20 @@ public class SynapseJsonPath extends SynapsePath {
                 return "";
             }
         }
+        if (streamingJsonPath != null && jsonStream.markSupported()) {
+            try {
+                String value = streamingJsonPath.evaluate(jsonStream);
+                if (value != null) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("#stringValueOf. Evaluated JSON path <" + jsonPath.getPath() + "> incrementally : <" + value + ">");
+                    }
+                    return value;
+                }
+                jsonStream.reset(); // evaluate the whole payload
+            } catch (IOException e) {
+                handleException("Error evaluating JSON Path <" + jsonPath.getPath() + ">", e);
+            }
+        }
         Object read;
         try {
             read = jsonPath.read(jsonStream);
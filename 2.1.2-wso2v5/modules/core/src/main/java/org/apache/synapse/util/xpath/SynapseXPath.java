@@ -36,7 +36,11 @@ import org.apache.synapse.config.SynapsePropertiesLoader;
 import org.apache.synapse.config.xml.SynapsePath;
 import org.apache.synapse.core.axis2.Axis2MessageContext;
 import org.apache.synapse.transport.passthru.config.PassThroughConfiguration;
+import org.apache.synapse.transport.passthru.util.RelayUtils;
+import org.apache.synapse.util.streaming_xpath.StreamingPath;
 import org.apache.synapse.util.streaming_xpath.StreamingXPATH;
+import org.apache.synapse.util.streaming_xpath.StreamingXPathAutomaton;
+import org.apache.synapse.util.streaming_xpath.StreamingXPathGroup;
 import org.apache.synapse.util.streaming_xpath.compiler.exception.StreamingXPATHCompilerException;
 import org.apache.synapse.util.streaming_xpath.custom.components.ParserComponent;
 import org.apache.synapse.util.streaming_xpath.exception.StreamingXPATHException;
@@ -115,6 +119,10 @@ public class SynapseXPath extends SynapsePath {
             getProperty(SynapseConstants.STREAMING_XPATH_PROCESSING);
     private StreamingXPATH streamingXPATH =null;
 
+    /** Group of streaming XPaths this XPath is evaluated with, if it is in the supported subset */
+    private transient StreamingXPathGroup streamingXPathGroup = null;
+    private int streamingXPathIndex;
+
     public String getEvaluator() {
         return evaluator;
     }
@@ -161,6 +169,18 @@ public class SynapseXPath extends SynapsePath {
         }
 
         if("true".equals(enableStreamingXpath)){
+            try {
+                StreamingPath path = new StreamingPath(xpathString);
+                streamingXPathGroup = StreamingXPathGroup.getCurrent();
+                streamingXPathIndex = streamingXPathGroup.register(this, path);
+                contentAware = false;
+                return;
+            } catch (StreamingXPATHCompilerException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Provided XPATH expression " + xpathString + " cant be evaluated " +
+                            "with other streaming XPaths : " + e.getMessage());
+                }
+            }
             try {
                 this.streamingXPATH = new StreamingXPATH(xpathString);
                 contentAware = false;
@@ -269,7 +289,17 @@ public class SynapseXPath extends SynapsePath {
             Object result = null;
             org.apache.axis2.context.MessageContext axis2MC =null;
 
-            if (!forceDisableStreamXpath && "true".equals(enableStreamingXpath)&& streamingXPATH != null && (((Axis2MessageContext)synCtx).getEnvelope() == null ||  ((Axis2MessageContext)synCtx).getEnvelope().getBody().getFirstElement() == null)) {
+            if (!forceDisableStreamXpath && streamingXPathGroup != null &&
+                    isPayloadUnbuilt(synCtx)) {
+                StreamingXPathAutomaton.Results results = getStreamingResults(synCtx);
+                if (results != null && results.getStringValue(streamingXPathIndex) != null) {
+                    return results.getStringValue(streamingXPathIndex);
+                }
+                // the stream could not answer, e.g. a prefix is not resolvable, so the expression
+                // is evaluated over the built payload instead of the empty envelope
+                buildMessage(synCtx);
+                result = evaluate(synCtx);
+            } else if (!forceDisableStreamXpath && "true".equals(enableStreamingXpath)&& streamingXPATH != null && isPayloadUnbuilt(synCtx)) {
                 try {
                     axis2MC = ((Axis2MessageContext)synCtx).getAxis2MessageContext();//((Axis2MessageContext) context).getAxis2MessageContext();
                     inputStream=getMessageInputStreamPT(axis2MC);
@@ -382,6 +412,67 @@ public class SynapseXPath extends SynapsePath {
         return null;
     }
 
+    /**
+     * <p>Evaluates the XPath expression against the given context and returns its boolean value.
+     * If the context is the MessageContext of a message whose payload has not been built, the
+     * expression is evaluated over the pass-through stream with the other streaming XPaths of its
+     * group.</p>
+     *
+     * @param context the context to evaluate against
+     * @return the boolean value of the result of evaluation
+     * @throws JaxenException in case of an evaluation failure
+     */
+    @Override
+    public boolean booleanValueOf(Object context) throws JaxenException {
+        if (!forceDisableStreamXpath && streamingXPathGroup != null &&
+                context instanceof MessageContext && isPayloadUnbuilt((MessageContext) context)) {
+            StreamingXPathAutomaton.Results results =
+                    getStreamingResults((MessageContext) context);
+            if (results != null && results.getBooleanValue(streamingXPathIndex) != null) {
+                return results.getBooleanValue(streamingXPathIndex);
+            }
+            buildMessage((MessageContext) context);
+        }
+        return super.booleanValueOf(context);
+    }
+
+    private boolean isPayloadUnbuilt(MessageContext synCtx) {
+        return synCtx.getEnvelope() == null ||
+                synCtx.getEnvelope().getBody().getFirstElement() == null;
+    }
+
+    /**
+     * Builds the payload of a message whose streaming evaluation did not yield a result, so that
+     * the expression can be evaluated over the envelope
+     *
+     * @param synCtx the message to be built
+     */
+    private void buildMessage(MessageContext synCtx) {
+        if (!isPayloadUnbuilt(synCtx)) {
+            return;
+        }
+        try {
+            RelayUtils.buildMessage(((Axis2MessageContext) synCtx).getAxis2MessageContext(), false);
+        } catch (Exception e) {
+            handleException("Error occurred while building the message for the XPath " +
+                    this.toString(), e);
+        }
+    }
+
+    private StreamingXPathAutomaton.Results getStreamingResults(MessageContext synCtx) {
+        try {
+            return streamingXPathGroup.getResults(this,
+                    ((Axis2MessageContext) synCtx).getAxis2MessageContext());
+        } catch (IOException e) {
+            handleException("Error occurred while reading the message for the XPath " +
+                    this.toString(), e);
+        } catch (XMLStreamException e) {
+            handleException("Error occurred while parsing the message for the XPath " +
+                    this.toString(), e);
+        }
+        return null;
+    }
+
     /**
      * Specialized form of xpath evaluation function.An xpath evaluate() will be performed using two contexts
      * (ie:-soap-envelope and on Synapse Message Context). This is useful for evaluating xpath on a
@@ -53,6 +53,16 @@ public class CacheMediatorSerializationTest extends AbstractTestCase {
         assertTrue(serialization(inputXml, cacheMediatorSerializer));
     }
 
+    public void testCacheMediatorSerializationOffHeapStore() {
+        String inputXml = "<cache xmlns=\"http://ws.apache.org/ns/synapse\" " +
+                          "id=\"string\" hashGenerator=\"org.wso2.caching.digest.DOMHASHGenerator\" " +
+                          "timeout=\"10\" scope=\"per-host\" collector=\"false\">" +
+                          "<implementation type=\"memory\" maxSize=\"10\"/>" +
+                          "<implementation type=\"offheap\" maxSize=\"1048576\"/></cache>";
+        assertTrue(serialization(inputXml, cacheMediatorFactory, cacheMediatorSerializer));
+        assertTrue(serialization(inputXml, cacheMediatorSerializer));
+    }
+
     public void testCacheMediatorSerializationResponseCache() {
         String inputXml = "<cache xmlns=\"http://ws.apache.org/ns/synapse\" " +
                           "id=\"string\" scope=\"per-host\" collector=\"true\" />";
@@ -69,4 +69,13 @@ public class CloneMediatorSerializationTest extends AbstractTestCase {
         assertTrue(serialization(inputXml, cloneMediatorFactory, cloneMediatorSerializer));
         assertTrue(serialization(inputXml, cloneMediatorSerializer));
     }
+
+    public void testCloneMediatorSerializationScenarioFive() throws Exception {
+        String inputXml = "<clone xmlns=\"http://ws.apache.org/ns/synapse\" " +
+            "fork=\"true\"><target sequence=\"sequenceRef1\" " +
+            "endpoint=\"endpointRef1\"/><target sequence=\"sequenceRef2\" " +
+            "endpoint=\"endpointRef2\"/></clone> ";
+        assertTrue(serialization(inputXml, cloneMediatorFactory, cloneMediatorSerializer));
+        assertTrue(serialization(inputXml, cloneMediatorSerializer));
+    }
 }
@@ -105,4 +105,12 @@ public class IterateMediatorSerializationTest extends AbstractTestCase {
         }
     }
 
+    public void testIterateMediatorSerializationScenarioEight() throws Exception {
+        String inputXml = "<iterate xmlns=\"http://ws.apache.org/ns/synapse\" expression=\".\" " +
+            "fork=\"true\"><target endpoint=\"endpointRef1\"><sequence><log/></sequence>" +
+            "</target></iterate>";
+        assertTrue(serialization(inputXml, iterateMediatorFactory, iterateMediatorSerializer));
+        assertTrue(serialization(inputXml, iterateMediatorSerializer));
+    }
+
 }
@@ -0,0 +1,99 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.core.axis2;
+
+import junit.framework.TestCase;
+import org.apache.synapse.SynapseConstants;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class CallbackTimeoutWheelTest extends TestCase {
+
+    private ConcurrentMap<String, AsyncCallback> callbackStore;
+    private TimeoutHandler timeoutHandler;
+    private CallbackTimeoutWheel timeoutWheel;
+
+    protected void setUp() throws Exception {
+        callbackStore = new ConcurrentHashMap<String, AsyncCallback>();
+        timeoutHandler = new TimeoutHandler(callbackStore, null);
+        timeoutWheel = new CallbackTimeoutWheel(timeoutHandler, 10);
+        timeoutWheel.start();
+    }
+
+    protected void tearDown() throws Exception {
+        timeoutWheel.stop();
+    }
+
+    public void testExpiry() throws Exception {
+        long now = System.currentTimeMillis();
+        addCallback("expiring", now + 50, SynapseConstants.DISCARD);
+        addCallback("expired", now - 1000, SynapseConstants.DISCARD);
+        AsyncCallback pending = addCallback("pending", now + 60000, SynapseConstants.DISCARD);
+        AsyncCallback global = addCallback("global", now, SynapseConstants.NONE);
+        AsyncCallback answered = addCallback("answered", now + 50, SynapseConstants.DISCARD);
+
+        // a response takes the callback before it times out
+        assertSame(answered, callbackStore.remove("answered"));
+        answered.cancelTimeout();
+
+        waitForExpiry("expiring", 5000);
+        assertFalse(callbackStore.containsKey("expired"));
+        assertSame(pending, callbackStore.get("pending"));
+        assertSame(global, callbackStore.get("global"));
+        assertFalse(callbackStore.containsKey("answered"));
+    }
+
+    public void testReplacedCallback() throws Exception {
+        long now = System.currentTimeMillis();
+        addCallback("id", now + 20, SynapseConstants.DISCARD);
+        // registered again with the same ID, the old expiry does not remove the new callback
+        AsyncCallback replacement = newCallback(now + 60000, SynapseConstants.DISCARD);
+        callbackStore.put("id", replacement);
+        Thread.sleep(200);
+        assertSame(replacement, callbackStore.get("id"));
+    }
+
+    private void waitForExpiry(String key, long maxWait) throws InterruptedException {
+        long end = System.currentTimeMillis() + maxWait;
+        while (callbackStore.containsKey(key) && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertFalse("Callback " + key + " did not expire", callbackStore.containsKey(key));
+    }
+
+    private AsyncCallback addCallback(String key, long timeOutOn, int timeOutAction) {
+        AsyncCallback callback = newCallback(timeOutOn, timeOutAction);
+        callbackStore.put(key, callback);
+        callback.setTimeout(timeoutWheel.schedule(key, callback,
+                timeoutHandler.getExpiryTime(callback)));
+        return callback;
+    }
+
+    private AsyncCallback newCallback(long timeOutOn, int timeOutAction) {
+        org.apache.axis2.context.MessageContext axis2Ctx =
+                new org.apache.axis2.context.MessageContext();
+        AsyncCallback callback = new AsyncCallback(axis2Ctx,
+                new Axis2MessageContext(axis2Ctx, null, null));
+        callback.setTimeOutOn(timeOutOn);
+        callback.setTimeOutAction(timeOutAction);
+        return callback;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.endpoints;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.core.axis2.Axis2SynapseEnvironment;
+import org.apache.synapse.core.SynapseEnvironment;
+import org.apache.synapse.endpoints.algorithms.ConcurrentRoundRobin;
+import org.apache.synapse.endpoints.algorithms.LeastResponseTime;
+import org.apache.synapse.endpoints.algorithms.LoadbalanceAlgorithm;
+import org.apache.synapse.endpoints.algorithms.PowerOfTwoChoices;
+import org.apache.synapse.util.MessageHelper;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.axis2.engine.AxisConfiguration;
+
+public class EndpointRequestTrackerTest extends TestCase {
+
+    private String[] hosts = {"localhost:9000", "localhost:9001", "localhost:9002"};
+
+    public void testTracking() {
+        LoadbalanceEndpoint endpoint = createLoadBalanceEndpoint(new PowerOfTwoChoices());
+        // anonymous endpoints get metrics for the algorithm
+        AbstractEndpoint child = (AbstractEndpoint) endpoint.getChildren().get(0);
+        EndpointView childView = child.getMetricsMBean();
+        assertNotNull(childView);
+        EndpointView parentView = endpoint.ensureMetricsMBean();
+
+        MessageContext first = createMessageContext();
+        MessageContext second = createMessageContext();
+        EndpointRequestTracker.start(child, first);
+        EndpointRequestTracker.start(child, second);
+        assertEquals(2, childView.getActiveRequests());
+        assertEquals(2, parentView.getActiveRequests());
+
+        EndpointRequestTracker.complete(first);
+        EndpointRequestTracker.complete(first);
+        assertEquals(1, childView.getActiveRequests());
+        assertEquals(1, parentView.getActiveRequests());
+
+        // sending a message again ends its previous request
+        EndpointRequestTracker.start(child, second);
+        assertEquals(1, childView.getActiveRequests());
+        EndpointRequestTracker.complete(second);
+        assertEquals(0, childView.getActiveRequests());
+        assertEquals(0, parentView.getActiveRequests());
+
+        MessageContext outOnly = createMessageContext();
+        outOnly.setProperty("OUT_ONLY", "true");
+        assertNull(EndpointRequestTracker.start(child, outOnly));
+        assertEquals(0, childView.getActiveRequests());
+    }
+
+    public void testResponseTime() {
+        EndpointView view = new EndpointView("test", new AddressEndpoint(), false);
+        assertEquals(0.0, view.getAvgResponseTime());
+        view.requestStarted();
+        view.requestCompleted(100);
+        assertEquals(100.0, view.getAvgResponseTime());
+        view.requestStarted();
+        view.requestCompleted(200);
+        assertEquals(120.0, view.getAvgResponseTime(), 0.001);
+        assertEquals(0, view.getActiveRequests());
+    }
+
+    public void testTrackerIsNotCloned() throws Exception {
+        LoadbalanceEndpoint endpoint = createLoadBalanceEndpoint(new PowerOfTwoChoices());
+        AbstractEndpoint child = (AbstractEndpoint) endpoint.getChildren().get(0);
+        MessageContext synCtx = createMessageContextWithEnvironment();
+
+        EndpointRequestTracker.start(child, synCtx);
+        MessageContext clone = MessageHelper.cloneMessageContext(synCtx);
+        assertNull(clone.getProperty(EndpointRequestTracker.TRACKER));
+
+        // completing the clone does not complete the request of the original message
+        EndpointRequestTracker.complete(clone);
+        assertEquals(1, child.getMetricsMBean().getActiveRequests());
+        EndpointRequestTracker.complete(synCtx);
+        assertEquals(0, child.getMetricsMBean().getActiveRequests());
+    }
+
+    public void testTrackerIsNotForked() throws Exception {
+        LoadbalanceEndpoint endpoint = createLoadBalanceEndpoint(new PowerOfTwoChoices());
+        AbstractEndpoint child = (AbstractEndpoint) endpoint.getChildren().get(0);
+        MessageContext synCtx = createMessageContextWithEnvironment();
+
+        EndpointRequestTracker.start(child, synCtx);
+        Map<String, Object> sharedProperties = MessageHelper.getSharedProperties(synCtx);
+        assertFalse(sharedProperties.containsKey(EndpointRequestTracker.TRACKER));
+        MessageContext fork = MessageHelper.forkMessageContext(synCtx, sharedProperties,
+                MessageHelper.cloneSOAPEnvelope(synCtx.getEnvelope()));
+        assertNull(fork.getProperty(EndpointRequestTracker.TRACKER));
+
+        // the fork tracks its own request, without touching the one of the parent message
+        EndpointRequestTracker.start(child, fork);
+        assertEquals(2, child.getMetricsMBean().getActiveRequests());
+        EndpointRequestTracker.complete(fork);
+        assertEquals(1, child.getMetricsMBean().getActiveRequests());
+        EndpointRequestTracker.complete(synCtx);
+        assertEquals(0, child.getMetricsMBean().getActiveRequests());
+    }
+
+    public void testConcurrentRoundRobin() {
+        LoadbalanceEndpoint endpoint = createLoadBalanceEndpoint(new ConcurrentRoundRobin());
+        LoadbalanceAlgorithm algorithm = endpoint.getAlgorithm();
+        MessageContext synCtx = createMessageContext();
+        for (int i = 0; i < 7; i++) {
+            assertSame(endpoint.getChildren().get(i % hosts.length),
+                    algorithm.getNextEndpoint(synCtx, null));
+        }
+    }
+
+    public void testPowerOfTwoChoices() {
+        LoadbalanceEndpoint endpoint = createLoadBalanceEndpoint(new PowerOfTwoChoices());
+        List<Endpoint> children = endpoint.getChildren();
+        MessageContext synCtx = createMessageContext();
+        // the most loaded endpoint loses against any other
+        for (int i = 0; i < 5; i++) {
+            EndpointRequestTracker.start(children.get(0), createMessageContext());
+        }
+        for (int i = 0; i < 3; i++) {
+            EndpointRequestTracker.start(children.get(1), createMessageContext());
+        }
+        for (int i = 0; i < 50; i++) {
+            Endpoint next = endpoint.getAlgorithm().getNextEndpoint(synCtx, null);
+            assertNotNull(next);
+            assertNotSame(children.get(0), next);
+        }
+    }
+
+    public void testLeastResponseTime() {
+        LoadbalanceEndpoint endpoint = createLoadBalanceEndpoint(new LeastResponseTime());
+        List<Endpoint> children = endpoint.getChildren();
+        MessageContext synCtx = createMessageContext();
+        children.get(0).getMetricsMBean().requestStarted();
+        children.get(0).getMetricsMBean().requestCompleted(500);
+        children.get(1).getMetricsMBean().requestStarted();
+        children.get(1).getMetricsMBean().requestCompleted(50);
+        for (int i = 0; i < 50; i++) {
+            assertNotSame(children.get(0),
+                    endpoint.getAlgorithm().getNextEndpoint(synCtx, null));
+        }
+    }
+
+    private LoadbalanceEndpoint createLoadBalanceEndpoint(LoadbalanceAlgorithm algorithm) {
+        LoadbalanceEndpoint loadbalanceEndpoint = new LoadbalanceEndpoint();
+        List<Endpoint> endpoints = createEndpoints();
+
+        algorithm.setEndpoints(endpoints);
+        algorithm.setLoadBalanceEndpoint(loadbalanceEndpoint);
+
+        loadbalanceEndpoint.setChildren(endpoints);
+        loadbalanceEndpoint.setAlgorithm(algorithm);
+        for (Endpoint endpoint : endpoints) {
+            endpoint.setParentEndpoint(loadbalanceEndpoint);
+        }
+
+        SynapseEnvironment env = new Axis2SynapseEnvironment(
+                new ConfigurationContext(new AxisConfiguration()), new SynapseConfiguration());
+        loadbalanceEndpoint.init(env);
+        return loadbalanceEndpoint;
+    }
+
+    private MessageContext createMessageContextWithEnvironment() throws Exception {
+        SynapseConfiguration synCfg = new SynapseConfiguration();
+        ConfigurationContext cfgCtx = new ConfigurationContext(new AxisConfiguration());
+        org.apache.axis2.context.MessageContext axis2MC =
+                new org.apache.axis2.context.MessageContext();
+        axis2MC.setConfigurationContext(cfgCtx);
+        MessageContext synCtx = new Axis2MessageContext(axis2MC, synCfg,
+                new Axis2SynapseEnvironment(cfgCtx, synCfg));
+        synCtx.setEnvelope(OMAbstractFactory.getSOAP11Factory().getDefaultEnvelope());
+        return synCtx;
+    }
+
+    private MessageContext createMessageContext() {
+        return new Axis2MessageContext(new org.apache.axis2.context.MessageContext(), null, null);
+    }
+
+    private List<Endpoint> createEndpoints() {
+        List<Endpoint> endpoints = new ArrayList<Endpoint>();
+        for (int i = 0; i < hosts.length; i++) {
+            AddressEndpoint addressEndpoint = new AddressEndpoint();
+
+            EndpointDefinition definition = new EndpointDefinition();
+            definition.setAddress("http://" + hosts[i] + "/");
+            addressEndpoint.setDefinition(definition);
+
+            endpoints.add(addressEndpoint);
+        }
+        return endpoints;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.mediators.builtin.cache;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class OffHeapResponseCacheStoreTest extends TestCase {
+
+    private OffHeapResponseCacheStore store;
+
+    protected void setUp() throws Exception {
+        store = new OffHeapResponseCacheStore();
+        store.setBlockSize(64);
+        store.setExpiryTick(10);
+    }
+
+    protected void tearDown() throws Exception {
+        store.destroy();
+    }
+
+    public void testPutAndGet() throws Exception {
+        store.init(64 * 1024);
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Content-Type", "application/xml");
+        byte[] envelope = createEnvelope(1000, (byte) 7);
+        store.put("key", new CachedResponse(envelope, false, "application/xml", headers), 0);
+
+        CachedResponse response = store.get("key");
+        assertNotNull(response);
+        assertTrue(Arrays.equals(envelope, response.getEnvelope()));
+        assertFalse(response.isSOAP11());
+        assertEquals("application/xml", response.getMessageType());
+        assertEquals("application/xml", response.getTransportHeaders().get("content-type"));
+
+        assertNull(store.get("other"));
+        assertEquals(1, store.getHitCount());
+        assertEquals(1, store.getMissCount());
+
+        store.remove("key");
+        assertNull(store.get("key"));
+        assertEquals(0, store.getSize());
+    }
+
+    public void testCapacityIsBounded() throws Exception {
+        store.init(8 * 1024);
+        for (int i = 0; i < 200; i++) {
+            store.put("key" + i, new CachedResponse(createEnvelope(500, (byte) i), true,
+                    null, null), 0);
+            assertTrue(store.getSize() <= store.getCapacity());
+        }
+        assertTrue(store.getEvictionCount() > 0);
+        assertTrue(store.getEntryCount() < 200);
+    }
+
+    public void testFrequentlyUsedResponseSurvivesScan() throws Exception {
+        store.init(8 * 1024);
+        byte[] envelope = createEnvelope(500, (byte) 1);
+        store.put("hot", new CachedResponse(envelope, true, null, null), 0);
+        for (int i = 0; i < 500; i++) {
+            if (i % 5 == 0) {
+                assertNotNull("hot response evicted at " + i, store.get("hot"));
+            }
+            store.put("cold" + i, new CachedResponse(createEnvelope(500, (byte) i), true,
+                    null, null), 0);
+        }
+        assertNotNull(store.get("hot"));
+    }
+
+    public void testResponsesExpire() throws Exception {
+        store.init(64 * 1024);
+        store.put("key", new CachedResponse(createEnvelope(100, (byte) 1), true, null, null), 50);
+        assertNotNull(store.get("key"));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (store.getExpirationCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertNull(store.get("key"));
+        assertEquals(1, store.getExpirationCount());
+        assertEquals(0, store.getEntryCount());
+    }
+
+    public void testFrequencySketch() throws Exception {
+        FrequencySketch sketch = new FrequencySketch(64);
+        int hash = "key".hashCode();
+        assertEquals(0, sketch.frequency(hash));
+        for (int i = 0; i < 5; i++) {
+            sketch.increment(hash);
+        }
+        assertEquals(5, sketch.frequency(hash));
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(hash);
+        }
+        assertEquals(15, sketch.frequency(hash));
+    }
+
+    private byte[] createEnvelope(int length, byte value) {
+        byte[] envelope = new byte[length];
+        Arrays.fill(envelope, value);
+        return envelope;
+    }
+}
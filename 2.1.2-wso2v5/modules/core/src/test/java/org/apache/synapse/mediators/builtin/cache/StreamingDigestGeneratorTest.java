@@ -0,0 +1,94 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+
+package org.apache.synapse.mediators.builtin.cache;
+
+import junit.framework.TestCase;
+import org.apache.axiom.om.util.StAXUtils;
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.axiom.soap.impl.builder.StAXSOAPModelBuilder;
+
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+
+public class StreamingDigestGeneratorTest extends TestCase {
+
+    private static final String SOAP11_NS = "http://schemas.xmlsoap.org/soap/envelope/";
+
+    public void testInsignificantDifferencesIgnored() throws Exception {
+        String first = "<soapenv:Envelope xmlns:soapenv=\"" + SOAP11_NS + "\"><soapenv:Body>" +
+                "<m:getQuote xmlns:m=\"http://services.samples\" a=\"1\" b=\"2\">" +
+                "<m:symbol>IBM</m:symbol></m:getQuote></soapenv:Body></soapenv:Envelope>";
+        String second = "<s:Envelope xmlns:s=\"" + SOAP11_NS + "\">\n  <s:Body>\n" +
+                "    <getQuote xmlns=\"http://services.samples\" b=\"2\" a=\"1\">\n" +
+                "      <symbol> IBM </symbol>\n    </getQuote>\n  </s:Body>\n</s:Envelope>";
+        assertEquals(digest(first), digest(second));
+    }
+
+    public void testPayloadDifferencesDetected() throws Exception {
+        String ibm = "<getQuote xmlns=\"http://services.samples\"><symbol>IBM</symbol></getQuote>";
+        String msft = "<getQuote xmlns=\"http://services.samples\"><symbol>MSFT</symbol></getQuote>";
+        String otherNs = "<getQuote xmlns=\"http://other\"><symbol>IBM</symbol></getQuote>";
+        String attribute = "<getQuote xmlns=\"http://services.samples\" a=\"1\">" +
+                "<symbol>IBM</symbol></getQuote>";
+        assertFalse(digest(ibm).equals(digest(msft)));
+        assertFalse(digest(ibm).equals(digest(otherNs)));
+        assertFalse(digest(ibm).equals(digest(attribute)));
+    }
+
+    public void testHeadersIgnored() throws Exception {
+        String payload = "<getQuote xmlns=\"http://services.samples\"><symbol>IBM</symbol></getQuote>";
+        String first = "<soapenv:Envelope xmlns:soapenv=\"" + SOAP11_NS + "\"><soapenv:Header>" +
+                "<wsa:MessageID xmlns:wsa=\"http://www.w3.org/2005/08/addressing\">urn:1" +
+                "</wsa:MessageID></soapenv:Header><soapenv:Body>" + payload +
+                "</soapenv:Body></soapenv:Envelope>";
+        String second = "<soapenv:Envelope xmlns:soapenv=\"" + SOAP11_NS + "\"><soapenv:Header>" +
+                "<wsa:MessageID xmlns:wsa=\"http://www.w3.org/2005/08/addressing\">urn:2" +
+                "</wsa:MessageID></soapenv:Header><soapenv:Body>" + payload +
+                "</soapenv:Body></soapenv:Envelope>";
+        assertEquals(digest(first), digest(second));
+        // a plain XML payload hashes the same as the same payload in a SOAP body
+        assertEquals(digest(first), digest(payload));
+    }
+
+    public void testBuiltEnvelopeMatchesRawStream() throws Exception {
+        String message = "<soapenv:Envelope xmlns:soapenv=\"" + SOAP11_NS + "\"><soapenv:Body>" +
+                "<m:getQuote xmlns:m=\"http://services.samples\" a=\"1\">" +
+                "<m:symbol>IBM</m:symbol><![CDATA[x]]></m:getQuote></soapenv:Body>" +
+                "</soapenv:Envelope>";
+        SOAPEnvelope envelope = new StAXSOAPModelBuilder(StAXUtils.createXMLStreamReader(
+                new ByteArrayInputStream(message.getBytes("UTF-8")))).getSOAPEnvelope();
+        envelope.build();
+
+        MessageDigest digest = StreamingDigestGenerator.newDigest();
+        StreamingDigestGenerator.update(digest, envelope.getXMLStreamReader());
+        assertEquals(digest(message), StreamingDigestGenerator.toHex(digest.digest()));
+    }
+
+    private String digest(String xml) throws Exception {
+        XMLStreamReader reader = StAXUtils.createXMLStreamReader(
+                new ByteArrayInputStream(xml.getBytes("UTF-8")));
+        MessageDigest digest = StreamingDigestGenerator.newDigest();
+        StreamingDigestGenerator.update(digest, reader);
+        reader.close();
+        return StreamingDigestGenerator.toHex(digest.digest());
+    }
+}
@@ -22,12 +22,16 @@ package org.apache.synapse.mediators.transform;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 import org.apache.axiom.om.*;
+import org.apache.axiom.om.util.AXIOMUtil;
 import org.apache.axis2.transport.base.BaseConstants;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseException;
 import org.apache.synapse.TestMessageContextBuilder;
+import org.apache.synapse.config.Entry;
+import org.apache.synapse.mediators.MediatorProperty;
 import org.apache.synapse.mediators.Value;
 import org.apache.synapse.util.jaxp.*;
+import org.apache.synapse.util.resolver.ResourceMap;
 import org.apache.synapse.util.xpath.SynapseXPath;
 
 import javax.xml.namespace.QName;
@@ -430,6 +434,81 @@ public class XSLTMediatorTest extends TestCase {
         transformMediator.mediate(synCtx);
     }
 
+    /**
+     * Test that transformers reused across messages see the parameters of the current
+     * message only, also when the stylesheet was compiled at initialization
+     *
+     * @throws Exception Exception in case of an error in tests
+     */
+    public void testTransformerReuseWithParameters() throws Exception {
+        String stylesheet =
+            "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+            "<xsl:param name=\"code\" select=\"'none'\"/>" +
+            "<xsl:template match=\"/\"><result><xsl:value-of select=\"$code\"/></result>" +
+            "</xsl:template></xsl:stylesheet>";
+        Entry entry = new Entry();
+        entry.setType(Entry.INLINE_XML);
+        entry.setValue(AXIOMUtil.stringToOM(stylesheet));
+
+        XSLTMediator transformMediator = new XSLTMediator();
+        setXsltTransformationURL(transformMediator, "xslt-key");
+        SynapseXPath xpath = new SynapseXPath("//m0:Code");
+        xpath.addNamespace("m0", "http://services.samples/xsd");
+        MediatorProperty property = new MediatorProperty();
+        property.setName("code");
+        property.setExpression(xpath);
+        transformMediator.addProperty(property);
+
+        String[] codes = {"IBM", "MSFT", "SUN"};
+        for (int i = 0; i < codes.length; i++) {
+            MessageContext synCtx = new TestMessageContextBuilder().addEntry("xslt-key", entry)
+                    .setBodyFromString(SOURCE.replace("String", codes[i])).build();
+            if (i == 0) {
+                transformMediator.init(synCtx.getEnvironment());
+            }
+            transformMediator.mediate(synCtx);
+
+            OMElement result = synCtx.getEnvelope().getBody().getFirstElement();
+            assertEquals("result", result.getLocalName());
+            assertEquals(codes[i], result.getText());
+        }
+    }
+
+    /**
+     * Test that a reused transformer still resolves document() through the resource map
+     *
+     * @throws Exception Exception in case of an error in tests
+     */
+    public void testTransformerReuseWithResourceMap() throws Exception {
+        String stylesheet =
+            "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+            "<xsl:template match=\"/\"><result>" +
+            "<xsl:value-of select=\"document('codes.xml')/codes/code\"/></result>" +
+            "</xsl:template></xsl:stylesheet>";
+        Entry entry = new Entry();
+        entry.setType(Entry.INLINE_XML);
+        entry.setValue(AXIOMUtil.stringToOM(stylesheet));
+        Entry codes = new Entry();
+        codes.setType(Entry.INLINE_XML);
+        codes.setValue(AXIOMUtil.stringToOM("<codes><code>IBM</code></codes>"));
+
+        XSLTMediator transformMediator = new XSLTMediator();
+        setXsltTransformationURL(transformMediator, "xslt-key");
+        ResourceMap resourceMap = new ResourceMap();
+        resourceMap.addResource("codes.xml", "codes-key");
+        transformMediator.setResourceMap(resourceMap);
+
+        for (int i = 0; i < 2; i++) {
+            MessageContext synCtx = new TestMessageContextBuilder().addEntry("xslt-key", entry)
+                    .addEntry("codes-key", codes).setBodyFromString(SOURCE).build();
+            transformMediator.mediate(synCtx);
+
+            OMElement result = synCtx.getEnvelope().getBody().getFirstElement();
+            assertEquals("result", result.getLocalName());
+            assertEquals("IBM", result.getText());
+        }
+    }
+
     protected static void test(Class sbf, Class rbf) throws Exception {
 
         XSLTMediator transformMediator = new XSLTMediator();
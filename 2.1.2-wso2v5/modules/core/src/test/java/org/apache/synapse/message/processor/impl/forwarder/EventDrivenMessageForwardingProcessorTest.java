@@ -0,0 +1,181 @@
+/*
+ *  Copyright WSO2 Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.synapse.message.processor.impl.forwarder;
+
+import junit.framework.TestCase;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.ServerConfigurationInformation;
+import org.apache.synapse.ServerContextInformation;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.axis2.Axis2SynapseEnvironment;
+import org.apache.synapse.endpoints.Endpoint;
+import org.apache.synapse.mediators.TestUtils;
+import org.apache.synapse.message.processor.MessageProcessorConstants;
+import org.apache.synapse.message.senders.blocking.BlockingMsgSender;
+import org.apache.synapse.message.store.impl.memory.InMemoryStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class EventDrivenMessageForwardingProcessorTest extends TestCase {
+
+    private InMemoryStore store;
+    private StubSender sender;
+    private TestProcessor processor;
+
+    protected void setUp() throws Exception {
+        store = new InMemoryStore();
+        store.setName("store");
+        sender = new StubSender();
+    }
+
+    protected void tearDown() throws Exception {
+        if (processor != null) {
+            processor.destroy();
+        }
+    }
+
+    public void testBatchIsAcknowledgedWhenDelivered() throws Exception {
+        populateStore(5);
+        // the first attempt of ID1 fails, only that message is sent again
+        sender.failures.put("ID1", 1);
+
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(ForwardingProcessorConstants.BATCH_SIZE, "2");
+        parameters.put(MessageProcessorConstants.RETRY_INTERVAL, "1");
+        start(parameters);
+
+        waitFor(6);
+        assertEquals(Arrays.asList("ID0", "ID1", "ID1", "ID2", "ID3", "ID4"), sender.sent);
+        // a batch leaves the store only after all of its messages are delivered
+        assertEquals(Arrays.asList(5, 5, 5, 3, 3, 1), sender.storeSizes);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (store.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, store.size());
+        assertTrue(processor.isActive());
+    }
+
+    public void testRetryDelayDoubles() throws Exception {
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(MessageProcessorConstants.RETRY_INTERVAL, "100");
+        parameters.put(ForwardingProcessorConstants.MAX_RETRY_INTERVAL, "500");
+        start(parameters);
+
+        assertEquals(100, processor.getRetryDelay(1));
+        assertEquals(200, processor.getRetryDelay(2));
+        assertEquals(400, processor.getRetryDelay(3));
+        assertEquals(500, processor.getRetryDelay(4));
+        assertEquals(500, processor.getRetryDelay(100));
+    }
+
+    public void testDeactivatedAfterMaxDeliveryAttempts() throws Exception {
+        populateStore(1);
+        sender.failures.put("ID0", Integer.MAX_VALUE);
+
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(MessageProcessorConstants.RETRY_INTERVAL, "1");
+        parameters.put(MessageProcessorConstants.MAX_DELIVER_ATTEMPTS, "3");
+        start(parameters);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (processor.isActive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(processor.isDeactivated());
+        assertEquals("false", parameters.get(MessageProcessorConstants.IS_ACTIVATED));
+
+        // no more attempts are made and the message stays in the store
+        Thread.sleep(100);
+        assertEquals(3, sender.sent.size());
+        assertEquals(1, store.size());
+    }
+
+    private void start(Map<String, Object> parameters) {
+        SynapseConfiguration config = new SynapseConfiguration();
+        config.addMessageStore(store.getName(), store);
+
+        parameters.put(MessageProcessorConstants.INTERVAL, "10");
+        processor = new TestProcessor(sender);
+        processor.setName("processor");
+        processor.setMessageStoreName(store.getName());
+        processor.setTargetEndpoint("endpoint");
+        processor.setParameters(parameters);
+        processor.init(new Axis2SynapseEnvironment(null, config,
+                new ServerContextInformation(new ServerConfigurationInformation())));
+    }
+
+    private void waitFor(int sends) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sender.sent.size() < sends && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void populateStore(int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            MessageContext msg = TestUtils.createLightweightSynapseMessageContext("<test/>");
+            msg.setMessageID("ID" + i);
+            store.getProducer().storeMessage(msg);
+        }
+    }
+
+    private static class TestProcessor extends EventDrivenMessageForwardingProcessor {
+
+        private final BlockingMsgSender sender;
+
+        TestProcessor(BlockingMsgSender sender) {
+            this.sender = sender;
+        }
+
+        protected BlockingMsgSender createMessageSender(Map<String, Object> params) {
+            return sender;
+        }
+    }
+
+    /**
+     * Records the sent messages and fails the configured number of attempts of a message
+     */
+    private class StubSender extends BlockingMsgSender {
+
+        private final List<String> sent =
+                Collections.synchronizedList(new ArrayList<String>());
+        private final List<Integer> storeSizes =
+                Collections.synchronizedList(new ArrayList<Integer>());
+        private final Map<String, Integer> failures = new HashMap<String, Integer>();
+
+        public synchronized MessageContext send(Endpoint endpoint, MessageContext msgCtx)
+                throws Exception {
+            String id = msgCtx.getMessageID();
+            sent.add(id);
+            storeSizes.add(store.size());
+
+            Integer remaining = failures.get(id);
+            if (remaining != null && remaining > 0) {
+                failures.put(id, remaining - 1);
+                throw new Exception("Simulated failure of " + id);
+            }
+            // an out only operation
+            return null;
+        }
+    }
+}
@@ -18,11 +18,16 @@ package org.apache.synapse.message.store;
 
 import junit.framework.TestCase;
 import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.axis2.Axis2SynapseEnvironment;
 import org.apache.synapse.mediators.TestUtils;
 import org.apache.synapse.message.MessageConsumer;
+import org.apache.synapse.message.MessageProducer;
 import org.apache.synapse.message.store.impl.memory.InMemoryStore;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 public class InMemoryMessageStoreTest extends TestCase {
@@ -117,6 +122,117 @@ public class InMemoryMessageStoreTest extends TestCase {
 
     }
     
+    public void testBatchReceive() throws Exception {
+        MessageStore store = new InMemoryStore();
+        populateStore(store, 10);
+
+        MessageConsumer consumer = store.getConsumer();
+        List<MessageContext> batch = consumer.receive(4);
+        assertEquals(4, batch.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals("ID" + i, batch.get(i).getMessageID());
+        }
+        assertEquals(10, store.size());
+        consumer.ack();
+        assertEquals(6, store.size());
+        assertEquals("ID4", consumer.receive().getMessageID());
+        consumer.ack();
+
+        batch = store.poll(10);
+        assertEquals(5, batch.size());
+        assertEquals("ID5", batch.get(0).getMessageID());
+        assertEquals(0, store.size());
+        assertTrue(consumer.receive(10).isEmpty());
+    }
+
+    public void testBoundedStore() throws Exception {
+        MessageStore store = new InMemoryStore();
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(InMemoryStore.CAPACITY, "5");
+        store.setParameters(parameters);
+
+        MessageProducer producer = store.getProducer();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(producer.storeMessage(createMessageContext("ID" + i)));
+        }
+        assertFalse(producer.storeMessage(createMessageContext("ID5")));
+        assertEquals(5, store.size());
+
+        store.remove();
+        assertTrue(producer.storeMessage(createMessageContext("ID5")));
+        assertEquals("ID1", store.get(0).getMessageID());
+        assertEquals("ID5", store.get(4).getMessageID());
+    }
+
+    public void testBlockingStore() throws Exception {
+        final MessageStore store = new InMemoryStore();
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(InMemoryStore.CAPACITY, "1");
+        parameters.put(InMemoryStore.FULL_POLICY, InMemoryStore.POLICY_BLOCK);
+        parameters.put(InMemoryStore.BLOCK_TIMEOUT, "5000");
+        store.setParameters(parameters);
+
+        MessageProducer producer = store.getProducer();
+        assertTrue(producer.storeMessage(createMessageContext("FOO")));
+
+        Thread consumer = new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ignore) {
+                }
+                store.remove();
+            }
+        };
+        consumer.start();
+        assertTrue(producer.storeMessage(createMessageContext("BAR")));
+        consumer.join();
+        assertEquals("BAR", store.get(0).getMessageID());
+    }
+
+    public void testOverflowStore() throws Exception {
+        SynapseConfiguration config = new SynapseConfiguration();
+        InMemoryStore overflowStore = new InMemoryStore();
+        overflowStore.setName("overflow");
+        config.addMessageStore("overflow", overflowStore);
+
+        InMemoryStore store = new InMemoryStore();
+        store.setName("bounded");
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(InMemoryStore.CAPACITY, "2");
+        parameters.put(InMemoryStore.FULL_POLICY, InMemoryStore.POLICY_OVERFLOW);
+        parameters.put(InMemoryStore.OVERFLOW_STORE, "overflow");
+        store.setParameters(parameters);
+        store.init(new Axis2SynapseEnvironment(config));
+
+        populateStore(store, 5);
+        assertEquals(2, store.size());
+        assertEquals(3, overflowStore.size());
+
+        // messages move back as soon as there is space, new messages queue up behind them
+        MessageConsumer consumer = store.getConsumer();
+        for (int i = 0; i < 2; i++) {
+            assertEquals("ID" + i, consumer.receive().getMessageID());
+            consumer.ack();
+        }
+        assertEquals(1, overflowStore.size());
+        assertTrue(store.getProducer().storeMessage(createMessageContext("ID5")));
+        assertEquals(2, store.size());
+        assertEquals(2, overflowStore.size());
+
+        List<MessageContext> batch = store.poll(2);
+        assertEquals("ID2", batch.get(0).getMessageID());
+        assertEquals("ID3", batch.get(1).getMessageID());
+        assertEquals(0, overflowStore.size());
+
+        for (int i = 4; i < 6; i++) {
+            assertEquals("ID" + i, consumer.receive().getMessageID());
+            consumer.ack();
+        }
+        assertNull(consumer.receive());
+        assertEquals(0, store.size());
+    }
+
     private MessageContext createMessageContext(String identifier) throws Exception {
         MessageContext msg = TestUtils.createLightweightSynapseMessageContext("<test/>");
         msg.setMessageID(identifier);
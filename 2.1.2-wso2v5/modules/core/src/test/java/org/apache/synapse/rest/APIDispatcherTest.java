@@ -48,6 +48,29 @@ public class APIDispatcherTest extends RESTMediationTestCase {
         assertEquals(TEST_API, synCtx.getProperty(RESTConstants.SYNAPSE_REST_API));
     }
 
+    public void testRootAPIDispatchAmongOtherAPIs() throws Exception {
+        API rootAPI = new API(TEST_API, "/");
+        API otherAPI = new API("OtherAPI", "/foo2");
+        SynapseConfiguration synapseConfig = new SynapseConfiguration();
+        synapseConfig.addAPI(rootAPI.getName(), rootAPI);
+        synapseConfig.addAPI(otherAPI.getName(), otherAPI);
+
+        RESTRequestHandler handler = new RESTRequestHandler();
+
+        MessageContext synCtx = getMessageContext(synapseConfig, false, "/foo/bar", "GET");
+        handler.process(synCtx);
+        assertEquals(TEST_API, synCtx.getProperty(RESTConstants.SYNAPSE_REST_API));
+
+        synCtx = getMessageContext(synapseConfig, false, "/", "GET");
+        handler.process(synCtx);
+        assertEquals(TEST_API, synCtx.getProperty(RESTConstants.SYNAPSE_REST_API));
+
+        // the root API is evaluated after the APIs with a more specific context
+        synCtx = getMessageContext(synapseConfig, false, "/foo2/bar", "GET");
+        handler.process(synCtx);
+        assertEquals("OtherAPI", synCtx.getProperty(RESTConstants.SYNAPSE_REST_API));
+    }
+
     public void testBasicAPIDispatch() throws Exception {
         API api = new API(TEST_API, "/test");
         SynapseConfiguration synapseConfig = new SynapseConfiguration();
@@ -278,4 +301,47 @@ public class APIDispatcherTest extends RESTMediationTestCase {
         assertNull(synCtx.getProperty(RESTConstants.SYNAPSE_REST_API_VERSION));
     }
 
+
+    public void testDispatchAmongManyAPIs() throws Exception {
+        SynapseConfiguration synapseConfig = new SynapseConfiguration();
+        for (int i = 0; i < 200; i++) {
+            API api = new API(TEST_API + i, "/test" + i + "/store");
+            if (i % 2 == 0) {
+                api.setVersionStrategy(new URLBasedVersionStrategy(api, TEST_API_VERSION, null));
+            }
+            synapseConfig.addAPI(api.getName(), api);
+        }
+        // an API with the default version strategy whose context looks like a version
+        API defaultVersionAPI = new API("DefaultVersionAPI", "/test10/store/" + TEST_API_VERSION);
+        synapseConfig.addAPI(defaultVersionAPI.getName(), defaultVersionAPI);
+
+        RESTRequestHandler handler = new RESTRequestHandler();
+
+        MessageContext synCtx = getMessageContext(synapseConfig, false,
+                "/test11/store/items?a=5", "GET");
+        handler.process(synCtx);
+        assertEquals(TEST_API + 11, synCtx.getProperty(RESTConstants.SYNAPSE_REST_API));
+
+        synCtx = getMessageContext(synapseConfig, false, "/test1/storefront", "GET");
+        handler.process(synCtx);
+        assertNull(synCtx.getProperty(RESTConstants.SYNAPSE_REST_API));
+
+        // the specific version is preferred over the default version strategy
+        API versionedAPI = synapseConfig.getAPI(TEST_API + 10 + ":v" + TEST_API_VERSION);
+        synCtx = getMessageContext(synapseConfig, false,
+                "/test10/store/" + TEST_API_VERSION + "/items", "GET");
+        handler.process(synCtx);
+        assertEquals(versionedAPI.getName(), synCtx.getProperty(RESTConstants.SYNAPSE_REST_API));
+
+        synCtx = getMessageContext(synapseConfig, false, "/test10/store/2.0.0/items", "GET");
+        handler.process(synCtx);
+        assertNull(synCtx.getProperty(RESTConstants.SYNAPSE_REST_API));
+
+        // removing an API takes effect on the next request
+        synapseConfig.removeAPI(versionedAPI.getName());
+        synCtx = getMessageContext(synapseConfig, false,
+                "/test10/store/" + TEST_API_VERSION + "/items", "GET");
+        handler.process(synCtx);
+        assertEquals("DefaultVersionAPI", synCtx.getProperty(RESTConstants.SYNAPSE_REST_API));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,128 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+
+package org.apache.synapse.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+public class CopyOnWritePropertyMapTest extends TestCase {
+
+    private Map<String, Object> shared;
+
+    protected void setUp() throws Exception {
+        shared = new HashMap<String, Object>();
+        shared.put("a", "1");
+        shared.put("b", "2");
+    }
+
+    public void testReadThroughToSharedProperties() {
+        Map<String, Object> fork = new CopyOnWritePropertyMap(shared);
+        assertEquals("1", fork.get("a"));
+        assertEquals("2", fork.get("b"));
+        assertTrue(fork.containsKey("a"));
+        assertFalse(fork.containsKey("c"));
+        assertEquals(2, fork.size());
+    }
+
+    public void testWritesAreNotVisibleToOtherForks() {
+        Map<String, Object> fork1 = new CopyOnWritePropertyMap(shared);
+        Map<String, Object> fork2 = new CopyOnWritePropertyMap(shared);
+
+        assertEquals("1", fork1.put("a", "x"));
+        fork1.put("c", "3");
+        assertEquals("2", fork1.remove("b"));
+
+        assertEquals("x", fork1.get("a"));
+        assertEquals("3", fork1.get("c"));
+        assertNull(fork1.get("b"));
+        assertFalse(fork1.containsKey("b"));
+        assertEquals(2, fork1.size());
+
+        assertEquals("1", fork2.get("a"));
+        assertEquals("2", fork2.get("b"));
+        assertNull(fork2.get("c"));
+        assertEquals(2, fork2.size());
+
+        assertEquals(2, shared.size());
+        assertEquals("1", shared.get("a"));
+    }
+
+    public void testPutAfterRemove() {
+        Map<String, Object> fork = new CopyOnWritePropertyMap(shared);
+        fork.remove("a");
+        assertFalse(fork.containsKey("a"));
+        fork.put("a", "y");
+        assertEquals("y", fork.get("a"));
+        assertEquals(2, fork.size());
+    }
+
+    public void testClear() {
+        Map<String, Object> fork = new CopyOnWritePropertyMap(shared);
+        fork.put("c", "3");
+        fork.clear();
+        assertTrue(fork.isEmpty());
+        assertNull(fork.get("a"));
+        assertEquals(2, shared.size());
+    }
+
+    public void testIteration() {
+        Map<String, Object> fork = new CopyOnWritePropertyMap(shared);
+        fork.put("c", "3");
+        fork.remove("b");
+
+        Map<String, Object> copy = new HashMap<String, Object>(fork);
+        assertEquals(2, copy.size());
+        assertEquals("1", copy.get("a"));
+        assertEquals("3", copy.get("c"));
+
+        Iterator<String> keys = fork.keySet().iterator();
+        while (keys.hasNext()) {
+            if ("a".equals(keys.next())) {
+                keys.remove();
+            }
+        }
+        assertEquals(1, fork.size());
+        assertFalse(fork.containsKey("a"));
+        assertTrue(shared.containsKey("a"));
+    }
+
+    public void testListsAreCopiedPerFork() {
+        ArrayList<Object> list = new ArrayList<Object>();
+        list.add("one");
+        shared.put("list", list);
+
+        Map<String, Object> fork = new CopyOnWritePropertyMap(shared);
+        ArrayList forkList = (ArrayList) fork.get("list");
+        assertNotSame(list, forkList);
+        assertSame(forkList, fork.get("list"));
+        forkList.add("two");
+
+        assertEquals(1, list.size());
+        assertEquals(2, ((ArrayList) fork.get("list")).size());
+
+        Map<String, Object> otherFork = new CopyOnWritePropertyMap(shared);
+        assertEquals(1, ((ArrayList) otherFork.get("list")).size());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+
+package org.apache.synapse.util.concurrent;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TimingWheelTest extends TestCase {
+
+    private static final long TICK = 10;
+
+    public void testExpiry() throws Exception {
+        TimingWheel<String> wheel = new TimingWheel<String>(8, TICK, 0);
+        List<String> expired = new ArrayList<String>();
+        wheel.schedule("a", 5 * TICK);
+        wheel.schedule("b", 20 * TICK);
+        assertEquals(2, wheel.size());
+
+        wheel.advance(4 * TICK, expired);
+        assertTrue(expired.isEmpty());
+
+        wheel.advance(6 * TICK, expired);
+        assertEquals(Arrays.asList("a"), expired);
+
+        // the second item is more than a full turn of the wheel away
+        wheel.advance(13 * TICK, expired);
+        assertEquals(1, expired.size());
+
+        wheel.advance(21 * TICK, expired);
+        assertEquals(Arrays.asList("a", "b"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    public void testCancel() throws Exception {
+        TimingWheel<String> wheel = new TimingWheel<String>(8, TICK, 0);
+        List<String> expired = new ArrayList<String>();
+        TimingWheel.Timeout<String> timeout = wheel.schedule("a", 3 * TICK);
+        TimingWheel.Timeout<String> other = wheel.schedule("b", 3 * TICK);
+        assertTrue(wheel.cancel(timeout));
+        // cancelling twice is harmless
+        assertFalse(wheel.cancel(timeout));
+        assertFalse(wheel.cancel(null));
+
+        wheel.advance(5 * TICK, expired);
+        assertEquals(Arrays.asList("b"), expired);
+        // an expired timeout can not be cancelled
+        assertFalse(wheel.cancel(other));
+        assertEquals(0, wheel.size());
+    }
+
+    public void testPastExpiryFiresOnNextTick() throws Exception {
+        TimingWheel<String> wheel = new TimingWheel<String>(8, TICK, 0);
+        List<String> expired = new ArrayList<String>();
+        wheel.advance(2 * TICK, expired);
+        wheel.schedule("a", 0);
+
+        wheel.advance(2 * TICK, expired);
+        assertTrue(expired.isEmpty());
+        wheel.advance(4 * TICK, expired);
+        assertEquals(1, expired.size());
+    }
+
+    public void testFallingBehind() throws Exception {
+        TimingWheel<String> wheel = new TimingWheel<String>(8, TICK, 0);
+        List<String> expired = new ArrayList<String>();
+        for (int i = 1; i <= 30; i++) {
+            wheel.schedule("t" + i, i * TICK);
+        }
+
+        // all the buckets are visited once, collecting everything which has expired
+        wheel.advance(25 * TICK, expired);
+        assertEquals(25, expired.size());
+        wheel.advance(32 * TICK, expired);
+        assertEquals(30, expired.size());
+    }
+
+    public void testConcurrentScheduling() throws Exception {
+        final TimingWheel<Integer> wheel = new TimingWheel<Integer>(8, TICK, 0);
+        final List<Integer> expired = new ArrayList<Integer>();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int base = i * 1000;
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        TimingWheel.Timeout<Integer> timeout =
+                                wheel.schedule(base + j, (j % 50) * TICK);
+                        if (j % 2 == 1) {
+                            wheel.cancel(timeout);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (long now = 0; now <= 60 * TICK; now += TICK) {
+            wheel.advance(now, expired);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        wheel.advance(200 * TICK, expired);
+        assertEquals(2000, expired.size());
+        assertEquals(0, wheel.size());
+    }
+}
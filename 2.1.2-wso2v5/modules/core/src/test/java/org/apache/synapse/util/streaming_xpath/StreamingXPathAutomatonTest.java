@@ -0,0 +1,171 @@
+/*
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.synapse.util.streaming_xpath;
+
+import junit.framework.TestCase;
+import org.apache.synapse.util.streaming_xpath.compiler.exception.StreamingXPATHCompilerException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class StreamingXPathAutomatonTest extends TestCase {
+
+    private static final String SOAP_NS = "http://schemas.xmlsoap.org/soap/envelope/";
+    private static final String ORDER_NS = "http://services.samples";
+
+    private static final String MESSAGE =
+            "<soapenv:Envelope xmlns:soapenv=\"" + SOAP_NS + "\">" +
+                "<soapenv:Header><m:route xmlns:m=\"" + ORDER_NS + "\">fast</m:route></soapenv:Header>" +
+                "<soapenv:Body>" +
+                    "<m:order xmlns:m=\"" + ORDER_NS + "\" type=\"retail\">" +
+                        "<m:item sku=\"A1\" qty=\"2\">apple</m:item>" +
+                        "<m:item sku=\"B2\" qty=\"1\">pear</m:item>" +
+                        "<m:item sku=\"C3\"><m:name>plum</m:name></m:item>" +
+                    "</m:order>" +
+                "</soapenv:Body>" +
+            "</soapenv:Envelope>";
+
+    private final Map<String, String> namespaces = new HashMap<String, String>();
+
+    @Override
+    protected void setUp() throws Exception {
+        namespaces.put("soapenv", SOAP_NS);
+        namespaces.put("m", ORDER_NS);
+    }
+
+    public void testUnsupportedExpressions() {
+        String[] expressions = {
+                "/a/b[1]", "//a/@*", "$body/a", "get-property('To')", "/a/b = 'x'",
+                "count(/a/text())", "/a/..", "//@id", "/a/following-sibling::b", "/"
+        };
+        for (String expression : expressions) {
+            try {
+                new StreamingPath(expression);
+                fail("Expression should not be supported : " + expression);
+            } catch (StreamingXPATHCompilerException expected) {
+                // expected
+            }
+        }
+    }
+
+    public void testPaths() throws Exception {
+        String[] results = evaluate(
+                "/soapenv:Envelope/soapenv:Header/m:route",
+                "//m:item[@sku='B2']",
+                "//m:item[@qty]/@sku",
+                "soapenv:Body/m:order/@type",
+                "//m:item[@sku!='A1']/text()",
+                "//m:missing");
+
+        assertEquals("fast", results[0]);
+        assertEquals("pear", results[1]);
+        assertEquals("A1B2", results[2]);
+        assertEquals("retail", results[3]);
+        assertEquals("pear", results[4]);
+        assertEquals("", results[5]);
+    }
+
+    public void testFunctions() throws Exception {
+        String[] results = evaluate(
+                "count(//m:item)",
+                "count(/soapenv:Envelope/soapenv:Body/m:order/m:item/@qty)",
+                "local-name(/soapenv:Envelope/soapenv:Body/*)",
+                "count(//m:missing)",
+                "local-name(//m:missing)");
+
+        assertEquals("3.0", results[0]);
+        assertEquals("2.0", results[1]);
+        assertEquals("order", results[2]);
+        assertEquals("0.0", results[3]);
+        assertEquals("", results[4]);
+    }
+
+    public void testElementWithoutText() throws Exception {
+        String[] results = evaluate("//m:item[@sku='C3']");
+        assertTrue(results[0], results[0].startsWith("<"));
+        assertTrue(results[0], results[0].contains("sku=\"C3\""));
+        assertTrue(results[0], results[0].contains(">plum</"));
+    }
+
+    public void testBooleanValue() throws Exception {
+        List<StreamingPath> paths = new ArrayList<StreamingPath>();
+        paths.add(new StreamingPath("//m:item[@sku='A1']"));
+        paths.add(new StreamingPath("//m:item[@sku='Z9']"));
+        paths.add(new StreamingPath("count(//m:item)"));
+        paths.add(new StreamingPath("/x:unknown"));
+
+        StreamingXPathAutomaton.Results results = createAutomaton(paths).evaluate(read(MESSAGE));
+        assertEquals(Boolean.TRUE, results.getBooleanValue(0));
+        assertEquals(Boolean.FALSE, results.getBooleanValue(1));
+        assertEquals(Boolean.TRUE, results.getBooleanValue(2));
+        // the prefix x is not declared, which is left to Jaxen to report
+        assertNull(results.getBooleanValue(3));
+        assertNull(results.getStringValue(3));
+    }
+
+    public void testStopsAfterLastMatch() throws Exception {
+        String message = "<a><b>first</b><c>" + "<d>ignored</d>" + "</c>";
+        // the document is truncated, it can only be evaluated if the pass stops early
+        List<StreamingPath> paths = new ArrayList<StreamingPath>();
+        paths.add(new StreamingPath("/a/b"));
+        paths.add(new StreamingPath("/*/b"));
+        StreamingXPathAutomaton automaton = createAutomaton(paths);
+
+        try {
+            automaton.evaluate(read(message));
+            fail("The pass should need the rest of the document");
+        } catch (Exception expected) {
+            // the element a may still have other b children
+        }
+
+        paths.clear();
+        paths.add(new StreamingPath("local-name(/*)"));
+        StreamingXPathAutomaton.Results results = createAutomaton(paths).evaluate(read(message));
+        assertEquals("a", results.getStringValue(0));
+    }
+
+    private String[] evaluate(String... expressions) throws Exception {
+        List<StreamingPath> paths = new ArrayList<StreamingPath>();
+        for (String expression : expressions) {
+            paths.add(new StreamingPath(expression));
+        }
+        StreamingXPathAutomaton.Results results = createAutomaton(paths).evaluate(read(MESSAGE));
+        String[] values = new String[expressions.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = results.getStringValue(i);
+        }
+        return values;
+    }
+
+    private StreamingXPathAutomaton createAutomaton(List<StreamingPath> paths) {
+        List<Map<String, String>> maps = new ArrayList<Map<String, String>>();
+        for (int i = 0; i < paths.size(); i++) {
+            maps.add(namespaces);
+        }
+        return new StreamingXPathAutomaton(paths, maps);
+    }
+
+    private XMLStreamReader read(String xml) throws Exception {
+        return XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml));
+    }
+}
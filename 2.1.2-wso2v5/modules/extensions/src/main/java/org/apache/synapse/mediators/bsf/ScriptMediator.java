@@ -26,11 +26,15 @@ import org.apache.axiom.om.OMElement;
 import org.apache.axiom.om.OMText;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.ManagedLifecycle;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseException;
 import org.apache.synapse.SynapseLog;
 import org.apache.synapse.commons.json.JsonUtil;
 import org.apache.synapse.config.Entry;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.config.SynapsePropertiesLoader;
+import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.core.axis2.Axis2MessageContext;
 import org.apache.synapse.mediators.AbstractMediator;
 import org.apache.synapse.mediators.Value;
@@ -41,8 +45,15 @@ import org.mozilla.javascript.ScriptableObject;
 import javax.activation.DataHandler;
 import javax.script.*;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A Synapse mediator that calls a function in any scripting language supported by the BSF.
@@ -60,8 +71,12 @@ import java.util.TreeMap;
  * if not specified it defaults to a function named 'mediate'. The function takes a single
  * parameter which is the Synapse MessageContext. The function may return a boolean, if it
  * does not then true is assumed.
+ * <p/>
+ * A script engine which supports multi-threading is shared by all messages. Otherwise each
+ * message borrows an engine from a bounded pool, each engine holding its own compiled script
+ * and the external scripts evaluated in it, so that messages are mediated concurrently.
  */
-public class ScriptMediator extends AbstractMediator {
+public class ScriptMediator extends AbstractMediator implements ManagedLifecycle {
     private static final Log logger = LogFactory.getLog(ScriptMediator.class.getName());
 
     /**
@@ -69,6 +84,33 @@ public class ScriptMediator extends AbstractMediator {
      */
     private static final String MC_VAR_NAME = "mc";
 
+    private static final int DEFAULT_ENGINE_POOL_SIZE = 10;
+
+    /**
+     * Maximum number of script engines created by a mediator, for a language whose engine does
+     * not support multi-threading
+     */
+    private static final int ENGINE_POOL_SIZE = getEnginePoolSize();
+
+    private static int getEnginePoolSize() {
+        String value = SynapsePropertiesLoader.getPropertyValue(
+                "synapse.script.engine.pool.size", null);
+        if (value != null) {
+            try {
+                int size = Integer.parseInt(value.trim());
+                if (size > 0) {
+                    return size;
+                }
+            } catch (NumberFormatException ignore) {
+                // logged below
+            }
+            logger.warn("Invalid value : " + value + " for the property : " +
+                    "synapse.script.engine.pool.size, using the default value : " +
+                    DEFAULT_ENGINE_POOL_SIZE);
+        }
+        return DEFAULT_ENGINE_POOL_SIZE;
+    }
+
     /**
      * The registry entry key for a script loaded from the registry
      * Handle both static and dynamic(Xpath) Keys
@@ -90,35 +132,32 @@ public class ScriptMediator extends AbstractMediator {
      * The source code of the script
      */
     private String scriptSourceCode;
-    /**
-     * The BSF engine created to process each message through the script
-     */
-    protected ScriptEngine scriptEngine;
-    /**
-     * The BSF engine created to validate each JSON payload
-     */
-    protected ScriptEngine jsEngine;
     /**
      * Does the ScriptEngine support multi-threading
      */
     private boolean multiThreadedEngine;
-    /**
-     * The compiled script. Only used for inline scripts
-     */
-    private CompiledScript compiledScript;
     /**
      * The compiled JS script. Only used for inline scripts
      */
     private Script compiledJsScript;
     /**
-     * The Invokable script. Only used for external scripts
+     * The engine used by all messages, if the engine supports multi-threading
      */
-    private Invocable invocableScript;
-
+    private ScriptEngineWrapper sharedEngine;
     /**
-     * Lock used to ensure thread-safe lookup of the object from the registry
+     * The engines which are not in use, if the engine does not support multi-threading
      */
-    private final Object resourceLock = new Object();
+    private final BlockingQueue<ScriptEngineWrapper> enginePool =
+            new ArrayBlockingQueue<ScriptEngineWrapper>(ENGINE_POOL_SIZE);
+    /**
+     * The number of engines created for the pool
+     */
+    private final AtomicInteger engineCount = new AtomicInteger(0);
+    /**
+     * The sources of the external scripts, by the evaluated registry key
+     */
+    private final Map<String, ScriptSource> scriptSources =
+            new ConcurrentHashMap<String, ScriptSource>();
 
     /**
      * JSON parser used to parse JSON strings
@@ -161,12 +200,12 @@ public class ScriptMediator extends AbstractMediator {
         if (function != null) {
             this.function = function;
         }
-        initScriptEngine();
-        if (!(scriptEngine instanceof Invocable)) {
+        ScriptEngineWrapper engine = initScriptEngine();
+        if (!(engine.getEngine() instanceof Invocable)) {
             throw new SynapseException("Script engine is not an Invocable" +
                     " engine for language: " + language);
         }
-        invocableScript = (Invocable) scriptEngine;
+        releaseEngine(engine);
     }
 
     /**
@@ -195,13 +234,11 @@ public class ScriptMediator extends AbstractMediator {
         }
 
         boolean returnValue;
-        if (multiThreadedEngine) {
-            returnValue = invokeScript(synCtx);
-        } else {
-            // TODO: change to use a pool of script engines (requires an update to BSF)
-            synchronized (scriptEngine.getClass()) {
-                returnValue = invokeScript(synCtx);
-            }
+        ScriptEngineWrapper engine = acquireEngine();
+        try {
+            returnValue = invokeScript(synCtx, engine);
+        } finally {
+            releaseEngine(engine);
         }
 
         if (synLog.isTraceTraceEnabled()) {
@@ -214,7 +251,7 @@ public class ScriptMediator extends AbstractMediator {
         return returnValue;
     }
 
-    private boolean invokeScript(MessageContext synCtx) {
+    private boolean invokeScript(MessageContext synCtx, ScriptEngineWrapper engine) {
         boolean returnValue;
         try {
             //if the engine is Rhino then needs to set the class loader specifically
@@ -226,9 +263,9 @@ public class ScriptMediator extends AbstractMediator {
 
             Object returnObject;
             if (key != null) {
-                returnObject = mediateWithExternalScript(synCtx);
+                returnObject = mediateWithExternalScript(synCtx, engine);
             } else {
-                returnObject = mediateForInlineScript(synCtx);
+                returnObject = mediateForInlineScript(synCtx, engine);
             }
             returnValue = !(returnObject != null && returnObject instanceof Boolean)
                     || (Boolean) returnObject;
@@ -257,28 +294,31 @@ public class ScriptMediator extends AbstractMediator {
      * Mediation implementation when the script to be executed should be loaded from the registry
      *
      * @param synCtx the message context
+     * @param engine the engine to execute the script with
      * @return script result
      * @throws ScriptException       For any errors , when compile, run the script
      * @throws NoSuchMethodException If the function is not defined in the script
      */
-    private Object mediateWithExternalScript(MessageContext synCtx)
+    private Object mediateWithExternalScript(MessageContext synCtx, ScriptEngineWrapper engine)
             throws ScriptException, NoSuchMethodException {
-        prepareExternalScript(synCtx);
+        prepareExternalScript(synCtx, engine);
         ScriptMessageContext scriptMC = new ScriptMessageContext(synCtx);
-        processJSONPayload(synCtx, scriptMC);
-        return invocableScript.invokeFunction(function, new Object[]{scriptMC});        
+        processJSONPayload(synCtx, scriptMC, engine);
+        return ((Invocable) engine.getEngine()).invokeFunction(function, new Object[]{scriptMC});
     }
 
     /**
      * Perform mediation with static inline script of the given scripting language
      *
      * @param synCtx message context
+     * @param engine the engine to execute the script with
      * @return true, or the script return value
      * @throws ScriptException For any errors , when compile , run the script
      */
-    private Object mediateForInlineScript(MessageContext synCtx) throws ScriptException {
+    private Object mediateForInlineScript(MessageContext synCtx, ScriptEngineWrapper engine)
+            throws ScriptException {
         ScriptMessageContext scriptMC = new ScriptMessageContext(synCtx);
-        processJSONPayload(synCtx, scriptMC);
+        processJSONPayload(synCtx, scriptMC, engine);
         Object response = null;
         //If language is JS, Rhino Engine will be used instead of javax.scriptengine
         if(language.equalsIgnoreCase("js")){
@@ -297,26 +337,29 @@ public class ScriptMediator extends AbstractMediator {
             Context.exit();
         }
         else {
-            Bindings bindings = scriptEngine.createBindings();
+            Bindings bindings = engine.getEngine().createBindings();
             bindings.put(MC_VAR_NAME, scriptMC);
 
-            if (compiledScript != null) {
-                response = compiledScript.eval(bindings);
+            if (engine.getCompiledScript() != null) {
+                response = engine.getCompiledScript().eval(bindings);
             } else {
-                response = scriptEngine.eval(scriptSourceCode, bindings);
+                response = engine.getEngine().eval(scriptSourceCode, bindings);
             }
         }
         return response;
     }
 
-    private void processJSONPayload(MessageContext synCtx, ScriptMessageContext scriptMC) throws ScriptException {
+    private void processJSONPayload(MessageContext synCtx, ScriptMessageContext scriptMC,
+                                    ScriptEngineWrapper engine) throws ScriptException {
         if (!(synCtx instanceof Axis2MessageContext)) {
             return;
         }
+        // the JSON engine is used by one message at a time, as the engine it belongs to
+        ScriptEngine jsonEngine = engine.getJsonEngine();
         org.apache.axis2.context.MessageContext messageContext = ((Axis2MessageContext) synCtx).getAxis2MessageContext();
         String jsonString = (String) messageContext.getProperty("JSON_STRING");
         Object jsonObject = null;
-        prepareForJSON(scriptMC);
+        prepareForJSON(scriptMC, jsonEngine);
         if (JsonUtil.hasAJsonPayload(messageContext)) {
             try {
                 JsonElement o = jsonParser.parse(new JsonReader(JsonUtil.newJsonPayloadReader(messageContext))); // first, check if the stream is valid.
@@ -324,47 +367,44 @@ public class ScriptMediator extends AbstractMediator {
                     logger.error("#processJSONPayload. JSON stream is not valid.");
                     return;
                 }
-                jsonObject = this.jsEngine.eval(JsonUtil.newJavaScriptSourceReader(messageContext));
+                jsonObject = jsonEngine.eval(JsonUtil.newJavaScriptSourceReader(messageContext));
             } catch (Exception e) {
                 handleException("Failed to get the JSON payload from the input stream. Error>>>\n" + e.getLocalizedMessage());
             }
         } else if (jsonString != null) {
             String jsonPayload = jsonParser.parse(jsonString).toString();
-            jsonObject = this.jsEngine.eval('(' + jsonPayload + ')');
+            jsonObject = jsonEngine.eval('(' + jsonPayload + ')');
         }
         if (jsonObject != null) {
             scriptMC.setJsonObject(synCtx, jsonObject);
         }
     }
 
-    private void prepareForJSON(ScriptMessageContext scriptMC) {
+    private void prepareForJSON(ScriptMessageContext scriptMC, ScriptEngine jsonEngine) {
         if (jsonParser == null) {
             jsonParser = new JsonParser();
         }
-        scriptMC.setScriptEngine(this.jsEngine);
+        scriptMC.setScriptEngine(jsonEngine);
     }
 
     /**
      * Initialise the Mediator for the inline script
      */
     protected void initInlineScript() {
+        ScriptEngineWrapper engine = initScriptEngine();
         try {
-            initScriptEngine();
-
-            if (scriptEngine instanceof Compilable) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Script engine supports Compilable interface, " +
-                            "compiling script code..");
-                }
+            if (engine.getEngine() instanceof Compilable) {
                 //If language is JS, Rhino Engine will be used instead of javax.scriptengine
                 if(language.equalsIgnoreCase("js")){
+                    if (log.isDebugEnabled()) {
+                        log.debug("Script engine supports Compilable interface, " +
+                                "compiling script code..");
+                    }
                     Context cx = Context.enter();
                     compiledJsScript = cx.compileString(scriptSourceCode, "eval", 0, null);
                     Context.exit();
-                } else {
-                    compiledScript = ((Compilable) scriptEngine).compile(scriptSourceCode);
                 }
-                } else {
+            } else {
                 // do nothing. If the script engine doesn't support Compilable then
                 // the inline script will be evaluated on each invocation
                 if (log.isDebugEnabled()) {
@@ -372,145 +412,283 @@ public class ScriptMediator extends AbstractMediator {
                             "in-lined script would be evaluated on each invocation..");
                 }
             }
+        } finally {
+            releaseEngine(engine);
+        }
+    }
 
-        } catch (ScriptException e) {
-            throw new SynapseException("Exception initializing inline script", e);
+    /**
+     * Warm up the pool of script engines, so that the first messages do not have to wait for
+     * engines to be created and scripts to be compiled. Scripts with a static key are loaded
+     * into the engines as well.
+     *
+     * @param se the Synapse environment
+     */
+    public void init(SynapseEnvironment se) {
+        List<ScriptEngineWrapper> engines = new ArrayList<ScriptEngineWrapper>();
+        try {
+            if (sharedEngine != null) {
+                engines.add(sharedEngine);
+            } else {
+                int warmUp = Math.min(ENGINE_POOL_SIZE,
+                        Runtime.getRuntime().availableProcessors());
+                for (int i = 0; i < warmUp; i++) {
+                    ScriptEngineWrapper engine = enginePool.poll();
+                    if (engine == null) {
+                        engine = createPooledEngine();
+                    }
+                    if (engine == null) {
+                        break;
+                    }
+                    engines.add(engine);
+                }
+            }
+
+            if (key != null && key.getKeyValue() != null) {
+                SynapseConfiguration synCfg = se.getSynapseConfiguration();
+                for (ScriptEngineWrapper engine : engines) {
+                    loadScript(engine, key.getKeyValue(), synCfg.getEntry(key.getKeyValue()),
+                            synCfg);
+                    for (Value includeKey : includes.keySet()) {
+                        if (includeKey.getKeyValue() != null) {
+                            loadScript(engine, includeKey.getKeyValue(),
+                                    synCfg.getEntry(includeKey.getKeyValue()), synCfg);
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Error while preparing the script engines of the script mediator for " +
+                    "language : " + language + ", engines will be prepared on demand", e);
+        } finally {
+            for (ScriptEngineWrapper engine : engines) {
+                releaseEngine(engine);
+            }
         }
     }
 
+    public void destroy() {
+        enginePool.clear();
+        scriptSources.clear();
+    }
+
     /**
-     * Prepares the mediator for the invocation of an external script
+     * Prepares the engine for the invocation of an external script, evaluating the script and
+     * the included scripts in the engine if they were not, or if they have changed since
      *
      * @param synCtx MessageContext script
+     * @param engine the engine to prepare
      * @throws ScriptException For any errors , when compile the script
      */
-    protected synchronized void prepareExternalScript(MessageContext synCtx)
+    protected void prepareExternalScript(MessageContext synCtx, ScriptEngineWrapper engine)
             throws ScriptException {
 
-        // TODO: only need this synchronized method for dynamic registry entries. If there was a way
-        // to access the registry entry during mediator initialization then for non-dynamic entries
-        // this could be done just the once during mediator initialization.
-
         // Derive actual key from xpath expression or get static key
         String generatedScriptKey = key.evaluateValue(synCtx);
-        Entry entry = synCtx.getConfiguration().getEntryDefinition(generatedScriptKey);
-        boolean needsReload = (entry != null) && entry.isDynamic() &&
-                (!entry.isCached() || entry.isExpired());
-        synchronized (resourceLock) {
-            if (scriptSourceCode == null || needsReload) {
-                Object o = synCtx.getEntry(generatedScriptKey);
-                if (o instanceof OMElement) {
-                    scriptSourceCode = ((OMElement) (o)).getText();
-                    scriptEngine.eval(scriptSourceCode);
-                } else if (o instanceof String) {
-                    scriptSourceCode = (String) o;
-                    scriptEngine.eval(scriptSourceCode);
-                } else if (o instanceof OMText) {
-
-                    DataHandler dataHandler = (DataHandler) ((OMText) o).getDataHandler();
-                    if (dataHandler != null) {
-                        BufferedReader reader = null;
-                        try {
-                            reader = new BufferedReader(
-                                    new InputStreamReader(dataHandler.getInputStream()));
-                            scriptEngine.eval(reader);
-
-                        } catch (IOException e) {
-                            handleException("Error in reading script as a stream ", e, synCtx);
-                        } finally {
+        loadScript(engine, generatedScriptKey, synCtx.getEntry(generatedScriptKey),
+                synCtx.getConfiguration());
 
-                            if (reader != null) {
-                                try {
-                                    reader.close();
-                                } catch (IOException e) {
-                                    handleException("Error in closing input stream ", e, synCtx);
-                                }
-                            }
+        // load <include /> scripts; reload each script if needed
+        for (Value includeKey : includes.keySet()) {
+            String generatedKey = includeKey.evaluateValue(synCtx);
+            loadScript(engine, generatedKey, synCtx.getEntry(generatedKey),
+                    synCtx.getConfiguration());
+        }
+    }
 
-                        }
-                    }
+    /**
+     * Evaluate a script from the registry in the given engine, unless the same version of the
+     * script has already been evaluated in it
+     *
+     * @param engine the engine
+     * @param scriptKey the registry key of the script
+     * @param value the entry value of the script
+     * @param synCfg the Synapse configuration
+     * @throws ScriptException if the script can not be evaluated
+     */
+    private void loadScript(ScriptEngineWrapper engine, String scriptKey, Object value,
+                            SynapseConfiguration synCfg) throws ScriptException {
+        ScriptSource source = getScriptSource(scriptKey, value, synCfg);
+        // only a shared engine is used by more than a message at a time
+        synchronized (engine) {
+            if (engine.getLoadedScript(scriptKey) != source) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Re-/Loading the script with key " + scriptKey);
                 }
-
+                if (source.getCode() != null) {
+                    engine.getEngine().eval(source.getCode());
+                }
+                engine.setLoadedScript(scriptKey, source);
             }
         }
+        if (key != null && scriptKey.equals(key.getKeyValue())) {
+            scriptSourceCode = source.getCode();
+        }
+    }
 
-        // load <include /> scripts; reload each script if needed
-        for (Value includeKey : includes.keySet()) {
+    /**
+     * Get the source of a script from the registry. The source is read again only if the
+     * entry has changed, as told by its value and version.
+     *
+     * @param scriptKey the registry key of the script
+     * @param value the entry value of the script
+     * @param synCfg the Synapse configuration
+     * @return the source of the script
+     */
+    private ScriptSource getScriptSource(String scriptKey, Object value,
+                                         SynapseConfiguration synCfg) {
+        Entry entry = synCfg.getEntryDefinition(scriptKey);
+        long version = entry != null ? entry.getVersion() : 0;
+        ScriptSource source = scriptSources.get(scriptKey);
+        if (source == null || source.getValue() != value || source.getVersion() != version) {
+            source = new ScriptSource(value, version, readScript(value));
+            scriptSources.put(scriptKey, source);
+        }
+        return source;
+    }
 
-            String includeSourceCode = (String) includes.get(includeKey);
+    private String readScript(Object o) {
+        if (o instanceof OMElement) {
+            return ((OMElement) (o)).getText();
+        } else if (o instanceof String) {
+            return (String) o;
+        } else if (o instanceof OMText) {
 
-            String generatedKey = includeKey.evaluateValue(synCtx);
+            DataHandler dataHandler = (DataHandler) ((OMText) o).getDataHandler();
+            if (dataHandler != null) {
+                BufferedReader reader = null;
+                try {
+                    reader = new BufferedReader(
+                            new InputStreamReader(dataHandler.getInputStream()));
+                    StringBuilder script = new StringBuilder();
+                    char[] buffer = new char[4096];
+                    int n;
+                    while ((n = reader.read(buffer)) != -1) {
+                        script.append(buffer, 0, n);
+                    }
+                    return script.toString();
 
-            Entry includeEntry = synCtx.getConfiguration().getEntryDefinition(generatedKey);
-            boolean includeEntryNeedsReload = (includeEntry != null) && includeEntry.isDynamic()
-                    && (!includeEntry.isCached() || includeEntry.isExpired());
-            synchronized (resourceLock) {
-                if (includeSourceCode == null || includeEntryNeedsReload) {
-                    log.debug("Re-/Loading the include script with key " + includeKey);
-                    Object o = synCtx.getEntry(generatedKey);
-                    if (o instanceof OMElement) {
-                        includeSourceCode = ((OMElement) (o)).getText();
-                        scriptEngine.eval(includeSourceCode);
-                    } else if (o instanceof String) {
-                        includeSourceCode = (String) o;
-                        scriptEngine.eval(includeSourceCode);
-                    } else if (o instanceof OMText) {
-
-                        DataHandler dataHandler = (DataHandler) ((OMText) o).getDataHandler();
-                        if (dataHandler != null) {
-                            BufferedReader reader = null;
-                            try {
-                                reader = new BufferedReader(
-                                        new InputStreamReader(dataHandler.getInputStream()));
-                                scriptEngine.eval(reader);
-
-                            } catch (IOException e) {
-                                handleException("Error in reading script as a stream ", e, synCtx);
-                            } finally {
-
-                                if (reader != null) {
-                                    try {
-                                        reader.close();
-                                    } catch (IOException e) {
-                                        handleException("Error in closing input" +
-                                                " stream ", e, synCtx);
-                                    }
-                                }
-                            }
+                } catch (IOException e) {
+                    handleException("Error in reading script as a stream ", e);
+                } finally {
+
+                    if (reader != null) {
+                        try {
+                            reader.close();
+                        } catch (IOException e) {
+                            handleException("Error in closing input stream ", e);
                         }
                     }
+
                 }
             }
         }
+        return null;
     }
 
-    protected void initScriptEngine() {
+    /**
+     * Create the first script engine of the mediator
+     *
+     * @return the engine, to be released once the mediator is prepared
+     */
+    protected ScriptEngineWrapper initScriptEngine() {
         if (log.isDebugEnabled()) {
             log.debug("Initializing script mediator for language : " + language);
         }
 
-        ScriptEngineManager manager = new ScriptEngineManager();
-//        manager.registerEngineExtension("js", new RhinoScriptEngineFactory());
-//        manager.registerEngineExtension("groovy", new GroovyScriptEngineFactory());
-//        manager.registerEngineExtension("rb", new JRubyScriptEngineFactory());
-//        manager.registerEngineExtension("jsEngine", new RhinoScriptEngineFactory());
-//        manager.registerEngineExtension("py", new JythonScriptEngineFactory());
-
-        //Removed dependencies to BSF from Script Mediator, using javax.script instead.
-        this.scriptEngine = manager.getEngineByName(language);
+        ScriptEngineWrapper engine = createEngine();
+        // an engine shared by all messages shares its JSON engine as well
+        this.multiThreadedEngine =
+                engine.getEngine().getFactory().getParameter("THREADING") != null &&
+                engine.getJsonEngine().getFactory().getParameter("THREADING") != null;
+        log.debug("Script mediator for language : " + language +
+                " supports multithreading? : " + multiThreadedEngine);
 
-        ScriptEngineManager factory = new ScriptEngineManager();
-        this.jsEngine = factory.getEngineByName("JavaScript");
+        if (multiThreadedEngine) {
+            sharedEngine = engine;
+        } else {
+            engineCount.incrementAndGet();
+        }
+        return engine;
+    }
 
-//        this.jsEngine = manager.getEngineByExtension("jsEngine");
+    /**
+     * Create a script engine, with its own compiled script for an inline script
+     *
+     * @return the new engine
+     */
+    private ScriptEngineWrapper createEngine() {
+        //Removed dependencies to BSF from Script Mediator, using javax.script instead.
+        ScriptEngineManager manager = new ScriptEngineManager();
+        ScriptEngine scriptEngine = manager.getEngineByName(language);
         if (scriptEngine == null) {
             handleException("No script engine found for language: " + language);
         }
 
+        ScriptEngineWrapper engine = new ScriptEngineWrapper(scriptEngine,
+                manager.getEngineByName("JavaScript"));
+        if (key == null && !language.equalsIgnoreCase("js") &&
+                scriptEngine instanceof Compilable) {
+            if (log.isDebugEnabled()) {
+                log.debug("Script engine supports Compilable interface, " +
+                        "compiling script code..");
+            }
+            try {
+                engine.setCompiledScript(((Compilable) scriptEngine).compile(scriptSourceCode));
+            } catch (ScriptException e) {
+                throw new SynapseException("Exception initializing inline script", e);
+            }
+        }
+        return engine;
+    }
 
-        this.multiThreadedEngine = scriptEngine.getFactory().getParameter("THREADING") != null;
-        log.debug("Script mediator for language : " + language +
-                " supports multithreading? : " + multiThreadedEngine);
+    /**
+     * Create another engine for the pool, unless the pool has as many as it may have
+     *
+     * @return the new engine or null if the pool is full
+     */
+    private ScriptEngineWrapper createPooledEngine() {
+        if (engineCount.incrementAndGet() > ENGINE_POOL_SIZE) {
+            engineCount.decrementAndGet();
+            return null;
+        }
+        try {
+            return createEngine();
+        } catch (RuntimeException e) {
+            engineCount.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Get an engine to mediate a message with, waiting for an engine in use to be released if
+     * the pool has as many engines as it may have
+     *
+     * @return the engine
+     */
+    private ScriptEngineWrapper acquireEngine() {
+        if (sharedEngine != null) {
+            return sharedEngine;
+        }
+        ScriptEngineWrapper engine = enginePool.poll();
+        if (engine == null) {
+            engine = createPooledEngine();
+        }
+        if (engine == null) {
+            try {
+                engine = enginePool.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                handleException("Interrupted while waiting for a " + language + " script engine");
+            }
+        }
+        return engine;
+    }
+
+    private void releaseEngine(ScriptEngineWrapper engine) {
+        if (engine != sharedEngine) {
+            enginePool.offer(engine);
+        }
     }
 
     public String getLanguage() {
@@ -534,6 +712,11 @@ public class ScriptMediator extends AbstractMediator {
         throw new SynapseException(msg);
     }
 
+    private void handleException(String msg, Exception e) {
+        log.error(msg, e);
+        throw new SynapseException(msg, e);
+    }
+
     public Map<Value, Object> getIncludeMap() {
         return includes;
     }
@@ -545,4 +728,75 @@ public class ScriptMediator extends AbstractMediator {
     public void setLoader(ClassLoader loader) {
         this.loader = loader;
     }
+
+    /**
+     * A script engine along with what has been prepared in it: the compiled inline script and
+     * the external scripts evaluated in it, and the JavaScript engine which turns the JSON
+     * payloads of the messages into script objects. Unless both engines support
+     * multi-threading, they are used by one message at a time.
+     */
+    protected static class ScriptEngineWrapper {
+        private final ScriptEngine engine;
+        private final ScriptEngine jsonEngine;
+        private CompiledScript compiledScript;
+        private final Map<String, ScriptSource> loadedScripts =
+                new HashMap<String, ScriptSource>();
+
+        ScriptEngineWrapper(ScriptEngine engine, ScriptEngine jsonEngine) {
+            this.engine = engine;
+            this.jsonEngine = jsonEngine;
+        }
+
+        public ScriptEngine getEngine() {
+            return engine;
+        }
+
+        public ScriptEngine getJsonEngine() {
+            return jsonEngine;
+        }
+
+        public CompiledScript getCompiledScript() {
+            return compiledScript;
+        }
+
+        void setCompiledScript(CompiledScript compiledScript) {
+            this.compiledScript = compiledScript;
+        }
+
+        ScriptSource getLoadedScript(String scriptKey) {
+            return loadedScripts.get(scriptKey);
+        }
+
+        void setLoadedScript(String scriptKey, ScriptSource source) {
+            loadedScripts.put(scriptKey, source);
+        }
+    }
+
+    /**
+     * The source of a script read from a registry entry, with the entry value and version it
+     * was read from
+     */
+    private static class ScriptSource {
+        private final Object value;
+        private final long version;
+        private final String code;
+
+        ScriptSource(Object value, long version, String code) {
+            this.value = value;
+            this.version = version;
+            this.code = code;
+        }
+
+        Object getValue() {
+            return value;
+        }
+
+        long getVersion() {
+            return version;
+        }
+
+        String getCode() {
+            return code;
+        }
+    }
 }
@@ -0,0 +1,41 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.mediators.throttle;
+
+/**
+ * Limits the access rate of a single caller of the token bucket based throttle engines.
+ * Implementations must be thread safe and should not block.
+ */
+public interface CallerRateLimiter {
+
+    /**
+     * Accounts for a request of the caller
+     *
+     * @param now the current time as given by {@link System#nanoTime()}
+     * @return true if the request is accepted
+     */
+    boolean tryAcquire(long now);
+
+    /**
+     * @param now      the current time as given by {@link System#nanoTime()}
+     * @param idleTime idle time in nanoseconds
+     * @return true if the limiter holds no state worth keeping for the caller
+     */
+    boolean isIdle(long now, long idleTime);
+}
@@ -0,0 +1,73 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.mediators.throttle;
+
+import org.apache.axis2.clustering.ClusteringAgent;
+import org.apache.axis2.clustering.ClusteringFault;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.throttle.ThrottleConstants;
+
+/**
+ * Quota channel which exchanges the reports through the Axis2 clustering agent, as
+ * asynchronous clustering messages. The quota of a throttle is kept in the ConfigurationContext,
+ * where the message looks it up when it is executed on the receiving node.
+ */
+public class ClusteringQuotaChannel implements QuotaChannel {
+
+    private static final Log log = LogFactory.getLog(ClusteringQuotaChannel.class);
+
+    private static final String QUOTA_SUFFIX = ".quota";
+
+    private final ConfigurationContext configurationContext;
+
+    public ClusteringQuotaChannel(ConfigurationContext configurationContext) {
+        this.configurationContext = configurationContext;
+    }
+
+    static String getPropertyKey(String throttleId) {
+        return ThrottleConstants.THROTTLE_PROPERTY_PREFIX + throttleId + QUOTA_SUFFIX;
+    }
+
+    public void join(String throttleId, DistributedQuota quota) {
+        configurationContext.setProperty(getPropertyKey(throttleId), quota);
+    }
+
+    public void leave(String throttleId, DistributedQuota quota) {
+        String key = getPropertyKey(throttleId);
+        if (configurationContext.getProperty(key) == quota) {
+            configurationContext.removeProperty(key);
+        }
+    }
+
+    public void publish(String throttleId, QuotaReport report) {
+        ClusteringAgent clusteringAgent =
+                configurationContext.getAxisConfiguration().getClusteringAgent();
+        if (clusteringAgent == null) {
+            return;
+        }
+        try {
+            clusteringAgent.sendMessage(new QuotaReportMessage(throttleId, report), false);
+        } catch (ClusteringFault e) {
+            // the next report supersedes this one
+            log.warn("Error publishing the quota report of the throttle : " + throttleId, e);
+        }
+    }
+}
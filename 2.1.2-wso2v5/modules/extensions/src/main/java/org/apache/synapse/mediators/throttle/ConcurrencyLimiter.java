@@ -0,0 +1,87 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.mediators.throttle;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock free limit of the concurrent accesses through a throttle. A permit is taken for each
+ * accepted request and given back by the response.
+ */
+public class ConcurrencyLimiter {
+
+    private final AtomicInteger available;
+
+    private volatile int limit;
+
+    public ConcurrencyLimiter(int limit) {
+        this.limit = limit;
+        this.available = new AtomicInteger(limit);
+    }
+
+    /**
+     * @return true if a permit was available
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = available.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (available.compareAndSet(current, current - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a permit. Permits are never given back beyond the limit, so that the responses
+     * of the requests which have been rejected cannot raise the limit.
+     */
+    public void release() {
+        while (true) {
+            int current = available.get();
+            if (current >= limit) {
+                return;
+            }
+            if (available.compareAndSet(current, current + 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Changes the limit, keeping the permits which are in use
+     *
+     * @param newLimit the new limit
+     */
+    public synchronized void setLimit(int newLimit) {
+        int delta = newLimit - limit;
+        limit = newLimit;
+        available.addAndGet(delta);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getAvailable() {
+        return available.get();
+    }
+}
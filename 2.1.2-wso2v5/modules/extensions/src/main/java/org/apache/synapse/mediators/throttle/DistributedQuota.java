@@ -0,0 +1,400 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.mediators.throttle;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.util.concurrent.SynapseThreadFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cluster wide access rate quota of the callers of a throttle. Each node counts the requests of
+ * its callers in fixed windows of the unit time, aligned to the wall clock so that the windows
+ * of all the nodes match, and estimates the global rate of a caller as a sliding window counter:
+ * the count of the current window plus the count of the previous window weighted by the part of
+ * it which still overlaps the sliding window.
+ * <p/>
+ * No state is replicated per request. Instead, the nodes periodically publish their counts over
+ * a {@link QuotaChannel} and each node leases itself an equal share of the quota which remains
+ * according to the latest counts of all the live nodes. Until the next reconciliation, a node
+ * accepts requests of a caller only within the lease of that caller, which bounds how far the
+ * cluster can overshoot the quota while the counts of the other nodes are not known yet.
+ */
+public class DistributedQuota {
+
+    private static final Log log = LogFactory.getLog(DistributedQuota.class);
+
+    public static final long DEFAULT_RECONCILE_INTERVAL = 1000;
+
+    /** Number of reconcile intervals without a report after which a node is considered gone */
+    private static final int PEER_TIMEOUT_INTERVALS = 3;
+
+    private final String throttleId;
+
+    private final String nodeId;
+
+    private final QuotaChannel channel;
+
+    private final long reconcileInterval;
+
+    private final ConcurrentMap<String, SlidingWindowLimiter> limiters =
+            new ConcurrentHashMap<String, SlidingWindowLimiter>(64, 0.75f, 64);
+
+    /** Latest counts received from each of the other nodes */
+    private final ConcurrentMap<String, Peer> peers = new ConcurrentHashMap<String, Peer>();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param throttleId        id of the throttle, the quotas of the same throttle on the
+     *                          different nodes share the quota
+     * @param channel           the channel to exchange the counts or null for a single node
+     * @param reconcileInterval interval in milliseconds of publishing the counts of this node and
+     *                          renewing the leases
+     */
+    public DistributedQuota(String throttleId, QuotaChannel channel, long reconcileInterval) {
+        this.throttleId = throttleId;
+        this.nodeId = UUID.randomUUID().toString();
+        this.channel = channel;
+        this.reconcileInterval = reconcileInterval;
+        if (channel != null) {
+            channel.join(throttleId, this);
+        }
+    }
+
+    /**
+     * Starts reconciling the counts periodically in the background
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new SynapseThreadFactory(
+                new ThreadGroup("throttle-reconciler"), "throttle-reconciler-" + throttleId));
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    reconcile();
+                } catch (Throwable t) {
+                    log.error("Error reconciling the quota of the throttle : " + throttleId, t);
+                }
+            }
+        }, reconcileInterval, reconcileInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops reconciling and leaves the channel
+     */
+    public synchronized void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        if (channel != null) {
+            channel.leave(throttleId, this);
+        }
+    }
+
+    /**
+     * Get the limiter of a caller, which shares the given rate with the same caller on the
+     * other nodes
+     *
+     * @param caller   key of the caller, same on all the nodes
+     * @param maxCount maximum number of requests per unit time across the cluster
+     * @param unitTime the unit time in milliseconds
+     * @return the limiter of the caller
+     */
+    public CallerRateLimiter getLimiter(String caller, int maxCount, long unitTime) {
+        if (maxCount <= 0 || unitTime <= 0) {
+            return TokenBucket.unlimited();
+        }
+        SlidingWindowLimiter limiter = limiters.get(caller);
+        if (limiter == null) {
+            SlidingWindowLimiter newLimiter = new SlidingWindowLimiter(caller, maxCount, unitTime);
+            limiter = limiters.putIfAbsent(caller, newLimiter);
+            if (limiter == null) {
+                limiter = newLimiter;
+            }
+        }
+        return limiter;
+    }
+
+    public void reconcile() {
+        reconcile(currentTimeMillis());
+    }
+
+    /**
+     * Publishes the counts of this node, forgets the nodes which have gone silent and renews
+     * the leases of all the callers with the latest counts of the cluster
+     *
+     * @param now the current time in milliseconds
+     */
+    void reconcile(long now) {
+        int size = limiters.size();
+        String[] callers = new String[size];
+        long[] windows = new long[size];
+        int[] currentCounts = new int[size];
+        int[] previousCounts = new int[size];
+
+        int i = 0;
+        Iterator<SlidingWindowLimiter> itr = limiters.values().iterator();
+        while (itr.hasNext() && i < size) {
+            SlidingWindowLimiter limiter = itr.next();
+            if (limiter.isInactive(now)) {
+                // nothing has been counted in the sliding window, the caller holds no state
+                itr.remove();
+                limiter.active = false;
+                continue;
+            }
+            Window window = limiter.getWindow(now);
+            callers[i] = limiter.caller;
+            windows[i] = window.index;
+            currentCounts[i] = window.count.get();
+            previousCounts[i] = window.previous;
+            i++;
+        }
+
+        if (channel != null) {
+            if (i < size) {
+                callers = copyOf(callers, i);
+                windows = copyOf(windows, i);
+                currentCounts = copyOf(currentCounts, i);
+                previousCounts = copyOf(previousCounts, i);
+            }
+            channel.publish(throttleId,
+                    new QuotaReport(nodeId, callers, windows, currentCounts, previousCounts));
+        }
+
+        long peerTimeout = PEER_TIMEOUT_INTERVALS * reconcileInterval;
+        Iterator<Peer> peerItr = peers.values().iterator();
+        while (peerItr.hasNext()) {
+            if (now - peerItr.next().receivedAt > peerTimeout) {
+                peerItr.remove();
+            }
+        }
+
+        for (SlidingWindowLimiter limiter : limiters.values()) {
+            limiter.renewLease(now);
+        }
+    }
+
+    /**
+     * Accepts the report of another node
+     *
+     * @param report the report published by a node
+     */
+    public void receive(QuotaReport report) {
+        if (nodeId.equals(report.getNodeId())) {
+            return;
+        }
+        Map<String, long[]> counts = new HashMap<String, long[]>(report.size() * 2);
+        for (int i = 0; i < report.size(); i++) {
+            counts.put(report.getCaller(i), new long[] {report.getWindow(i),
+                    report.getCurrentCount(i), report.getPreviousCount(i)});
+        }
+        peers.put(report.getNodeId(), new Peer(currentTimeMillis(), counts));
+    }
+
+    /**
+     * @return number of the other nodes this node currently shares the quota with
+     */
+    public int getPeerCount() {
+        return peers.size();
+    }
+
+    /**
+     * @return number of callers this node currently counts the requests of
+     */
+    public int getCallerCount() {
+        return limiters.size();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private static String[] copyOf(String[] src, int length) {
+        String[] dest = new String[length];
+        System.arraycopy(src, 0, dest, 0, length);
+        return dest;
+    }
+
+    private static long[] copyOf(long[] src, int length) {
+        long[] dest = new long[length];
+        System.arraycopy(src, 0, dest, 0, length);
+        return dest;
+    }
+
+    private static int[] copyOf(int[] src, int length) {
+        int[] dest = new int[length];
+        System.arraycopy(src, 0, dest, 0, length);
+        return dest;
+    }
+
+    /**
+     * The counting window of a caller on this node
+     */
+    private static class Window {
+
+        final long index;
+        /** Count of this node in the previous window */
+        final int previous;
+        /** Count of this node in this window */
+        final AtomicInteger count = new AtomicInteger(0);
+        /** Number of requests this node may accept until the next reconciliation */
+        volatile int lease;
+        /** Number of requests accepted within the current lease */
+        final AtomicInteger used = new AtomicInteger(0);
+
+        Window(long index, int previous) {
+            this.index = index;
+            this.previous = previous;
+        }
+    }
+
+    private static class Peer {
+
+        final long receivedAt;
+        /** Window index, current and previous count of each caller */
+        final Map<String, long[]> counts;
+
+        Peer(long receivedAt, Map<String, long[]> counts) {
+            this.receivedAt = receivedAt;
+            this.counts = counts;
+        }
+    }
+
+    private class SlidingWindowLimiter implements CallerRateLimiter {
+
+        private final String caller;
+        private final int maxCount;
+        private final long unitTime;
+        private final AtomicReference<Window> window;
+        private volatile long lastAccess = System.nanoTime();
+        private volatile boolean active = true;
+
+        SlidingWindowLimiter(String caller, int maxCount, long unitTime) {
+            this.caller = caller;
+            this.maxCount = maxCount;
+            this.unitTime = unitTime;
+            long now = currentTimeMillis();
+            Window initial = new Window(now / unitTime, 0);
+            initial.lease = computeLease(initial, now);
+            this.window = new AtomicReference<Window>(initial);
+        }
+
+        public boolean tryAcquire(long nanoTime) {
+            lastAccess = nanoTime;
+            if (!active) {
+                // evicted by the reconciliation while the throttle still holds the limiter
+                active = true;
+                limiters.putIfAbsent(caller, this);
+            }
+
+            Window current = getWindow(currentTimeMillis());
+            if (current.used.incrementAndGet() > current.lease) {
+                return false;
+            }
+            current.count.incrementAndGet();
+            return true;
+        }
+
+        public boolean isIdle(long now, long idleTime) {
+            return now - lastAccess > idleTime && isInactive(currentTimeMillis());
+        }
+
+        boolean isInactive(long now) {
+            long index = now / unitTime;
+            Window current = window.get();
+            if (current.index == index) {
+                return current.count.get() == 0 && current.previous == 0;
+            } else if (current.index == index - 1) {
+                return current.count.get() == 0;
+            }
+            return current.index < index;
+        }
+
+        Window getWindow(long now) {
+            long index = now / unitTime;
+            Window current = window.get();
+            if (current.index >= index) {
+                return current;
+            }
+            Window next = new Window(index,
+                    current.index == index - 1 ? current.count.get() : 0);
+            next.lease = computeLease(next, now);
+            if (window.compareAndSet(current, next)) {
+                return next;
+            }
+            return window.get();
+        }
+
+        void renewLease(long now) {
+            Window current = getWindow(now);
+            current.lease = computeLease(current, now);
+            current.used.set(0);
+        }
+
+        /**
+         * The equal share of the live nodes in the quota which remains in the sliding window
+         */
+        private int computeLease(Window current, long now) {
+            long remoteCurrent = 0;
+            long remotePrevious = 0;
+            int nodes = 1;
+            for (Peer peer : peers.values()) {
+                nodes++;
+                long[] counts = peer.counts.get(caller);
+                if (counts == null) {
+                    continue;
+                }
+                if (counts[0] == current.index) {
+                    remoteCurrent += counts[1];
+                    remotePrevious += counts[2];
+                } else if (counts[0] == current.index - 1) {
+                    remotePrevious += counts[1];
+                }
+            }
+
+            double overlap = 1 - (double) (now % unitTime) / unitTime;
+            double estimate = (current.previous + remotePrevious) * overlap +
+                    current.count.get() + remoteCurrent;
+            double remaining = maxCount - estimate;
+            if (remaining <= 0) {
+                return 0;
+            }
+            return (int) Math.ceil(remaining / nodes);
+        }
+    }
+}
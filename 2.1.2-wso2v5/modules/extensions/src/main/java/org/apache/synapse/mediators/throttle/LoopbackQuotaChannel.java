@@ -0,0 +1,62 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.mediators.throttle;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Quota channel which connects the quotas of the same throttle within a single JVM, delivering
+ * the reports synchronously on the publishing thread. Used to run several nodes in process.
+ */
+public class LoopbackQuotaChannel implements QuotaChannel {
+
+    private final ConcurrentMap<String, List<DistributedQuota>> members =
+            new ConcurrentHashMap<String, List<DistributedQuota>>();
+
+    public void join(String throttleId, DistributedQuota quota) {
+        List<DistributedQuota> quotas = members.get(throttleId);
+        if (quotas == null) {
+            List<DistributedQuota> newQuotas = new CopyOnWriteArrayList<DistributedQuota>();
+            quotas = members.putIfAbsent(throttleId, newQuotas);
+            if (quotas == null) {
+                quotas = newQuotas;
+            }
+        }
+        quotas.add(quota);
+    }
+
+    public void leave(String throttleId, DistributedQuota quota) {
+        List<DistributedQuota> quotas = members.get(throttleId);
+        if (quotas != null) {
+            quotas.remove(quota);
+        }
+    }
+
+    public void publish(String throttleId, QuotaReport report) {
+        List<DistributedQuota> quotas = members.get(throttleId);
+        if (quotas != null) {
+            for (DistributedQuota quota : quotas) {
+                quota.receive(report);
+            }
+        }
+    }
+}
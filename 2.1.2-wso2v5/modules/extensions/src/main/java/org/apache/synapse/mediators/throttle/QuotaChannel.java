@@ -0,0 +1,51 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.mediators.throttle;
+
+/**
+ * Carries the {@link QuotaReport}s of the nodes which share a {@link DistributedQuota}. A channel
+ * may deliver the reports asynchronously and may drop them, the quota only relies on the latest
+ * report received from each node.
+ */
+public interface QuotaChannel {
+
+    /**
+     * Registers a quota to receive the reports published for the given throttle
+     *
+     * @param throttleId id of the throttle
+     * @param quota      the quota of this node
+     */
+    void join(String throttleId, DistributedQuota quota);
+
+    /**
+     * Stops delivering the reports of the given throttle to the quota
+     *
+     * @param throttleId id of the throttle
+     * @param quota      the quota of this node
+     */
+    void leave(String throttleId, DistributedQuota quota);
+
+    /**
+     * Publishes the report of this node to the other nodes of the cluster
+     *
+     * @param throttleId id of the throttle
+     * @param report     the report of this node
+     */
+    void publish(String throttleId, QuotaReport report);
+}
@@ -0,0 +1,70 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.mediators.throttle;
+
+import java.io.Serializable;
+
+/**
+ * The request counts of the callers of a node, which a node periodically publishes to the other
+ * nodes of the cluster. For each caller the report carries the index of its current counting
+ * window along with the counts of that and of the previous window.
+ */
+public class QuotaReport implements Serializable {
+
+    private static final long serialVersionUID = 3571226493818571640L;
+
+    private final String nodeId;
+    private final String[] callers;
+    private final long[] windows;
+    private final int[] currentCounts;
+    private final int[] previousCounts;
+
+    public QuotaReport(String nodeId, String[] callers, long[] windows,
+                       int[] currentCounts, int[] previousCounts) {
+        this.nodeId = nodeId;
+        this.callers = callers;
+        this.windows = windows;
+        this.currentCounts = currentCounts;
+        this.previousCounts = previousCounts;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public int size() {
+        return callers.length;
+    }
+
+    public String getCaller(int i) {
+        return callers[i];
+    }
+
+    public long getWindow(int i) {
+        return windows[i];
+    }
+
+    public int getCurrentCount(int i) {
+        return currentCounts[i];
+    }
+
+    public int getPreviousCount(int i) {
+        return previousCounts[i];
+    }
+}
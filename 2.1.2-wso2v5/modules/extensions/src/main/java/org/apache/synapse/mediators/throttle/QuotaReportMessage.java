@@ -0,0 +1,54 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.mediators.throttle;
+
+import org.apache.axis2.clustering.ClusteringCommand;
+import org.apache.axis2.clustering.ClusteringFault;
+import org.apache.axis2.clustering.ClusteringMessage;
+import org.apache.axis2.context.ConfigurationContext;
+
+/**
+ * Clustering message which delivers the {@link QuotaReport} of a node to the quota of the same
+ * throttle on the receiving node
+ */
+public class QuotaReportMessage extends ClusteringMessage {
+
+    private static final long serialVersionUID = -4630179926418432310L;
+
+    private final String throttleId;
+
+    private final QuotaReport report;
+
+    public QuotaReportMessage(String throttleId, QuotaReport report) {
+        this.throttleId = throttleId;
+        this.report = report;
+    }
+
+    public void execute(ConfigurationContext configurationContext) throws ClusteringFault {
+        Object quota = configurationContext.getProperty(
+                ClusteringQuotaChannel.getPropertyKey(throttleId));
+        if (quota instanceof DistributedQuota) {
+            ((DistributedQuota) quota).receive(report);
+        }
+    }
+
+    public ClusteringCommand getResponse() {
+        return null;
+    }
+}
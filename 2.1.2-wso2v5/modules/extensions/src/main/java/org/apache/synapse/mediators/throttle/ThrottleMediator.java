@@ -32,9 +32,11 @@ import org.apache.synapse.MessageContext;
 import org.apache.synapse.ManagedLifecycle;
 import org.apache.synapse.SynapseLog;
 import org.apache.synapse.config.Entry;
+import org.apache.synapse.config.SynapsePropertiesLoader;
 import org.apache.synapse.continuation.ContinuationStackManager;
 import org.apache.synapse.continuation.ReliantContinuationState;
 import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.core.axis2.Axis2SynapseEnvironment;
 import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.mediators.AbstractMediator;
 import org.apache.synapse.mediators.FlowContinuableMediator;
@@ -51,6 +53,15 @@ import org.wso2.throttle.*;
 public class ThrottleMediator extends AbstractMediator implements ManagedLifecycle,
                                                                   FlowContinuableMediator {
 
+    /* The lock free engine which throttles by per caller token buckets */
+    public static final String TOKEN_BUCKET_ENGINE = "tokenBucket";
+    /* The token bucket engine, sharing the access rate quota of the callers across the cluster */
+    public static final String DISTRIBUTED_ENGINE = "distributed";
+    /* Synapse property of the interval in milliseconds the distributed engine reconciles at */
+    private static final String RECONCILE_INTERVAL = "synapse.throttle.reconcile.interval";
+    /* Property key suffix of the ConcurrencyLimiter of the token bucket engine */
+    private static final String TOKEN_BUCKET_SUFFIX = ".tokenBucket";
+
     /* The key for getting the throttling policy - key refers to a/an [registry] entry    */
     private String policyKey = null;
     /* InLine policy object - XML  */
@@ -80,6 +91,17 @@ public class ThrottleMediator extends AbstractMediator implements ManagedLifecyc
     private final Object throttleLock = new Object();
     /* Last version of dynamic policy resource*/
     private long version;
+    /* The throttle engine - null for the default, policy based engine */
+    private String engine = null;
+    /* Access rate throttling of the token bucket engine */
+    private volatile TokenBucketThrottle tokenBucketThrottle;
+    /* Concurrency throttling of the token bucket engine */
+    private volatile ConcurrencyLimiter concurrencyLimiter;
+    /* Cluster wide access rate quota of the distributed engine */
+    private DistributedQuota distributedQuota;
+    /* The property key that used when the ConcurrencyLimiter
+       look up from ConfigurationContext */
+    private String limiterKey;
 
     public ThrottleMediator() {
         this.accessControler = new AccessRateController();
@@ -109,6 +131,18 @@ public class ThrottleMediator extends AbstractMediator implements ManagedLifecyc
                 se.addUnavailableArtifactRef(onRejectSeqKey);
             }
         }
+
+        // the token bucket engine resolves a static policy once, before any message arrives
+        if (isTokenBucketEngine() && inLinePolicy != null &&
+                se instanceof Axis2SynapseEnvironment) {
+            try {
+                createTokenBucketThrottle(ThrottleFactory.createMediatorThrottle(
+                        PolicyEngine.getPolicy(inLinePolicy)),
+                        ((Axis2SynapseEnvironment) se).getAxis2ConfigurationContext());
+            } catch (ThrottleException e) {
+                log.error("Error processing the throttling policy of the throttle : " + id, e);
+            }
+        }
     }
 
     public void destroy() {
@@ -118,14 +152,18 @@ public class ThrottleMediator extends AbstractMediator implements ManagedLifecyc
         if (onRejectMediator instanceof ManagedLifecycle) {
             ((ManagedLifecycle) onRejectMediator).destroy();
         }
+        synchronized (throttleLock) {
+            if (distributedQuota != null) {
+                distributedQuota.destroy();
+                distributedQuota = null;
+            }
+        }
     }
 
     public boolean mediate(MessageContext synCtx) {
 
         SynapseLog synLog = getLog(synCtx);
         boolean isResponse = synCtx.isResponse();
-        ConfigurationContext cc;
-        org.apache.axis2.context.MessageContext axisMC;
 
         if (synLog.isTraceOrDebugEnabled()) {
             synLog.traceOrDebug("Start : Throttle mediator");
@@ -134,6 +172,109 @@ public class ThrottleMediator extends AbstractMediator implements ManagedLifecyc
                 synLog.traceTrace("Message : " + synCtx.getEnvelope());
             }
         }
+        boolean canAccess;
+        if (isTokenBucketEngine()) {
+            canAccess = throttleByTokenBucket(synCtx, isResponse, synLog);
+        } else {
+            canAccess = throttleByPolicy(synCtx, isResponse, synLog);
+        }
+
+        if (canAccess) {
+            if (onAcceptSeqKey != null) {
+                Mediator mediator = synCtx.getSequence(onAcceptSeqKey);
+                if (mediator != null) {
+                    ContinuationStackManager.updateSeqContinuationState(synCtx, getMediatorPosition());
+                    return mediator.mediate(synCtx);
+                } else {
+                    handleException("Unable to find onAccept sequence with key : "
+                            + onAcceptSeqKey, synCtx);
+                }
+            } else if (onAcceptMediator != null) {
+                ContinuationStackManager.addReliantContinuationState(synCtx, 0, getMediatorPosition());
+                boolean result = onAcceptMediator.mediate(synCtx);
+                if (result) {
+                    ContinuationStackManager.removeReliantContinuationState(synCtx);
+                }
+                return result;
+            } else {
+                return true;
+            }
+
+        } else {
+            if (onRejectSeqKey != null) {
+                Mediator mediator = synCtx.getSequence(onRejectSeqKey);
+                if (mediator != null) {
+                    ContinuationStackManager.updateSeqContinuationState(synCtx, getMediatorPosition());
+                    return mediator.mediate(synCtx);
+                } else {
+                    handleException("Unable to find onReject sequence with key : "
+                            + onRejectSeqKey, synCtx);
+                }
+            } else if (onRejectMediator != null) {
+                ContinuationStackManager.addReliantContinuationState(synCtx, 1, getMediatorPosition());
+                boolean result = onRejectMediator.mediate(synCtx);
+                if (result) {
+                    ContinuationStackManager.removeReliantContinuationState(synCtx);
+                }
+                return result;
+            } else {
+                return false;
+            }
+        }
+
+        synLog.traceOrDebug("End : Throttle mediator");
+        return canAccess;
+    }
+
+    public boolean mediate(MessageContext synCtx, ContinuationState continuationState) {
+        SynapseLog synLog = getLog(synCtx);
+
+        if (synLog.isTraceOrDebugEnabled()) {
+            synLog.traceOrDebug("Throttle mediator : Mediating from ContinuationState");
+        }
+
+        boolean result;
+        int subBranch = ((ReliantContinuationState) continuationState).getSubBranch();
+        if (subBranch == 0) {
+            if (!continuationState.hasChild()) {
+                result = ((SequenceMediator)onAcceptMediator).
+                        mediate(synCtx, continuationState.getPosition() + 1);
+            } else {
+                FlowContinuableMediator mediator =
+                        (FlowContinuableMediator) ((SequenceMediator)onAcceptMediator).
+                                getChild(continuationState.getPosition());
+                result = mediator.mediate(synCtx, continuationState.getChildContState());
+            }
+        } else {
+            if (!continuationState.hasChild()) {
+                result = ((SequenceMediator)onRejectMediator).
+                        mediate(synCtx, continuationState.getPosition() + 1);
+            } else {
+                FlowContinuableMediator mediator =
+                        (FlowContinuableMediator) ((SequenceMediator)onRejectMediator).getChild(
+                                continuationState.getPosition());
+                result = mediator.mediate(synCtx, continuationState.getChildContState());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Helper method that throttles the message by the throttle policy, through the throttle
+     * created from it
+     *
+     * @param synCtx     MessageContext(Synapse)
+     * @param isResponse Current Message is response or not
+     * @param synLog     the Synapse log to use
+     * @return true if the caller can access ,o.w. false
+     */
+    private boolean throttleByPolicy(MessageContext synCtx, boolean isResponse,
+                                     SynapseLog synLog) {
+
+        ConfigurationContext cc;
+        org.apache.axis2.context.MessageContext axisMC;
+
         // To ensure the creation of throttle is thread safe Ã¢â‚¬â€œ It is possible create same throttle
         // object multiple times  by multiple threads.
 
@@ -292,85 +433,194 @@ public class ThrottleMediator extends AbstractMediator implements ManagedLifecyc
                 }
             }
         }
-        if (canAccess) {
-            if (onAcceptSeqKey != null) {
-                Mediator mediator = synCtx.getSequence(onAcceptSeqKey);
-                if (mediator != null) {
-                    ContinuationStackManager.updateSeqContinuationState(synCtx, getMediatorPosition());
-                    return mediator.mediate(synCtx);
-                } else {
-                    handleException("Unable to find onAccept sequence with key : "
-                            + onAcceptSeqKey, synCtx);
-                }
-            } else if (onAcceptMediator != null) {
-                ContinuationStackManager.addReliantContinuationState(synCtx, 0, getMediatorPosition());
-                boolean result = onAcceptMediator.mediate(synCtx);
-                if (result) {
-                    ContinuationStackManager.removeReliantContinuationState(synCtx);
+        return canAccess;
+    }
+
+    /**
+     * Helper method that throttles the message by the token bucket engine. Neither the
+     * concurrency nor the access rate throttling takes a lock, the throttle is only created
+     * under the lock, when it has not been created yet or the dynamic policy has changed.
+     *
+     * @param synCtx     MessageContext(Synapse)
+     * @param isResponse Current Message is response or not
+     * @param synLog     the Synapse log to use
+     * @return true if the caller can access ,o.w. false
+     */
+    private boolean throttleByTokenBucket(MessageContext synCtx, boolean isResponse,
+                                          SynapseLog synLog) {
+
+        org.apache.axis2.context.MessageContext axisMC =
+                ((Axis2MessageContext) synCtx).getAxis2MessageContext();
+        ConfigurationContext cc = axisMC.getConfigurationContext();
+
+        if (isResponse) {
+            // if the message flow path is OUT , then must lookup from ConfigurationContext -
+            // never create ,just return the permit to the existing one
+            ConcurrencyLimiter limiter = (ConcurrencyLimiter) cc.getProperty(limiterKey);
+            if (limiter != null) {
+                limiter.release();
+                if (synLog.isTraceOrDebugEnabled()) {
+                    synLog.traceOrDebug("Concurrency Throttle : Connection returned :: " +
+                            limiter.getAvailable() + " of available of " + limiter.getLimit() +
+                            " connections");
                 }
-                return result;
-            } else {
-                return true;
             }
+            return true;
+        }
 
-        } else {
-            if (onRejectSeqKey != null) {
-                Mediator mediator = synCtx.getSequence(onRejectSeqKey);
-                if (mediator != null) {
-                    ContinuationStackManager.updateSeqContinuationState(synCtx, getMediatorPosition());
-                    return mediator.mediate(synCtx);
-                } else {
-                    handleException("Unable to find onReject sequence with key : "
-                            + onRejectSeqKey, synCtx);
-                }
-            } else if (onRejectMediator != null) {
-                ContinuationStackManager.addReliantContinuationState(synCtx, 1, getMediatorPosition());
-                boolean result = onRejectMediator.mediate(synCtx);
-                if (result) {
-                    ContinuationStackManager.removeReliantContinuationState(synCtx);
-                }
-                return result;
-            } else {
-                return false;
+        TokenBucketThrottle bucketThrottle = getTokenBucketThrottle(synCtx, cc, synLog);
+        ConcurrencyLimiter limiter = concurrencyLimiter;
+
+        if (limiter != null && !limiter.tryAcquire()) {
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Concurrency Throttle : Access denied :: all the " +
+                        limiter.getLimit() + " connections are in use");
             }
+            return false;
         }
 
-        synLog.traceOrDebug("End : Throttle mediator");
+        boolean canAccess = true;
+        if (bucketThrottle != null && bucketThrottle.isEnabled()) {
+            String remoteIP = (String) axisMC.getPropertyNonReplicable(
+                    org.apache.axis2.context.MessageContext.REMOTE_ADDR);
+            String domainName =
+                    (String) axisMC.getPropertyNonReplicable(NhttpConstants.REMOTE_HOST);
+
+            canAccess = bucketThrottle.canAccess(domainName, remoteIP);
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Access " + (canAccess ? "allowed" : "denied") +
+                        " for Domain Name : " + domainName + " , IP : " + remoteIP);
+            }
+
+            // give back the permit of a request which has been denied by its access rate,
+            // as no response will return it
+            if (!canAccess && limiter != null) {
+                limiter.release();
+            }
+        }
         return canAccess;
     }
 
-    public boolean mediate(MessageContext synCtx, ContinuationState continuationState) {
-        SynapseLog synLog = getLog(synCtx);
+    private TokenBucketThrottle getTokenBucketThrottle(MessageContext synCtx,
+                                                       ConfigurationContext cc,
+                                                       SynapseLog synLog) {
+
+        TokenBucketThrottle current = tokenBucketThrottle;
+        Entry entry = null;
+        if (policyKey != null && inLinePolicy == null) {
+            entry = synCtx.getConfiguration().getEntryDefinition(policyKey);
+            if (entry == null) {
+                handleException("Cannot find throttling policy using key : " + policyKey,
+                        synCtx);
+                return null;
+            }
+            if (current != null && !isPolicyChanged(entry)) {
+                return current;
+            }
+        } else if (current != null || inLinePolicy == null) {
+            return current;
+        }
 
-        if (synLog.isTraceOrDebugEnabled()) {
-            synLog.traceOrDebug("Throttle mediator : Mediating from ContinuationState");
+        synchronized (throttleLock) {
+            if (tokenBucketThrottle != null && (entry == null || !isPolicyChanged(entry))) {
+                return tokenBucketThrottle;
+            }
+
+            OMElement policy;
+            if (entry == null) {
+                policy = inLinePolicy;
+            } else {
+                version = entry.getVersion();
+                Object entryValue = synCtx.getEntry(policyKey);
+                if (!(entryValue instanceof OMElement)) {
+                    handleException("Policy returned from key : " + policyKey +
+                            " is not an OMElement", synCtx);
+                    return null;
+                }
+                policy = (OMElement) entryValue;
+            }
+
+            if (synLog.isTraceTraceEnabled()) {
+                synLog.traceTrace("Initializing the token bucket engine using throttling " +
+                        "policy : " + policy);
+            }
+            try {
+                createTokenBucketThrottle(ThrottleFactory.createMediatorThrottle(
+                        PolicyEngine.getPolicy(policy)), cc);
+            } catch (ThrottleException e) {
+                handleException("Error processing the throttling policy", e, synCtx);
+            }
+            return tokenBucketThrottle;
         }
+    }
 
-        boolean result;
-        int subBranch = ((ReliantContinuationState) continuationState).getSubBranch();
-        if (subBranch == 0) {
-            if (!continuationState.hasChild()) {
-                result = ((SequenceMediator)onAcceptMediator).
-                        mediate(synCtx, continuationState.getPosition() + 1);
+    private boolean isPolicyChanged(Entry entry) {
+        return entry.isDynamic() && (!entry.isCached() || entry.isExpired()) &&
+                version != entry.getVersion();
+    }
+
+    private boolean isTokenBucketEngine() {
+        return TOKEN_BUCKET_ENGINE.equals(engine) || DISTRIBUTED_ENGINE.equals(engine);
+    }
+
+    private void createTokenBucketThrottle(Throttle throttle, ConfigurationContext cc) {
+        if (throttle == null) {
+            return;
+        }
+
+        ConcurrentAccessController controller = throttle.getConcurrentAccessController();
+        if (controller != null) {
+            ConcurrencyLimiter limiter = concurrencyLimiter;
+            if (limiter == null) {
+                limiter = new ConcurrencyLimiter(controller.getLimit());
             } else {
-                FlowContinuableMediator mediator =
-                        (FlowContinuableMediator) ((SequenceMediator)onAcceptMediator).
-                                getChild(continuationState.getPosition());
-                result = mediator.mediate(synCtx, continuationState.getChildContState());
+                limiter.setLimit(controller.getLimit());
             }
+            concurrencyLimiter = limiter;
+            cc.setProperty(limiterKey, limiter);
         } else {
-            if (!continuationState.hasChild()) {
-                result = ((SequenceMediator)onRejectMediator).
-                        mediate(synCtx, continuationState.getPosition() + 1);
-            } else {
-                FlowContinuableMediator mediator =
-                        (FlowContinuableMediator) ((SequenceMediator)onRejectMediator).getChild(
-                                continuationState.getPosition());
-                result = mediator.mediate(synCtx, continuationState.getChildContState());
+            concurrencyLimiter = null;
+            cc.removeProperty(limiterKey);
+        }
+
+        DistributedQuota quota = null;
+        if (DISTRIBUTED_ENGINE.equals(engine)) {
+            // the counts of a reloaded policy start afresh
+            synchronized (throttleLock) {
+                if (distributedQuota != null) {
+                    distributedQuota.destroy();
+                }
+                quota = new DistributedQuota(id, new ClusteringQuotaChannel(cc),
+                        getReconcileInterval());
+                quota.start();
+                distributedQuota = quota;
             }
         }
+        tokenBucketThrottle = new TokenBucketThrottle(throttle,
+                TokenBucketThrottle.DEFAULT_IDLE_TIME, quota);
+    }
 
-        return result;
+    /**
+     * Reads the interval at which the distributed counts are reconciled from the synapse
+     * properties, an invalid or non-positive value falls back to the default interval
+     *
+     * @return the reconcile interval in milliseconds
+     */
+    private long getReconcileInterval() {
+        String value = SynapsePropertiesLoader.getPropertyValue(RECONCILE_INTERVAL, null);
+        if (value != null) {
+            try {
+                long interval = Long.parseLong(value.trim());
+                if (interval > 0) {
+                    return interval;
+                }
+            } catch (NumberFormatException ignore) {
+                // logged below
+            }
+            log.warn("Invalid value : " + value + " for the property : " + RECONCILE_INTERVAL +
+                    ", using the default value : " + DistributedQuota.DEFAULT_RECONCILE_INTERVAL);
+        }
+        return DistributedQuota.DEFAULT_RECONCILE_INTERVAL;
     }
 
     /**
@@ -628,6 +878,22 @@ public class ThrottleMediator extends AbstractMediator implements ManagedLifecyc
     public void setId(String id) {
         this.id = id;
         this.key = ThrottleConstants.THROTTLE_PROPERTY_PREFIX + id + ThrottleConstants.CAC_SUFFIX;
+        this.limiterKey = ThrottleConstants.THROTTLE_PROPERTY_PREFIX + id + TOKEN_BUCKET_SUFFIX;
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    /**
+     * Selects the throttle engine
+     *
+     * @param engine {@link #TOKEN_BUCKET_ENGINE} for the lock free token bucket engine,
+     *               {@link #DISTRIBUTED_ENGINE} for the token bucket engine with a cluster wide
+     *               access rate quota, or null for the default engine
+     */
+    public void setEngine(String engine) {
+        this.engine = engine;
     }
 
     @Override
@@ -33,7 +33,8 @@ import java.util.Properties;
  * The Factory for create throttle mediator- key or InLine XMl need to provide
  *
  * <pre>
- * &lt;throttle [onReject="string"] [onAccept="string"] id="string"&gt;
+ * &lt;throttle [onReject="string"] [onAccept="string"] id="string"
+ *           [engine="tokenBucket|distributed"]&gt;
  *   (&lt;policy key="string"/&gt; | &lt;policy&gt;..&lt;/policy&gt;)
  *    &lt;onReject&gt;..&lt;/onReject&gt;?
  *    &lt;onAccept&gt;..&lt;/onAccept&gt;?
@@ -81,6 +82,18 @@ public class ThrottleMediatorFactory extends AbstractMediatorFactory {
            handleException("Idy attribute must have defined ");
         }
 
+        String engine = elem.getAttributeValue(
+                new QName(XMLConfigConstants.NULL_NAMESPACE, "engine"));
+        if (engine != null) {
+            engine = engine.trim();
+            if (ThrottleMediator.TOKEN_BUCKET_ENGINE.equals(engine) ||
+                    ThrottleMediator.DISTRIBUTED_ENGINE.equals(engine)) {
+                throttleMediator.setEngine(engine);
+            } else {
+                handleException("Unknown throttle engine : " + engine);
+            }
+        }
+
         SequenceMediatorFactory mediatorFactory = new SequenceMediatorFactory();
         OMAttribute onReject = elem.getAttribute(
                 new QName(XMLConfigConstants.NULL_NAMESPACE, XMLConfigConstants.ONREJECT));
@@ -30,7 +30,8 @@ import org.apache.synapse.mediators.base.SequenceMediator;
  * The Serializer for Throttle Mediator  saving throttle instance
  *
  * <pre>
- * &lt;throttle [onReject="string"] [onAccept="string"] id="string"&gt;
+ * &lt;throttle [onReject="string"] [onAccept="string"] id="string"
+ *           [engine="tokenBucket|distributed"]&gt;
  *   (&lt;policy key="string"/&gt; | &lt;policy&gt;..&lt;/policy&gt;)
  *    &lt;onReject&gt;..&lt;/onReject&gt;?
  *    &lt;onAccept&gt;..&lt;/onAccept&gt;?
@@ -67,6 +68,11 @@ public class ThrottleMediatorSerializer extends AbstractMediatorSerializer {
                     "id", nullNS, id));
         }
 
+        String engine = throttleMediator.getEngine();
+        if (engine != null) {
+            throttle.addAttribute(fac.createOMAttribute("engine", nullNS, engine));
+        }
+
         String onReject = throttleMediator.getOnRejectSeqKey();
         if (onReject != null) {
             throttle.addAttribute(fac.createOMAttribute(XMLConfigConstants.ONREJECT, nullNS,
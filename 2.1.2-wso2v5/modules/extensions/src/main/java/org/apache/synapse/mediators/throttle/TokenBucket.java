@@ -0,0 +1,149 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.mediators.throttle;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock free token bucket which limits the access rate of a single caller. The bucket is
+ * implemented as a generic cell rate algorithm: instead of counting tokens it keeps the
+ * theoretical arrival time of the next request, which is advanced by a single compare and set
+ * for each accepted request. A bucket allows up to maxCount requests at once and refills at the
+ * rate of maxCount requests per unit time. Once the bucket is empty, the caller can be
+ * prohibited for a given period, after which the bucket is full again.
+ */
+public class TokenBucket implements CallerRateLimiter {
+
+    private static final int LIMITED = 0;
+    private static final int UNLIMITED = 1;
+    private static final int DENIED = 2;
+
+    private final int mode;
+
+    /** Time in nanoseconds in which a single token is refilled */
+    private final long emissionInterval;
+
+    /** How far in nanoseconds the arrival time may run ahead of the current time */
+    private final long burstTolerance;
+
+    /** Time in nanoseconds a caller is prohibited for, once the bucket is empty */
+    private final long prohibitTime;
+
+    /** Theoretical arrival time of the next request */
+    private final AtomicLong arrivalTime;
+
+    private volatile long prohibitedUntil;
+
+    private volatile long lastAccess;
+
+    /**
+     * Creates a bucket which allows maxCount requests per unit time. A bucket without a
+     * positive count and unit time does not limit the access.
+     *
+     * @param maxCount     maximum number of requests per unit time
+     * @param unitTime     the unit time in milliseconds
+     * @param prohibitTime time in milliseconds the caller is prohibited for once the bucket is
+     *                     empty, 0 to accept requests again as soon as a token is refilled
+     */
+    public TokenBucket(int maxCount, long unitTime, long prohibitTime) {
+        this(maxCount > 0 && unitTime > 0 ? LIMITED : UNLIMITED, maxCount, unitTime, prohibitTime);
+    }
+
+    private TokenBucket(int mode, int maxCount, long unitTime, long prohibitTime) {
+        this.mode = mode;
+        if (mode == LIMITED) {
+            long unitTimeNanos = TimeUnit.MILLISECONDS.toNanos(unitTime);
+            this.emissionInterval = Math.max(unitTimeNanos / maxCount, 1);
+            this.burstTolerance = unitTimeNanos - emissionInterval;
+        } else {
+            this.emissionInterval = 0;
+            this.burstTolerance = 0;
+        }
+        this.prohibitTime = TimeUnit.MILLISECONDS.toNanos(Math.max(prohibitTime, 0));
+        long now = System.nanoTime();
+        this.arrivalTime = new AtomicLong(now);
+        this.prohibitedUntil = now;
+        this.lastAccess = now;
+    }
+
+    /**
+     * @return a bucket which accepts all the requests
+     */
+    public static TokenBucket unlimited() {
+        return new TokenBucket(UNLIMITED, 0, 0, 0);
+    }
+
+    /**
+     * @return a bucket which rejects all the requests
+     */
+    public static TokenBucket denied() {
+        return new TokenBucket(DENIED, 0, 0, 0);
+    }
+
+    public boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    /**
+     * Takes a token from the bucket if there is one
+     *
+     * @param now the current time as given by {@link System#nanoTime()}
+     * @return true if the request is accepted
+     */
+    public boolean tryAcquire(long now) {
+        lastAccess = now;
+        if (mode == UNLIMITED) {
+            return true;
+        } else if (mode == DENIED) {
+            return false;
+        }
+
+        if (prohibitedUntil - now > 0) {
+            return false;
+        }
+
+        while (true) {
+            long current = arrivalTime.get();
+            long start = current - now > 0 ? current : now;
+            if (start - now > burstTolerance) {
+                if (prohibitTime > 0) {
+                    // the bucket is full again once the prohibited period is over
+                    long until = now + prohibitTime;
+                    prohibitedUntil = until;
+                    arrivalTime.set(until);
+                }
+                return false;
+            }
+            if (arrivalTime.compareAndSet(current, start + emissionInterval)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param now      the current time as given by {@link System#nanoTime()}
+     * @param idleTime idle time in nanoseconds
+     * @return true if the bucket has not been used for the given idle time and is full
+     */
+    public boolean isIdle(long now, long idleTime) {
+        return now - lastAccess > idleTime && now - arrivalTime.get() >= 0 &&
+                now - prohibitedUntil >= 0;
+    }
+}
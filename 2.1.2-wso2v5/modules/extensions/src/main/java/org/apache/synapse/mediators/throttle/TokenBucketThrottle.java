@@ -0,0 +1,184 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.mediators.throttle;
+
+import org.wso2.throttle.CallerConfiguration;
+import org.wso2.throttle.Throttle;
+import org.wso2.throttle.ThrottleConfiguration;
+import org.wso2.throttle.ThrottleConstants;
+import org.wso2.throttle.ThrottleContext;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Access rate throttling of the token bucket engine of the throttle mediator. The domain and IP
+ * based configurations of the throttle policy are resolved once, when the engine is created.
+ * Each caller then gets its own {@link TokenBucket}, created from the caller configuration which
+ * applies to it on its first access, and kept in a concurrent map with a high concurrency level
+ * so that callers do not contend with each other. The bucket of a caller is evicted once it has
+ * been idle and full for the idle time, the eviction runs on the request thread which first
+ * finds that a sweep is due.
+ * <p/>
+ * A caller with a domain based configuration is throttled by it only, any other caller by its IP
+ * based configuration if there is one. Callers without a configuration are not limited.
+ * <p/>
+ * When a {@link DistributedQuota} is given, the access rate of the callers is limited across the
+ * cluster by the quota instead of by node local token buckets.
+ */
+public class TokenBucketThrottle {
+
+    public static final long DEFAULT_IDLE_TIME = 5 * 60 * 1000;
+
+    private static final String DOMAIN_PREFIX = "D:";
+    private static final String IP_PREFIX = "I:";
+
+    private final ThrottleConfiguration domainConfig;
+    private final ThrottleConfiguration ipConfig;
+
+    private final ConcurrentMap<String, CallerRateLimiter> buckets =
+            new ConcurrentHashMap<String, CallerRateLimiter>(64, 0.75f, 64);
+
+    /** The cluster wide quota of the callers, null if throttling is node local */
+    private final DistributedQuota quota;
+
+    /** Idle time in nanoseconds after which the bucket of a caller is evicted */
+    private final long idleTime;
+
+    private final AtomicLong nextSweep;
+
+    /**
+     * @param throttle the throttle created from the throttle policy
+     * @param idleTime time in milliseconds after which the state of an idle caller is evicted
+     */
+    public TokenBucketThrottle(Throttle throttle, long idleTime) {
+        this(throttle, idleTime, null);
+    }
+
+    /**
+     * @param throttle the throttle created from the throttle policy
+     * @param idleTime time in milliseconds after which the state of an idle caller is evicted
+     * @param quota    the cluster wide quota of the callers or null to throttle node locally
+     */
+    public TokenBucketThrottle(Throttle throttle, long idleTime, DistributedQuota quota) {
+        this.quota = quota;
+        this.domainConfig = getConfiguration(throttle, ThrottleConstants.DOMAIN_BASED_THROTTLE_KEY);
+        this.ipConfig = getConfiguration(throttle, ThrottleConstants.IP_BASED_THROTTLE_KEY);
+        this.idleTime = TimeUnit.MILLISECONDS.toNanos(idleTime);
+        this.nextSweep = new AtomicLong(System.nanoTime() + this.idleTime);
+    }
+
+    private static ThrottleConfiguration getConfiguration(Throttle throttle, String key) {
+        ThrottleContext context = throttle.getThrottleContext(key);
+        return context != null ? context.getThrottleConfiguration() : null;
+    }
+
+    /**
+     * @return true if the engine limits the access rate of any caller
+     */
+    public boolean isEnabled() {
+        return domainConfig != null || ipConfig != null;
+    }
+
+    /**
+     * Checks and updates the access rate of a caller
+     *
+     * @param domainName domain name of the caller or null if not known
+     * @param remoteIP   IP address of the caller or null if not known
+     * @return true if the caller can access, o.w. false
+     */
+    public boolean canAccess(String domainName, String remoteIP) {
+        long now = System.nanoTime();
+        sweep(now);
+
+        if (domainName != null && domainConfig != null) {
+            CallerRateLimiter bucket = getBucket(DOMAIN_PREFIX, domainName, domainConfig);
+            if (bucket != null) {
+                return bucket.tryAcquire(now);
+            }
+        }
+
+        if (remoteIP != null && ipConfig != null) {
+            CallerRateLimiter bucket = getBucket(IP_PREFIX, remoteIP, ipConfig);
+            if (bucket != null) {
+                return bucket.tryAcquire(now);
+            }
+        }
+        return true;
+    }
+
+    private CallerRateLimiter getBucket(String prefix, String caller,
+                                        ThrottleConfiguration config) {
+        String cacheKey = prefix + caller;
+        CallerRateLimiter bucket = buckets.get(cacheKey);
+        if (bucket != null) {
+            return bucket;
+        }
+
+        String configKey = config.getConfigurationKeyOfCaller(caller);
+        if (configKey == null) {
+            // not cached, callers without a configuration do not hold any state
+            return null;
+        }
+        bucket = createBucket(cacheKey, config.getCallerConfiguration(configKey));
+        CallerRateLimiter existing = buckets.putIfAbsent(cacheKey, bucket);
+        return existing != null ? existing : bucket;
+    }
+
+    private CallerRateLimiter createBucket(String cacheKey, CallerConfiguration configuration) {
+        if (configuration == null) {
+            return TokenBucket.unlimited();
+        }
+        int accessState = configuration.getAccessState();
+        if (accessState == ThrottleConstants.ACCESS_DENIED) {
+            return TokenBucket.denied();
+        } else if (accessState == ThrottleConstants.ACCESS_CONTROLLED) {
+            if (quota != null) {
+                return quota.getLimiter(cacheKey, configuration.getMaximumRequestPerUnitTime(),
+                        configuration.getUnitTime());
+            }
+            return new TokenBucket(configuration.getMaximumRequestPerUnitTime(),
+                    configuration.getUnitTime(), configuration.getProhibitTimePeriod());
+        }
+        return TokenBucket.unlimited();
+    }
+
+    private void sweep(long now) {
+        long due = nextSweep.get();
+        if (now - due < 0 || !nextSweep.compareAndSet(due, now + idleTime)) {
+            return;
+        }
+        Iterator<CallerRateLimiter> itr = buckets.values().iterator();
+        while (itr.hasNext()) {
+            if (itr.next().isIdle(now, idleTime)) {
+                itr.remove();
+            }
+        }
+    }
+
+    /**
+     * @return number of callers which currently hold a token bucket
+     */
+    public int getCallerCount() {
+        return buckets.size();
+    }
+}
@@ -25,8 +25,13 @@ import junit.framework.TestSuite;
 import junit.extensions.RepeatedTest;
 
 import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.Entry;
 import org.apache.synapse.mediators.TestUtils;
+import org.apache.synapse.mediators.Value;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 
 public class ScriptMediatorTest extends TestCase {
@@ -53,12 +58,31 @@ public class ScriptMediatorTest extends TestCase {
                 Integer.parseInt(randomno) * 2);
     }
 
+    public void testExternalScriptReload() throws Exception {
+        Entry entry = new Entry("script");
+        entry.setType(Entry.INLINE_TEXT);
+        entry.setValue("function mediate(mc) { return true; }");
+        Map<String, Entry> entries = new HashMap<String, Entry>();
+        entries.put("script", entry);
+
+        ScriptMediator mediator = new ScriptMediator("js", new LinkedHashMap<Value, Object>(),
+                new Value("script"), null, null);
+        assertTrue(mediator.mediate(TestUtils.getTestContext("<foo/>", entries)));
+        assertTrue(mediator.mediate(TestUtils.getTestContext("<foo/>", entries)));
+
+        // a new version of the script is evaluated again
+        entry.setValue("function mediate(mc) { return false; }");
+        entry.setVersion(1);
+        assertFalse(mediator.mediate(TestUtils.getTestContext("<foo/>", entries)));
+    }
+
 
     public static Test suite() {
         TestSuite suite = new TestSuite();
         for (int i = 0; i < 10; i++) {
             suite.addTest(new RepeatedTest(new ScriptMediatorTest("testThreadSafety"), 10));
         }
+        suite.addTest(new ScriptMediatorTest("testExternalScriptReload"));
         return suite;
     }
 
@@ -0,0 +1,158 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.mediators.throttle;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs several nodes of a distributed quota in process, connected by a loopback channel
+ */
+public class DistributedQuotaTest extends TestCase {
+
+    private static final String CALLER = "I:10.0.0.1";
+
+    private final long[] clock = new long[] {1000000};
+
+    private DistributedQuota createNode(QuotaChannel channel) {
+        return new DistributedQuota("A", channel, 100) {
+            protected long currentTimeMillis() {
+                return clock[0];
+            }
+        };
+    }
+
+    private static int acquire(CallerRateLimiter limiter, int attempts) {
+        int accepted = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (limiter.tryAcquire(System.nanoTime())) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    public void testSingleNode() {
+        DistributedQuota quota = createNode(null);
+        CallerRateLimiter limiter = quota.getLimiter(CALLER, 10, 1000);
+        assertEquals(10, acquire(limiter, 20));
+
+        // the previous window still fully overlaps the sliding window
+        clock[0] += 1000;
+        assertEquals(0, acquire(limiter, 5));
+
+        // half of the previous window has slid out
+        clock[0] += 500;
+        quota.reconcile();
+        assertEquals(5, acquire(limiter, 10));
+    }
+
+    public void testNodesShareQuota() {
+        LoopbackQuotaChannel channel = new LoopbackQuotaChannel();
+        DistributedQuota[] nodes = new DistributedQuota[3];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = createNode(channel);
+        }
+        reconcile(nodes);
+        for (DistributedQuota node : nodes) {
+            assertEquals(2, node.getPeerCount());
+        }
+
+        // each node leases an equal share of the quota
+        CallerRateLimiter[] limiters = new CallerRateLimiter[nodes.length];
+        int total = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            limiters[i] = nodes[i].getLimiter(CALLER, 30, 1000);
+            int accepted = acquire(limiters[i], 20);
+            assertEquals(10, accepted);
+            total += accepted;
+        }
+        assertEquals(30, total);
+
+        // once the counts are known across the cluster, the quota is exhausted
+        reconcile(nodes);
+        reconcile(nodes);
+        for (CallerRateLimiter limiter : limiters) {
+            assertEquals(0, acquire(limiter, 5));
+        }
+
+        // half of the previous window has slid out, which leaves 15 requests to share
+        for (int i = 0; i < 15; i++) {
+            clock[0] += 100;
+            reconcile(nodes);
+        }
+        total = 0;
+        for (CallerRateLimiter limiter : limiters) {
+            total += acquire(limiter, 10);
+        }
+        assertEquals(15, total);
+    }
+
+    public void testUnevenLoad() {
+        LoopbackQuotaChannel channel = new LoopbackQuotaChannel();
+        DistributedQuota first = createNode(channel);
+        DistributedQuota second = createNode(channel);
+        reconcile(first, second);
+
+        CallerRateLimiter busy = first.getLimiter(CALLER, 100, 1000);
+        CallerRateLimiter idle = second.getLimiter(CALLER, 100, 1000);
+        assertEquals(50, acquire(busy, 100));
+
+        // the busy node gets half of what remains on each reconciliation
+        reconcile(first, second);
+        reconcile(first, second);
+        assertEquals(25, acquire(busy, 100));
+        assertEquals(1, acquire(idle, 1));
+    }
+
+    public void testPeerTimeout() {
+        LoopbackQuotaChannel channel = new LoopbackQuotaChannel();
+        DistributedQuota first = createNode(channel);
+        DistributedQuota second = createNode(channel);
+        reconcile(first, second);
+        assertEquals(1, first.getPeerCount());
+
+        // the second node leaves, its share goes back to the remaining node
+        second.destroy();
+        clock[0] += 400;
+        first.reconcile();
+        assertEquals(0, first.getPeerCount());
+        assertEquals(10, acquire(first.getLimiter(CALLER, 10, 1000), 20));
+    }
+
+    public void testInactiveCallerEviction() {
+        DistributedQuota quota = createNode(null);
+        CallerRateLimiter limiter = quota.getLimiter(CALLER, 10, 1000);
+        assertEquals(1, acquire(limiter, 1));
+
+        clock[0] += 2000;
+        quota.reconcile();
+        assertEquals(0, quota.getCallerCount());
+
+        // a limiter still held by the throttle joins the quota again when it is used
+        assertEquals(1, acquire(limiter, 1));
+        assertEquals(1, quota.getCallerCount());
+        assertSame(limiter, quota.getLimiter(CALLER, 10, 1000));
+    }
+
+    private static void reconcile(DistributedQuota... nodes) {
+        for (DistributedQuota node : nodes) {
+            node.reconcile();
+        }
+    }
+}
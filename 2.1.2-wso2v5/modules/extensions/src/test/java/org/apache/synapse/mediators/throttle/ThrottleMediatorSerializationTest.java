@@ -42,4 +42,20 @@ public class ThrottleMediatorSerializationTest extends AbstractTestCase {
         assertTrue(serialization(inputXml, throttleMediatorFactory, throttleMediatorSerializer));
         assertTrue(serialization(inputXml, throttleMediatorSerializer));
     }
+
+    public void testThrottleMediatorSerializationSenarioTwo() throws Exception {
+        String inputXml = "<throttle id=\"A\" engine=\"tokenBucket\" " +
+                "xmlns=\"http://ws.apache.org/ns/synapse\" >" +
+                "<policy key=\"thottleKey\"/></throttle>";
+        assertTrue(serialization(inputXml, throttleMediatorFactory, throttleMediatorSerializer));
+        assertTrue(serialization(inputXml, throttleMediatorSerializer));
+    }
+
+    public void testThrottleMediatorSerializationSenarioThree() throws Exception {
+        String inputXml = "<throttle id=\"A\" engine=\"distributed\" " +
+                "xmlns=\"http://ws.apache.org/ns/synapse\" >" +
+                "<policy key=\"thottleKey\"/></throttle>";
+        assertTrue(serialization(inputXml, throttleMediatorFactory, throttleMediatorSerializer));
+        assertTrue(serialization(inputXml, throttleMediatorSerializer));
+    }
 }
@@ -0,0 +1,133 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.mediators.throttle;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.TimeUnit;
+
+public class TokenBucketTest extends TestCase {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    public void testBurstAndRefill() {
+        TokenBucket bucket = new TokenBucket(5, 1000, 0);
+        long now = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertTrue("Request " + i + " must be accepted", bucket.tryAcquire(now));
+        }
+        assertFalse(bucket.tryAcquire(now));
+
+        // a single token is refilled every 200 ms
+        assertFalse(bucket.tryAcquire(now + 100 * MILLIS));
+        assertTrue(bucket.tryAcquire(now + 200 * MILLIS));
+        assertFalse(bucket.tryAcquire(now + 200 * MILLIS));
+
+        // the bucket is full again after the unit time
+        long later = now + 2000 * MILLIS;
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire(later));
+        }
+        assertFalse(bucket.tryAcquire(later));
+    }
+
+    public void testProhibitTime() {
+        TokenBucket bucket = new TokenBucket(2, 1000, 5000);
+        long now = System.nanoTime();
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+
+        // no tokens are refilled while the caller is prohibited
+        assertFalse(bucket.tryAcquire(now + 2000 * MILLIS));
+        assertFalse(bucket.tryAcquire(now + 4999 * MILLIS));
+
+        long later = now + 5000 * MILLIS;
+        assertTrue(bucket.tryAcquire(later));
+        assertTrue(bucket.tryAcquire(later));
+        assertFalse(bucket.tryAcquire(later));
+    }
+
+    public void testFixedAccessStates() {
+        long now = System.nanoTime();
+        assertTrue(TokenBucket.unlimited().tryAcquire(now));
+        assertTrue(new TokenBucket(0, 1000, 0).tryAcquire(now));
+        assertFalse(TokenBucket.denied().tryAcquire(now));
+    }
+
+    public void testIdle() {
+        TokenBucket bucket = new TokenBucket(1, 1000, 0);
+        long now = System.nanoTime();
+        assertTrue(bucket.tryAcquire(now));
+        // still holding state of the last second
+        assertFalse(bucket.isIdle(now + 500 * MILLIS, 100 * MILLIS));
+        assertTrue(bucket.isIdle(now + 1500 * MILLIS, 100 * MILLIS));
+        assertFalse(bucket.isIdle(now + 1500 * MILLIS, 10000 * MILLIS));
+    }
+
+    public void testConcurrentAcquire() throws Exception {
+        final TokenBucket bucket = new TokenBucket(1000, 60000, 0);
+        final long now = System.nanoTime();
+        final int[] accepted = new int[8];
+        Thread[] threads = new Thread[accepted.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 500; j++) {
+                        if (bucket.tryAcquire(now)) {
+                            accepted[index]++;
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        int total = 0;
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            total += accepted[i];
+        }
+        assertEquals(1000, total);
+    }
+
+    public void testConcurrencyLimiter() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+
+        limiter.release();
+        assertEquals(1, limiter.getAvailable());
+        limiter.release();
+        // permits are never given back beyond the limit
+        limiter.release();
+        assertEquals(2, limiter.getAvailable());
+
+        assertTrue(limiter.tryAcquire());
+        limiter.setLimit(4);
+        assertEquals(3, limiter.getAvailable());
+        limiter.setLimit(1);
+        assertEquals(0, limiter.getAvailable());
+        assertFalse(limiter.tryAcquire());
+        limiter.release();
+        assertEquals(1, limiter.getAvailable());
+    }
+}
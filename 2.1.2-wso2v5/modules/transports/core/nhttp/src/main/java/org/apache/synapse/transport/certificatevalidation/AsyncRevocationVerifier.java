@@ -0,0 +1,311 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.transport.certificatevalidation;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.transport.certificatevalidation.cache.ConcurrentLRUCache;
+import org.apache.synapse.transport.certificatevalidation.crl.CRLVerifier;
+import org.apache.synapse.transport.certificatevalidation.ocsp.OCSPVerifier;
+import org.bouncycastle.ocsp.SingleResp;
+
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks the revocation status of certificates without holding up the SSL handshakes on slow OCSP
+ * responders or CRL distribution points. Revocation statuses are fetched (OCSP first, then CRL) by a
+ * pool of fetcher threads and kept in a size bounded LRU cache until the next update of the response.
+ * Concurrent lookups of the same certificate share a single fetch, a handshake waits for a fetch at most
+ * fetchTimeout milliseconds after which the failure policy decides: fail open accepts the certificate,
+ * fail closed rejects it. Statuses still in use are fetched again in the background before their next
+ * update, so that handshakes keep finding them in the cache.
+ * <p/>
+ * The SSL handshakes are verified on the I/O dispatcher threads, so a lookup which misses the cache
+ * blocks the dispatcher thread, and every connection it serves, for up to fetchTimeout milliseconds.
+ * The timeout should therefore be kept short, the fetch carries on in the background and its status is
+ * found in the cache by later handshakes.
+ */
+public class AsyncRevocationVerifier implements RevocationVerifier {
+
+    /** Part of the validity period of a status after which it is fetched again */
+    private static final double REFRESH_FACTOR = 0.8;
+
+    private static final Log log = LogFactory.getLog(AsyncRevocationVerifier.class);
+
+    private final OCSPVerifier ocspVerifier;
+    private final CRLVerifier crlVerifier;
+
+    private final ConcurrentLRUCache<String, CachedStatus> statuses;
+    private final ConcurrentLRUCache<String, X509CRL> crls;
+    private final ConcurrentMap<String, FutureTask<CachedStatus>> inFlight =
+            new ConcurrentHashMap<String, FutureTask<CachedStatus>>();
+
+    private final ScheduledThreadPoolExecutor fetchers;
+
+    private final long fetchTimeout;
+    private final boolean failOpen;
+    private final long defaultValidity;
+
+    /**
+     * @param cacheSize       maximum number of revocation statuses cached
+     * @param cacheDelayMins  validity of statuses which do not state their next update, in minutes
+     * @param fetchTimeout    maximum time in milliseconds a handshake waits for a status to be fetched
+     * @param failOpen        whether certificates are accepted when their status can not be fetched in time
+     */
+    public AsyncRevocationVerifier(int cacheSize, int cacheDelayMins, long fetchTimeout, boolean failOpen) {
+        this(cacheSize, cacheDelayMins, fetchTimeout, failOpen, Constants.FETCH_DEFAULT_THREADS,
+                new OCSPVerifier(null), new CRLVerifier(null));
+    }
+
+    /**
+     * @param threads      number of fetcher threads
+     * @param ocspVerifier used to fetch OCSP responses
+     * @param crlVerifier  used to download CRLs
+     */
+    public AsyncRevocationVerifier(int cacheSize, int cacheDelayMins, long fetchTimeout, boolean failOpen,
+                                   int threads, OCSPVerifier ocspVerifier, CRLVerifier crlVerifier) {
+        this.statuses = new ConcurrentLRUCache<String, CachedStatus>(cacheSize);
+        this.crls = new ConcurrentLRUCache<String, X509CRL>(cacheSize);
+        this.fetchTimeout = fetchTimeout;
+        this.failOpen = failOpen;
+        this.defaultValidity = TimeUnit.MINUTES.toMillis(cacheDelayMins);
+        this.ocspVerifier = ocspVerifier;
+        this.crlVerifier = crlVerifier;
+        this.fetchers = new ScheduledThreadPoolExecutor(threads, new FetcherThreadFactory());
+    }
+
+    /**
+     * Gets the revocation status of the peer certificate from the cache, or waits at most fetchTimeout
+     * milliseconds for it to be fetched.
+     *
+     * @param peerCert   the certificate to check
+     * @param issuerCert issuer certificate of the peer
+     * @return revocation status of the peer certificate, GOOD if the status can not be fetched in time and
+     *         the policy is to fail open.
+     * @throws CertificateVerificationException if the status can not be fetched in time and the policy is
+     *         to fail closed.
+     */
+    public RevocationStatus checkRevocationStatus(X509Certificate peerCert, X509Certificate issuerCert)
+            throws CertificateVerificationException {
+
+        String key = getKey(peerCert);
+        CachedStatus cached = statuses.get(key);
+        if (cached != null && cached.isValid()) {
+            cached.used = true;
+            return cached.status;
+        }
+
+        FutureTask<CachedStatus> fetch = fetch(key, peerCert, issuerCert);
+        try {
+            return fetch.get(fetchTimeout, TimeUnit.MILLISECONDS).status;
+        } catch (TimeoutException e) {
+            return onFailure(peerCert, "Revocation status was not fetched in " + fetchTimeout + " ms", null);
+        } catch (ExecutionException e) {
+            return onFailure(peerCert, "Cant get revocation status from OCSP or CRL", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return onFailure(peerCert, "Interrupted while fetching revocation status", e);
+        }
+    }
+
+    private RevocationStatus onFailure(X509Certificate peerCert, String message, Throwable cause)
+            throws CertificateVerificationException {
+        message = message + " of certificate " + peerCert.getSubjectX500Principal().getName();
+        if (failOpen) {
+            log.warn(message + ". Accepting the certificate as the revocation check fails open.", cause);
+            return RevocationStatus.GOOD;
+        }
+        throw new CertificateVerificationException(message, cause);
+    }
+
+    /**
+     * Starts fetching the status of the certificate, unless it is already being fetched.
+     *
+     * @return the fetch of the status
+     */
+    private FutureTask<CachedStatus> fetch(String key, X509Certificate peerCert, X509Certificate issuerCert) {
+        FutureTask<CachedStatus> fetch = inFlight.get(key);
+        if (fetch != null) {
+            return fetch;
+        }
+        FutureTask<CachedStatus> newFetch = new FutureTask<CachedStatus>(new Fetch(key, peerCert, issuerCert));
+        fetch = inFlight.putIfAbsent(key, newFetch);
+        if (fetch != null) {
+            return fetch;
+        }
+        try {
+            fetchers.execute(newFetch);
+        } catch (RejectedExecutionException e) {
+            // shut down, fetch in the calling thread
+            newFetch.run();
+        }
+        return newFetch;
+    }
+
+    /**
+     * Fetches the status again before it is due to be updated, if it has been used since it was fetched.
+     */
+    private void scheduleRefresh(final String key, final CachedStatus cached,
+                                 final X509Certificate peerCert, final X509Certificate issuerCert) {
+        long delay = cached.refreshTime - System.currentTimeMillis();
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            fetchers.schedule(new Runnable() {
+                public void run() {
+                    if (cached.used && statuses.get(key) == cached) {
+                        fetch(key, peerCert, issuerCert);
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignore) {
+            // shut down
+        }
+    }
+
+    private CachedStatus fetchStatus(X509Certificate peerCert, X509Certificate issuerCert)
+            throws CertificateVerificationException {
+        try {
+            SingleResp resp = ocspVerifier.getSingleResponse(peerCert, issuerCert);
+            return new CachedStatus(ocspVerifier.getRevocationStatus(resp), resp.getNextUpdate());
+        } catch (CertificateVerificationException e) {
+            log.debug("OCSP verification failed, trying CRL", e);
+        }
+        X509CRL crl = getCRL(peerCert);
+        return new CachedStatus(crlVerifier.getRevocationStatus(crl, peerCert), crl.getNextUpdate());
+    }
+
+    /**
+     * @return the CRL of the certificate, downloaded once for all the certificates which use it until
+     *         its next update.
+     */
+    private X509CRL getCRL(X509Certificate peerCert) throws CertificateVerificationException {
+        for (String crlUrl : crlVerifier.getCrlDistributionPoints(peerCert)) {
+            X509CRL crl = crls.get(crlUrl);
+            if (crl != null && (crl.getNextUpdate() == null || crl.getNextUpdate().after(new Date()))) {
+                return crl;
+            }
+            try {
+                crl = crlVerifier.downloadCRLFromWeb(crlUrl);
+                if (crl != null) {
+                    crls.put(crlUrl, crl);
+                    return crl;
+                }
+            } catch (Exception e) {
+                log.info("Either url is bad or cant build X509CRL. So check with the next url in the list.", e);
+            }
+        }
+        throw new CertificateVerificationException("Cannot check revocation status with the certificate");
+    }
+
+    private static String getKey(X509Certificate cert) {
+        return cert.getIssuerX500Principal().getName() + "#" + cert.getSerialNumber();
+    }
+
+    public int getCacheSize() {
+        return statuses.size();
+    }
+
+    /**
+     * Stops the fetcher threads, statuses are fetched in the calling threads afterwards.
+     */
+    public void shutdown() {
+        fetchers.shutdownNow();
+    }
+
+    private class Fetch implements Callable<CachedStatus> {
+
+        private final String key;
+        private final X509Certificate peerCert;
+        private final X509Certificate issuerCert;
+
+        Fetch(String key, X509Certificate peerCert, X509Certificate issuerCert) {
+            this.key = key;
+            this.peerCert = peerCert;
+            this.issuerCert = issuerCert;
+        }
+
+        public CachedStatus call() throws Exception {
+            try {
+                CachedStatus cached = fetchStatus(peerCert, issuerCert);
+                if (cached.isValid()) {
+                    statuses.put(key, cached);
+                    scheduleRefresh(key, cached, peerCert, issuerCert);
+                }
+                return cached;
+            } catch (CertificateVerificationException e) {
+                log.info("Cant get revocation status of certificate " +
+                        peerCert.getSubjectX500Principal().getName(), e);
+                throw e;
+            } finally {
+                // the status is cached before later lookups can start a new fetch
+                inFlight.remove(key);
+            }
+        }
+    }
+
+    /**
+     * A revocation status, valid until the next update stated by the OCSP response or the CRL.
+     */
+    private class CachedStatus {
+
+        private final RevocationStatus status;
+        private final long expiryTime;
+        private final long refreshTime;
+
+        /** Whether the status has been used since it was fetched, unused statuses are not refreshed */
+        private volatile boolean used;
+
+        CachedStatus(RevocationStatus status, Date nextUpdate) {
+            long now = System.currentTimeMillis();
+            this.status = status;
+            this.expiryTime = nextUpdate != null ? nextUpdate.getTime() : now + defaultValidity;
+            this.refreshTime = now + (long) ((expiryTime - now) * REFRESH_FACTOR);
+        }
+
+        boolean isValid() {
+            return System.currentTimeMillis() < expiryTime;
+        }
+    }
+
+    private static class FetcherThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "revocation-fetcher-" + count.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
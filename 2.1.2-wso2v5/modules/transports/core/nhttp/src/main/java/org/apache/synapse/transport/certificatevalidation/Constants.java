@@ -29,4 +29,7 @@ public interface Constants {
     public static final int CACHE_MAX_DELAY_MINS = 60 * 24;
     public static final int CACHE_MIN_DELAY_MINS = 1;
     public static final int CACHE_DEFAULT_DELAY_MINS = 15;
+    /** Kept short, a handshake which misses the cache holds up its I/O dispatcher thread this long */
+    public static final long FETCH_DEFAULT_TIMEOUT_MILLIS = 200;
+    public static final int FETCH_DEFAULT_THREADS = 4;
 }
@@ -37,6 +37,7 @@ public class RevocationVerificationManager {
 
     private int cacheSize = Constants.CACHE_DEFAULT_ALLOCATED_SIZE;
     private int cacheDelayMins = Constants.CACHE_DEFAULT_DELAY_MINS;
+    private AsyncRevocationVerifier asyncVerifier;
     private static final Log log = LogFactory.getLog(RevocationVerificationManager.class);
 
     public RevocationVerificationManager(Integer cacheAllocatedSize, Integer cacheDelayMins) {
@@ -51,6 +52,23 @@ public class RevocationVerificationManager {
         }
     }
 
+    /**
+     * Creates a manager which checks the revocation status without blocking the SSL handshakes on the OCSP
+     * and CRL endpoints. See {@link AsyncRevocationVerifier}.
+     *
+     * @param fetchTimeout maximum time in milliseconds a handshake waits for a revocation status to be
+     *                     fetched, the default is used if null. The handshake holds up its I/O dispatcher
+     *                     thread while waiting, so this should be kept short.
+     * @param failOpen     whether certificates are accepted when their status can not be fetched in time.
+     */
+    public RevocationVerificationManager(Integer cacheAllocatedSize, Integer cacheDelayMins,
+                                         Long fetchTimeout, boolean failOpen) {
+        this(cacheAllocatedSize, cacheDelayMins);
+        long timeout = (fetchTimeout != null && fetchTimeout > 0) ? fetchTimeout :
+                Constants.FETCH_DEFAULT_TIMEOUT_MILLIS;
+        this.asyncVerifier = new AsyncRevocationVerifier(cacheSize, this.cacheDelayMins, timeout, failOpen);
+    }
+
     /**
      * This method first tries to verify the given certificate chain using OCSP since OCSP verification is
      * faster. If that fails it tries to do the verification using CRL.
@@ -64,6 +82,15 @@ public class RevocationVerificationManager {
 
         long start = System.currentTimeMillis();
 
+        if (asyncVerifier != null) {
+            // OCSP and CRL are both tried by the asynchronous verifier
+            new CertificatePathValidator(convertedCertificates, asyncVerifier).validatePath();
+            if (log.isDebugEnabled()) {
+                log.debug("Path verification Successful. Took " + (System.currentTimeMillis() - start) + " ms.");
+            }
+            return;
+        }
+
         OCSPCache ocspCache = OCSPCache.getCache();
         ocspCache.init(cacheSize, cacheDelayMins);
         CRLCache crlCache = CRLCache.getCache();
@@ -85,6 +112,16 @@ public class RevocationVerificationManager {
         throw new CertificateVerificationException("Path Verification Failed for both OCSP and CRL");
     }
 
+    /**
+     * Stops the fetcher threads of the asynchronous verifier, if any. Statuses which are not cached are
+     * fetched in the handshake threads afterwards.
+     */
+    public void shutdown() {
+        if (asyncVerifier != null) {
+            asyncVerifier.shutdown();
+        }
+    }
+
     /**
      * @param certs array of javax.security.cert.X509Certificate[] s.
      * @return the converted array of java.security.cert.X509Certificate[] s.
@@ -0,0 +1,149 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.transport.certificatevalidation.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size bounded cache which evicts its least recently used entries in constant time as new
+ * entries are added, instead of relying on a CacheManager scanning the whole cache. The cache
+ * is split into segments by the hash of the keys, each an access ordered LinkedHashMap guarded
+ * by its own lock, so that concurrent lookups of different keys seldom contend. The least
+ * recently used order is kept per segment.
+ */
+public class ConcurrentLRUCache<K, V> {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    /** Minimum number of entries per segment, small caches use fewer segments */
+    private static final int MIN_SEGMENT_SIZE = 16;
+
+    private final Segment<K, V>[] segments;
+    private final int maxSize;
+
+    public ConcurrentLRUCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size should be positive : " + maxSize);
+        }
+        this.maxSize = maxSize;
+        int count = 1;
+        while (count < MAX_SEGMENTS && maxSize / (count * 2) >= MIN_SEGMENT_SIZE) {
+            count <<= 1;
+        }
+        // a generic array can not be created directly, every element is a Segment<K, V> though
+        @SuppressWarnings("unchecked")
+        Segment<K, V>[] created = (Segment<K, V>[]) new Segment<?, ?>[count];
+        segments = created;
+        for (int i = 0; i < count; i++) {
+            // spread the remainder over the first segments so that the sizes add up to maxSize
+            segments[i] = new Segment<K, V>(maxSize / count + (i < maxSize % count ? 1 : 0));
+        }
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return segments[h & (segments.length - 1)];
+    }
+
+    /**
+     * @return the value of the key, which becomes the most recently used, or null
+     */
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    /**
+     * Add a value, evicting the least recently used value of its segment when it is full
+     *
+     * @return the previous value of the key or null
+     */
+    public V put(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.put(key, value);
+        }
+    }
+
+    /**
+     * Remove the value of the key, only if it is the given value
+     *
+     * @return true if the value was removed
+     */
+    public boolean remove(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            V current = segment.get(key);
+            if (current != null && current.equals(value)) {
+                segment.remove(key);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public V remove(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.remove(key);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    private static class Segment<K, V> extends LinkedHashMap<K, V> {
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
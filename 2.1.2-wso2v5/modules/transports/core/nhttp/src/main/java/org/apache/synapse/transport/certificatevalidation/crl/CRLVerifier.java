@@ -92,7 +92,7 @@ public class CRLVerifier implements RevocationVerifier {
         throw new CertificateVerificationException("Cannot check revocation status with the certificate");
     }
 
-    private RevocationStatus getRevocationStatus(X509CRL x509CRL, X509Certificate peerCert) {
+    public RevocationStatus getRevocationStatus(X509CRL x509CRL, X509Certificate peerCert) {
         if (x509CRL.isRevoked(peerCert)) {
             return RevocationStatus.REVOKED;
         } else {
@@ -103,7 +103,7 @@ public class CRLVerifier implements RevocationVerifier {
     /**
      * Downloads CRL from the crlUrl. Does not support HTTPS
      */
-    protected X509CRL downloadCRLFromWeb(String crlURL)
+    public X509CRL downloadCRLFromWeb(String crlURL)
             throws IOException, CertificateVerificationException {
         InputStream crlStream = null;
         try {
@@ -130,7 +130,7 @@ public class CRLVerifier implements RevocationVerifier {
      * extension in a X.509 certificate. If CRL distribution point extension is
      * unavailable, returns an empty list.
      */
-    private List<String> getCrlDistributionPoints(X509Certificate cert)
+    public List<String> getCrlDistributionPoints(X509Certificate cert)
             throws CertificateVerificationException {
 
         //Gets the DER-encoded OCTET string for the extension value for CRLDistributionPoints
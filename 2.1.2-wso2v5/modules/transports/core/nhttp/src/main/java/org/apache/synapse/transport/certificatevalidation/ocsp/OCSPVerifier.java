@@ -76,23 +76,8 @@ public class OCSPVerifier implements RevocationVerifier {
         List<String> locations = getAIALocations(peerCert);
 
         for (String serviceUrl : locations) {
-
-            SingleResp[] responses;
-            try {
-                OCSPResp ocspResponse = getOCSPResponce(serviceUrl, request);
-                if (OCSPRespStatus.SUCCESSFUL != ocspResponse.getStatus()) {
-                    continue; // Server didn't give the response right.
-                }
-
-                BasicOCSPResp basicResponse = (BasicOCSPResp) ocspResponse.getResponseObject();
-                responses = (basicResponse == null) ? null : basicResponse.getResponses();
-                //todo use the super exception
-            } catch (Exception e) {
-                continue;
-            }
-
-            if (responses != null && responses.length == 1) {
-                SingleResp resp = responses[0];
+            SingleResp resp = getSingleResponse(serviceUrl, request);
+            if (resp != null) {
                 RevocationStatus status = getRevocationStatus(resp);
                 if (cache != null)
                     cache.setCacheValue(peerCert.getSerialNumber(), resp, request, serviceUrl);
@@ -102,7 +87,49 @@ public class OCSPVerifier implements RevocationVerifier {
         throw new CertificateVerificationException("Cant get Revocation Status from OCSP.");
     }
 
-    private RevocationStatus getRevocationStatus(SingleResp resp) throws CertificateVerificationException {
+    /**
+     * Gets the OCSP response about the given peer certificate from the OCSP endpoints of the certificate,
+     * without looking at the cache. The validity period of the response can be read from the response.
+     *
+     * @param peerCert   The certificate we want to check if revoked.
+     * @param issuerCert Needed to create OCSP request.
+     * @return the single response about the peer certificate.
+     * @throws CertificateVerificationException if none of the OCSP endpoints gives a response.
+     */
+    public SingleResp getSingleResponse(X509Certificate peerCert, X509Certificate issuerCert)
+            throws CertificateVerificationException {
+
+        OCSPReq request = generateOCSPRequest(issuerCert, peerCert.getSerialNumber());
+        for (String serviceUrl : getAIALocations(peerCert)) {
+            SingleResp resp = getSingleResponse(serviceUrl, request);
+            if (resp != null) {
+                return resp;
+            }
+        }
+        throw new CertificateVerificationException("Cant get Revocation Status from OCSP.");
+    }
+
+    /**
+     * @return the single response given by the OCSP endpoint, or null if it doesn't give a usable response.
+     */
+    private SingleResp getSingleResponse(String serviceUrl, OCSPReq request) {
+        SingleResp[] responses;
+        try {
+            OCSPResp ocspResponse = getOCSPResponce(serviceUrl, request);
+            if (OCSPRespStatus.SUCCESSFUL != ocspResponse.getStatus()) {
+                return null; // Server didn't give the response right.
+            }
+
+            BasicOCSPResp basicResponse = (BasicOCSPResp) ocspResponse.getResponseObject();
+            responses = (basicResponse == null) ? null : basicResponse.getResponses();
+            //todo use the super exception
+        } catch (Exception e) {
+            return null;
+        }
+        return (responses != null && responses.length == 1) ? responses[0] : null;
+    }
+
+    public RevocationStatus getRevocationStatus(SingleResp resp) throws CertificateVerificationException {
         Object status = resp.getCertStatus();
         if (status == CertificateStatus.GOOD) {
             return RevocationStatus.GOOD;
@@ -56,7 +56,17 @@ public class Access {
 
     private static final int LOG_FREQUENCY_IN_SECONDS = 30;
 
-    private Date date;
+    /**
+     * The writer of the log file when records are written asynchronously, null otherwise
+     */
+    private static AsyncAccessLogWriter asyncWriter;
+
+    private static final ThreadLocal<StringBuilder> recordBuilder =
+            new ThreadLocal<StringBuilder>() {
+                protected StringBuilder initialValue() {
+                    return new StringBuilder(256);
+                }
+            };
 
     /**
      * Constructor of AccessLog. AccessHandler has a static object of Access.
@@ -74,13 +84,32 @@ public class Access {
         logAccesses();
     }
 
+    /**
+     * Constructor of AccessLog which writes the log file asynchronously. The records are
+     * formatted when the accesses are added and handed over to the given writer, instead of
+     * being queued and logged periodically.
+     *
+     * @param log         - Log passed as a param. Default is Log of the same class.
+     * @param asyncWriter - the writer of the log file
+     */
+    public Access(final Log log, AsyncAccessLogWriter asyncWriter) {
+        super();
+        Access.log = log;
+        Access.asyncWriter = asyncWriter;
+        logElements = createLogElements();
+    }
+
     /**
      * Adds the accesses to the queue.
      *
      * @param request - HttpRequest
      */
     public void addAccessToQueue(HttpRequest request) {
-        requestQueue.add(request);
+        if (asyncWriter != null) {
+            asyncWriter.write(format(request, null));
+        } else {
+            requestQueue.add(request);
+        }
     }
 
     /**
@@ -89,7 +118,11 @@ public class Access {
      * @param response - HttpResponse
      */
     public void addAccessToQueue(HttpResponse response) {
-        responseQueue.add(response);
+        if (asyncWriter != null) {
+            asyncWriter.write(format(null, response));
+        } else {
+            responseQueue.add(response);
+        }
     }
 
     /**
@@ -131,17 +164,32 @@ public class Access {
      * @param response - HttpResponse
      */
     public void log(HttpRequest request, HttpResponse response) {
-        date = AccessTimeUtil.getDate();
-        //String commonLogFormatDate = AccessTimeUtil.getAccessDate(date);
+        String logString = format(request, response);
+        log.debug(logString);      //log to the console
+        accessLogger.log(logString);      //log to the file
+    }
 
-        StringBuilder result = new StringBuilder(128);
+    /**
+     * Formats the access log record of the given request or response.
+     *
+     * @param request  - HttpRequest
+     * @param response - HttpResponse
+     * @return - The log record.
+     */
+    protected String format(HttpRequest request, HttpResponse response) {
+        Date date = AccessTimeUtil.getDate();
+        StringBuilder result = recordBuilder.get();
+        result.setLength(0);
 
         for (AccessLogElement logElement : logElements) {
             logElement.addElement(result, date, request, response);
         }
         String logString = result.toString();
-        log.debug(logString);      //log to the console
-        accessLogger.log(logString);      //log to the file
+        if (result.capacity() > 4096) {
+            // do not keep the buffer of an unusually large record
+            recordBuilder.remove();
+        }
+        return logString;
     }
 
     /**
@@ -153,8 +201,7 @@ public class Access {
      */
     protected static String getHeaderValues(HttpMessage message, String name) {
         int length = 0;
-        Header[] header = new Header[0];
-        StringBuffer headerValue = new StringBuffer();
+        Header[] header = null;
         try {
             header = message.getHeaders(name);
             length = header.length;
@@ -166,12 +213,13 @@ public class Access {
         } else if (length == 1) {
             return header[0].getValue();
         } else {
+            StringBuilder headerValue = new StringBuilder();
             headerValue.append(header[0].getValue());
             for (int i = 1; i < length; i++) {
                 headerValue.append(" - ").append(header[i].getValue());
             }
+            return headerValue.toString();
         }
-        return headerValue.toString();
     }
 
     protected static String getParam(HttpMessage message, String paramName) {
@@ -65,4 +65,31 @@ public class AccessConstants {
      */
     public static String SUFFIX = ".log";
 
+    /**
+     * nhttp.properties switch for writing the access log from a dedicated thread, the
+     * connections only format the records and hand them over.
+     */
+    public static final String ASYNC_PROPERTY = "nhttp.access.log.async";
+
+    /**
+     * Number of records which may be waiting to be written by the asynchronous writer, records
+     * are dropped when that many are waiting.
+     */
+    public static final String ASYNC_BUFFER_SIZE_PROPERTY = "nhttp.access.log.buffer.size";
+
+    public static final int DEFAULT_ASYNC_BUFFER_SIZE = 65536;
+
+    /**
+     * Maximum time in milliseconds records wait to be written by the asynchronous writer.
+     */
+    public static final String ASYNC_FLUSH_INTERVAL_PROPERTY = "nhttp.access.log.flush.interval";
+
+    public static final long DEFAULT_ASYNC_FLUSH_INTERVAL = 100;
+
+    /**
+     * Size in bytes after which the asynchronous writer rotates the log file, besides the daily
+     * rotation. Not set or 0 for daily rotation only.
+     */
+    public static final String MAX_FILE_SIZE_PROPERTY = "nhttp.access.log.max.file.size";
+
 }
@@ -20,6 +20,9 @@ package org.apache.synapse.transport.http.access;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.commons.util.MiscellaneousUtil;
+
+import java.util.Properties;
 
 /**
  * Handles the Access, providing an Access object.
@@ -29,9 +32,32 @@ public class AccessHandler {
 
     private final static Log accessLog = LogFactory.getLog(ACCESS_LOG_ID);
 
-    private static final AccessLogger accessLogger = new AccessLogger(accessLog);
+    private static final Access access = createAccess();
 
-    private static final Access access = new Access(accessLog, accessLogger);
+    /**
+     * Create the Access, which writes the log file asynchronously when enabled in the
+     * nhttp.properties.
+     */
+    private static Access createAccess() {
+        Properties props = MiscellaneousUtil.loadProperties(AccessLogger.NHTTP_PROPERTIES);
+        boolean async = MiscellaneousUtil.getProperty(props, AccessConstants.ASYNC_PROPERTY,
+                Boolean.FALSE, Boolean.class);
+        if (!async) {
+            return new Access(accessLog, new AccessLogger(accessLog));
+        }
+        int bufferSize = MiscellaneousUtil.getProperty(props,
+                AccessConstants.ASYNC_BUFFER_SIZE_PROPERTY,
+                AccessConstants.DEFAULT_ASYNC_BUFFER_SIZE, Integer.class);
+        long flushInterval = MiscellaneousUtil.getProperty(props,
+                AccessConstants.ASYNC_FLUSH_INTERVAL_PROPERTY,
+                AccessConstants.DEFAULT_ASYNC_FLUSH_INTERVAL, Long.class);
+        long maxFileSize = MiscellaneousUtil.getProperty(props,
+                AccessConstants.MAX_FILE_SIZE_PROPERTY, 0L, Long.class);
+        AsyncAccessLogWriter writer = new AsyncAccessLogWriter(bufferSize, flushInterval,
+                maxFileSize, AccessLogger.getLogDirectory());
+        writer.start();
+        return new Access(accessLog, writer);
+    }
 
     public static Access getAccess() {
         return access;
@@ -0,0 +1,105 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.transport.http.access;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded ring of access log records, which any number of threads add to without locking
+ * and a single thread takes from. Each slot carries a sequence number telling whether it is
+ * free for the producer of a given position or filled for the consumer, so that producers
+ * only contend on claiming a position.
+ */
+final class AccessLogRing {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<String> records;
+    private final AtomicLongArray sequences;
+
+    /** The next position to be claimed by a producer */
+    private final AtomicLong tail = new AtomicLong(0);
+
+    /** The next position to be taken by the consumer, only accessed by the consumer */
+    private long head = 0;
+
+    /**
+     * @param size the minimum number of records the ring holds, rounded up to a power of two
+     */
+    AccessLogRing(int size) {
+        int c = 1;
+        while (c < size) {
+            c <<= 1;
+        }
+        capacity = c;
+        mask = c - 1;
+        records = new AtomicReferenceArray<String>(c);
+        sequences = new AtomicLongArray(c);
+        for (int i = 0; i < c; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Add a record to the ring
+     *
+     * @param record the record
+     * @return false if the ring is full
+     */
+    boolean offer(String record) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    records.set(index, record);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                return false;
+            }
+            // another producer has claimed the position, try the next one
+        }
+    }
+
+    /**
+     * Take the oldest record from the ring, only called by the consumer
+     *
+     * @return the record or null if the ring is empty
+     */
+    String poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        String record = records.get(index);
+        records.set(index, null);
+        sequences.set(index, head + capacity);
+        head++;
+        return record;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+}
@@ -173,20 +173,7 @@ public class AccessLogger {
      * Open the new log file for the date specified by <code>dateStamp</code>.
      */
     protected synchronized void open() {
-        // Create the directory if necessary
-        File dir;
-        Properties synapseProps = MiscellaneousUtil.loadProperties(NHTTP_PROPERTIES);
-        String nhttpLogDir =  synapseProps.getProperty(NHTTP_LOG_DIRECTORY);
-        if (nhttpLogDir != null) {
-            dir = new File(nhttpLogDir);
-        } else {
-            dir = new File(AccessConstants.DIRECTORY);
-        }
-        if (!dir.exists()) {
-            if (!dir.mkdirs()) {
-                log.error("Access Log Open Directory Failed");
-            }
-        }
+        File dir = getLogDirectory();
 
         // Open the current log file
         try {
@@ -211,6 +198,28 @@ public class AccessLogger {
         }
     }
 
+    /**
+     * Get the directory of the access log files, creating it if necessary
+     *
+     * @return the log directory
+     */
+    static File getLogDirectory() {
+        File dir;
+        Properties synapseProps = MiscellaneousUtil.loadProperties(NHTTP_PROPERTIES);
+        String nhttpLogDir =  synapseProps.getProperty(NHTTP_LOG_DIRECTORY);
+        if (nhttpLogDir != null) {
+            dir = new File(nhttpLogDir);
+        } else {
+            dir = new File(AccessConstants.DIRECTORY);
+        }
+        if (!dir.exists()) {
+            if (!dir.mkdirs()) {
+                log.error("Access Log Open Directory Failed");
+            }
+        }
+        return dir;
+    }
+
     /**
      * Close the currently open log file (if any)
      */
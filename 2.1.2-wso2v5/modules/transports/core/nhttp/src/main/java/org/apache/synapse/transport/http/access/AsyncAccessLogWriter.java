@@ -0,0 +1,330 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.transport.http.access;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes the access log from a single dedicated thread. The connections hand over formatted
+ * records through a bounded lock free ring and never wait for the file, the writer thread
+ * drains the ring in batches and writes each batch to the file with a single write. When the
+ * ring is full records are dropped and counted rather than blocking the I/O threads. The log
+ * file is rotated daily like the {@link AccessLogger} does, and optionally when it reaches a
+ * configured size, rotation only ever happens on the writer thread.
+ */
+public class AsyncAccessLogWriter implements Runnable {
+
+    private static final Log log = LogFactory.getLog(AsyncAccessLogWriter.class);
+
+    private static final int BATCH_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] LINE_SEPARATOR = getBytes(System.getProperty("line.separator"));
+
+    /** Minimum time in milliseconds between two warnings about dropped records */
+    private static final long DROP_WARNING_INTERVAL = 60 * 1000;
+
+    private final AccessLogRing ring;
+
+    private final long flushInterval;
+
+    private final long maxFileSize;
+
+    private final File directory;
+
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_BUFFER_SIZE);
+
+    private final SimpleDateFormat fileDateFormatter =
+            new SimpleDateFormat(AccessConstants.FILE_FORMAT);
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    /** The following fields are only accessed by the writer thread */
+    private FileChannel channel;
+    private File currentLogFile;
+    private String dateStamp = "";
+    private long fileSize;
+    private long droppedReported;
+    private long lastDropWarning;
+
+    /**
+     * @param bufferSize    number of records which may be waiting to be written
+     * @param flushInterval maximum time in milliseconds records wait to be written
+     * @param maxFileSize   size in bytes after which the log file is rotated, 0 to rotate daily only
+     * @param directory     the directory of the log files
+     */
+    public AsyncAccessLogWriter(int bufferSize, long flushInterval, long maxFileSize,
+                                File directory) {
+        this.ring = new AccessLogRing(bufferSize);
+        this.flushInterval = flushInterval > 0 ? flushInterval :
+                AccessConstants.DEFAULT_ASYNC_FLUSH_INTERVAL;
+        this.maxFileSize = maxFileSize;
+        this.directory = directory;
+        this.thread = new Thread(this, "http-access-log-writer");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start the writer thread, the records still waiting when the JVM shuts down are written
+     * by a shutdown hook.
+     */
+    public void start() {
+        thread.start();
+        try {
+            Runtime.getRuntime().addShutdownHook(new Thread("http-access-log-shutdown") {
+                public void run() {
+                    shutdown();
+                }
+            });
+        } catch (IllegalStateException ignore) {
+            // already shutting down
+        }
+    }
+
+    /**
+     * Hand over a record to be written, never blocks
+     *
+     * @param record the formatted record
+     * @return false if the record was dropped as too many records are waiting
+     */
+    public boolean write(String record) {
+        if (ring.offer(record)) {
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * @return the number of records dropped since the writer was created
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Stop the writer thread, after it has written the records which are waiting
+     */
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (thread.getState() == Thread.State.NEW) {
+            // never started, the remaining records are written by the caller
+            run();
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void run() {
+        long parkNanos = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        while (running) {
+            try {
+                if (drain() == 0) {
+                    LockSupport.parkNanos(parkNanos);
+                }
+            } catch (Throwable t) {
+                AccessLogger.handleThrowable(t);
+                log.warn("Error writing the access log", t);
+                LockSupport.parkNanos(parkNanos);
+            }
+        }
+        try {
+            drain();
+        } catch (IOException e) {
+            log.warn("Error writing the access log", e);
+        }
+        close();
+    }
+
+    /**
+     * Write all the records which are waiting
+     *
+     * @return the number of records written
+     * @throws IOException if the log file can not be written
+     */
+    int drain() throws IOException {
+        int count = 0;
+        String record;
+        while ((record = ring.poll()) != null) {
+            if (count == 0) {
+                checkRotation();
+                if (channel == null) {
+                    open();
+                }
+            }
+            byte[] bytes = getBytes(record);
+            if (maxFileSize > 0 && fileSize + batch.position() > 0 &&
+                    fileSize + batch.position() + bytes.length + LINE_SEPARATOR.length >
+                            maxFileSize) {
+                // the record goes into the next file
+                flush();
+                rotate();
+            }
+            if (batch.remaining() < bytes.length + LINE_SEPARATOR.length) {
+                flush();
+                if (batch.remaining() < bytes.length + LINE_SEPARATOR.length) {
+                    // larger than the whole batch, written on its own
+                    writeFully(ByteBuffer.wrap(bytes));
+                    writeFully(ByteBuffer.wrap(LINE_SEPARATOR));
+                    count++;
+                    continue;
+                }
+            }
+            batch.put(bytes).put(LINE_SEPARATOR);
+            count++;
+        }
+        flush();
+        reportDropped();
+        return count;
+    }
+
+    private void flush() throws IOException {
+        batch.flip();
+        try {
+            if (batch.hasRemaining()) {
+                writeFully(batch);
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        if (channel == null) {
+            open();
+            if (channel == null) {
+                return; // the failure has been logged, the records are lost
+            }
+        }
+        while (buffer.hasRemaining()) {
+            fileSize += channel.write(buffer);
+        }
+    }
+
+    /**
+     * Switch to a new log file when the date has changed, or when the file has been removed
+     */
+    private void checkRotation() {
+        String tsDate = fileDateFormatter.format(new Date(System.currentTimeMillis()));
+        if (!dateStamp.equals(tsDate)) {
+            close();
+            dateStamp = tsDate;
+        } else if (currentLogFile != null && !currentLogFile.exists()) {
+            close();
+        }
+    }
+
+    /**
+     * Rename the current log file to the first free <tt>name.N</tt>, a new file is opened by
+     * the next write
+     */
+    private void rotate() {
+        File file = currentLogFile;
+        close();
+        if (file == null) {
+            return;
+        }
+        int index = 1;
+        File rotated = new File(file.getPath() + "." + index);
+        while (rotated.exists()) {
+            rotated = new File(file.getPath() + "." + (++index));
+        }
+        if (!file.renameTo(rotated)) {
+            log.warn("Unable to rotate the access log file : " + file);
+        }
+    }
+
+    private void open() {
+        if (dateStamp.length() == 0) {
+            dateStamp = fileDateFormatter.format(new Date(System.currentTimeMillis()));
+        }
+        File file = new File(directory, AccessConstants.PREFIX + dateStamp +
+                AccessConstants.SUFFIX);
+        try {
+            channel = new FileOutputStream(file, true).getChannel();
+            fileSize = channel.size();
+            currentLogFile = file;
+        } catch (IOException e) {
+            log.warn("Unable to open the access log file : " + file, e);
+            channel = null;
+            currentLogFile = null;
+        }
+    }
+
+    private void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Error closing the access log file", e);
+        }
+        channel = null;
+        currentLogFile = null;
+        fileSize = 0;
+    }
+
+    private void reportDropped() {
+        long total = dropped.get();
+        if (total == droppedReported) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastDropWarning >= DROP_WARNING_INTERVAL) {
+            log.warn((total - droppedReported) + " access log records were dropped as the " +
+                    "access log could not keep up, consider increasing " +
+                    AccessConstants.ASYNC_BUFFER_SIZE_PROPERTY);
+            droppedReported = total;
+            lastDropWarning = now;
+        }
+    }
+
+    private static byte[] getBytes(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return s.getBytes();
+        }
+    }
+}
@@ -124,4 +124,13 @@ public class ClientConnFactory {
         }
     }
 
+    /**
+     * Releases the resources held by the SSL setup handler, such as the revocation verifier threads.
+     */
+    public void shutdown() {
+        if (ssl != null && ssl.getHandler() instanceof ClientSSLSetupHandler) {
+            ((ClientSSLSetupHandler) ssl.getHandler()).shutdown();
+        }
+    }
+
 }
@@ -161,4 +161,13 @@ public class ClientSSLSetupHandler implements SSLSetupHandler {
         }
     }
 
+    /**
+     * Stops the revocation verifier, called when the sender is stopped.
+     */
+    public void shutdown() {
+        if (verificationManager != null) {
+            verificationManager.shutdown();
+        }
+    }
+
 }
\ No newline at end of file
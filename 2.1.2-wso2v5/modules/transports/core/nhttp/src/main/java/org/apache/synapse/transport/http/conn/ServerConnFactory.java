@@ -98,4 +98,22 @@ public class ServerConnFactory {
         return sslByIPMap != null ? sslByIPMap.keySet() : Collections.<InetSocketAddress>emptySet();
     }
 
+    /**
+     * Releases the resources held by the SSL setup handlers, such as the revocation verifier threads.
+     */
+    public void shutdown() {
+        shutdown(ssl);
+        if (sslByIPMap != null) {
+            for (SSLContextDetails details : sslByIPMap.values()) {
+                shutdown(details);
+            }
+        }
+    }
+
+    private void shutdown(final SSLContextDetails details) {
+        if (details != null && details.getHandler() instanceof ServerSSLSetupHandler) {
+            ((ServerSSLSetupHandler) details.getHandler()).shutdown();
+        }
+    }
+
 }
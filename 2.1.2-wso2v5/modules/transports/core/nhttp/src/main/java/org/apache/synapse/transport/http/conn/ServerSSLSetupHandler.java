@@ -20,20 +20,31 @@ package org.apache.synapse.transport.http.conn;
 
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.net.ssl.SSLSession;
 
 import org.apache.http.nio.reactor.IOSession;
 import org.apache.http.nio.reactor.ssl.SSLSetupHandler;
+import org.apache.synapse.transport.certificatevalidation.CertificateVerificationException;
+import org.apache.synapse.transport.certificatevalidation.RevocationVerificationManager;
 
 public class ServerSSLSetupHandler implements SSLSetupHandler {
     
     private final SSLClientAuth clientAuth;
     /** Enabled SSL handshake protocols (e.g. SSLv3, TLSv1) */
     private final String[] httpsProtocols;
+    /** Verifies the revocation status of client certificates, null if not enabled */
+    private final RevocationVerificationManager verificationManager;
 
     public ServerSSLSetupHandler(final SSLClientAuth clientAuth, final String[] httpsProtocols) {
+        this(clientAuth, httpsProtocols, null);
+    }
+
+    public ServerSSLSetupHandler(final SSLClientAuth clientAuth, final String[] httpsProtocols,
+                                 final RevocationVerificationManager verificationManager) {
         this.clientAuth = clientAuth;
         this.httpsProtocols = httpsProtocols;
+        this.verificationManager = verificationManager;
     }
 
     public void initalize(
@@ -55,9 +66,38 @@ public class ServerSSLSetupHandler implements SSLSetupHandler {
 
     }
 
+    /**
+     * Verifies the revocation status of the client certificate chain. This runs on the I/O dispatcher
+     * thread, which is blocked for at most the fetch timeout of the verification manager when a status
+     * is not cached.
+     */
     public void verify(
         final IOSession iosession, 
         final SSLSession sslsession) throws SSLException {
+        if (verificationManager == null || clientAuth == null) {
+            return;
+        }
+        javax.security.cert.X509Certificate[] peerCertificates;
+        try {
+            peerCertificates = sslsession.getPeerCertificateChain();
+        } catch (SSLPeerUnverifiedException e) {
+            return; // optional client authentication without a client certificate
+        }
+        try {
+            verificationManager.verifyRevocationStatus(peerCertificates);
+        } catch (CertificateVerificationException e) {
+            throw new SSLException("Certificate Chain Validation failed for client : " +
+                    iosession.getRemoteAddress(), e);
+        }
+    }
+
+    /**
+     * Stops the revocation verifier, called when the listener is stopped.
+     */
+    public void shutdown() {
+        if (verificationManager != null) {
+            verificationManager.shutdown();
+        }
     }
 
 }
\ No newline at end of file
@@ -396,6 +396,7 @@ public class HttpCoreNIOListener implements TransportListener, ManagementSupport
                 ioReactor.shutdown();
             }
             handler.stop();
+            connFactory.shutdown();
             state = BaseConstants.STOPPED;
             for (Object obj : cfgCtx.getAxisConfiguration().getServices().values()) {
                 removeServiceFfromURIMap((AxisService) obj);
@@ -454,8 +455,10 @@ public class HttpCoreNIOListener implements TransportListener, ManagementSupport
             listenerContext.getPort(), 
             scheme.getName());
         ServerConnFactoryBuilder connFactoryBuilder = initConnFactoryBuilder(transportIn, host);
+        ServerConnFactory oldConnFactory = connFactory;
         connFactory = connFactoryBuilder.build(params);
         iodispatch.update(connFactory);
+        oldConnFactory.shutdown();
         
         startEndpoints();
         
@@ -491,6 +494,7 @@ public class HttpCoreNIOListener implements TransportListener, ManagementSupport
             long start = System.currentTimeMillis();
             ioReactor.pause();
             ioReactor.shutdown(millis);
+            connFactory.shutdown();
             state = BaseConstants.STOPPED;
             log.info("Listener shutdown in : " + (System.currentTimeMillis() - start) / 1000 + "s");
         } catch (IOException e) {
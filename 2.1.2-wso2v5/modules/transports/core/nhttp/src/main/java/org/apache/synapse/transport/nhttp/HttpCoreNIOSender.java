@@ -720,6 +720,7 @@ public class HttpCoreNIOSender extends AbstractHandler implements TransportSende
         try {
             ioReactor.shutdown();
             handler.stop();
+            connFactory.shutdown();
             state = BaseConstants.STOPPED;
         } catch (IOException e) {
             log.warn("Error shutting down IOReactor", e);
@@ -806,6 +807,7 @@ public class HttpCoreNIOSender extends AbstractHandler implements TransportSende
         try {
             long start = System.currentTimeMillis();
             ioReactor.shutdown(millis);
+            connFactory.shutdown();
             state = BaseConstants.STOPPED;
             log.info("Sender shutdown in : " + (System.currentTimeMillis() - start) / 1000 + "s");
         } catch (IOException e) {
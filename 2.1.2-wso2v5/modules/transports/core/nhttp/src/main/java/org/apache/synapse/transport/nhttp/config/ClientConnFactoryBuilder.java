@@ -106,23 +106,8 @@ public class ClientConnFactoryBuilder {
             hostnameVerifier = ClientSSLSetupHandler.DEFAULT;
         }
 
-        final Parameter cvp = transportOut.getParameter("CertificateRevocationVerifier");
-        final String cvEnable = cvp != null ?
-                cvp.getParameterElement().getAttribute(new QName("enable")).getAttributeValue() : null;
-        RevocationVerificationManager revocationVerifier = null;
-
-        if ("true".equalsIgnoreCase(cvEnable)) {
-            String cacheSizeString = cvp.getParameterElement().getFirstChildWithName(new QName("CacheSize")).getText();
-            String cacheDelayString = cvp.getParameterElement().getFirstChildWithName(new QName("CacheDelay")).getText();
-            Integer cacheSize = null;
-            Integer cacheDelay = null;
-            try {
-                cacheSize = new Integer(cacheSizeString);
-                cacheDelay = new Integer(cacheDelayString);
-            }
-            catch (NumberFormatException e) {}
-            revocationVerifier = new RevocationVerificationManager(cacheSize, cacheDelay);
-        }
+        RevocationVerificationManager revocationVerifier = RevocationVerifierBuilder.build(
+                transportOut.getParameter("CertificateRevocationVerifier"));
 
         ssl = new SSLContextDetails(sslContext, new ClientSSLSetupHandler(hostnameVerifier, revocationVerifier));
         sslByHostMap = getCustomSSLContexts(transportOut);
@@ -0,0 +1,97 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.nhttp.config;
+
+import javax.xml.namespace.QName;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.axis2.description.Parameter;
+import org.apache.synapse.transport.certificatevalidation.RevocationVerificationManager;
+
+/**
+ * Builds the RevocationVerificationManager of a transport from its CertificateRevocationVerifier
+ * parameter, which has the following syntax.
+ *
+ * <parameter name="CertificateRevocationVerifier" enable="true">
+ *      <CacheSize>1024</CacheSize>
+ *      <CacheDelay>1000</CacheDelay>
+ *      <Async>true</Async>
+ *      <FetchTimeout>200</FetchTimeout>
+ *      <FailurePolicy>closed</FailurePolicy>
+ * </parameter>
+ *
+ * When Async is true the revocation statuses are fetched without blocking the SSL handshakes, a
+ * handshake waits at most FetchTimeout milliseconds for a status, after which the certificate is
+ * rejected, or accepted if the FailurePolicy is open. The handshakes are verified on the I/O dispatcher
+ * threads, which are blocked while waiting, so FetchTimeout should be kept short.
+ */
+final class RevocationVerifierBuilder {
+
+    private RevocationVerifierBuilder() {
+    }
+
+    /**
+     * @param cvp the CertificateRevocationVerifier parameter, may be null
+     * @return the verification manager, or null if revocation verification is not enabled
+     */
+    static RevocationVerificationManager build(Parameter cvp) {
+        final String cvEnable = cvp != null ?
+                cvp.getParameterElement().getAttributeValue(new QName("enable")) : null;
+        if (!"true".equalsIgnoreCase(cvEnable)) {
+            return null;
+        }
+
+        OMElement element = cvp.getParameterElement();
+        Integer cacheSize = getInteger(element, "CacheSize");
+        Integer cacheDelay = getInteger(element, "CacheDelay");
+
+        if (!"true".equalsIgnoreCase(getText(element, "Async"))) {
+            return new RevocationVerificationManager(cacheSize, cacheDelay);
+        }
+        Long fetchTimeout = null;
+        String strFetchTimeout = getText(element, "FetchTimeout");
+        if (strFetchTimeout != null) {
+            try {
+                fetchTimeout = Long.valueOf(strFetchTimeout);
+            } catch (NumberFormatException e) {}
+        }
+        boolean failOpen = "open".equalsIgnoreCase(getText(element, "FailurePolicy"));
+        return new RevocationVerificationManager(cacheSize, cacheDelay, fetchTimeout, failOpen);
+    }
+
+    /**
+     * @return the value of the named child element, or null if it is missing or not a number, in which
+     *         case the manager uses its default
+     */
+    private static Integer getInteger(OMElement element, String name) {
+        String text = getText(element, name);
+        if (text != null) {
+            try {
+                return Integer.valueOf(text);
+            } catch (NumberFormatException e) {}
+        }
+        return null;
+    }
+
+    private static String getText(OMElement element, String name) {
+        OMElement child = element.getFirstChildWithName(new QName(name));
+        return child != null ? child.getText().trim() : null;
+    }
+}
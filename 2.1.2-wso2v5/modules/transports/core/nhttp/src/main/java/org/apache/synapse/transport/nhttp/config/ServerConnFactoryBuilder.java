@@ -50,6 +50,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.HttpHost;
 import org.apache.http.params.HttpParams;
+import org.apache.synapse.transport.certificatevalidation.RevocationVerificationManager;
 import org.apache.synapse.transport.http.conn.SSLClientAuth;
 import org.apache.synapse.transport.http.conn.SSLContextDetails;
 import org.apache.synapse.transport.http.conn.ServerConnFactory;
@@ -64,6 +65,7 @@ public class ServerConnFactoryBuilder {
     private final String name;
 
     private SSLContextDetails ssl;
+    private RevocationVerificationManager revocationVerifier;
     private Map<InetSocketAddress, SSLContextDetails> sslByIPMap = null;
     
     public ServerConnFactoryBuilder(final TransportInDescription transportIn, final HttpHost host) {
@@ -201,7 +203,8 @@ public class ServerConnFactoryBuilder {
             
             ServerSSLSetupHandler sslSetupHandler =
                                (clientAuth != null || httpsProtocols != null) ?
-                                         new ServerSSLSetupHandler(clientAuth,httpsProtocols) : null;
+                                         new ServerSSLSetupHandler(clientAuth, httpsProtocols,
+                                                 revocationVerifier) : null;
             
             return new SSLContextDetails(sslContext, sslSetupHandler);
         } catch (GeneralSecurityException gse) {
@@ -219,7 +222,8 @@ public class ServerConnFactoryBuilder {
         OMElement trustStoreEl = trustParam != null ? trustParam.getParameterElement().getFirstElement() : null;
         OMElement clientAuthEl = clientAuthParam != null ? clientAuthParam.getParameterElement() : null;
         OMElement httpsProtocolsEl = httpsProtocolsParam != null ? httpsProtocolsParam.getParameterElement() : null;
-        
+
+        revocationVerifier = getRevocationVerifier();
         ssl = createSSLContext(keyStoreEl, trustStoreEl, clientAuthEl, httpsProtocolsEl);
         return this;
     }
@@ -230,6 +234,7 @@ public class ServerConnFactoryBuilder {
         if (loadedTransportIn == null)
             return this;
 
+        revocationVerifier = getRevocationVerifier();
         Parameter profileParam    = transportIn.getParameter("SSLProfiles");
         OMElement profilesEl = profileParam.getParameterElement();
         Iterator<?> profiles = profilesEl.getChildrenWithName(new QName("profile"));
@@ -256,6 +261,18 @@ public class ServerConnFactoryBuilder {
         return this;
     }
 
+    /**
+     * The client certificates of all the SSL profiles of the listener are verified by the same manager,
+     * so that they share the cached revocation statuses.
+     */
+    private RevocationVerificationManager getRevocationVerifier() {
+        if (revocationVerifier == null) {
+            revocationVerifier = RevocationVerifierBuilder.build(
+                    transportIn.getParameter("CertificateRevocationVerifier"));
+        }
+        return revocationVerifier;
+    }
+
     /**
      * Loads MultiProfileSSLConfiguration when the configuration is in a different file
      * than axis2.xml. If the configuration file path is in axis2.xml and its successfully loaded, it will be
@@ -19,6 +19,7 @@
 package org.apache.synapse.transport.passthru;
 
 import org.apache.axis2.AxisFault;
+import org.apache.axis2.Constants;
 import org.apache.axis2.context.MessageContext;
 import org.apache.axis2.addressing.EndpointReference;
 import org.apache.commons.logging.Log;
@@ -106,66 +107,95 @@ public class DeliveryAgent {
     public void submit(MessageContext msgContext, EndpointReference epr)
             throws AxisFault {
         try {
-            URL url = new URL(epr.getAddress());
-            String scheme = url.getProtocol() != null ? url.getProtocol() : "http";
-            String hostname = url.getHost();
-            int port = url.getPort();
-            if (port == -1) {
-                // use default
-                if ("http".equals(scheme)) {
-                    port = 80;
-                } else if ("https".equals(scheme)) {
-                    port = 443;
-                }
+            submit(msgContext, getRoute(new URL(epr.getAddress())));
+        } catch (MalformedURLException e) {
+            handleException("Malformed URL in the target EPR", e);
+        }
+    }
+
+    /**
+     * Send a pipelined message again after the connection it was pipelined on is closed
+     * before its response is received. The message is not pipelined a second time.
+     *
+     * @param msgContext the message context to be sent
+     * @param route the route of the closed connection
+     */
+    public void resubmit(MessageContext msgContext, HttpRoute route) {
+        if (log.isDebugEnabled()) {
+            log.debug("Resending a pipelined message through another connection to " + route);
+        }
+        msgContext.setProperty(PassThroughConstants.PIPELINE_RETRIED, Boolean.TRUE);
+        submit(msgContext, route);
+    }
+
+    private void submit(MessageContext msgContext, HttpRoute route) {
+        // first we queue the message
+        Queue<MessageContext> queue = null;
+        lock.lock();
+        try {
+            queue = waitingMessages.get(route);
+            if (queue == null) {
+                queue = new ConcurrentLinkedQueue<MessageContext>();
+                waitingMessages.put(route, queue);
             }
-            HttpHost target = new HttpHost(hostname, port, scheme);
-            boolean secure = "https".equalsIgnoreCase(target.getSchemeName());
+            if (queue.size() == maxWaitingMessages) {
+                MessageContext msgCtx = queue.poll();
 
-            HttpHost proxy = proxyConfig.selectProxy(target);
-            HttpRoute route;
-            if (proxy != null) {
-                route = new HttpRoute(target, null, proxy, secure);
-            } else {
-                route = new HttpRoute(target, null, secure);
+                targetErrorHandler.handleError(msgCtx,
+                        ErrorCodes.CONNECTION_TIMEOUT,
+                        "Error connecting to the back end",
+                        null,
+                        ProtocolState.REQUEST_READY);
             }
 
-            // first we queue the message
-            Queue<MessageContext> queue = null;
-            lock.lock();
-            try {
-                queue = waitingMessages.get(route);
-                if (queue == null) {
-                    queue = new ConcurrentLinkedQueue<MessageContext>();
-                    waitingMessages.put(route, queue);
-                }
-                if (queue.size() == maxWaitingMessages) {
-                    MessageContext msgCtx = queue.poll();
-
-                    targetErrorHandler.handleError(msgCtx,
-                            ErrorCodes.CONNECTION_TIMEOUT,
-                            "Error connecting to the back end",
-                            null,
-                            ProtocolState.REQUEST_READY);
-                }
+            queue.add(msgContext);
+        } finally {
+            lock.unlock();
+        }
 
+        NHttpClientConnection conn = targetConnections.getConnection(route);
+        if (conn != null) {
+        	conn.resetInput();
+        	conn.resetOutput();
+            MessageContext messageContext = queue.poll();
+
+            if (messageContext != null) {
+                tryNextMessage(messageContext, route, conn);
+            }
+        } else if (!targetConnections.canHaveMoreConnections(route) &&
+                isPipelinable(msgContext, route) && queue.remove(msgContext)) {
+            if (!pipeline(msgContext, route)) {
                 queue.add(msgContext);
-            } finally {
-                lock.unlock();
             }
+        }
+    }
 
-            NHttpClientConnection conn = targetConnections.getConnection(route);
-            if (conn != null) {
-            	conn.resetInput();
-            	conn.resetOutput();
-                MessageContext messageContext = queue.poll();
-
-                if (messageContext != null) {
-                    tryNextMessage(messageContext, route, conn);
-                }
+    /**
+     * Create the route used for sending messages to the given URL.
+     *
+     * @param url address of the target
+     * @return the route, going through the proxy selected for the target if any
+     */
+    public HttpRoute getRoute(URL url) {
+        String scheme = url.getProtocol() != null ? url.getProtocol() : "http";
+        String hostname = url.getHost();
+        int port = url.getPort();
+        if (port == -1) {
+            // use default
+            if ("http".equals(scheme)) {
+                port = 80;
+            } else if ("https".equals(scheme)) {
+                port = 443;
             }
+        }
+        HttpHost target = new HttpHost(hostname, port, scheme);
+        boolean secure = "https".equalsIgnoreCase(target.getSchemeName());
 
-        } catch (MalformedURLException e) {
-            handleException("Malformed URL in the target EPR", e);
+        HttpHost proxy = proxyConfig.selectProxy(target);
+        if (proxy != null) {
+            return new HttpRoute(target, null, proxy, secure);
+        } else {
+            return new HttpRoute(target, null, secure);
         }
     }
 
@@ -181,8 +211,9 @@ public class DeliveryAgent {
                         null,
                         ProtocolState.REQUEST_READY);
             }
-        } else {
-            throw new IllegalStateException("Queue cannot be null for: " + route);
+        } else if (log.isDebugEnabled()) {
+            // a pre-warmed connection failed before any message was sent to the route
+            log.debug("No messages waiting for the failed connection to: " + route);
         }
     }
 
@@ -202,6 +233,11 @@ public class DeliveryAgent {
             lock.unlock();
         }
 
+        if (queue == null) {
+            // a pre-warmed connection, it stays in the pool until a message is sent to the route
+            return;
+        }
+
         while (queue.size() > 0) {
             NHttpClientConnection conn = targetConnections.getConnection(route);
             if (conn != null) {
@@ -216,10 +252,92 @@ public class DeliveryAgent {
         }
     }
 
+    /**
+     * Weather the message can be pipelined on a connection which is waiting for the
+     * response of another message. Only idempotent requests without a body are pipelined,
+     * so that they can be resent if the backend closes the connection before responding.
+     *
+     * @param msgContext the message to be sent
+     * @param route the route of the message
+     * @return true if the message can be pipelined
+     */
+    private boolean isPipelinable(MessageContext msgContext, HttpRoute route) {
+        if (!msgContext.isPropertyTrue(PassThroughConstants.HTTP_PIPELINING) &&
+                !targetConfiguration.isPipeliningEnabled(route.getTargetHost())) {
+            return false;
+        }
+        if (msgContext.isPropertyTrue(PassThroughConstants.PIPELINE_RETRIED) ||
+                route.isTunnelled() ||
+                "true".equals(msgContext.getProperty(PassThroughConstants.FORCE_HTTP_1_0)) ||
+                "true".equals(msgContext.getProperty(PassThroughConstants.DISABLE_CHUNKING)) ||
+                "true".equals(msgContext.getProperty(PassThroughConstants.NO_KEEPALIVE))) {
+            return false;
+        }
+
+        String method = (String) msgContext.getProperty(Constants.Configuration.HTTP_METHOD);
+        return "GET".equals(method) || "DELETE".equals(method) ||
+                "HEAD".equals(method) || "OPTIONS".equals(method);
+    }
+
+    /**
+     * Pipeline the message on one of the busy connections of the route. The request is
+     * written by the IO reactor thread of the connection once the requests ahead of it are
+     * written, and its response is correlated in the order the requests were written.
+     *
+     * @param msgContext the message to be sent
+     * @param route the route of the message
+     * @return true if a connection accepted the message
+     */
+    private boolean pipeline(MessageContext msgContext, HttpRoute route) {
+        TargetRequest request;
+        try {
+            request = TargetRequestFactory.create(msgContext, route, targetConfiguration);
+        } catch (AxisFault e) {
+            log.error("Error while creating the pipelined request", e);
+            return false;
+        }
+        String method = request.getMethod();
+        if (request.hasEntityBody() && !"GET".equals(method) && !"DELETE".equals(method)) {
+            return false;
+        }
+
+        Pipe pipe = (Pipe) msgContext.getProperty(PassThroughConstants.PASS_THROUGH_PIPE);
+        int maxDepth = targetConfiguration.getPipeliningMaxDepth();
+        for (NHttpClientConnection conn : targetConnections.getBusyConnections(route)) {
+            TargetContext targetContext = TargetContext.get(conn);
+            if (targetContext == null ||
+                    !targetContext.addPipelinedRequest(msgContext, request, pipe, maxDepth)) {
+                continue;
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("Pipelining new request on the connection: " + conn);
+            }
+            if (pipe != null) {
+                pipe.attachConsumer(conn);
+                request.connect(pipe);
+                if (Boolean.TRUE.equals(msgContext.getProperty(PassThroughConstants.MESSAGE_BUILDER_INVOKED))) {
+                    synchronized (msgContext) {
+                        OutputStream out = pipe.getOutputStream();
+                        msgContext.setProperty(PassThroughConstants.BUILDER_OUTPUT_STREAM, out);
+                        msgContext.setProperty(PassThroughConstants.WAIT_BUILDER_IN_STREAM_COMPLETE, Boolean.TRUE);
+                        msgContext.notifyAll();
+                    }
+                }
+            }
+            conn.requestOutput();
+            return true;
+        }
+        return false;
+    }
+
     private void tryNextMessage(MessageContext messageContext, HttpRoute route, NHttpClientConnection conn) {
         if (conn != null) {
             try {
                 TargetContext.get(conn).setRequestMsgCtx(messageContext);
+                if (isPipelinable(messageContext, route)) {
+                    TargetContext.get(conn).openPipeline();
+                }
 
                 submitRequest(conn, route, messageContext);
             } catch (AxisFault e) {
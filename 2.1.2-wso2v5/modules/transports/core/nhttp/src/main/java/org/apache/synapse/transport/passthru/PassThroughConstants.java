@@ -148,4 +148,10 @@ public class PassThroughConstants {
     public static final String REQUEST_ACCEPTS_GZIP ="REQUEST_ACCEPTS_GZIP" ;
     
     public static final String HTTP_SC_DESC = "HTTP_SC_DESC";
+
+    /** Set to true on a message to pipeline it to the endpoint when all the connections are busy */
+    public static final String HTTP_PIPELINING = "HTTP_PIPELINING";
+
+    /** Set on a pipelined message which is resent after its connection was closed */
+    public static final String PIPELINE_RETRIED = "PIPELINE_RETRIED";
 }
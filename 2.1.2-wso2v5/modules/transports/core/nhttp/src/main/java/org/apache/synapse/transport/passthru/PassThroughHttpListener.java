@@ -65,6 +65,7 @@ import org.apache.synapse.transport.http.conn.ServerConnFactory;
 import org.apache.synapse.transport.nhttp.config.ServerConnFactoryBuilder;
 import org.apache.synapse.transport.passthru.config.PassThroughConfiguration;
 import org.apache.synapse.transport.passthru.config.SourceConfiguration;
+import org.apache.synapse.transport.passthru.jmx.BufferFactoryView;
 import org.apache.synapse.transport.passthru.jmx.MBeanRegistrar;
 import org.apache.synapse.transport.passthru.jmx.PassThroughTransportMetricsCollector;
 import org.apache.synapse.transport.passthru.jmx.TransportView;
@@ -95,6 +96,9 @@ public class PassThroughHttpListener implements TransportListener {
     /** The configuration of the listener */
     private SourceConfiguration sourceConfiguration = null;
 
+    /** JMX view of the buffer pool of the listener */
+    private BufferFactoryView bufferFactoryView;
+
     /** The custom URI map for the services if there are any */
     private Map<String, String> serviceNameToEPRMap = new HashMap<String, String>();
     /** The service name map for the custom URI if there are any */
@@ -162,6 +166,9 @@ public class PassThroughHttpListener implements TransportListener {
 
         sourceConfiguration = new SourceConfiguration(cfgCtx, transportInDescription, scheme, workerPool, metrics);
         sourceConfiguration.build();
+        bufferFactoryView = new BufferFactoryView(sourceConfiguration.getBufferFactory(),
+                "passthru-" + namePrefix.toLowerCase() + "-receiver");
+        bufferFactoryView.register();
 
         HttpHost host = new HttpHost(
                 sourceConfiguration.getHostname(),
@@ -411,6 +418,7 @@ public class PassThroughHttpListener implements TransportListener {
             handleException("Error waiting for connection drain", e);
         } finally {
             state = BaseConstants.STOPPED;
+            connFactory.shutdown();
         }
     }
 
@@ -420,6 +428,9 @@ public class PassThroughHttpListener implements TransportListener {
                 getAxisConfiguration().getObserversList().remove(axisObserver);*/
         serviceTracker.stop();
         sourceConfiguration.getMetrics().destroy();
+        if (bufferFactoryView != null) {
+            bufferFactoryView.destroy();
+        }
     }
 
     /**
@@ -471,8 +482,10 @@ public class PassThroughHttpListener implements TransportListener {
                 sourceConfiguration.getPort(),
                 sourceConfiguration.getScheme().getName());
         ServerConnFactoryBuilder connFactoryBuilder = initConnFactoryBuilder(transportIn, host);
+        ServerConnFactory oldConnFactory = connFactory;
         connFactory = connFactoryBuilder.build(sourceConfiguration.getHttpParams());
         ioEventDispatch.update(connFactory);
+        oldConnFactory.shutdown();
 
         startEndpoints();
 
@@ -492,6 +505,7 @@ public class PassThroughHttpListener implements TransportListener {
             long start = System.currentTimeMillis();
             ioReactor.pause();
             ioReactor.shutdown(milliSecs);
+            connFactory.shutdown();
             state = BaseConstants.STOPPED;
             log.info("Listener shutdown in : " + (System.currentTimeMillis() - start) / 1000 + "s");
         } catch (IOException e) {
@@ -55,6 +55,7 @@ import org.apache.synapse.transport.nhttp.util.NhttpUtil;
 import org.apache.synapse.transport.passthru.config.SourceConfiguration;
 import org.apache.synapse.transport.passthru.config.TargetConfiguration;
 import org.apache.synapse.transport.passthru.connections.TargetConnections;
+import org.apache.synapse.transport.passthru.jmx.BufferFactoryView;
 import org.apache.synapse.transport.passthru.jmx.MBeanRegistrar;
 import org.apache.synapse.transport.passthru.jmx.PassThroughTransportMetricsCollector;
 import org.apache.synapse.transport.passthru.jmx.TransportView;
@@ -64,6 +65,8 @@ import org.apache.synapse.transport.passthru.util.SourceResponseFactory;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.Locale;
 
 /**
@@ -92,6 +95,9 @@ public class PassThroughHttpSender extends AbstractHandler implements TransportS
 
     /** Proxy config */
     private ProxyConfig proxyConfig;
+
+    /** JMX view of the buffer pool of the sender */
+    private BufferFactoryView bufferFactoryView;
     
     /** state of the sender */
     private volatile int state = BaseConstants.STOPPED;
@@ -141,6 +147,9 @@ public class PassThroughHttpSender extends AbstractHandler implements TransportS
                 transportOutDescription, workerPool, metrics, 
                 proxyConfig.getCreds() != null ? new ProxyAuthenticator(proxyConfig.getCreds()) : null);
         targetConfiguration.build();
+        bufferFactoryView = new BufferFactoryView(targetConfiguration.getBufferFactory(),
+                "passthru-" + namePrefix.toLowerCase() + "-sender");
+        bufferFactoryView.register();
         configurationContext.setProperty(PassThroughConstants.PASS_THROUGH_TRANSPORT_WORKER_POOL,
                 targetConfiguration.getWorkerPool());
         
@@ -183,6 +192,7 @@ public class PassThroughHttpSender extends AbstractHandler implements TransportS
         // create the delivery agent to hand over messages
         deliveryAgent = new DeliveryAgent(targetConfiguration, targetConnections, proxyConfig);
         // we need to set the delivery agent
+        targetConnections.setDeliveryAgent(deliveryAgent);
         connectCallback.setDeliveryAgent(deliveryAgent);        
 
         handler = new TargetHandler(deliveryAgent, connFactory, targetConfiguration);
@@ -202,6 +212,9 @@ public class PassThroughHttpSender extends AbstractHandler implements TransportS
         }, "PassThrough" + namePrefix + "Sender");
         t.start();
 
+        targetConfiguration.getMetrics().setTargetConnections(targetConnections);
+        preWarmConnections(targetConnections);
+
         state = BaseConstants.STARTED;
 
         log.info("Pass-through " + namePrefix + " Sender started...");
@@ -217,6 +230,32 @@ public class PassThroughHttpSender extends AbstractHandler implements TransportS
         } catch (IOException e) {
             log.error("Error shutting down the PassThroughHttpSender", e);
         }
+        connFactory.shutdown();
+        if (bufferFactoryView != null) {
+            bufferFactoryView.destroy();
+        }
+        if (targetConfiguration.getConnections() != null) {
+            targetConfiguration.getConnections().shutdown();
+        }
+    }
+
+    /**
+     * Open the configured number of connections to each of the pre-warmed backends.
+     *
+     * @param targetConnections connection management of the sender
+     */
+    private void preWarmConnections(TargetConnections targetConnections) {
+        int count = targetConfiguration.getPreWarmCount();
+        if (count <= 0) {
+            return;
+        }
+        for (String address : targetConfiguration.getPreWarmUrls()) {
+            try {
+                targetConnections.preWarm(deliveryAgent.getRoute(new URL(address)), count);
+            } catch (MalformedURLException e) {
+                log.warn("Invalid URL : " + address + " configured for pre-warming connections");
+            }
+        }
     }
 
 
@@ -546,6 +585,7 @@ public class PassThroughHttpSender extends AbstractHandler implements TransportS
         try {
             long start = System.currentTimeMillis();
             ioReactor.shutdown(millis);
+            connFactory.shutdown();
             state = BaseConstants.STOPPED;
             log.info("Sender shutdown in : " + (System.currentTimeMillis() - start) / 1000 + "s");
         } catch (IOException e) {
@@ -25,12 +25,25 @@ import org.apache.synapse.transport.passthru.config.BaseConfiguration;
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This is a buffer shared by both producers and consumers.
+ * <p>
+ * When relay mode is enabled in the transport configuration, a pipe with an HTTP producer
+ * hands the data over to the consumer through a single-producer/single-consumer ring of
+ * buffers instead of the shared buffer. Producer and consumer then only communicate through
+ * the volatile ring indexes and the IOControls, so the source and target I/O reactor threads
+ * never contend on the pipe lock while relaying. Messages which are built or serialized by the
+ * mediation engine still use the lock based streams.
+ * <p>
+ * Either side may release the ring, when the message is complete, on an error or when the pipe is
+ * closed, while the other side is still relaying. The buffers are only returned to the buffer
+ * factory once no producer or consumer call is using the ring any more.
  */
 public class Pipe {
 
@@ -38,14 +51,14 @@ public class Pipe {
     private IOControl producerIoControl;
 
     /** IOControl of the consumer */
-    private IOControl consumerIoControl;
+    private volatile IOControl consumerIoControl;
 
     /** Fixed size buffer to read and write data */
     private ByteBuffer buffer;
 
-    private ByteBuffer outputBuffer;
+    private volatile ByteBuffer outputBuffer;
 
-    private boolean producerCompleted = false;
+    private volatile boolean producerCompleted = false;
 
     public boolean isProducerCompleted() {
 		return producerCompleted;
@@ -60,9 +73,9 @@ public class Pipe {
     /** Name to identify the buffer */
     private String name = "Buffer";
 
-    private boolean consumerError = false;
+    private volatile boolean consumerError = false;
 
-    private boolean producerError = false;
+    private volatile boolean producerError = false;
 
     private BaseConfiguration baseConfig;
 
@@ -75,15 +88,51 @@ public class Pipe {
     private AtomicBoolean inBufferInputMode = new AtomicBoolean(true);
     private AtomicBoolean outBufferInputMode;
 
-    private ByteBufferInputStream inputStream;
+    private InputStream inputStream;
     private ByteBufferOutputStream outputStream;
 
+    /** Whether the data of an HTTP producer is relayed through a ring of buffers */
+    private final boolean relayMode;
+
+    /**
+     * Ring of buffers used in relay mode, slot 0 is always the buffer given to the pipe. It is
+     * allocated when the producer first produces data, so that pipes which are only written
+     * through the output stream never hold a ring
+     */
+    private volatile ByteBuffer[] ring;
+
+    /** Sequence of the next ring slot to be consumed, written only by the consumer */
+    private volatile long head = 0;
+
+    /** Sequence of the next ring slot to be filled, written only by the producer */
+    private volatile long tail = 0;
+
+    /** Reader thread waiting on the ring, if the payload is read through the input stream */
+    private volatile Thread waitingReader;
+
+    /** Whether the ring has been released, no call starts using the ring afterwards */
+    private final AtomicBoolean ringReleased = new AtomicBoolean(false);
+
+    /** Number of producer and consumer calls using the ring */
+    private final AtomicInteger ringUsers = new AtomicInteger(0);
+
+    private final AtomicBoolean ringFreed = new AtomicBoolean(false);
+
+    /** Whether the pipe buffer is returned to the buffer factory along with the ring */
+    private volatile boolean bufferReleased = false;
+
+    private final AtomicBoolean bufferFreed = new AtomicBoolean(false);
+
+    /** Buffer the producer reads into once the ring has been released, to drop the data */
+    private ByteBuffer discardBuffer;
+
     public Pipe(IOControl producerIoControl, ByteBuffer buffer,
                 String name, BaseConfiguration baseConfig) {
         this.producerIoControl = producerIoControl;
         this.buffer = buffer;
         this.name += "_" + name;
         this.baseConfig = baseConfig;
+        this.relayMode = baseConfig != null && baseConfig.isPipeRelayMode();
     }
 
     public Pipe(ByteBuffer buffer, String name, BaseConfiguration baseConfig) {
@@ -91,6 +140,7 @@ public class Pipe {
         this.name += "_" + name;
         this.baseConfig = baseConfig;
         this.hasHttpProducer = false;
+        this.relayMode = false;
     }
 
     /**
@@ -119,6 +169,10 @@ public class Pipe {
             throw new IllegalStateException("Producer cannot be null when calling consume");
         }
 
+        if (relayMode && outputBuffer == null) {
+            return relayConsume(encoder);
+        }
+
         lock.lock();
         ByteBuffer consumerBuffer;
         AtomicBoolean inputMode;
@@ -179,6 +233,10 @@ public class Pipe {
             throw new IllegalStateException("Producer cannot be null when calling produce");
         }
 
+        if (relayMode) {
+            return relayProduce(decoder);
+        }
+
         lock.lock();
         try {
             setInputMode(buffer, inBufferInputMode);
@@ -223,6 +281,275 @@ public class Pipe {
         }
     }
 
+    /**
+     * Produce data in to the next free slot of the ring and publish it to the consumer.
+     *
+     * @param decoder decoder to read bytes from the underlying stream
+     * @return bytes read (consumed)
+     * @throws IOException if an error occurs while reading data
+     */
+    private int relayProduce(final ContentDecoder decoder) throws IOException {
+        if (consumerError) {
+            // nobody is going to consume the ring any more
+            releaseRing();
+        }
+        if (!retainRing()) {
+            return discard(decoder);
+        }
+        try {
+            return relayProduce(decoder, acquireRing());
+        } finally {
+            unretainRing();
+        }
+    }
+
+    private int relayProduce(final ContentDecoder decoder, ByteBuffer[] ring) throws IOException {
+        if (tail - head >= ring.length) {
+            // ring is full, wait until the consumer frees up a slot
+            suspendProducer(ring);
+            return 0;
+        }
+
+        ByteBuffer slot = ring[(int) (tail % ring.length)];
+        if (slot == null) {
+            // released while relaying
+            return discard(decoder);
+        }
+        int bytesRead;
+        try {
+            bytesRead = decoder.read(slot);
+        } catch (MalformedChunkCodingException ignore) {
+            // we assume that this is a truncated chunk, hence simply ignore the exception
+            // https://issues.apache.org/jira/browse/HTTPCORE-195
+            slot.putInt(-1);
+            bytesRead = slot.position();
+        }
+
+        if (slot.position() > 0) {
+            // publish the slot, the volatile write hands the slot content over to the consumer
+            slot.flip();
+            tail++;
+        }
+
+        if (decoder.isCompleted()) {
+            producerCompleted = true;
+        }
+
+        if (tail > head || producerCompleted) {
+            IOControl consumer = consumerIoControl;
+            if (consumer != null) {
+                consumer.requestOutput();
+            }
+            Thread reader = waitingReader;
+            if (reader != null) {
+                LockSupport.unpark(reader);
+            }
+        }
+
+        if (!producerCompleted && tail - head >= ring.length) {
+            suspendProducer(ring);
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Write the published ring slots to the encoder without taking the pipe lock.
+     *
+     * @param encoder encoder used to write the data
+     * @return number of bytes written (consumed)
+     * @throws IOException if an error occurred while consuming data
+     */
+    private int relayConsume(final ContentEncoder encoder) throws IOException {
+        if (producerError || !retainRing()) {
+            // the producer is not going to publish any more data
+            encoder.complete();
+            releaseRing();
+            return -1;
+        }
+        try {
+            return relayConsume(encoder, this.ring);
+        } finally {
+            unretainRing();
+        }
+    }
+
+    private int relayConsume(final ContentEncoder encoder, ByteBuffer[] ring) throws IOException {
+        int bytesWritten = 0;
+        boolean slotFreed = false;
+        while (head < tail) {
+            ByteBuffer slot = ring[(int) (head % ring.length)];
+            if (slot == null) {
+                // released while relaying
+                break;
+            }
+            int written = encoder.write(slot);
+            if (written > 0) {
+                bytesWritten += written;
+            }
+            if (slot.hasRemaining()) {
+                // the channel cannot accept more data at the moment
+                break;
+            }
+            slot.clear();
+            // the volatile write hands the slot back to the producer
+            head++;
+            slotFreed = true;
+        }
+
+        if (head == tail) {
+            if (producerCompleted && head == tail) {
+                encoder.complete();
+                releaseRing();
+            } else {
+                // ring is empty. Wait until the producer publishes more data
+                consumerIoControl.suspendOutput();
+                if (tail > head || producerCompleted) {
+                    consumerIoControl.requestOutput();
+                }
+            }
+        }
+
+        if (slotFreed && !encoder.isCompleted() && !producerCompleted) {
+            producerIoControl.requestInput();
+        }
+        return bytesWritten;
+    }
+
+    private void suspendProducer(ByteBuffer[] ring) {
+        producerIoControl.suspendInput();
+        // the consumer may have freed a slot before the input got suspended
+        if (tail - head < ring.length) {
+            producerIoControl.requestInput();
+        }
+    }
+
+    /**
+     * Read and drop the data of the producer once the ring has been released
+     */
+    private int discard(final ContentDecoder decoder) throws IOException {
+        // the pipe buffer may already be back in the buffer factory
+        if (discardBuffer == null) {
+            discardBuffer = ByteBuffer.allocate(buffer.capacity());
+        }
+        discardBuffer.clear();
+        int bytesRead;
+        try {
+            bytesRead = decoder.read(discardBuffer);
+        } catch (MalformedChunkCodingException ignore) {
+            bytesRead = discardBuffer.position();
+        }
+        discardBuffer.clear();
+        if (decoder.isCompleted()) {
+            producerCompleted = true;
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Allocate the ring on the first use by the producer. Only called by the producer while it
+     * has retained the ring, so the ring can not be freed in the meantime.
+     *
+     * @return the ring
+     */
+    private ByteBuffer[] acquireRing() {
+        ByteBuffer[] current = ring;
+        if (current == null) {
+            current = new ByteBuffer[Math.max(baseConfig.getPipeRelayRingSize(), 1)];
+            current[0] = buffer;
+            for (int i = 1; i < current.length; i++) {
+                current[i] = baseConfig.getBufferFactory().getBuffer();
+            }
+            ring = current;
+        }
+        return current;
+    }
+
+    /**
+     * Register a call using the ring. The buffers of the ring are not returned to the buffer
+     * factory before the call has unretained the ring.
+     *
+     * @return false if the ring has already been released, and must not be used
+     */
+    private boolean retainRing() {
+        ringUsers.incrementAndGet();
+        if (ringReleased.get()) {
+            unretainRing();
+            return false;
+        }
+        return true;
+    }
+
+    private void unretainRing() {
+        if (ringUsers.decrementAndGet() == 0) {
+            freeRing();
+        }
+    }
+
+    /**
+     * Release the ring once the relayed message is fully consumed, on an error or when the pipe
+     * is closed. The ring is freed now if it is not in use, or else by the last call using it.
+     */
+    private void releaseRing() {
+        ringReleased.set(true);
+        if (ringUsers.get() == 0) {
+            freeRing();
+        }
+    }
+
+    /**
+     * Return the additional ring slots to the buffer factory, and the pipe buffer if the pipe has
+     * been released. Slot 0 is the pipe buffer, which belongs to the owning connection context.
+     */
+    private void freeRing() {
+        if (ringReleased.get() && ringFreed.compareAndSet(false, true)) {
+            ByteBuffer[] slots = ring;
+            if (slots != null) {
+                for (int i = 1; i < slots.length; i++) {
+                    baseConfig.getBufferFactory().release(slots[i]);
+                    slots[i] = null;
+                }
+            }
+        }
+        if (bufferReleased && bufferFreed.compareAndSet(false, true)) {
+            baseConfig.getBufferFactory().release(buffer);
+        }
+    }
+
+    /**
+     * Release the buffers held by the pipe in relay mode. Called when the connection context
+     * owning the pipe is reset, so that the ring is released even if the relayed message is
+     * never completely consumed.
+     */
+    public void close() {
+        if (relayMode) {
+            releaseRing();
+            Thread reader = waitingReader;
+            if (reader != null) {
+                LockSupport.unpark(reader);
+            }
+        }
+    }
+
+    /**
+     * Close the pipe and return its buffer to the buffer factory it has been taken from. The
+     * buffer comes from the factory of the transport which created the pipe, which is not the
+     * factory of the connection writing the pipe out when a message is relayed from one
+     * transport to the other.
+     */
+    public void release() {
+        if (relayMode) {
+            // the producer may still be reading into the buffer
+            bufferReleased = true;
+            close();
+        } else if (baseConfig != null) {
+            baseConfig.getBufferFactory().release(buffer);
+        }
+    }
+
+    public boolean isRelayMode() {
+        return relayMode;
+    }
+
     @Override
     public String toString() {
         return name;
@@ -246,6 +573,10 @@ public class Pipe {
         } finally {
             lock.unlock();
         }
+        Thread reader = waitingReader;
+        if (reader != null) {
+            LockSupport.unpark(reader);
+        }
     }
 
     /**
@@ -257,7 +588,11 @@ public class Pipe {
      */
     public synchronized InputStream getInputStream() {
         if (inputStream == null) {
-            inputStream = new ByteBufferInputStream();
+            if (relayMode) {
+                inputStream = new RingInputStream();
+            } else {
+                inputStream = new ByteBufferInputStream();
+            }
         }
         return inputStream;
     }
@@ -422,6 +757,94 @@ public class Pipe {
         }
     }
 
+    /**
+     * Reads the relayed payload from the ring. Only used by the thread which builds the message,
+     * the producer wakes it up whenever it publishes a slot.
+     */
+    private class RingInputStream extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            if (!retainRing()) {
+                return -1;
+            }
+            try {
+                ByteBuffer slot = nextSlot();
+                if (slot == null) {
+                    return -1;
+                }
+                int b = slot.get() & 0xff;
+                slotRead(slot);
+                return b;
+            } finally {
+                unretainRing();
+            }
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (b == null) {
+                return 0;
+            }
+
+            if (!retainRing()) {
+                return -1;
+            }
+            try {
+                ByteBuffer slot = nextSlot();
+                if (slot == null) {
+                    return -1;
+                }
+                int chunk = Math.min(len, slot.remaining());
+                slot.get(b, off, chunk);
+                slotRead(slot);
+                return chunk;
+            } finally {
+                unretainRing();
+            }
+        }
+
+        private ByteBuffer nextSlot() throws IOException {
+            while (head == tail) {
+                if (producerCompleted && head == tail) {
+                    releaseRing();
+                    return null;
+                }
+                if (producerError || ringReleased.get()) {
+                    releaseRing();
+                    return null;
+                }
+                waitingReader = Thread.currentThread();
+                try {
+                    if (head == tail && !producerCompleted && !producerError) {
+                        producerIoControl.requestInput();
+                        LockSupport.park(this);
+                        if (Thread.interrupted()) {
+                            throw new IOException("Interrupted while waiting for data");
+                        }
+                    }
+                } finally {
+                    waitingReader = null;
+                }
+            }
+            ByteBuffer[] ring = Pipe.this.ring;
+            if (ring == null) {
+                return null;
+            }
+            // a null slot has been released and ends the stream like a released ring
+            return ring[(int) (head % ring.length)];
+        }
+
+        private void slotRead(ByteBuffer slot) {
+            if (!slot.hasRemaining()) {
+                slot.clear();
+                head++;
+                if (!producerCompleted) {
+                    producerIoControl.requestInput();
+                }
+            }
+        }
+    }
+
     private class ByteBufferOutputStream extends OutputStream {
 
         @Override
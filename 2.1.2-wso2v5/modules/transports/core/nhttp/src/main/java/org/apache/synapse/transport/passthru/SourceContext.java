@@ -88,7 +88,7 @@ public class SourceContext {
 			ByteBuffer buffer = writer.getBuffer();
 			buffer.clear();
 			if (releaseBuffer) {
-				sourceConfiguration.getBufferFactory().release(buffer);
+				writer.release();
 			}
 		}
 
@@ -22,6 +22,7 @@ import org.apache.http.message.BasicHttpResponse;
 import org.apache.http.nio.ContentDecoder;
 import org.apache.http.nio.NHttpServerConnection;
 import org.apache.synapse.transport.passthru.config.SourceConfiguration;
+import org.apache.synapse.transport.passthru.util.PassThroughTransportUtils;
 
 import java.io.IOException;
 import java.util.Comparator;
@@ -98,7 +99,8 @@ public class SourceRequest {
      */
     public void start(NHttpServerConnection conn) throws IOException, HttpException {
         if (entityEnclosing) {
-            pipe = new Pipe(conn, sourceConfiguration.getBufferFactory().getBuffer(), "source", sourceConfiguration);
+            pipe = new Pipe(conn, sourceConfiguration.getBufferFactory().getBuffer(
+                    PassThroughTransportUtils.getContentLength(request)), "source", sourceConfiguration);
 
             SourceContext.get(conn).setReader(pipe);
 
@@ -20,7 +20,9 @@ import org.apache.axis2.context.MessageContext;
 import org.apache.http.nio.NHttpConnection;
 import org.apache.synapse.transport.passthru.config.TargetConfiguration;
 
-import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
 
 /**
  * When a connection is created, an object of this class is stored in the Connection Context.
@@ -35,13 +37,19 @@ public class TargetContext {
     /** The response for this connection */
     private TargetResponse response;
     /** State of the connection */
-    private ProtocolState state;
+    private volatile ProtocolState state;
     /** The request message context */
     private MessageContext requestMsgCtx;
     /** The current reader */
     private Pipe reader;
     /** The current writer */
     private Pipe writer;
+    /** Weather requests can be pipelined behind the request in progress */
+    private boolean pipelineOpen = false;
+    /** Pipelined requests not yet written to the connection */
+    private final LinkedList<PipelinedRequest> unsentRequests = new LinkedList<PipelinedRequest>();
+    /** Pipelined requests written to the connection, in the order of their responses */
+    private final LinkedList<PipelinedRequest> sentRequests = new LinkedList<PipelinedRequest>();
 
     public TargetContext(TargetConfiguration targetConfiguration) {
         this.targetConfiguration = targetConfiguration;
@@ -104,16 +112,117 @@ public class TargetContext {
         response = null;
         state = ProtocolState.REQUEST_READY;
 
-        if (writer != null) {
-            ByteBuffer buffer = writer.getBuffer();
-            //buffer.clear();
-            if (releaseBuffer) {
-                targetConfiguration.getBufferFactory().release(buffer);
-            }
+        if (writer != null && releaseBuffer) {
+            writer.release();
         }
 
         reader = null;
         writer = null;       
+
+        closePipeline();
+    }
+
+    /**
+     * Allow other requests to be pipelined behind the request in progress.
+     */
+    public synchronized void openPipeline() {
+        pipelineOpen = true;
+    }
+
+    private synchronized void closePipeline() {
+        pipelineOpen = false;
+    }
+
+    /**
+     * Queue a request to be pipelined on this connection. This is called by the threads
+     * submitting messages, while the rest of the pipeline is driven by the IO reactor thread
+     * of the connection.
+     *
+     * @param msgCtx the message to be sent
+     * @param request the request created for the message
+     * @param pipe the pipe carrying the message, or null
+     * @param maxDepth maximum number of requests in the pipeline
+     * @return true if the request was queued, false if the connection does not accept it
+     */
+    public synchronized boolean addPipelinedRequest(MessageContext msgCtx, TargetRequest request,
+                                                    Pipe pipe, int maxDepth) {
+        if (!pipelineOpen || state == ProtocolState.CLOSING || state == ProtocolState.CLOSED ||
+                unsentRequests.size() + sentRequests.size() >= maxDepth) {
+            return false;
+        }
+        unsentRequests.add(new PipelinedRequest(msgCtx, request, pipe));
+        return true;
+    }
+
+    public synchronized boolean hasUnsentPipelinedRequests() {
+        return !unsentRequests.isEmpty();
+    }
+
+    /**
+     * Take the next pipelined request to be written to the connection. The request is
+     * considered sent from here on, so that it is retried if the connection fails while
+     * writing it.
+     *
+     * @return the next request or null if there is nothing to write
+     */
+    public synchronized PipelinedRequest nextUnsentPipelinedRequest() {
+        PipelinedRequest next = unsentRequests.poll();
+        if (next != null) {
+            sentRequests.add(next);
+        }
+        return next;
+    }
+
+    /**
+     * Make the next pipelined request the request in progress, once the response of the
+     * current request is completely received. A request already written to the connection
+     * waits for its response while a request not yet written has to be started.
+     *
+     * @return true if the connection continues with a pipelined request, false if the
+     * pipeline is empty and the connection can be released
+     */
+    public synchronized boolean promotePipelinedRequest() {
+        ProtocolState nextState = ProtocolState.REQUEST_DONE;
+        PipelinedRequest next = sentRequests.poll();
+        if (next == null) {
+            next = unsentRequests.poll();
+            nextState = ProtocolState.REQUEST_READY;
+        }
+        if (next == null) {
+            pipelineOpen = false;
+            return false;
+        }
+
+        if (writer != null) {
+            writer.release();
+        }
+
+        request = next.getRequest();
+        requestMsgCtx = next.getMessageContext();
+        response = null;
+        reader = null;
+        writer = next.getPipe();
+        state = nextState;
+        return true;
+    }
+
+    /**
+     * Remove all the pipelined requests from a connection which is being closed.
+     *
+     * @return the messages of the pipelined requests, in the order they were queued
+     */
+    public synchronized List<MessageContext> drainPipelinedRequests() {
+        pipelineOpen = false;
+        List<MessageContext> messages = new ArrayList<MessageContext>();
+        for (PipelinedRequest r : sentRequests) {
+            messages.add(r.getMessageContext());
+        }
+        for (PipelinedRequest r : unsentRequests) {
+            messages.add(r.getMessageContext());
+        }
+        sentRequests.clear();
+        unsentRequests.clear();
+        return messages;
     }
 
     public static void create(NHttpConnection conn, ProtocolState state, 
@@ -191,4 +300,30 @@ public class TargetContext {
         return (TargetContext) conn.getContext().getAttribute(CONNECTION_INFORMATION);
     }
 
+    /**
+     * A request waiting behind the request in progress on a pipelined connection.
+     */
+    public static class PipelinedRequest {
+        private final MessageContext msgCtx;
+        private final TargetRequest request;
+        private final Pipe pipe;
+
+        PipelinedRequest(MessageContext msgCtx, TargetRequest request, Pipe pipe) {
+            this.msgCtx = msgCtx;
+            this.request = request;
+            this.pipe = pipe;
+        }
+
+        public MessageContext getMessageContext() {
+            return msgCtx;
+        }
+
+        public TargetRequest getRequest() {
+            return request;
+        }
+
+        public Pipe getPipe() {
+            return pipe;
+        }
+    }
 }
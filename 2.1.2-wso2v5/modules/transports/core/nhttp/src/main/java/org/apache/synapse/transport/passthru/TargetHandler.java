@@ -111,7 +111,10 @@ public class TargetHandler implements NHttpClientEventHandler {
             
             connState = TargetContext.getState(conn);
 
-            if (connState == ProtocolState.REQUEST_DONE || connState == ProtocolState.RESPONSE_BODY) {
+            if (connState == ProtocolState.REQUEST_DONE || connState == ProtocolState.RESPONSE_BODY ||
+                    (connState == ProtocolState.RESPONSE_HEAD &&
+                            TargetContext.get(conn).hasUnsentPipelinedRequests())) {
+                writePipelinedRequests(conn);
                 return;
             }
 
@@ -142,6 +145,10 @@ public class TargetHandler implements NHttpClientEventHandler {
                 targetConfiguration.getMetrics().incrementMessagesSent();
             }
             context.setAttribute(PassThroughConstants.REQ_DEPARTURE_TIME, System.currentTimeMillis());
+
+            if (TargetContext.getState(conn) == ProtocolState.REQUEST_DONE) {
+                writePipelinedRequests(conn);
+            }
         } catch (IOException e) {
             logIOException(conn, e);
             TargetContext.updateState(conn, ProtocolState.CLOSED);
@@ -171,6 +178,28 @@ public class TargetHandler implements NHttpClientEventHandler {
         }
     }
 
+    /**
+     * Write the requests pipelined behind the request in progress. A failure while writing
+     * is handled by the caller by closing the connection, which resends the pipelined
+     * requests through other connections.
+     *
+     * @param conn the connection to the target
+     * @throws IOException if an error occurs while writing
+     * @throws HttpException if a request cannot be submitted
+     */
+    private void writePipelinedRequests(NHttpClientConnection conn)
+            throws IOException, HttpException {
+        TargetContext targetContext = TargetContext.get(conn);
+        TargetContext.PipelinedRequest pipelined;
+        while ((pipelined = targetContext.nextUnsentPipelinedRequest()) != null) {
+            if (log.isDebugEnabled()) {
+                log.debug(conn + ": Pipelining request " + pipelined.getRequest().getMethod());
+            }
+            pipelined.getRequest().startPipelined(conn, pipelined.getMessageContext());
+            targetConfiguration.getMetrics().incrementMessagesSent();
+        }
+    }
+
     public void outputReady(NHttpClientConnection conn, ContentEncoder encoder) {
         ProtocolState connState = null;
         try {
@@ -284,12 +313,14 @@ public class TargetHandler implements NHttpClientEventHandler {
                 }
                 conn.resetInput();
             }
+            // a response without a body may hand the connection over to a pipelined request
+            MessageContext requestMsgContext = TargetContext.get(conn).getRequestMsgCtx();
+
             TargetResponse targetResponse = new TargetResponse(
                     targetConfiguration, response, conn, canResponseHaveBody);
             TargetContext.setResponse(conn, targetResponse);
             targetResponse.start(conn);
 
-            MessageContext requestMsgContext = TargetContext.get(conn).getRequestMsgCtx();
             if (statusCode == HttpStatus.SC_ACCEPTED && handle202(requestMsgContext)) {
                 return;
             }
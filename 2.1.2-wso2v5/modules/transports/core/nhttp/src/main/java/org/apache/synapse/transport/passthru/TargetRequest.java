@@ -117,6 +117,33 @@ public class TargetRequest {
             TargetContext.get(conn).setWriter(pipe);
         }
 
+        submit(conn, TargetContext.get(conn).getRequestMsgCtx());
+
+        if (hasEntityBody) {
+            TargetContext.updateState(conn, ProtocolState.REQUEST_HEAD);
+        } else {
+            TargetContext.updateState(conn, ProtocolState.REQUEST_DONE);
+        }
+    }
+
+    /**
+     * Write this request to a connection behind the request in progress. Only requests
+     * without a body are pipelined, so the state of the connection is left to the request
+     * in progress.
+     *
+     * @param conn the connection to the target
+     * @param requestMsgCtx the message of this request
+     * @throws IOException if an error occurs
+     * @throws HttpException if the request cannot be submitted to the connection
+     */
+    public void startPipelined(NHttpClientConnection conn, MessageContext requestMsgCtx)
+            throws IOException, HttpException {
+        submit(conn, requestMsgCtx);
+    }
+
+    private void submit(NHttpClientConnection conn, MessageContext requestMsgCtx)
+            throws IOException, HttpException {
+
         String path = fullUrl || (route.getProxyHost() != null && !route.isTunnelled()) ?
                     url.toString() : url.getPath() +
                     (url.getQuery() != null ? "?" + url.getQuery() : "");
@@ -132,9 +159,6 @@ public class TargetRequest {
             headers.remove(HTTP.CONTENT_LEN);
         }
         
-        MessageContext requestMsgCtx = TargetContext.get(conn).getRequestMsgCtx();
-        
-        
         if(requestMsgCtx.getProperty(PassThroughConstants.PASSTROUGH_MESSAGE_LENGTH) != null){
         	contentLength = (Long)requestMsgCtx.getProperty(PassThroughConstants.PASSTROUGH_MESSAGE_LENGTH);
         }
@@ -288,12 +312,6 @@ public class TargetRequest {
         }
         
         conn.submitRequest(request);
-
-        if (hasEntityBody) {
-            TargetContext.updateState(conn, ProtocolState.REQUEST_HEAD);
-        } else {
-            TargetContext.updateState(conn, ProtocolState.REQUEST_DONE);
-        }
     }
     
     
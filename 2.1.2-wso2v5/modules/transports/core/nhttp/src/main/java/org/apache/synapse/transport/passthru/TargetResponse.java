@@ -22,6 +22,7 @@ import org.apache.http.impl.DefaultConnectionReuseStrategy;
 import org.apache.http.nio.ContentDecoder;
 import org.apache.http.nio.NHttpClientConnection;
 import org.apache.synapse.transport.passthru.config.TargetConfiguration;
+import org.apache.synapse.transport.passthru.util.PassThroughTransportUtils;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -92,8 +93,8 @@ public class TargetResponse {
         TargetContext.updateState(conn, ProtocolState.RESPONSE_HEAD);
         
         if (expectResponseBody) {
-            pipe
-                = new Pipe(conn, targetConfiguration.getBufferFactory().getBuffer(), "target", targetConfiguration);
+            pipe = new Pipe(conn, targetConfiguration.getBufferFactory().getBuffer(
+                    PassThroughTransportUtils.getContentLength(response)), "target", targetConfiguration);
 
             TargetContext.get(conn).setReader(pipe);
 
@@ -22,6 +22,8 @@ import org.apache.axis2.description.ParameterInclude;
 import org.apache.axis2.transport.base.threads.WorkerPool;
 import org.apache.axis2.transport.base.threads.WorkerPoolFactory;
 import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.util.ByteBufferAllocator;
+import org.apache.http.nio.util.DirectByteBufferAllocator;
 import org.apache.http.nio.util.HeapByteBufferAllocator;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
@@ -58,6 +60,10 @@ public abstract class BaseConfiguration {
 
     private int iOBufferSize;
 
+    private boolean pipeRelayMode;
+
+    private int pipeRelayRingSize;
+
     protected PassThroughConfiguration conf = PassThroughConfiguration.getInstance();
 
     public BaseConfiguration(ConfigurationContext configurationContext,
@@ -72,6 +78,8 @@ public abstract class BaseConfiguration {
 
     public void build() throws AxisFault {
         iOBufferSize = conf.getIOBufferSize();
+        pipeRelayMode = conf.isPipeRelayMode();
+        pipeRelayRingSize = conf.getPipeRelayRingSize();
 
         if (workerPool == null) {
             workerPool = WorkerPoolFactory.getWorkerPool(
@@ -86,13 +94,26 @@ public abstract class BaseConfiguration {
         httpParams = buildHttpParams();
         ioReactorConfig = buildIOReactorConfig();
 
-        bufferFactory = new BufferFactory(iOBufferSize, new HeapByteBufferAllocator(), 512);
+        // relay mode pipes keep a ring of buffers per message, keep those off the heap
+        ByteBufferAllocator allocator = pipeRelayMode || conf.isIOBufferDirect() ?
+                new DirectByteBufferAllocator() : new HeapByteBufferAllocator();
+        bufferFactory = new BufferFactory(conf.getIOBufferSizeClasses(), allocator,
+                conf.getIOBufferPoolSize(), conf.getIOBufferThreadCacheSize(),
+                conf.getIOBufferThreadCacheMaxBytes());
     }
 
     public int getIOBufferSize() {
         return iOBufferSize;
     }
 
+    public boolean isPipeRelayMode() {
+        return pipeRelayMode;
+    }
+
+    public int getPipeRelayRingSize() {
+        return pipeRelayRingSize;
+    }
+
     public WorkerPool getWorkerPool() {
         return workerPool;
     }
@@ -55,6 +55,32 @@ public interface PassThroughConfigPNames {
     public String IO_BUFFER_SIZE = "io_buffer_size";
 
 
+    /**
+     * Defines the buffer size classes (comma separated byte counts) of the buffer pool. Pipes
+     * pick the smallest class fitting the Content-Length of the message.
+     */
+    public String IO_BUFFER_SIZE_CLASSES = "io_buffer_size_classes";
+
+    /**
+     * Defines whether the pooled IO buffers are allocated off-heap
+     */
+    public String IO_BUFFER_DIRECT = "io_buffer_direct";
+
+    /**
+     * Defines the maximum number of pooled buffers per size class shared by all the threads
+     */
+    public String IO_BUFFER_POOL_SIZE = "io_buffer_pool_size";
+
+    /**
+     * Defines the maximum number of pooled buffers per size class cached by each thread
+     */
+    public String IO_BUFFER_THREAD_CACHE_SIZE = "io_buffer_thread_cache_size";
+
+    /**
+     * Defines the maximum number of bytes of pooled buffers cached by all the threads together
+     */
+    public String IO_BUFFER_THREAD_CACHE_MAX_BYTES = "io_buffer_thread_cache_max_bytes";
+
     /**
      * Defines the maximum open connection limit.
      */
@@ -80,5 +106,56 @@ public interface PassThroughConfigPNames {
      */
     public String MAX_CONNECTION_PER_HOST_PORT = "http.max.connection.per.host.port";
 
+    /**
+     * Defines the time in milliseconds a connection to a backend can stay idle in the pool
+     * before it is closed
+     */
+    public String CONNECTION_MAX_IDLE_TIME = "http.connection.max.idle.time";
+
+    /**
+     * Defines the time in milliseconds a connection to a backend can be reused after it is
+     * created
+     */
+    public String CONNECTION_MAX_LIFE_TIME = "http.connection.max.life.time";
+
+    /**
+     * Defines the interval in milliseconds at which the expired idle connections are closed
+     */
+    public String CONNECTION_EVICTION_INTERVAL = "http.connection.eviction.interval";
+
+    /**
+     * Defines the comma separated list of backend URLs to which connections are opened when
+     * the sender starts
+     */
+    public String CONNECTION_PREWARM_URLS = "http.connection.prewarm.urls";
+
+    /**
+     * Defines the number of connections opened to each pre-warmed backend
+     */
+    public String CONNECTION_PREWARM_COUNT = "http.connection.prewarm.count";
+
+    /**
+     * Defines the comma separated list of backend host:port pairs to which idempotent requests
+     * are pipelined, or * for all the backends
+     */
+    public String PIPELINING_ROUTES = "http.pipelining.routes";
+
+    /**
+     * Defines the maximum number of requests pipelined behind the request in progress on a
+     * backend connection
+     */
+    public String PIPELINING_MAX_DEPTH = "http.pipelining.max.depth";
+
     public String TRANSPORT_LISTENER_SHUTDOWN_WAIT_TIME_SEC = "transport.listener.shutdown.wait.sec";
+
+    /**
+     * Defines whether pipes relay the content between the reactor threads through a lock-free
+     * ring of direct buffers
+     */
+    public String PIPE_RELAY_MODE = "http.pipe.relay.mode";
+
+    /**
+     * Defines the number of buffers in the ring of a relay mode pipe
+     */
+    public String PIPE_RELAY_RING_SIZE = "http.pipe.relay.ring.size";
 }
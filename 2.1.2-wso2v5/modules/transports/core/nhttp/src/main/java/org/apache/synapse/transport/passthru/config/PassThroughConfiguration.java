@@ -47,6 +47,10 @@ public class PassThroughConfiguration {
                                                          Runtime.getRuntime().availableProcessors();
     private static final int DEFAULT_MAX_ACTIVE_CON = -1;
     private static final int DEFAULT_LISTENER_SHUTDOWN_WAIT_TIME = 0;
+    private static final int DEFAULT_PIPE_RELAY_RING_SIZE = 4;
+    private static final int DEFAULT_IO_BUFFER_POOL_SIZE         = 512;
+    private static final int DEFAULT_IO_BUFFER_THREAD_CACHE_SIZE = 8;
+    private static final int DEFAULT_IO_BUFFER_THREAD_CACHE_MAX_BYTES = 16 * 1024 * 1024;
 
     //additional rest dispatch handlers
     private static final String REST_DISPATCHER_SERVICE="rest.dispatcher.service";
@@ -100,6 +104,51 @@ public class PassThroughConfiguration {
                 DEFAULT_IO_BUFFER_SIZE);
     }
 
+    /**
+     * Returns the buffer size classes of the buffer pool. Defaults to the IO buffer size and
+     * four and sixteen times of it.
+     *
+     * @return buffer capacities in bytes
+     */
+    public int[] getIOBufferSizeClasses() {
+        int ioBufferSize = getIOBufferSize();
+        String val = getStringProperty(PassThroughConfigPNames.IO_BUFFER_SIZE_CLASSES, null);
+        if (val != null) {
+            String[] classes = val.split(",");
+            int[] sizes = new int[classes.length];
+            try {
+                for (int i = 0; i < classes.length; i++) {
+                    sizes[i] = Integer.parseInt(classes[i].trim());
+                }
+                return sizes;
+            } catch (NumberFormatException e) {
+                log.warn("Invalid pass-through http tuning property value. " +
+                        PassThroughConfigPNames.IO_BUFFER_SIZE_CLASSES +
+                        " must be a comma separated list of integers");
+            }
+        }
+        return new int[] {ioBufferSize, ioBufferSize * 4, ioBufferSize * 16};
+    }
+
+    public boolean isIOBufferDirect() {
+        return getBooleanProperty(PassThroughConfigPNames.IO_BUFFER_DIRECT, false);
+    }
+
+    public int getIOBufferPoolSize() {
+        return getIntProperty(PassThroughConfigPNames.IO_BUFFER_POOL_SIZE,
+                DEFAULT_IO_BUFFER_POOL_SIZE);
+    }
+
+    public int getIOBufferThreadCacheSize() {
+        return getIntProperty(PassThroughConfigPNames.IO_BUFFER_THREAD_CACHE_SIZE,
+                DEFAULT_IO_BUFFER_THREAD_CACHE_SIZE);
+    }
+
+    public int getIOBufferThreadCacheMaxBytes() {
+        return getIntProperty(PassThroughConfigPNames.IO_BUFFER_THREAD_CACHE_MAX_BYTES,
+                DEFAULT_IO_BUFFER_THREAD_CACHE_MAX_BYTES);
+    }
+
     public boolean isKeepAliveDisabled() {
         return getBooleanProperty(PassThroughConfigPNames.DISABLE_KEEPALIVE, false);
     }
@@ -120,6 +169,15 @@ public class PassThroughConfiguration {
         return getBooleanProperty(PassThroughConfigPNames.SERVER_HEADER_PRESERVE, false);
     }
 
+    public boolean isPipeRelayMode() {
+        return getBooleanProperty(PassThroughConfigPNames.PIPE_RELAY_MODE, false);
+    }
+
+    public int getPipeRelayRingSize() {
+        return getIntProperty(PassThroughConfigPNames.PIPE_RELAY_RING_SIZE,
+                DEFAULT_PIPE_RELAY_RING_SIZE);
+    }
+
     /**
      * Loads the properties from a given property file path
      *
@@ -20,6 +20,7 @@ import org.apache.axis2.AxisFault;
 import org.apache.axis2.context.ConfigurationContext;
 import org.apache.axis2.description.ParameterInclude;
 import org.apache.axis2.transport.base.threads.WorkerPool;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.impl.nio.reactor.IOReactorConfig;
 import org.apache.http.params.HttpParams;
@@ -34,6 +35,9 @@ import org.apache.synapse.transport.http.conn.ProxyAuthenticator;
 import org.apache.synapse.transport.passthru.connections.TargetConnections;
 import org.apache.synapse.transport.passthru.jmx.PassThroughTransportMetricsCollector;
 
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * This class stores configuration specific to HTTP Connectors (Senders)
  */
@@ -52,6 +56,23 @@ public class TargetConfiguration extends BaseConfiguration {
 
     private TargetConnections connections = null;
 
+    /** Time in milliseconds a connection can be idle in the pool, disabled if <= 0 */
+    private long connectionMaxIdleTime = -1;
+    /** Time in milliseconds a connection can be reused after creation, disabled if <= 0 */
+    private long connectionMaxLifeTime = -1;
+    /** Interval in milliseconds at which expired idle connections are closed */
+    private long connectionEvictionInterval = 5000;
+    /** Backend URLs to which connections are opened when the sender starts */
+    private String[] preWarmUrls = new String[0];
+    /** Number of connections opened to each pre-warmed backend */
+    private int preWarmCount = 0;
+    /** Backend host:port pairs to which idempotent requests are pipelined */
+    private Set<String> pipeliningRoutes = new HashSet<String>();
+    /** Weather requests are pipelined to all the backends */
+    private boolean pipelineAllRoutes = false;
+    /** Maximum number of requests pipelined behind the request in progress */
+    private int pipeliningMaxDepth = 4;
+
     public TargetConfiguration(ConfigurationContext configurationContext,
                                ParameterInclude parameters,
                                WorkerPool pool,
@@ -77,6 +98,30 @@ public class TargetConfiguration extends BaseConfiguration {
                 Integer.MAX_VALUE);
         preserveUserAgentHeader = conf.isPreserveUserAgentHeader();
         preserveServerHeader = conf.isPreserveServerHeader();
+
+        connectionMaxIdleTime = conf.getIntProperty(
+                PassThroughConfigPNames.CONNECTION_MAX_IDLE_TIME, -1);
+        connectionMaxLifeTime = conf.getIntProperty(
+                PassThroughConfigPNames.CONNECTION_MAX_LIFE_TIME, -1);
+        connectionEvictionInterval = conf.getIntProperty(
+                PassThroughConfigPNames.CONNECTION_EVICTION_INTERVAL, 5000);
+        preWarmCount = conf.getIntProperty(PassThroughConfigPNames.CONNECTION_PREWARM_COUNT, 0);
+        String urls = conf.getStringProperty(PassThroughConfigPNames.CONNECTION_PREWARM_URLS, "");
+        if (urls.trim().length() > 0) {
+            preWarmUrls = urls.trim().split("\\s*,\\s*");
+        }
+
+        pipeliningMaxDepth = conf.getIntProperty(PassThroughConfigPNames.PIPELINING_MAX_DEPTH, 4);
+        String routes = conf.getStringProperty(PassThroughConfigPNames.PIPELINING_ROUTES, "");
+        if (routes.trim().length() > 0) {
+            for (String route : routes.trim().split("\\s*,\\s*")) {
+                if ("*".equals(route)) {
+                    pipelineAllRoutes = true;
+                } else {
+                    pipeliningRoutes.add(route.toLowerCase());
+                }
+            }
+        }
     }
 
     public HttpParams getHttpParams() {
@@ -107,6 +152,41 @@ public class TargetConfiguration extends BaseConfiguration {
         return preserveServerHeader;
     }
 
+    public long getConnectionMaxIdleTime() {
+        return connectionMaxIdleTime;
+    }
+
+    public long getConnectionMaxLifeTime() {
+        return connectionMaxLifeTime;
+    }
+
+    public long getConnectionEvictionInterval() {
+        return connectionEvictionInterval;
+    }
+
+    public String[] getPreWarmUrls() {
+        return preWarmUrls;
+    }
+
+    public int getPreWarmCount() {
+        return preWarmCount;
+    }
+
+    /**
+     * Weather idempotent requests to the given backend can be pipelined on busy connections
+     *
+     * @param host the backend host
+     * @return true if pipelining is enabled for the backend
+     */
+    public boolean isPipeliningEnabled(HttpHost host) {
+        return pipelineAllRoutes || pipeliningRoutes.contains(
+                host.getHostName().toLowerCase() + ":" + host.getPort());
+    }
+
+    public int getPipeliningMaxDepth() {
+        return pipeliningMaxDepth;
+    }
+
     public TargetConnections getConnections() {
         return connections;
     }
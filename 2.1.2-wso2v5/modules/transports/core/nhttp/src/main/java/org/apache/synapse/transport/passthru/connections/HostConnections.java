@@ -23,13 +23,22 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.http.protocol.ExecutionContext;
 import org.apache.http.protocol.HttpContext;
 
-import java.util.List;
-import java.util.ArrayList;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * This stores connections for a particular host + port.
+ * This stores connections for a particular host + port. Free connections are kept in a
+ * LIFO order so that the most recently used connections are reused first and the rest can
+ * expire, while the connections in use are kept in a set. All the operations are lock-free,
+ * removing an entry from the free connection keys is what grants a thread the ownership of
+ * an idle connection.
  */
 public class HostConnections {
     private static final Log log = LogFactory.getLog(HostConnections.class);
@@ -37,21 +46,43 @@ public class HostConnections {
     private final HttpRoute route;
     // maximum number of connections allowed for this host + port
     private final int maxSize;
+    // maximum time in milliseconds a connection can stay idle in the pool, disabled if <= 0
+    private final long maxIdleTime;
+    // maximum time in milliseconds a connection can be used after creation, disabled if <= 0
+    private final long maxLifeTime;
     // number of awaiting connections
-    private int pendingConnections;
-    // list of free connections available
-    private List<NHttpClientConnection> freeConnections = new ArrayList<NHttpClientConnection>();
-    // list of connections in use
-    private List<NHttpClientConnection> busyConnections = new ArrayList<NHttpClientConnection>();
+    private final AtomicInteger pendingConnections = new AtomicInteger(0);
+    // number of connections in use
+    private final AtomicInteger busyCount = new AtomicInteger(0);
+    // number of connections closed by the pool because they expired
+    private final AtomicLong evictedConnections = new AtomicLong(0);
+    // free connections available ordered by the time they were released
+    private final ConcurrentSkipListMap<Long, IdleConnection> freeConnections =
+            new ConcurrentSkipListMap<Long, IdleConnection>();
+    // keys of the free connections in the free connections map
+    private final ConcurrentMap<NHttpClientConnection, Long> freeKeys =
+            new ConcurrentHashMap<NHttpClientConnection, Long>();
+    // connections in use
+    private final Set<NHttpClientConnection> busyConnections = Collections.newSetFromMap(
+            new ConcurrentHashMap<NHttpClientConnection, Boolean>());
+    // creation time of the connections owned by this pool
+    private final ConcurrentMap<NHttpClientConnection, Long> creationTimes =
+            new ConcurrentHashMap<NHttpClientConnection, Long>();
 
-    private Lock lock = new ReentrantLock();
+    private final AtomicLong sequence = new AtomicLong(0);
 
     public HostConnections(HttpRoute route, int maxSize) {
+        this(route, maxSize, -1, -1);
+    }
+
+    public HostConnections(HttpRoute route, int maxSize, long maxIdleTime, long maxLifeTime) {
         if (log.isDebugEnabled()) {
             log.debug("Creating new connection pool: " + route);
         }
         this.route = route;
         this.maxSize = maxSize;
+        this.maxIdleTime = maxIdleTime;
+        this.maxLifeTime = maxLifeTime;
     }
 
     /**
@@ -60,19 +91,24 @@ public class HostConnections {
      * @return a connection
      */
     public NHttpClientConnection getConnection() {
-        lock.lock();
-        try {
-            if (freeConnections.size() > 0) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Returning an existing free connection " + route);
-                }
-                NHttpClientConnection conn = freeConnections.get(0);
-                freeConnections.remove(conn);
-                busyConnections.add(conn);
-                return conn;
+        long now = System.currentTimeMillis();
+        Map.Entry<Long, IdleConnection> entry;
+        while ((entry = freeConnections.pollLastEntry()) != null) {
+            NHttpClientConnection conn = entry.getValue().connection;
+            if (!freeKeys.remove(conn, entry.getKey())) {
+                // the connection has been closed in the meantime
+                continue;
+            }
+            if (isExpired(entry.getValue(), now)) {
+                evict(conn);
+                continue;
             }
-        } finally {
-            lock.unlock();
+            if (log.isDebugEnabled()) {
+                log.debug("Returning an existing free connection " + route);
+            }
+            busyConnections.add(conn);
+            busyCount.incrementAndGet();
+            return conn;
         }
         return null;
     }
@@ -83,38 +119,84 @@ public class HostConnections {
         ctx.removeAttribute(ExecutionContext.HTTP_REQUEST);
         ctx.removeAttribute(ExecutionContext.HTTP_RESPONSE);
 
-        lock.lock();
-        try {
-            if (busyConnections.remove(conn)) {
-                freeConnections.add(conn);
+        if (busyConnections.remove(conn)) {
+            busyCount.decrementAndGet();
+            if (isLifeTimeExceeded(conn, System.currentTimeMillis())) {
+                evict(conn);
             } else {
-                log.error("Attempted to releaseConnection connection not in the busy list");
+                addFreeConnection(conn);
             }
-        } finally {
-            lock.unlock();
+        } else {
+            log.error("Attempted to releaseConnection connection not in the busy list");
         }
     }
 
     public void forget(NHttpClientConnection conn) {
-        lock.lock();
-        try {
-            if (!freeConnections.remove(conn)) {
-                busyConnections.remove(conn);
-            }
-        } finally {
-            lock.unlock();
+        Long key = freeKeys.remove(conn);
+        if (key != null) {
+            freeConnections.remove(key);
+        } else if (busyConnections.remove(conn)) {
+            busyCount.decrementAndGet();
         }
+        creationTimes.remove(conn);
     }
 
     public void addConnection(NHttpClientConnection conn) {
         if (log.isDebugEnabled()) {
             log.debug("New connection " + route + " is added to the free list");
         }
-        lock.lock();
-        try {
-            freeConnections.add(conn);
-        } finally {
-            lock.unlock();
+        creationTimes.put(conn, System.currentTimeMillis());
+        addFreeConnection(conn);
+    }
+
+    /**
+     * Close the free connections which have been idle for longer than the maximum idle time
+     * or which exceeded the maximum life time. Free connections are visited from the least
+     * recently released one.
+     *
+     * @return number of connections closed
+     */
+    public int evictExpiredConnections() {
+        if (maxIdleTime <= 0 && maxLifeTime <= 0) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        int evicted = 0;
+        for (Map.Entry<Long, IdleConnection> entry : freeConnections.entrySet()) {
+            IdleConnection idle = entry.getValue();
+            boolean idleTooLong = maxIdleTime > 0 && now - idle.releaseTime > maxIdleTime;
+            if (!idleTooLong && maxLifeTime <= 0) {
+                // the remaining connections have been released later than this one
+                break;
+            }
+            if ((idleTooLong || isLifeTimeExceeded(idle.connection, now)) &&
+                    freeKeys.remove(idle.connection, entry.getKey())) {
+                freeConnections.remove(entry.getKey());
+                evict(idle.connection);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Reserve a slot for a new connection to be made to the host:port, if the maximum number
+     * of connections is not reached yet. The reservation is given back when the session
+     * request completes through either {@link #pendingConnectionSucceeded()} or
+     * {@link #pendingConnectionFailed()}.
+     *
+     * @return true if a new connection can be made
+     */
+    public boolean reserveConnection() {
+        while (true) {
+            int pending = pendingConnections.get();
+            if (busyCount.get() + pending >= maxSize) {
+                return false;
+            }
+            if (pendingConnections.compareAndSet(pending, pending + 1)) {
+                return true;
+            }
         }
     }
 
@@ -122,13 +204,8 @@ public class HostConnections {
      * Indicates that a connection has been successfully established with a remote server
      * as notified by the session request call back.
      */
-    public synchronized void pendingConnectionSucceeded() {
-        lock.lock();
-        try {
-            pendingConnections--;
-        } finally {
-            lock.unlock();
-        }
+    public void pendingConnectionSucceeded() {
+        decrementPending();
     }
 
     /**
@@ -136,19 +213,90 @@ public class HostConnections {
      * consecutively
      */
     public void pendingConnectionFailed() {
-        lock.lock();
-        try {
-            pendingConnections--;
-        } finally {
-            lock.unlock();
+        decrementPending();
+    }
+
+    private void decrementPending() {
+        while (true) {
+            int pending = pendingConnections.get();
+            if (pending == 0 || pendingConnections.compareAndSet(pending, pending - 1)) {
+                return;
+            }
         }
-    }    
+    }
 
     public HttpRoute getRoute() {
         return route;
     }
 
     public boolean canHaveMoreConnections() {
-        return busyConnections.size() + pendingConnections < maxSize;
+        return busyCount.get() + pendingConnections.get() < maxSize;
+    }
+
+    public int getBusyConnections() {
+        return busyCount.get();
+    }
+
+    /**
+     * Return the connections in use. The returned view is safe to iterate while the
+     * connections are acquired and released concurrently.
+     *
+     * @return unmodifiable view of the connections in use
+     */
+    public Set<NHttpClientConnection> getBusyConnectionSet() {
+        return Collections.unmodifiableSet(busyConnections);
+    }
+
+    public int getFreeConnections() {
+        return freeKeys.size();
+    }
+
+    public int getPendingConnections() {
+        return pendingConnections.get();
+    }
+
+    public long getEvictedConnections() {
+        return evictedConnections.get();
+    }
+
+    private void addFreeConnection(NHttpClientConnection conn) {
+        Long key = sequence.incrementAndGet();
+        freeKeys.put(conn, key);
+        freeConnections.put(key, new IdleConnection(conn, System.currentTimeMillis()));
+    }
+
+    private boolean isExpired(IdleConnection idle, long now) {
+        return (maxIdleTime > 0 && now - idle.releaseTime > maxIdleTime) ||
+                isLifeTimeExceeded(idle.connection, now);
+    }
+
+    private boolean isLifeTimeExceeded(NHttpClientConnection conn, long now) {
+        if (maxLifeTime <= 0) {
+            return false;
+        }
+        Long created = creationTimes.get(conn);
+        return created != null && now - created > maxLifeTime;
+    }
+
+    private void evict(NHttpClientConnection conn) {
+        if (log.isDebugEnabled()) {
+            log.debug("Closing expired connection " + conn + " to " + route);
+        }
+        creationTimes.remove(conn);
+        evictedConnections.incrementAndGet();
+        try {
+            conn.shutdown();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static class IdleConnection {
+        private final NHttpClientConnection connection;
+        private final long releaseTime;
+
+        private IdleConnection(NHttpClientConnection connection, long releaseTime) {
+            this.connection = connection;
+            this.releaseTime = releaseTime;
+        }
     }
 }
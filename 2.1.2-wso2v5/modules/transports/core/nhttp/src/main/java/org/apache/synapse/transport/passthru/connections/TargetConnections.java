@@ -16,20 +16,31 @@
 
 package org.apache.synapse.transport.passthru.connections;
 
+import org.apache.axis2.context.MessageContext;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.HttpHost;
 import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.nio.NHttpClientConnection;
 import org.apache.http.nio.reactor.ConnectingIOReactor;
+import org.apache.http.protocol.ExecutionContext;
 import org.apache.synapse.transport.passthru.ConnectCallback;
+import org.apache.synapse.transport.passthru.DeliveryAgent;
 import org.apache.synapse.transport.passthru.PassThroughConstants;
 import org.apache.synapse.transport.passthru.TargetContext;
 import org.apache.synapse.transport.passthru.config.TargetConfiguration;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.net.InetSocketAddress;
 
 /**
@@ -40,19 +51,31 @@ public class TargetConnections {
     private static final Log log = LogFactory.getLog(TargetConnections.class);
 
     /** map to hold the ConnectionPools. The key is host:port */
-    private final Map<HttpRoute, HostConnections> poolMap =
+    private final ConcurrentMap<HttpRoute, HostConnections> poolMap =
             new ConcurrentHashMap<HttpRoute, HostConnections>();
 
     /** max connections per host:port pair. At the moment all the host:ports can
      * have the same max */
     private int maxConnections;
 
+    /** max time in milliseconds a connection can be idle in a pool */
+    private long maxIdleTime;
+
+    /** max time in milliseconds a connection can be used after it is created */
+    private long maxLifeTime;
+
+    /** evicts the expired idle connections periodically, if eviction is enabled */
+    private ScheduledExecutorService evictionScheduler = null;
+
     /** io-reactor to use for creating connections */
     private ConnectingIOReactor ioReactor;
 
     /** callback invoked when a connection is made */
     private ConnectCallback callback = null;
 
+    /** resends the messages pipelined on a connection which is closed */
+    private DeliveryAgent deliveryAgent = null;
+
     /**
      * Create a TargetConnections with the given IO-Reactor
      *
@@ -65,8 +88,26 @@ public class TargetConnections {
                              ConnectCallback callback) {
 
         this.maxConnections = targetConfiguration.getMaxConnections();
+        this.maxIdleTime = targetConfiguration.getConnectionMaxIdleTime();
+        this.maxLifeTime = targetConfiguration.getConnectionMaxLifeTime();
         this.ioReactor = ioReactor;
         this.callback = callback;
+
+        long interval = targetConfiguration.getConnectionEvictionInterval();
+        if ((maxIdleTime > 0 || maxLifeTime > 0) && interval > 0) {
+            evictionScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "PassThroughConnectionEvictor");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            evictionScheduler.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    evictExpiredConnections();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
@@ -90,9 +131,8 @@ public class TargetConnections {
         // trying to get an existing connection
         NHttpClientConnection connection = pool.getConnection();
         if (connection == null) {
-            if (pool.canHaveMoreConnections()) {
-                HttpHost host = route.getProxyHost() != null ? route.getProxyHost() : route.getTargetHost();
-                ioReactor.connect(new InetSocketAddress(host.getHostName(), host.getPort()), null, pool, callback);
+            if (pool.reserveConnection()) {
+                connect(pool);
             } else {
                 log.warn("Connection pool reached maximum allowed connections for route "
                         + route + ". Target server may have become slow");
@@ -121,7 +161,9 @@ public class TargetConnections {
         HostConnections pool = (HostConnections) conn.getContext().getAttribute(
                 PassThroughConstants.CONNECTION_POOL);
 
-        TargetContext.get(conn).reset(releaseBuffer);
+        TargetContext targetContext = TargetContext.get(conn);
+        List<MessageContext> pipelined = targetContext.drainPipelinedRequests();
+        targetContext.reset(releaseBuffer);
 
         if (pool != null) {
             pool.forget(conn);
@@ -134,6 +176,12 @@ public class TargetConnections {
             conn.shutdown();
         } catch (IOException ignored) {
         }
+
+        if (!pipelined.isEmpty() && pool != null && deliveryAgent != null) {
+            for (MessageContext msgCtx : pipelined) {
+                deliveryAgent.resubmit(msgCtx, pool.getRoute());
+            }
+        }
     }
 
     /**
@@ -145,7 +193,18 @@ public class TargetConnections {
         HostConnections pool = (HostConnections) conn.getContext().getAttribute(
                 PassThroughConstants.CONNECTION_POOL);
 
-        TargetContext.get(conn).reset();
+        TargetContext targetContext = TargetContext.get(conn);
+        if (targetContext.promotePipelinedRequest()) {
+            // the connection stays busy with the next request in the pipeline
+            if (targetContext.getRequest().getRequest() != null) {
+                conn.getContext().setAttribute(ExecutionContext.HTTP_REQUEST,
+                        targetContext.getRequest().getRequest());
+            }
+            conn.requestOutput();
+            return;
+        }
+
+        targetContext.reset();
 
         if (pool != null) {
             pool.release(conn);
@@ -171,13 +230,103 @@ public class TargetConnections {
         }
     }
 
+    /**
+     * Open connections to the given route in advance, so that the first messages sent to
+     * the route do not have to wait for the connections to be established. The connections
+     * are added to the pool as free connections once connected.
+     *
+     * @param route route to connect to
+     * @param count number of connections to open
+     */
+    public void preWarm(HttpRoute route, int count) {
+        HostConnections pool = getConnectionPool(route);
+        int opened = 0;
+        while (opened < count && pool.reserveConnection()) {
+            connect(pool);
+            opened++;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Pre-warming " + opened + " connections to " + route);
+        }
+    }
+
+    /**
+     * Close the idle connections which have expired in all the pools.
+     */
+    public void evictExpiredConnections() {
+        for (HostConnections pool : poolMap.values()) {
+            try {
+                int evicted = pool.evictExpiredConnections();
+                if (evicted > 0 && log.isDebugEnabled()) {
+                    log.debug("Closed " + evicted + " expired connections to " + pool.getRoute());
+                }
+            } catch (Exception e) {
+                log.warn("Error while closing expired connections to " + pool.getRoute(), e);
+            }
+        }
+    }
+
+    /**
+     * Stop evicting the expired connections.
+     */
+    public void shutdown() {
+        if (evictionScheduler != null) {
+            evictionScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Weather the pool of the given route can open more connections.
+     *
+     * @param route the route
+     * @return true if more connections can be opened to the route
+     */
+    public boolean canHaveMoreConnections(HttpRoute route) {
+        HostConnections pool = poolMap.get(route);
+        return pool == null || pool.canHaveMoreConnections();
+    }
+
+    /**
+     * Return the connections to the given route which are in use.
+     *
+     * @param route the route
+     * @return the connections in use
+     */
+    public Set<NHttpClientConnection> getBusyConnections(HttpRoute route) {
+        HostConnections pool = poolMap.get(route);
+        if (pool == null) {
+            return Collections.emptySet();
+        }
+        return pool.getBusyConnectionSet();
+    }
+
+    public void setDeliveryAgent(DeliveryAgent deliveryAgent) {
+        this.deliveryAgent = deliveryAgent;
+    }
+
+    /**
+     * Return the connection pools of all the routes seen by the sender.
+     *
+     * @return unmodifiable view of the pools keyed by route
+     */
+    public Map<HttpRoute, HostConnections> getConnectionPools() {
+        return Collections.unmodifiableMap(poolMap);
+    }
+
+    private void connect(HostConnections pool) {
+        HttpRoute route = pool.getRoute();
+        HttpHost host = route.getProxyHost() != null ? route.getProxyHost() : route.getTargetHost();
+        ioReactor.connect(new InetSocketAddress(host.getHostName(), host.getPort()), null, pool, callback);
+    }
+
     private HostConnections getConnectionPool(HttpRoute route) {
         // see weather a pool already exists for this host:port
         HostConnections pool = poolMap.get(route);
-        synchronized (poolMap) {
-            if (pool == null) {
-                pool = new HostConnections(route, maxConnections);
-                poolMap.put(route, pool);
+        if (pool == null) {
+            pool = new HostConnections(route, maxConnections, maxIdleTime, maxLifeTime);
+            HostConnections existing = poolMap.putIfAbsent(route, pool);
+            if (existing != null) {
+                pool = existing;
             }
         }
 
@@ -0,0 +1,86 @@
+/*
+*  Licensed to the Apache Software Foundation (ASF) under one
+*  or more contributor license agreements.  See the NOTICE file
+*  distributed with this work for additional information
+*  regarding copyright ownership.  The ASF licenses this file
+*  to you under the Apache License, Version 2.0 (the
+*  "License"); you may not use this file except in compliance
+*  with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*  Unless required by applicable law or agreed to in writing,
+*  software distributed under the License is distributed on an
+*   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+*  KIND, either express or implied.  See the License for the
+*  specific language governing permissions and limitations
+*  under the License.
+*/
+
+package org.apache.synapse.transport.passthru.jmx;
+
+import org.apache.axis2.AxisFault;
+import org.apache.synapse.transport.passthru.util.BufferFactory;
+
+import java.util.Arrays;
+
+/**
+ * BufferFactoryView MBean exposes the statistics of the buffer pool used by the pipes of a
+ * pass-through transport. Hits and misses count the buffer requests served from the pool and
+ * the ones which required a new allocation. Outstanding buffers are the buffers handed out
+ * minus the buffers returned to the pool. Pooled buffers are kept in the shared free lists, while
+ * thread cached buffers are retained by the free lists of the individual threads.
+ */
+public class BufferFactoryView implements BufferFactoryViewMBean {
+
+    private static final String PASS_THROUGH_BUFFERS = "PassThroughBuffers";
+
+    private BufferFactory bufferFactory;
+
+    private String name;
+
+    public BufferFactoryView(BufferFactory bufferFactory, String name) {
+        this.bufferFactory = bufferFactory;
+        this.name = name;
+    }
+
+    public void register() throws AxisFault {
+        MBeanRegistrar.getInstance().registerMBean(this, PASS_THROUGH_BUFFERS, name);
+    }
+
+    public void destroy() {
+        MBeanRegistrar.getInstance().unRegisterMBean(PASS_THROUGH_BUFFERS, name);
+    }
+
+    public long getHits() {
+        return bufferFactory.getHits();
+    }
+
+    public long getMisses() {
+        return bufferFactory.getMisses();
+    }
+
+    public long getOutstandingBuffers() {
+        return bufferFactory.getOutstanding();
+    }
+
+    public int getPooledBuffers() {
+        return bufferFactory.getPooled();
+    }
+
+    public int getThreadCachedBuffers() {
+        return bufferFactory.getThreadCached();
+    }
+
+    public long getThreadCachedBytes() {
+        return bufferFactory.getThreadCachedBytes();
+    }
+
+    public String getSizeClasses() {
+        return Arrays.toString(bufferFactory.getSizeClasses());
+    }
+
+    public void reset() {
+        bufferFactory.resetStatistics();
+    }
+}
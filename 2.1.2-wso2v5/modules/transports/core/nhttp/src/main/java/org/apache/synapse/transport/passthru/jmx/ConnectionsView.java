@@ -20,6 +20,9 @@
 package org.apache.synapse.transport.passthru.jmx;
 
 import org.apache.axis2.AxisFault;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.synapse.transport.passthru.connections.HostConnections;
+import org.apache.synapse.transport.passthru.connections.TargetConnections;
 
 import java.util.*;
 import java.util.concurrent.Executors;
@@ -49,6 +52,12 @@ public class ConnectionsView implements ConnectionsViewMBean {
     private static final int LESS_THAN_10M      = 4;
     private static final int GREATER_THAN_10M   = 5;
 
+    // Per route connection pool statistics
+    private static final int BUSY_CONNECTIONS    = 0;
+    private static final int IDLE_CONNECTIONS    = 1;
+    private static final int PENDING_CONNECTIONS = 2;
+    private static final int EVICTED_CONNECTIONS = 3;
+
     private static final int SHORT_DATA_COLLECTION_PERIOD = 60;
     private static final int LONG_DATA_COLLECTION_PERIOD = 60 * 5;
 
@@ -71,6 +80,9 @@ public class ConnectionsView implements ConnectionsViewMBean {
 
     private String name;
 
+    /** Connection pools of the sender, null for the listener */
+    private volatile TargetConnections targetConnections;
+
     public ConnectionsView(String name) throws AxisFault {
         this.name = name;
 
@@ -197,6 +209,60 @@ public class ConnectionsView implements ConnectionsViewMBean {
         return resetTime;
     }
 
+    public Map getBusyConnectionsPerRoute() {
+        return getRouteStatistics(BUSY_CONNECTIONS);
+    }
+
+    public Map getIdleConnectionsPerRoute() {
+        return getRouteStatistics(IDLE_CONNECTIONS);
+    }
+
+    public Map getPendingConnectionsPerRoute() {
+        return getRouteStatistics(PENDING_CONNECTIONS);
+    }
+
+    public Map getEvictedConnectionsPerRoute() {
+        return getRouteStatistics(EVICTED_CONNECTIONS);
+    }
+
+    protected void setTargetConnections(TargetConnections targetConnections) {
+        this.targetConnections = targetConnections;
+    }
+
+    /**
+     * Collect a statistic of the connection pool of every route seen by the sender
+     *
+     * @param statistic one of the per route statistics
+     * @return the statistic keyed by route
+     */
+    private Map<String,Number> getRouteStatistics(int statistic) {
+        Map<String,Number> map = new TreeMap<String,Number>();
+        TargetConnections connections = targetConnections;
+        if (connections == null) {
+            return map;
+        }
+        for (Map.Entry<HttpRoute,HostConnections> e :
+                connections.getConnectionPools().entrySet()) {
+            HostConnections pool = e.getValue();
+            Number value;
+            switch (statistic) {
+                case BUSY_CONNECTIONS:
+                    value = pool.getBusyConnections();
+                    break;
+                case IDLE_CONNECTIONS:
+                    value = pool.getFreeConnections();
+                    break;
+                case PENDING_CONNECTIONS:
+                    value = pool.getPendingConnections();
+                    break;
+                default:
+                    value = pool.getEvictedConnections();
+            }
+            map.put(e.getKey().toString(), value);
+        }
+        return map;
+    }
+
     private Map<String,Integer> getCountersMap(AtomicInteger[] counters) {
         // This ensures that keys are returned in the same order we insert them
         // Provides better readability in the JMX consoles
@@ -34,6 +34,10 @@ public interface ConnectionsViewMBean {
     public Map getRequestSizesMap();
     public Map getResponseSizesMap();
     public Date getLastResetTime();
+    public Map getBusyConnectionsPerRoute();
+    public Map getIdleConnectionsPerRoute();
+    public Map getPendingConnectionsPerRoute();
+    public Map getEvictedConnectionsPerRoute();
 
     public void reset();
 
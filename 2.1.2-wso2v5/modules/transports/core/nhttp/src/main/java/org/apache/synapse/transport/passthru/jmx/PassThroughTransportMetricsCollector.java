@@ -21,6 +21,7 @@ package org.apache.synapse.transport.passthru.jmx;
 
 import org.apache.axis2.AxisFault;
 import org.apache.axis2.transport.base.MetricsCollector;
+import org.apache.synapse.transport.passthru.connections.TargetConnections;
 
 /**
  * <p>This simple extension of the Axis2 transport MetricsCollector implementation,
@@ -73,6 +74,10 @@ public class PassThroughTransportMetricsCollector extends MetricsCollector {
         }
     }
 
+    public void setTargetConnections(TargetConnections targetConnections) {
+        view.setTargetConnections(targetConnections);
+    }
+
     public int getActiveConnectionCount() {
         return view.getActiveConnections();
     }
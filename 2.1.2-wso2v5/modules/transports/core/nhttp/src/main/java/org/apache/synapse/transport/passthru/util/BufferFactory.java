@@ -19,67 +19,343 @@ package org.apache.synapse.transport.passthru.util;
 import org.apache.http.nio.util.ByteBufferAllocator;
 import org.apache.http.nio.util.HeapByteBufferAllocator;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Pool of the buffers used by the pass-through pipes. Buffers are pooled per size class. Each
+ * thread first works against its own small free list and only falls back to a bounded lock-free
+ * global free list when the local list is empty or full. Buffers of the smallest size class are
+ * handed out by default, larger classes can be requested by giving the expected content length
+ * of the message.
+ * <p>
+ * As every thread touching the pool keeps a free list, the larger size classes are cached with
+ * proportionally fewer buffers per thread, and the bytes retained by all the thread free lists
+ * together are bounded. Buffers which do not fit go to the global free list instead. The free
+ * list of a thread is dropped with the thread, so the threads are tracked through weak references
+ * and the buffers retained by the threads which have terminated are no longer accounted for once
+ * these threads have been garbage collected.
+ */
 public class BufferFactory {
 
-    private volatile ByteBuffer [] buffers;
+    private static final int DEFAULT_THREAD_CACHE_SIZE = 8;
 
-    private volatile int marker = -1;
+    private static final long DEFAULT_THREAD_CACHE_MAX_BYTES = 16 * 1024 * 1024;
 
-    private ByteBufferAllocator allocator = null;
+    /** Buffer capacities of the size classes in ascending order */
+    private final int[] sizeClasses;
+
+    /** Global free lists, one per size class */
+    private final ConcurrentLinkedQueue<ByteBuffer>[] globalPools;
+
+    /** Number of buffers in each global free list */
+    private final AtomicInteger[] globalPoolSizes;
+
+    /** Maximum number of buffers kept in each global free list */
+    private final int size;
+
+    /** Maximum number of buffers kept by a thread for each size class */
+    private final int[] threadCacheSizes;
+
+    /** Maximum number of bytes kept by the free lists of all the threads together */
+    private final long threadCacheMaxBytes;
+
+    private final AtomicInteger threadCached = new AtomicInteger(0);
+    private final AtomicLong threadCachedBytes = new AtomicLong(0);
+
+    private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+            ThreadCache cache = new ThreadCache();
+            threadCacheOwners.add(new ThreadCacheOwner(Thread.currentThread(), cache.retained,
+                    terminatedOwners));
+            expungeTerminatedThreads();
+            return cache;
+        }
+    };
 
-    private Lock lock = new ReentrantLock();
+    /** References to the threads owning a free list, kept until the threads are collected */
+    private final Set<ThreadCacheOwner> threadCacheOwners =
+            Collections.synchronizedSet(new HashSet<ThreadCacheOwner>());
 
-    private int bufferSize = 1024 * 8;
+    /** Threads which have been garbage collected together with their free lists */
+    private final ReferenceQueue<Thread> terminatedOwners = new ReferenceQueue<Thread>();
+
+    private ByteBufferAllocator allocator = null;
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong outstanding = new AtomicLong(0);
 
     public BufferFactory(int bufferSize, ByteBufferAllocator allocator, int size) {
-        this.bufferSize = bufferSize;
+        this(new int[] {bufferSize}, allocator, size, DEFAULT_THREAD_CACHE_SIZE);
+    }
+
+    public BufferFactory(int[] sizeClasses, ByteBufferAllocator allocator,
+                         int size, int threadCacheSize) {
+        this(sizeClasses, allocator, size, threadCacheSize, DEFAULT_THREAD_CACHE_MAX_BYTES);
+    }
+
+    /**
+     * Create a buffer factory
+     *
+     * @param sizeClasses buffer capacities of the size classes
+     * @param allocator allocator of the buffers, heap buffers are allocated if null
+     * @param size maximum number of buffers kept in the global free list of each size class
+     * @param threadCacheSize maximum number of buffers of the smallest size class kept by a
+     * thread, larger classes are kept with proportionally fewer buffers
+     * @param threadCacheMaxBytes maximum number of bytes kept by all the threads together
+     */
+    public BufferFactory(int[] sizeClasses, ByteBufferAllocator allocator,
+                         int size, int threadCacheSize, long threadCacheMaxBytes) {
+        if (sizeClasses == null || sizeClasses.length == 0) {
+            throw new IllegalArgumentException("At least one buffer size class is required");
+        }
         if (allocator != null) {
             this.allocator = allocator;
         } else {
             this.allocator = new HeapByteBufferAllocator();
         }
 
-        buffers = new ByteBuffer[size];
+        this.sizeClasses = sizeClasses.clone();
+        Arrays.sort(this.sizeClasses);
+        this.size = size;
+        this.threadCacheMaxBytes = threadCacheMaxBytes;
+
+        // keep about the same number of bytes per thread in every size class
+        threadCacheSizes = new int[this.sizeClasses.length];
+        for (int i = 0; i < this.sizeClasses.length; i++) {
+            long bytes = (long) threadCacheSize * this.sizeClasses[0];
+            threadCacheSizes[i] = threadCacheSize > 0 ?
+                    (int) Math.max(1, bytes / this.sizeClasses[i]) : 0;
+        }
+
+        // a generic array can not be created directly, every element is a queue of buffers though
+        @SuppressWarnings("unchecked")
+        ConcurrentLinkedQueue<ByteBuffer>[] pools = (ConcurrentLinkedQueue<ByteBuffer>[])
+                new ConcurrentLinkedQueue<?>[this.sizeClasses.length];
+        globalPools = pools;
+        globalPoolSizes = new AtomicInteger[this.sizeClasses.length];
+        for (int i = 0; i < this.sizeClasses.length; i++) {
+            globalPools[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+            globalPoolSizes[i] = new AtomicInteger(0);
+        }
     }
 
-	
-	public ByteBuffer getBuffer() {
+    /**
+     * Get a buffer of the smallest size class
+     *
+     * @return a cleared buffer
+     */
+    public ByteBuffer getBuffer() {
+        return getBuffer(0);
+    }
+
+    /**
+     * Get a buffer of the smallest size class which can hold the given number of bytes. If the
+     * expected length is not known or larger than the largest size class, a buffer of the
+     * largest size class is returned for the latter and of the smallest for the former.
+     *
+     * @param expectedLength expected content length or a value less than 1 if not known
+     * @return a cleared buffer
+     */
+    public ByteBuffer getBuffer(long expectedLength) {
+        int sizeClass = getSizeClass(expectedLength);
+        outstanding.incrementAndGet();
+
+        ByteBuffer b = threadCache.get().poll(sizeClass);
+        if (b == null) {
+            b = globalPools[sizeClass].poll();
+            if (b != null) {
+                globalPoolSizes[sizeClass].decrementAndGet();
+            }
+        }
 
-		if (marker == -1) {
-			// System.out.println("allocating marker -1");
-			return allocator.allocate(bufferSize);
-		} else {
-			try {
-				lock.lock();
-				if (marker >= 0) {
-					// System.out.println("Returning buffer");
-					ByteBuffer b = buffers[marker];
-					b.clear();
-					buffers[marker] = null;
-					marker--;
-					return b;
-				}
-			} finally {
-				lock.unlock();
-			}
-		}
+        if (b != null) {
+            hits.incrementAndGet();
+            b.clear();
+            return b;
+        }
 
-		return allocator.allocate(bufferSize);
-	}
+        misses.incrementAndGet();
+        return allocator.allocate(sizeClasses[sizeClass]);
+    }
 
     public void release(ByteBuffer buffer) {
-    	lock.lock();
-        try {
-            if (marker < buffers.length - 1) {
-            	buffer.clear();
-                buffers[++marker] = buffer;
+        if (buffer == null) {
+            return;
+        }
+        outstanding.decrementAndGet();
+
+        int sizeClass = Arrays.binarySearch(sizeClasses, buffer.capacity());
+        if (sizeClass < 0) {
+            // not allocated by this factory, leave it to the garbage collector
+            return;
+        }
+
+        buffer.clear();
+        if (threadCache.get().offer(sizeClass, buffer)) {
+            return;
+        }
+
+        if (globalPoolSizes[sizeClass].incrementAndGet() <= size) {
+            globalPools[sizeClass].offer(buffer);
+        } else {
+            globalPoolSizes[sizeClass].decrementAndGet();
+        }
+    }
+
+    private int getSizeClass(long expectedLength) {
+        if (expectedLength <= 0) {
+            return 0;
+        }
+        for (int i = 0; i < sizeClasses.length; i++) {
+            if (expectedLength <= sizeClasses[i]) {
+                return i;
             }
-        } finally {
-            lock.unlock();
+        }
+        return sizeClasses.length - 1;
+    }
+
+    public int[] getSizeClasses() {
+        return sizeClasses.clone();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getOutstanding() {
+        return outstanding.get();
+    }
+
+    public int getPooled() {
+        int pooled = 0;
+        for (AtomicInteger poolSize : globalPoolSizes) {
+            pooled += poolSize.get();
+        }
+        return pooled;
+    }
+
+    /**
+     * @return number of buffers kept in the free lists of the threads
+     */
+    public int getThreadCached() {
+        expungeTerminatedThreads();
+        return threadCached.get();
+    }
+
+    /**
+     * @return number of bytes kept in the free lists of the threads
+     */
+    public long getThreadCachedBytes() {
+        expungeTerminatedThreads();
+        return threadCachedBytes.get();
+    }
+
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * Stop accounting for the buffers retained by the threads which have been garbage collected
+     */
+    private void expungeTerminatedThreads() {
+        Reference<? extends Thread> ref;
+        while ((ref = terminatedOwners.poll()) != null) {
+            ThreadCacheOwner owner = (ThreadCacheOwner) ref;
+            threadCacheOwners.remove(owner);
+            threadCached.addAndGet(-owner.retained.buffers);
+            threadCachedBytes.addAndGet(-owner.retained.bytes);
+        }
+    }
+
+    /**
+     * Free lists of a single thread, only ever accessed by the owning thread. Only the retention
+     * counters are shared with the other threads.
+     */
+    private class ThreadCache {
+
+        private final ByteBuffer[][] buffers = new ByteBuffer[sizeClasses.length][];
+        private final int[] markers = new int[sizeClasses.length];
+        private final Retained retained = new Retained();
+
+        ThreadCache() {
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = new ByteBuffer[threadCacheSizes[i]];
+            }
+        }
+
+        ByteBuffer poll(int sizeClass) {
+            if (markers[sizeClass] == 0) {
+                return null;
+            }
+            int marker = --markers[sizeClass];
+            ByteBuffer b = buffers[sizeClass][marker];
+            buffers[sizeClass][marker] = null;
+            retained.buffers--;
+            retained.bytes -= b.capacity();
+            threadCached.decrementAndGet();
+            threadCachedBytes.addAndGet(-b.capacity());
+            return b;
+        }
+
+        boolean offer(int sizeClass, ByteBuffer buffer) {
+            if (markers[sizeClass] == buffers[sizeClass].length) {
+                return false;
+            }
+            if (threadCachedBytes.addAndGet(buffer.capacity()) > threadCacheMaxBytes) {
+                threadCachedBytes.addAndGet(-buffer.capacity());
+                // some of the bytes may be retained by threads which are gone
+                expungeTerminatedThreads();
+                if (threadCachedBytes.addAndGet(buffer.capacity()) > threadCacheMaxBytes) {
+                    threadCachedBytes.addAndGet(-buffer.capacity());
+                    return false;
+                }
+            }
+            retained.buffers++;
+            retained.bytes += buffer.capacity();
+            threadCached.incrementAndGet();
+            buffers[sizeClass][markers[sizeClass]++] = buffer;
+            return true;
+        }
+    }
+
+    /**
+     * Buffers and bytes retained by the free list of a thread, only ever written by the owning
+     * thread
+     */
+    private static class Retained {
+        private volatile int buffers;
+        private volatile long bytes;
+    }
+
+    /**
+     * Weak reference to a thread owning a free list, enqueued once the thread and with it the
+     * free list have been garbage collected. Only the retention counters of the free list are
+     * referenced, so that the buffers are collected with the thread.
+     */
+    private static class ThreadCacheOwner extends WeakReference<Thread> {
+
+        private final Retained retained;
+
+        ThreadCacheOwner(Thread thread, Retained retained, ReferenceQueue<Thread> queue) {
+            super(thread, queue);
+            this.retained = retained;
         }
     }
 }
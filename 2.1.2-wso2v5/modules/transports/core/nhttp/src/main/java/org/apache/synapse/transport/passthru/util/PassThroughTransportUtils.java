@@ -27,6 +27,8 @@ import org.apache.axis2.description.AxisService;
 import org.apache.axis2.description.Parameter;
 import org.apache.axis2.description.AxisOperation;
 import org.apache.http.protocol.HTTP;
+import org.apache.http.Header;
+import org.apache.http.HttpMessage;
 import org.apache.http.HttpStatus;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -226,6 +228,25 @@ public class PassThroughTransportUtils {
         return hostAddress.split("[.]").length == 4;
     }
 
+    /**
+     * Returns the value of the Content-Length header of the given message, used to pick the
+     * size class of the pipe buffers.
+     *
+     * @param message the http request or response
+     * @return the content length or -1 if it is not known
+     */
+    public static long getContentLength(HttpMessage message) {
+        Header header = message.getFirstHeader(HTTP.CONTENT_LEN);
+        if (header != null) {
+            try {
+                return Long.parseLong(header.getValue().trim());
+            } catch (NumberFormatException ignore) {
+                // treat a malformed header as an unknown length
+            }
+        }
+        return -1;
+    }
+
 
     /**
      * Returns the HTML text for the list of services deployed.
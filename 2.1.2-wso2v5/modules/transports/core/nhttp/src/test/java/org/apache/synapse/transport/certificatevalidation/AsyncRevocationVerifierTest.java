@@ -0,0 +1,240 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.transport.certificatevalidation;
+
+import junit.framework.TestCase;
+import org.apache.synapse.transport.certificatevalidation.cache.ConcurrentLRUCache;
+import org.apache.synapse.transport.certificatevalidation.crl.CRLVerifier;
+import org.apache.synapse.transport.certificatevalidation.ocsp.OCSPVerifier;
+import org.bouncycastle.asn1.x509.AccessDescription;
+import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.X509Extensions;
+import org.bouncycastle.ocsp.*;
+import org.bouncycastle.x509.X509V3CertificateGenerator;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the AsyncRevocationVerifier against a local stand-in OCSP responder, which answers the OCSP
+ * requests of the verifier without going to the network.
+ */
+public class AsyncRevocationVerifierTest extends TestCase {
+
+    private static final BigInteger REVOKED_SERIAL_NUMBER = BigInteger.valueOf(111);
+
+    private KeyPair caKeyPair;
+    private X509Certificate caCert;
+
+    protected void setUp() throws Exception {
+        Security.addProvider(new org.bouncycastle.jce.provider.BouncyCastleProvider());
+        Utils utils = new Utils();
+        caKeyPair = utils.generateRSAKeyPair();
+        caCert = utils.generateFakeRootCert(caKeyPair);
+    }
+
+    public void testStatusIsCached() throws Exception {
+        StandInResponder responder = new StandInResponder(TestConstants.NEXT_UPDATE_PERIOD);
+        AsyncRevocationVerifier verifier = createVerifier(responder, 5000, false);
+
+        X509Certificate peerCert = generatePeerCert(BigInteger.valueOf(5));
+        X509Certificate revokedCert = generatePeerCert(REVOKED_SERIAL_NUMBER);
+        assertEquals(RevocationStatus.GOOD, verifier.checkRevocationStatus(peerCert, caCert));
+        assertEquals(RevocationStatus.REVOKED, verifier.checkRevocationStatus(revokedCert, caCert));
+        assertEquals(RevocationStatus.GOOD, verifier.checkRevocationStatus(peerCert, caCert));
+        assertEquals(RevocationStatus.REVOKED, verifier.checkRevocationStatus(revokedCert, caCert));
+
+        assertEquals(2, responder.requests.get());
+        assertEquals(2, verifier.getCacheSize());
+        verifier.shutdown();
+    }
+
+    /**
+     * Handshakes checking the same certificate while its status is being fetched wait for the same fetch.
+     */
+    public void testConcurrentLookupsAreCoalesced() throws Exception {
+        final StandInResponder responder = new StandInResponder(TestConstants.NEXT_UPDATE_PERIOD);
+        responder.latch = new CountDownLatch(1);
+        final AsyncRevocationVerifier verifier = createVerifier(responder, 10000, false);
+        final X509Certificate peerCert = generatePeerCert(BigInteger.valueOf(7));
+
+        final List<Object> results = new ArrayList<Object>();
+        Thread[] handshakes = new Thread[8];
+        for (int i = 0; i < handshakes.length; i++) {
+            handshakes[i] = new Thread() {
+                public void run() {
+                    Object result;
+                    try {
+                        result = verifier.checkRevocationStatus(peerCert, caCert);
+                    } catch (Exception e) {
+                        result = e;
+                    }
+                    synchronized (results) {
+                        results.add(result);
+                    }
+                }
+            };
+            handshakes[i].start();
+        }
+        Thread.sleep(200);
+        responder.latch.countDown();
+        for (Thread handshake : handshakes) {
+            handshake.join();
+        }
+
+        assertEquals(handshakes.length, results.size());
+        for (Object result : results) {
+            assertEquals(RevocationStatus.GOOD, result);
+        }
+        assertEquals(1, responder.requests.get());
+        verifier.shutdown();
+    }
+
+    public void testFailurePolicy() throws Exception {
+        StandInResponder responder = new StandInResponder(TestConstants.NEXT_UPDATE_PERIOD);
+        responder.latch = new CountDownLatch(1);
+        X509Certificate peerCert = generatePeerCert(BigInteger.valueOf(9));
+
+        AsyncRevocationVerifier failClosed = createVerifier(responder, 100, false);
+        try {
+            failClosed.checkRevocationStatus(peerCert, caCert);
+            fail("A certificate of unknown status is accepted when failing closed");
+        } catch (CertificateVerificationException expected) {
+        }
+
+        AsyncRevocationVerifier failOpen = createVerifier(responder, 100, true);
+        assertEquals(RevocationStatus.GOOD, failOpen.checkRevocationStatus(peerCert, caCert));
+
+        // the slow responses are still cached once they arrive
+        responder.latch.countDown();
+        Thread.sleep(500);
+        assertEquals(RevocationStatus.GOOD, failClosed.checkRevocationStatus(peerCert, caCert));
+        assertEquals(2, responder.requests.get());
+        failClosed.shutdown();
+        failOpen.shutdown();
+    }
+
+    /**
+     * A status in use is fetched again before its next update.
+     */
+    public void testRefreshBeforeNextUpdate() throws Exception {
+        StandInResponder responder = new StandInResponder(3000);
+        AsyncRevocationVerifier verifier = createVerifier(responder, 5000, false);
+        X509Certificate peerCert = generatePeerCert(BigInteger.valueOf(11));
+
+        assertEquals(RevocationStatus.GOOD, verifier.checkRevocationStatus(peerCert, caCert));
+        assertEquals(RevocationStatus.GOOD, verifier.checkRevocationStatus(peerCert, caCert));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (responder.requests.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(2, responder.requests.get());
+        verifier.shutdown();
+    }
+
+    public void testLRUCache() {
+        ConcurrentLRUCache<String, String> cache = new ConcurrentLRUCache<String, String>(3);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        assertEquals("1", cache.get("a"));
+        cache.put("d", "4");
+        assertEquals(3, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertFalse(cache.remove("a", "2"));
+        assertTrue(cache.remove("a", "1"));
+        assertEquals(2, cache.size());
+
+        ConcurrentLRUCache<Integer, Integer> large = new ConcurrentLRUCache<Integer, Integer>(1000);
+        for (int i = 0; i < 5000; i++) {
+            large.put(i, i);
+        }
+        assertEquals(1000, large.size());
+        assertEquals(Integer.valueOf(4999), large.get(4999));
+    }
+
+    private AsyncRevocationVerifier createVerifier(StandInResponder responder, long fetchTimeout,
+                                                   boolean failOpen) {
+        return new AsyncRevocationVerifier(100, 15, fetchTimeout, failOpen, 2, responder, new CRLVerifier(null));
+    }
+
+    private X509Certificate generatePeerCert(BigInteger serialNumber) throws Exception {
+        Utils utils = new Utils();
+        KeyPair peerKeyPair = utils.generateRSAKeyPair();
+        X509V3CertificateGenerator certGen = utils.getUsableCertificateGenerator(caCert, peerKeyPair.getPublic(),
+                serialNumber);
+        certGen.addExtension(X509Extensions.AuthorityInfoAccess, false, new AuthorityInformationAccess(
+                AccessDescription.id_ad_ocsp,
+                new GeneralName(GeneralName.uniformResourceIdentifier, "http://localhost/ocsp")));
+        return certGen.generateX509Certificate(caKeyPair.getPrivate(), "BC");
+    }
+
+    /**
+     * Stands in for the OCSP responder of the fake CA, the certificate with REVOKED_SERIAL_NUMBER is revoked.
+     */
+    private class StandInResponder extends OCSPVerifier {
+
+        private final AtomicInteger requests = new AtomicInteger();
+        private final long nextUpdatePeriod;
+        private volatile CountDownLatch latch;
+
+        StandInResponder(long nextUpdatePeriod) {
+            super(null);
+            this.nextUpdatePeriod = nextUpdatePeriod;
+        }
+
+        @Override
+        protected OCSPResp getOCSPResponce(String serviceUrl, OCSPReq request)
+                throws CertificateVerificationException {
+            requests.incrementAndGet();
+            try {
+                if (latch != null) {
+                    latch.await(10, TimeUnit.SECONDS);
+                }
+                BasicOCSPRespGenerator generator = new BasicOCSPRespGenerator(caKeyPair.getPublic());
+                Date nextUpdate = new Date(System.currentTimeMillis() + nextUpdatePeriod);
+                for (Req req : request.getRequestList()) {
+                    CertificateID certID = req.getCertID();
+                    if (REVOKED_SERIAL_NUMBER.equals(certID.getSerialNumber())) {
+                        generator.addResponse(certID, new RevokedStatus(new Date(), CRLReason.privilegeWithdrawn),
+                                nextUpdate, null);
+                    } else {
+                        generator.addResponse(certID, CertificateStatus.GOOD, nextUpdate, null);
+                    }
+                }
+                BasicOCSPResp basicResp = generator.generate("SHA256WithRSA", caKeyPair.getPrivate(), null,
+                        new Date(), "BC");
+                return new OCSPRespGenerator().generate(OCSPRespGenerator.SUCCESSFUL, basicResp);
+            } catch (Exception e) {
+                throw new CertificateVerificationException(e);
+            }
+        }
+    }
+}
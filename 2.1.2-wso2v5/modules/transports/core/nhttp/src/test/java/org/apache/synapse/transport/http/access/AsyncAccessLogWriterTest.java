@@ -0,0 +1,138 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.transport.http.access;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashSet;
+import java.util.Set;
+
+public class AsyncAccessLogWriterTest extends TestCase {
+
+    private File directory;
+
+    protected void setUp() throws Exception {
+        directory = new File("target" + File.separator + "access-logs-" +
+                System.currentTimeMillis());
+        assertTrue(directory.mkdirs());
+    }
+
+    protected void tearDown() throws Exception {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    public void testRing() {
+        AccessLogRing ring = new AccessLogRing(3);
+        assertEquals(4, ring.getCapacity());
+        assertNull(ring.poll());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer("r" + i));
+        }
+        assertFalse(ring.offer("r4"));
+        assertEquals("r0", ring.poll());
+        assertTrue(ring.offer("r4"));
+        for (int i = 1; i < 5; i++) {
+            assertEquals("r" + i, ring.poll());
+        }
+        assertNull(ring.poll());
+    }
+
+    public void testConcurrentWriters() throws Exception {
+        final AsyncAccessLogWriter writer = new AsyncAccessLogWriter(1 << 16, 10, 0, directory);
+        writer.start();
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < 5000; i++) {
+                        while (!writer.write("thread-" + id + " record-" + i)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        writer.shutdown();
+
+        Set<String> lines = readLines();
+        assertEquals(threads.length * 5000, lines.size());
+        assertTrue(lines.contains("thread-3 record-4999"));
+    }
+
+    public void testSizeRotation() throws Exception {
+        AsyncAccessLogWriter writer = new AsyncAccessLogWriter(1024, 10, 1000, directory);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(writer.write("a record of some length, number " + i));
+        }
+        writer.drain();
+        for (int i = 100; i < 200; i++) {
+            assertTrue(writer.write("a record of some length, number " + i));
+        }
+        writer.drain();
+        writer.shutdown();
+
+        assertTrue(directory.listFiles().length > 1);
+        for (File file : directory.listFiles()) {
+            assertTrue(file.length() <= 1000 || !file.getName().endsWith(AccessConstants.SUFFIX));
+        }
+        assertEquals(200, readLines().size());
+    }
+
+    public void testDroppedWhenFull() {
+        AsyncAccessLogWriter writer = new AsyncAccessLogWriter(2, 10, 0, directory);
+        assertTrue(writer.write("r0"));
+        assertTrue(writer.write("r1"));
+        assertFalse(writer.write("r2"));
+        assertEquals(1, writer.getDroppedCount());
+    }
+
+    private Set<String> readLines() throws IOException {
+        Set<String> lines = new HashSet<String>();
+        for (File file : directory.listFiles()) {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return lines;
+    }
+}
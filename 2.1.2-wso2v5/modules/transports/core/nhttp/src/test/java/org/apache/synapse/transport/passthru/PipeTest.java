@@ -0,0 +1,335 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.passthru;
+
+import junit.framework.TestCase;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.synapse.transport.passthru.config.BaseConfiguration;
+import org.apache.synapse.transport.passthru.util.BufferFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class PipeTest extends TestCase {
+
+    private static final int RING_SIZE = 3;
+
+    private BufferFactory factory;
+    private BaseConfiguration config;
+
+    protected void setUp() throws Exception {
+        factory = new BufferFactory(new int[] {8}, null, 16, 0);
+        config = new RelayConfiguration(factory);
+    }
+
+    public void testRingIsAllocatedLazily() throws Exception {
+        Pipe pipe = new Pipe(new TestIOControl(), factory.getBuffer(), "test", config);
+        assertTrue(pipe.isRelayMode());
+        assertEquals(1, factory.getOutstanding());
+
+        // pipes which are only written through the output stream never get a ring
+        OutputStream out = pipe.getOutputStream();
+        out.write(new byte[] {1, 2, 3});
+        out.flush();
+        assertEquals(2, factory.getOutstanding());
+
+        pipe.close();
+        assertEquals(2, factory.getOutstanding());
+    }
+
+    public void testWrapAround() throws Exception {
+        byte[] data = payload(61);
+        TestIOControl producer = new TestIOControl();
+        TestIOControl consumer = new TestIOControl();
+        Pipe pipe = new Pipe(producer, factory.getBuffer(), "test", config);
+        pipe.attachConsumer(consumer);
+
+        TestDecoder decoder = new TestDecoder(data, 5);
+        TestEncoder encoder = new TestEncoder(3);
+        while (!encoder.isCompleted()) {
+            if (!decoder.isCompleted()) {
+                pipe.produce(decoder);
+            }
+            pipe.consume(encoder);
+        }
+
+        assertTrue(Arrays.equals(data, encoder.getBytes()));
+        // only the pipe buffer is left for the connection context to release
+        assertEquals(1, factory.getOutstanding());
+    }
+
+    public void testFullRingSuspendsProducer() throws Exception {
+        byte[] data = payload(64);
+        TestIOControl producer = new TestIOControl();
+        TestIOControl consumer = new TestIOControl();
+        Pipe pipe = new Pipe(producer, factory.getBuffer(), "test", config);
+        pipe.attachConsumer(consumer);
+
+        TestDecoder decoder = new TestDecoder(data, 8);
+        for (int i = 0; i < RING_SIZE; i++) {
+            assertEquals(8, pipe.produce(decoder));
+        }
+        assertEquals(RING_SIZE, factory.getOutstanding());
+        assertTrue(producer.inputSuspended);
+        assertEquals(0, pipe.produce(decoder));
+        assertTrue(producer.inputSuspended);
+
+        TestEncoder encoder = new TestEncoder(8);
+        assertEquals(8 * RING_SIZE, pipe.consume(encoder));
+        assertFalse(producer.inputSuspended);
+        assertTrue(consumer.outputSuspended);
+
+        // the freed slots are reused
+        assertEquals(8, pipe.produce(decoder));
+        assertFalse(consumer.outputSuspended);
+        assertEquals(8, pipe.consume(encoder));
+        assertEquals(RING_SIZE, factory.getOutstanding());
+    }
+
+    public void testEndOfStreamThroughInputStream() throws Exception {
+        final byte[] data = payload(1000);
+        final TestIOControl producer = new TestIOControl();
+        final Pipe pipe = new Pipe(producer, factory.getBuffer(), "test", config);
+        final TestDecoder decoder = new TestDecoder(data, 7);
+        final IOException[] failure = new IOException[1];
+
+        Thread reactor = new Thread() {
+            public void run() {
+                try {
+                    while (!decoder.isCompleted()) {
+                        if (pipe.produce(decoder) == 0) {
+                            Thread.yield();
+                        }
+                    }
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            }
+        };
+        reactor.start();
+
+        InputStream in = pipe.getInputStream();
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        byte[] chunk = new byte[16];
+        int n;
+        while ((n = in.read(chunk, 0, chunk.length)) != -1) {
+            read.write(chunk, 0, n);
+        }
+        reactor.join(10000);
+
+        assertNull(failure[0]);
+        assertTrue(Arrays.equals(data, read.toByteArray()));
+        assertEquals(-1, in.read());
+        assertEquals(1, factory.getOutstanding());
+    }
+
+    public void testCloseReleasesRingMidRelay() throws Exception {
+        TestIOControl producer = new TestIOControl();
+        TestIOControl consumer = new TestIOControl();
+        Pipe pipe = new Pipe(producer, factory.getBuffer(), "test", config);
+        pipe.attachConsumer(consumer);
+
+        TestDecoder decoder = new TestDecoder(payload(64), 8);
+        pipe.produce(decoder);
+        assertEquals(RING_SIZE, factory.getOutstanding());
+
+        pipe.close();
+        assertEquals(1, factory.getOutstanding());
+        pipe.close();
+        assertEquals(1, factory.getOutstanding());
+
+        TestEncoder encoder = new TestEncoder(8);
+        assertEquals(-1, pipe.consume(encoder));
+        assertTrue(encoder.isCompleted());
+
+        // the rest of the message is drained without allocating a new ring
+        while (!decoder.isCompleted()) {
+            pipe.produce(decoder);
+        }
+        assertEquals(1, factory.getOutstanding());
+    }
+
+    public void testConsumerErrorReleasesRing() throws Exception {
+        TestIOControl producer = new TestIOControl();
+        Pipe pipe = new Pipe(producer, factory.getBuffer(), "test", config);
+        pipe.attachConsumer(new TestIOControl());
+
+        TestDecoder decoder = new TestDecoder(payload(64), 8);
+        pipe.produce(decoder);
+        pipe.consumerError();
+        while (!decoder.isCompleted()) {
+            pipe.produce(decoder);
+        }
+        assertEquals(1, factory.getOutstanding());
+    }
+
+    public void testReleaseReturnsBuffersToTheirFactory() throws Exception {
+        BufferFactory other = new BufferFactory(new int[] {8}, null, 16, 0);
+        Pipe pipe = new Pipe(new TestIOControl(), factory.getBuffer(), "test", config);
+        pipe.attachConsumer(new TestIOControl());
+        pipe.produce(new TestDecoder(payload(64), 8));
+        assertEquals(RING_SIZE, factory.getOutstanding());
+
+        // a connection of the other transport writing the pipe out releases it
+        pipe.release();
+        assertEquals(0, factory.getOutstanding());
+        assertEquals(0, other.getOutstanding());
+    }
+
+    public void testReleaseWhileRelayingDefersFree() throws Exception {
+        final Pipe pipe = new Pipe(new TestIOControl(), factory.getBuffer(), "test", config);
+        pipe.attachConsumer(new TestIOControl());
+        TestDecoder decoder = new TestDecoder(payload(64), 8);
+        pipe.produce(decoder);
+        pipe.produce(decoder);
+
+        // the other side releases the pipe while the consumer is writing a slot out
+        final long[] outstanding = new long[1];
+        TestEncoder encoder = new TestEncoder(8) {
+            public int write(ByteBuffer src) throws IOException {
+                pipe.release();
+                outstanding[0] = factory.getOutstanding();
+                return super.write(src);
+            }
+        };
+        pipe.consume(encoder);
+        assertEquals(RING_SIZE, outstanding[0]);
+        assertEquals(0, factory.getOutstanding());
+
+        // the producer drops the rest of the message without touching the released buffers
+        while (!decoder.isCompleted()) {
+            pipe.produce(decoder);
+        }
+        assertEquals(0, factory.getOutstanding());
+        assertEquals(-1, pipe.consume(new TestEncoder(8)));
+    }
+
+    private static byte[] payload(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    private static class RelayConfiguration extends BaseConfiguration {
+
+        RelayConfiguration(BufferFactory factory) {
+            super(null, null, null, null);
+            bufferFactory = factory;
+        }
+
+        public boolean isPipeRelayMode() {
+            return true;
+        }
+
+        public int getPipeRelayRingSize() {
+            return RING_SIZE;
+        }
+    }
+
+    private static class TestIOControl implements IOControl {
+
+        private volatile boolean inputSuspended;
+        private volatile boolean outputSuspended;
+
+        public void requestInput() {
+            inputSuspended = false;
+        }
+
+        public void suspendInput() {
+            inputSuspended = true;
+        }
+
+        public void requestOutput() {
+            outputSuspended = false;
+        }
+
+        public void suspendOutput() {
+            outputSuspended = true;
+        }
+
+        public void shutdown() throws IOException {
+        }
+    }
+
+    private static class TestDecoder implements ContentDecoder {
+
+        private final byte[] data;
+        private final int chunk;
+        private volatile int position;
+
+        TestDecoder(byte[] data, int chunk) {
+            this.data = data;
+            this.chunk = chunk;
+        }
+
+        public int read(ByteBuffer dst) throws IOException {
+            if (position == data.length) {
+                return -1;
+            }
+            int n = Math.min(chunk, Math.min(dst.remaining(), data.length - position));
+            dst.put(data, position, n);
+            position += n;
+            return n;
+        }
+
+        public boolean isCompleted() {
+            return position == data.length;
+        }
+    }
+
+    private static class TestEncoder implements ContentEncoder {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final int chunk;
+        private boolean completed;
+
+        TestEncoder(int chunk) {
+            this.chunk = chunk;
+        }
+
+        public int write(ByteBuffer src) throws IOException {
+            int n = Math.min(chunk, src.remaining());
+            for (int i = 0; i < n; i++) {
+                out.write(src.get());
+            }
+            return n;
+        }
+
+        public void complete() throws IOException {
+            completed = true;
+        }
+
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        byte[] getBytes() {
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.passthru;
+
+import junit.framework.TestCase;
+import org.apache.axis2.context.MessageContext;
+
+import java.util.List;
+
+public class TargetContextTest extends TestCase {
+
+    public void testResponsesAreCorrelatedInRequestOrder() {
+        TargetContext context = new TargetContext(null);
+        MessageContext current = new MessageContext();
+        context.setRequestMsgCtx(current);
+        context.setState(ProtocolState.REQUEST_DONE);
+        context.openPipeline();
+
+        MessageContext first = new MessageContext();
+        MessageContext second = new MessageContext();
+        MessageContext third = new MessageContext();
+        assertTrue(context.addPipelinedRequest(first, null, null, 3));
+        assertTrue(context.addPipelinedRequest(second, null, null, 3));
+        assertTrue(context.addPipelinedRequest(third, null, null, 3));
+
+        // the first two requests are written while the current response is still pending
+        assertSame(first, context.nextUnsentPipelinedRequest().getMessageContext());
+        assertSame(second, context.nextUnsentPipelinedRequest().getMessageContext());
+        assertTrue(context.hasUnsentPipelinedRequests());
+
+        // each completed response hands the connection to the next request in order
+        assertTrue(context.promotePipelinedRequest());
+        assertSame(first, context.getRequestMsgCtx());
+        assertEquals(ProtocolState.REQUEST_DONE, context.getState());
+
+        assertTrue(context.promotePipelinedRequest());
+        assertSame(second, context.getRequestMsgCtx());
+        assertEquals(ProtocolState.REQUEST_DONE, context.getState());
+
+        // a request not yet written has to be started by the connection
+        assertTrue(context.promotePipelinedRequest());
+        assertSame(third, context.getRequestMsgCtx());
+        assertEquals(ProtocolState.REQUEST_READY, context.getState());
+        assertNull(context.getResponse());
+
+        assertFalse(context.promotePipelinedRequest());
+        assertFalse(context.addPipelinedRequest(new MessageContext(), null, null, 3));
+    }
+
+    public void testPipelineAcceptsRequestsOnlyWhenOpen() {
+        TargetContext context = new TargetContext(null);
+        context.setState(ProtocolState.REQUEST_DONE);
+        assertFalse(context.addPipelinedRequest(new MessageContext(), null, null, 2));
+
+        context.openPipeline();
+        assertTrue(context.addPipelinedRequest(new MessageContext(), null, null, 2));
+        assertTrue(context.addPipelinedRequest(new MessageContext(), null, null, 2));
+        assertFalse(context.addPipelinedRequest(new MessageContext(), null, null, 2));
+
+        context.setState(ProtocolState.CLOSING);
+        assertFalse(context.addPipelinedRequest(new MessageContext(), null, null, 4));
+
+        context.reset();
+        context.setState(ProtocolState.REQUEST_DONE);
+        assertFalse(context.addPipelinedRequest(new MessageContext(), null, null, 4));
+    }
+
+    public void testDrainReturnsWrittenRequestsFirst() {
+        TargetContext context = new TargetContext(null);
+        context.setState(ProtocolState.REQUEST_DONE);
+        context.openPipeline();
+
+        MessageContext first = new MessageContext();
+        MessageContext second = new MessageContext();
+        MessageContext third = new MessageContext();
+        context.addPipelinedRequest(first, null, null, 4);
+        context.addPipelinedRequest(second, null, null, 4);
+        context.addPipelinedRequest(third, null, null, 4);
+        context.nextUnsentPipelinedRequest();
+
+        List<MessageContext> drained = context.drainPipelinedRequests();
+        assertEquals(3, drained.size());
+        assertSame(first, drained.get(0));
+        assertSame(second, drained.get(1));
+        assertSame(third, drained.get(2));
+
+        assertFalse(context.promotePipelinedRequest());
+        assertFalse(context.addPipelinedRequest(new MessageContext(), null, null, 4));
+    }
+}
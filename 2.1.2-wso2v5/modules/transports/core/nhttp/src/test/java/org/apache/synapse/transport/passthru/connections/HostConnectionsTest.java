@@ -0,0 +1,193 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.passthru.connections;
+
+import junit.framework.TestCase;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.nio.NHttpClientConnection;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HostConnectionsTest extends TestCase {
+
+    private final HttpRoute route = new HttpRoute(new HttpHost("localhost", 9000));
+
+    public void testMostRecentlyReleasedConnectionIsReusedFirst() {
+        HostConnections pool = new HostConnections(route, 10);
+        NHttpClientConnection first = TestConnection.create();
+        NHttpClientConnection second = TestConnection.create();
+        pool.addConnection(first);
+        pool.addConnection(second);
+
+        assertSame(second, pool.getConnection());
+        assertEquals(1, pool.getBusyConnections());
+        assertEquals(1, pool.getFreeConnections());
+
+        pool.release(second);
+        assertSame(second, pool.getConnection());
+        assertSame(first, pool.getConnection());
+        assertNull(pool.getConnection());
+        assertEquals(2, pool.getBusyConnections());
+    }
+
+    public void testConcurrentAcquireAndRelease() throws Exception {
+        final HostConnections pool = new HostConnections(route, 4);
+        for (int i = 0; i < 4; i++) {
+            pool.addConnection(TestConnection.create());
+        }
+
+        final Set<NHttpClientConnection> inUse = Collections.newSetFromMap(
+                new ConcurrentHashMap<NHttpClientConnection, Boolean>());
+        final AtomicInteger sharedConnections = new AtomicInteger(0);
+        final AtomicInteger acquired = new AtomicInteger(0);
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < 2000; j++) {
+                        NHttpClientConnection conn = pool.getConnection();
+                        if (conn == null) {
+                            continue;
+                        }
+                        acquired.incrementAndGet();
+                        if (!inUse.add(conn)) {
+                            sharedConnections.incrementAndGet();
+                        }
+                        Thread.yield();
+                        inUse.remove(conn);
+                        pool.release(conn);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertTrue(acquired.get() > 0);
+        assertEquals(0, sharedConnections.get());
+        assertEquals(0, pool.getBusyConnections());
+        assertEquals(4, pool.getFreeConnections());
+    }
+
+    public void testReservationsRespectMaximum() throws Exception {
+        final HostConnections pool = new HostConnections(route, 3);
+        final AtomicInteger reserved = new AtomicInteger(0);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 100; j++) {
+                        if (pool.reserveConnection()) {
+                            reserved.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(3, reserved.get());
+        assertEquals(3, pool.getPendingConnections());
+        assertFalse(pool.canHaveMoreConnections());
+
+        // a connected reservation counts as busy once the connection is taken
+        pool.pendingConnectionSucceeded();
+        pool.addConnection(TestConnection.create());
+        assertNotNull(pool.getConnection());
+        assertFalse(pool.reserveConnection());
+
+        pool.pendingConnectionFailed();
+        assertTrue(pool.reserveConnection());
+    }
+
+    public void testIdleConnectionsAreEvicted() throws Exception {
+        HostConnections pool = new HostConnections(route, 10, 50, -1);
+        NHttpClientConnection first = TestConnection.create();
+        NHttpClientConnection second = TestConnection.create();
+        pool.addConnection(first);
+        pool.addConnection(second);
+        Thread.sleep(100);
+        NHttpClientConnection third = TestConnection.create();
+        pool.addConnection(third);
+
+        assertEquals(2, pool.evictExpiredConnections());
+        assertTrue(TestConnection.isShutdown(first));
+        assertTrue(TestConnection.isShutdown(second));
+        assertFalse(TestConnection.isShutdown(third));
+        assertEquals(1, pool.getFreeConnections());
+        assertEquals(2, pool.getEvictedConnections());
+        assertSame(third, pool.getConnection());
+    }
+
+    public void testExpiredConnectionsAreNotHandedOut() throws Exception {
+        HostConnections pool = new HostConnections(route, 10, -1, 50);
+        NHttpClientConnection conn = TestConnection.create();
+        pool.addConnection(conn);
+        Thread.sleep(100);
+
+        assertNull(pool.getConnection());
+        assertTrue(TestConnection.isShutdown(conn));
+        assertEquals(1, pool.getEvictedConnections());
+    }
+
+    public void testConnectionsExceedingLifeTimeAreClosedOnRelease() throws Exception {
+        HostConnections pool = new HostConnections(route, 10, -1, 50);
+        NHttpClientConnection conn = TestConnection.create();
+        pool.addConnection(conn);
+        assertSame(conn, pool.getConnection());
+        Thread.sleep(100);
+
+        pool.release(conn);
+        assertTrue(TestConnection.isShutdown(conn));
+        assertEquals(0, pool.getFreeConnections());
+        assertEquals(0, pool.getBusyConnections());
+    }
+
+    public void testForgottenConnectionsLeaveThePool() {
+        HostConnections pool = new HostConnections(route, 10);
+        NHttpClientConnection idle = TestConnection.create();
+        NHttpClientConnection busy = TestConnection.create();
+        pool.addConnection(busy);
+        assertSame(busy, pool.getConnection());
+        pool.addConnection(idle);
+
+        pool.forget(idle);
+        pool.forget(busy);
+        assertEquals(0, pool.getFreeConnections());
+        assertEquals(0, pool.getBusyConnections());
+        assertNull(pool.getConnection());
+    }
+}
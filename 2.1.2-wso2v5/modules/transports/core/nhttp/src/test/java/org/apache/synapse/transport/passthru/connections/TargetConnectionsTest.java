@@ -0,0 +1,182 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.passthru.connections;
+
+import junit.framework.TestCase;
+import org.apache.axis2.context.MessageContext;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.nio.NHttpClientConnection;
+import org.apache.http.nio.reactor.ConnectingIOReactor;
+import org.apache.synapse.transport.passthru.DeliveryAgent;
+import org.apache.synapse.transport.passthru.PassThroughConstants;
+import org.apache.synapse.transport.passthru.ProtocolState;
+import org.apache.synapse.transport.passthru.TargetContext;
+import org.apache.synapse.transport.passthru.config.TargetConfiguration;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TargetConnectionsTest extends TestCase {
+
+    private final HttpRoute route = new HttpRoute(new HttpHost("localhost", 9000));
+
+    private final List<Object> connectAttachments =
+            Collections.synchronizedList(new ArrayList<Object>());
+
+    public void testPreWarmOpensConnectionsUpToTheMaximum() {
+        TargetConnections connections = new TargetConnections(
+                createReactor(), new TestConfiguration(2, -1, 0), null);
+
+        connections.preWarm(route, 3);
+        assertEquals(2, connectAttachments.size());
+        HostConnections pool = connections.getConnectionPools().get(route);
+        assertSame(pool, connectAttachments.get(0));
+        assertEquals(2, pool.getPendingConnections());
+        assertFalse(connections.canHaveMoreConnections(route));
+
+        // once connected the pre-warmed connection is handed to the first message
+        NHttpClientConnection conn = connect(pool);
+        connections.addConnection(conn);
+        assertEquals(1, pool.getFreeConnections());
+        assertSame(conn, connections.getConnection(route));
+        assertEquals(2, connectAttachments.size());
+    }
+
+    public void testConnectionsAreOpenedOnDemand() {
+        TargetConnections connections = new TargetConnections(
+                createReactor(), new TestConfiguration(1, -1, 0), null);
+
+        assertNull(connections.getConnection(route));
+        assertEquals(1, connectAttachments.size());
+        // the maximum is reached while the connection is pending
+        assertNull(connections.getConnection(route));
+        assertEquals(1, connectAttachments.size());
+    }
+
+    public void testExpiredConnectionsAreEvictedInTheBackground() throws Exception {
+        TargetConnections connections = new TargetConnections(
+                createReactor(), new TestConfiguration(10, 50, 20), null);
+        try {
+            connections.preWarm(route, 1);
+            HostConnections pool = connections.getConnectionPools().get(route);
+            NHttpClientConnection conn = connect(pool);
+            connections.addConnection(conn);
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (pool.getEvictedConnections() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(1, pool.getEvictedConnections());
+            assertTrue(TestConnection.isShutdown(conn));
+            assertEquals(0, pool.getFreeConnections());
+        } finally {
+            connections.shutdown();
+        }
+    }
+
+    public void testPipelinedMessagesAreResubmittedWhenConnectionFails() {
+        TestConfiguration configuration = new TestConfiguration(1, -1, 0);
+        TargetConnections connections = new TargetConnections(
+                createReactor(), configuration, null);
+        final List<MessageContext> resubmitted = new ArrayList<MessageContext>();
+        final List<HttpRoute> routes = new ArrayList<HttpRoute>();
+        connections.setDeliveryAgent(new DeliveryAgent(configuration, connections, null) {
+            public void resubmit(MessageContext msgContext, HttpRoute route) {
+                resubmitted.add(msgContext);
+                routes.add(route);
+            }
+        });
+
+        connections.preWarm(route, 1);
+        HostConnections pool = connections.getConnectionPools().get(route);
+        NHttpClientConnection conn = connect(pool);
+        connections.addConnection(conn);
+        assertSame(conn, connections.getConnection(route));
+
+        TargetContext.create(conn, ProtocolState.REQUEST_DONE, configuration);
+        TargetContext context = TargetContext.get(conn);
+        context.openPipeline();
+        MessageContext sent = new MessageContext();
+        MessageContext unsent = new MessageContext();
+        assertTrue(context.addPipelinedRequest(sent, null, null, 4));
+        assertTrue(context.addPipelinedRequest(unsent, null, null, 4));
+        assertNotNull(context.nextUnsentPipelinedRequest());
+
+        connections.shutdownConnection(conn);
+
+        assertTrue(TestConnection.isShutdown(conn));
+        assertEquals(2, resubmitted.size());
+        assertSame(sent, resubmitted.get(0));
+        assertSame(unsent, resubmitted.get(1));
+        assertEquals(route, routes.get(0));
+        assertEquals(0, pool.getBusyConnections());
+        assertFalse(context.hasUnsentPipelinedRequests());
+    }
+
+    private NHttpClientConnection connect(HostConnections pool) {
+        NHttpClientConnection conn = TestConnection.create();
+        conn.getContext().setAttribute(PassThroughConstants.CONNECTION_POOL, pool);
+        pool.pendingConnectionSucceeded();
+        return conn;
+    }
+
+    private ConnectingIOReactor createReactor() {
+        return (ConnectingIOReactor) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] {ConnectingIOReactor.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("connect".equals(method.getName())) {
+                    connectAttachments.add(args[2]);
+                }
+                return null;
+            }
+        });
+    }
+
+    private static class TestConfiguration extends TargetConfiguration {
+
+        private final int maxConnections;
+        private final long maxIdleTime;
+        private final long evictionInterval;
+
+        TestConfiguration(int maxConnections, long maxIdleTime, long evictionInterval) {
+            super(null, null, null, null, null);
+            this.maxConnections = maxConnections;
+            this.maxIdleTime = maxIdleTime;
+            this.evictionInterval = evictionInterval;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public long getConnectionMaxIdleTime() {
+            return maxIdleTime;
+        }
+
+        public long getConnectionEvictionInterval() {
+            return evictionInterval;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.passthru.connections;
+
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.nio.NHttpClientConnection;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Client connection stub for the connection pool tests. Only keeps the connection context and
+ * records whether the connection has been shut down.
+ */
+public class TestConnection implements InvocationHandler {
+
+    private final HttpContext context = new BasicHttpContext();
+
+    private volatile boolean shutdown = false;
+
+    public static NHttpClientConnection create() {
+        return (NHttpClientConnection) Proxy.newProxyInstance(
+                TestConnection.class.getClassLoader(),
+                new Class[] {NHttpClientConnection.class}, new TestConnection());
+    }
+
+    public static boolean isShutdown(NHttpClientConnection conn) {
+        return ((TestConnection) Proxy.getInvocationHandler(conn)).shutdown;
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if ("getContext".equals(name)) {
+            return context;
+        } else if ("getMetrics".equals(name)) {
+            return Proxy.newProxyInstance(TestConnection.class.getClassLoader(),
+                    new Class[] {HttpConnectionMetrics.class}, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return defaultValue(method.getReturnType());
+                }
+            });
+        } else if ("shutdown".equals(name) || "close".equals(name)) {
+            shutdown = true;
+            return null;
+        } else if ("isOpen".equals(name)) {
+            return !shutdown;
+        } else if ("equals".equals(name)) {
+            return proxy == args[0];
+        } else if ("hashCode".equals(name)) {
+            return System.identityHashCode(proxy);
+        } else if ("toString".equals(name)) {
+            return "TestConnection@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+        return defaultValue(method.getReturnType());
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == Boolean.TYPE) {
+            return Boolean.FALSE;
+        } else if (type == Integer.TYPE) {
+            return 0;
+        } else if (type == Long.TYPE) {
+            return 0L;
+        }
+        return null;
+    }
+}
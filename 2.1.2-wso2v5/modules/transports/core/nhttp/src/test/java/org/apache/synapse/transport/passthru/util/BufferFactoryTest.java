@@ -0,0 +1,168 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.synapse.transport.passthru.util;
+
+import junit.framework.TestCase;
+import org.apache.http.nio.util.DirectByteBufferAllocator;
+
+import java.nio.ByteBuffer;
+
+public class BufferFactoryTest extends TestCase {
+
+    public void testSizeClassSelection() {
+        BufferFactory factory = new BufferFactory(new int[] {32, 8, 128},
+                new DirectByteBufferAllocator(), 4, 2);
+
+        assertEquals(8, factory.getBuffer().capacity());
+        assertEquals(8, factory.getBuffer(5).capacity());
+        assertEquals(32, factory.getBuffer(9).capacity());
+        assertEquals(128, factory.getBuffer(100).capacity());
+        assertEquals(128, factory.getBuffer(10000).capacity());
+        assertTrue(factory.getBuffer().isDirect());
+    }
+
+    public void testBuffersAreReused() {
+        BufferFactory factory = new BufferFactory(new int[] {8, 32}, null, 4, 2);
+
+        ByteBuffer first = factory.getBuffer(20);
+        first.put((byte) 1);
+        factory.release(first);
+
+        ByteBuffer second = factory.getBuffer(20);
+        assertSame(first, second);
+        assertEquals(0, second.position());
+        assertEquals(1, factory.getHits());
+        assertEquals(1, factory.getMisses());
+        assertEquals(1, factory.getOutstanding());
+    }
+
+    public void testOverflowToGlobalPool() throws Exception {
+        final BufferFactory factory = new BufferFactory(new int[] {8}, null, 2, 1);
+        final ByteBuffer[] buffers = new ByteBuffer[4];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = factory.getBuffer();
+        }
+        for (ByteBuffer buffer : buffers) {
+            factory.release(buffer);
+        }
+        // one buffer is kept by this thread, two go to the shared pool and one is dropped
+        assertEquals(2, factory.getPooled());
+
+        Thread other = new Thread() {
+            public void run() {
+                factory.getBuffer();
+                factory.getBuffer();
+            }
+        };
+        other.start();
+        other.join();
+
+        assertEquals(0, factory.getPooled());
+        assertEquals(2, factory.getHits());
+    }
+
+    public void testLargerClassesAreCachedWithFewerBuffers() {
+        BufferFactory factory = new BufferFactory(new int[] {8, 32}, null, 0, 4);
+        ByteBuffer[] small = new ByteBuffer[4];
+        ByteBuffer[] large = new ByteBuffer[4];
+        for (int i = 0; i < 4; i++) {
+            small[i] = factory.getBuffer();
+            large[i] = factory.getBuffer(32);
+        }
+        for (int i = 0; i < 4; i++) {
+            factory.release(small[i]);
+            factory.release(large[i]);
+        }
+        // four small buffers, but only one large buffer per thread
+        assertEquals(5, factory.getThreadCached());
+        assertEquals(4 * 8 + 32, factory.getThreadCachedBytes());
+
+        factory.getBuffer(32);
+        assertEquals(4, factory.getThreadCached());
+        assertEquals(4 * 8, factory.getThreadCachedBytes());
+    }
+
+    public void testThreadCachesAreBoundedInBytes() throws Exception {
+        final BufferFactory factory = new BufferFactory(new int[] {8}, null, 2, 4, 40);
+        ByteBuffer[] cached = new ByteBuffer[3];
+        for (int i = 0; i < cached.length; i++) {
+            cached[i] = factory.getBuffer();
+        }
+        for (ByteBuffer buffer : cached) {
+            factory.release(buffer);
+        }
+
+        Thread other = new Thread() {
+            public void run() {
+                ByteBuffer[] buffers = new ByteBuffer[4];
+                for (int i = 0; i < buffers.length; i++) {
+                    buffers[i] = factory.getBuffer();
+                }
+                for (ByteBuffer buffer : buffers) {
+                    factory.release(buffer);
+                }
+            }
+        };
+        other.start();
+        other.join();
+
+        // the threads retain at most five buffers together, the rest goes to the shared pool
+        assertEquals(5, factory.getThreadCached());
+        assertEquals(40, factory.getThreadCachedBytes());
+        assertEquals(2, factory.getPooled());
+    }
+
+    public void testTerminatedThreadsAreNotAccounted() throws Exception {
+        final BufferFactory factory = new BufferFactory(new int[] {8}, null, 2, 4, 32);
+        Thread other = new Thread() {
+            public void run() {
+                ByteBuffer[] buffers = new ByteBuffer[4];
+                for (int i = 0; i < buffers.length; i++) {
+                    buffers[i] = factory.getBuffer();
+                }
+                for (ByteBuffer buffer : buffers) {
+                    factory.release(buffer);
+                }
+            }
+        };
+        other.start();
+        other.join();
+        assertEquals(32, factory.getThreadCachedBytes());
+        other = null;
+
+        // the budget of the terminated thread is given back once it has been collected
+        for (int i = 0; i < 50 && factory.getThreadCached() > 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(0, factory.getThreadCached());
+        assertEquals(0, factory.getThreadCachedBytes());
+
+        factory.release(factory.getBuffer());
+        assertEquals(1, factory.getThreadCached());
+        assertEquals(0, factory.getPooled());
+    }
+
+    public void testForeignBuffersAreNotPooled() {
+        BufferFactory factory = new BufferFactory(new int[] {8}, null, 2, 0);
+        factory.release(ByteBuffer.allocate(16));
+        assertEquals(0, factory.getPooled());
+    }
+}
@@ -0,0 +1,255 @@
+/*
+*  Licensed to the Apache Software Foundation (ASF) under one
+*  or more contributor license agreements.  See the NOTICE file
+*  distributed with this work for additional information
+*  regarding copyright ownership.  The ASF licenses this file
+*  to you under the Apache License, Version 2.0 (the
+*  "License"); you may not use this file except in compliance
+*  with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*  Unless required by applicable law or agreed to in writing,
+*  software distributed under the License is distributed on an
+*   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+*  KIND, either express or implied.  See the License for the
+*  specific language governing permissions and limitations
+*  under the License.
+*/
+package org.apache.synapse.transport.vfs;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Appends messages to a file of the local file system through a channel kept open between
+ * messages. Messages are collected in a buffer which is written to the file when it is full, and
+ * at the latest after the flush interval, so that a high rate of small messages costs a write
+ * per batch instead of an open, a write and a close per message. The file is rotated, by
+ * renaming it with a timestamp suffix, once it has grown beyond the rotate size or has been
+ * written for longer than the rotate interval.
+ *
+ * A writer must be the only writer of its file. Buffered messages not yet written are lost if
+ * the process ends abruptly.
+ */
+class BufferedFileWriter {
+
+    private static final Log log = LogFactory.getLog(BufferedFileWriter.class);
+
+    private final File file;
+    private final long flushInterval;
+    private final long rotateSize;
+    private final long rotateInterval;
+    private final ByteBuffer buffer;
+
+    private FileChannel channel;
+    /** bytes written to the current file */
+    private long fileSize;
+    /** time the current file has been opened */
+    private long openTime;
+    private long lastFlushTime;
+    private long lastAppendTime;
+    private boolean closed;
+    /** whether the writer has been closed for being idle, rather than on an error or shutdown */
+    private boolean closedIdle;
+
+    /**
+     * @param file           the file messages are appended to
+     * @param flushSize      bytes buffered before they are written
+     * @param flushInterval  milliseconds after which buffered bytes are written
+     * @param rotateSize     bytes after which the file is rotated, or 0 to never rotate by size
+     * @param rotateInterval milliseconds after which the file is rotated, or 0 to never rotate
+     *                       by time
+     */
+    BufferedFileWriter(File file, int flushSize, long flushInterval, long rotateSize,
+                       long rotateInterval) {
+        this.file = file;
+        this.flushInterval = flushInterval;
+        this.rotateSize = rotateSize;
+        this.rotateInterval = rotateInterval;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(flushSize, 1024));
+        this.lastFlushTime = System.currentTimeMillis();
+        this.lastAppendTime = lastFlushTime;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Append a message to the file
+     *
+     * @param message the formatted message
+     * @throws IOException if the file can not be written, the writer is closed then
+     */
+    synchronized void append(byte[] message) throws IOException {
+        if (closed) {
+            throw new IOException("The writer of the file " + file + " has been closed");
+        }
+        try {
+            long now = System.currentTimeMillis();
+            lastAppendTime = now;
+            if (channel == null) {
+                open(now);
+            } else if (isRotationDue(message.length, now)) {
+                rotate(now);
+            }
+
+            if (message.length > buffer.remaining()) {
+                writeBuffer();
+            }
+            if (message.length > buffer.capacity()) {
+                write(ByteBuffer.wrap(message));
+            } else {
+                buffer.put(message);
+            }
+
+            if (now - lastFlushTime >= flushInterval) {
+                flush();
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Write the buffered messages to the file, and rotate it if it has been written for longer
+     * than the rotate interval
+     *
+     * @throws IOException if the file can not be written, the writer is closed then
+     */
+    synchronized void flush() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            writeBuffer();
+            lastFlushTime = System.currentTimeMillis();
+            if (rotateInterval > 0 && fileSize > 0 && lastFlushTime - openTime >= rotateInterval) {
+                rotate(lastFlushTime);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Write the buffered messages and close the file
+     */
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (channel != null) {
+            try {
+                writeBuffer();
+            } catch (IOException e) {
+                log.error("Error writing the buffered messages to the file : " + file, e);
+            }
+            closeChannel();
+        }
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Close the writer if nothing has been appended to it for the given time
+     *
+     * @param idleTimeout milliseconds without a message after which the writer is closed
+     * @return true if the writer has been closed by this call
+     */
+    synchronized boolean closeIfIdle(long idleTimeout) {
+        if (closed || System.currentTimeMillis() - lastAppendTime < idleTimeout) {
+            return false;
+        }
+        closedIdle = true;
+        close();
+        return true;
+    }
+
+    /**
+     * @return true if the writer has been closed for being idle, in which case a message may
+     *         be appended to the file through a new writer
+     */
+    synchronized boolean isClosedIdle() {
+        return closedIdle;
+    }
+
+    private boolean isRotationDue(int length, long now) {
+        long size = fileSize + buffer.position();
+        if (size == 0) {
+            return false;
+        }
+        return (rotateSize > 0 && size + length > rotateSize) ||
+                (rotateInterval > 0 && now - openTime >= rotateInterval);
+    }
+
+    private void open(long now) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create the directory : " + parent);
+        }
+        channel = new FileOutputStream(file, true).getChannel();
+        fileSize = channel.size();
+        openTime = now;
+    }
+
+    private void rotate(long now) throws IOException {
+        writeBuffer();
+        closeChannel();
+        String rotatedPath = file.getPath() + "." +
+                new SimpleDateFormat("yyyyMMddHHmmssSSS").format(new Date(now));
+        File rotated = new File(rotatedPath);
+        for (int i = 1; rotated.exists(); i++) {
+            rotated = new File(rotatedPath + "_" + i);
+        }
+        if (!file.renameTo(rotated)) {
+            log.warn("Unable to rotate the file : " + file + " to : " + rotated +
+                    ", appending to the same file");
+        } else if (log.isDebugEnabled()) {
+            log.debug("Rotated the file : " + file + " to : " + rotated);
+        }
+        open(now);
+    }
+
+    private void writeBuffer() throws IOException {
+        if (buffer.position() > 0) {
+            buffer.flip();
+            write(buffer);
+            buffer.clear();
+        }
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            fileSize += channel.write(bytes);
+        }
+    }
+
+    private void closeChannel() {
+        buffer.clear();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Error closing the file : " + file, e);
+        }
+        channel = null;
+    }
+}
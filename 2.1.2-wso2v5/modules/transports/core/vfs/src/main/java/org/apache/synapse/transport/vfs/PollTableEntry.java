@@ -84,6 +84,17 @@ public class PollTableEntry extends AbstractPollTableEntry {
     private Integer fileProcessingInterval;
     
     private Integer fileProcessingCount;
+
+    private boolean parallelProcessing;
+
+    private int maxInFlightFiles = VFSConstants.DEFAULT_MAX_IN_FLIGHT_FILES;
+
+    private boolean watchDirectory;
+
+    private RecordSplitter recordSplitter;
+
+    /** last modified time of the directory when it was last found without files to process */
+    private volatile long unchangedDirectoryTime = -1;
     
     private static final Log log = LogFactory.getLog(PollTableEntry.class);
     
@@ -156,6 +167,30 @@ public class PollTableEntry extends AbstractPollTableEntry {
 		return fileProcessingCount;
 	}
 
+    public boolean isParallelProcessing() {
+        return parallelProcessing;
+    }
+
+    public int getMaxInFlightFiles() {
+        return maxInFlightFiles;
+    }
+
+    public boolean isWatchDirectory() {
+        return watchDirectory;
+    }
+
+    public RecordSplitter getRecordSplitter() {
+        return recordSplitter;
+    }
+
+    public long getUnchangedDirectoryTime() {
+        return unchangedDirectoryTime;
+    }
+
+    public void setUnchangedDirectoryTime(long unchangedDirectoryTime) {
+        this.unchangedDirectoryTime = unchangedDirectoryTime;
+    }
+
 	private void setMoveAfterProcess(String moveAfterProcess) {
         if (moveAfterProcess == null) {
             this.moveAfterProcess = null;
@@ -339,6 +374,32 @@ public class PollTableEntry extends AbstractPollTableEntry {
             		log.warn("VFS File Processing Count not set correctly. Current value is : " + strFileProcessingCount , nfe);
             	}
             }                        
+
+            parallelProcessing = Boolean.parseBoolean(ParamUtils.getOptionalParam(params,
+                    VFSConstants.TRANSPORT_FILE_PARALLEL_PROCESSING));
+
+            String strMaxInFlightFiles = ParamUtils.getOptionalParam(params,
+                    VFSConstants.TRANSPORT_FILE_MAX_IN_FLIGHT);
+            maxInFlightFiles = VFSConstants.DEFAULT_MAX_IN_FLIGHT_FILES;
+            if (strMaxInFlightFiles != null) {
+                try {
+                    maxInFlightFiles = Integer.parseInt(strMaxInFlightFiles);
+                } catch (NumberFormatException nfe) {
+                    log.warn("VFS maximum in flight files not set correctly. Current value is : " +
+                            strMaxInFlightFiles, nfe);
+                }
+                if (maxInFlightFiles < 1) {
+                    maxInFlightFiles = VFSConstants.DEFAULT_MAX_IN_FLIGHT_FILES;
+                }
+            }
+
+            watchDirectory = Boolean.parseBoolean(ParamUtils.getOptionalParam(params,
+                    VFSConstants.TRANSPORT_FILE_WATCH_DIRECTORY));
+            unchangedDirectoryTime = -1;
+
+            String recordSplitting = ParamUtils.getOptionalParam(params,
+                    VFSConstants.TRANSPORT_FILE_RECORD_SPLITTING);
+            recordSplitter = recordSplitting != null ? RecordSplitter.create(recordSplitting) : null;
             
             return super.loadConfiguration(params);
         }
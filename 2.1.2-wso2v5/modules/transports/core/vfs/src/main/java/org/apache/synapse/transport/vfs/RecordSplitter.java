@@ -0,0 +1,250 @@
+/*
+*  Licensed to the Apache Software Foundation (ASF) under one
+*  or more contributor license agreements.  See the NOTICE file
+*  distributed with this work for additional information
+*  regarding copyright ownership.  The ASF licenses this file
+*  to you under the Apache License, Version 2.0 (the
+*  "License"); you may not use this file except in compliance
+*  with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*  Unless required by applicable law or agreed to in writing,
+*  software distributed under the License is distributed on an
+*   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+*  KIND, either express or implied.  See the License for the
+*  specific language governing permissions and limitations
+*  under the License.
+*/
+package org.apache.synapse.transport.vfs;
+
+import org.apache.axis2.AxisFault;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * Splits the content of a file into records while reading it, so that a large file is processed
+ * as a sequence of small messages instead of being loaded as a single message. The supported
+ * splitting modes are
+ *
+ * line                  - each line is a record
+ * csv                   - each line is a record, except for line breaks within quoted values
+ * xml:{local name}      - each element with the given local name is a record
+ */
+public abstract class RecordSplitter {
+
+    public static final String LINE = "line";
+    public static final String CSV = "csv";
+    public static final String XML_PREFIX = "xml:";
+
+    /**
+     * Receives the records of a file in the order they appear in the file
+     */
+    public interface RecordHandler {
+
+        /**
+         * @param record   the record
+         * @param charset  the character encoding of the record
+         * @param number   the number of the record in the file, starting from 1
+         * @throws AxisFault if the record can not be processed, which stops the splitting
+         */
+        void handleRecord(byte[] record, String charset, int number) throws AxisFault;
+    }
+
+    /**
+     * @param mode the splitting mode
+     * @return the splitter of the given mode
+     * @throws AxisFault if the mode is not supported
+     */
+    public static RecordSplitter create(String mode) throws AxisFault {
+        String m = mode.trim();
+        if (LINE.equalsIgnoreCase(m)) {
+            return new LineSplitter(false);
+        } else if (CSV.equalsIgnoreCase(m)) {
+            return new LineSplitter(true);
+        } else if (m.startsWith(XML_PREFIX) && m.length() > XML_PREFIX.length()) {
+            return new XMLElementSplitter(m.substring(XML_PREFIX.length()).trim());
+        }
+        throw new AxisFault("Unsupported record splitting mode : " + mode);
+    }
+
+    /**
+     * Read the given stream, handing over each record to the handler as soon as it is read
+     *
+     * @param in      the content of the file
+     * @param charset the character encoding of the content, or null for UTF-8
+     * @param handler receives the records
+     * @return the number of records
+     * @throws IOException if the content can not be read or split
+     * @throws AxisFault   if the handler fails
+     */
+    public abstract int split(InputStream in, String charset, RecordHandler handler)
+            throws IOException;
+
+    private static class LineSplitter extends RecordSplitter {
+
+        /** Whether line breaks inside double quoted values are part of the record */
+        private final boolean quoted;
+
+        LineSplitter(boolean quoted) {
+            this.quoted = quoted;
+        }
+
+        public int split(InputStream in, String charset, RecordHandler handler)
+                throws IOException {
+            if (charset == null) {
+                charset = "UTF-8";
+            }
+            Reader reader = new BufferedReader(new InputStreamReader(in, charset));
+            StringBuilder record = new StringBuilder(256);
+            boolean inQuotes = false;
+            int count = 0;
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (quoted && c == '"') {
+                    inQuotes = !inQuotes;
+                } else if ((c == '\n' || c == '\r') && !inQuotes) {
+                    if (record.length() > 0) {
+                        handler.handleRecord(record.toString().getBytes(charset), charset, ++count);
+                        record.setLength(0);
+                    }
+                    continue;
+                }
+                record.append((char) c);
+            }
+            if (record.length() > 0) {
+                handler.handleRecord(record.toString().getBytes(charset), charset, ++count);
+            }
+            return count;
+        }
+    }
+
+    private static class XMLElementSplitter extends RecordSplitter {
+
+        private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+        static {
+            // declares the namespaces a record uses which are declared by its ancestors
+            outputFactory.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, Boolean.TRUE);
+        }
+
+        private final String localName;
+
+        XMLElementSplitter(String localName) {
+            this.localName = localName;
+        }
+
+        public int split(InputStream in, String charset, RecordHandler handler)
+                throws IOException {
+            int count = 0;
+            try {
+                XMLStreamReader reader = charset != null ?
+                        inputFactory.createXMLStreamReader(in, charset) :
+                        inputFactory.createXMLStreamReader(in);
+                try {
+                    // records are written in the encoding of the file
+                    String recordCharset = charset != null ? charset : "UTF-8";
+                    ByteArrayOutputStream record = new ByteArrayOutputStream(1024);
+                    while (reader.hasNext()) {
+                        if (reader.next() == XMLStreamConstants.START_ELEMENT &&
+                                localName.equals(reader.getLocalName())) {
+                            record.reset();
+                            XMLStreamWriter writer = outputFactory.createXMLStreamWriter(
+                                    record, recordCharset);
+                            copyElement(reader, writer);
+                            writer.close();
+                            handler.handleRecord(record.toByteArray(), recordCharset, ++count);
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            } catch (XMLStreamException e) {
+                IOException ioe = new IOException("Error splitting the XML content into records");
+                ioe.initCause(e);
+                throw ioe;
+            }
+            return count;
+        }
+
+        /**
+         * Copy the element at which the reader is positioned, leaving the reader at its end
+         */
+        private static void copyElement(XMLStreamReader reader, XMLStreamWriter writer)
+                throws XMLStreamException {
+            int depth = 0;
+            do {
+                switch (reader.getEventType()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        writeStartElement(reader, writer);
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        depth--;
+                        writer.writeEndElement();
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.SPACE:
+                        writer.writeCharacters(reader.getTextCharacters(),
+                                reader.getTextStart(), reader.getTextLength());
+                        break;
+                    case XMLStreamConstants.CDATA:
+                        writer.writeCData(reader.getText());
+                        break;
+                    case XMLStreamConstants.COMMENT:
+                        writer.writeComment(reader.getText());
+                        break;
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+                        break;
+                    default:
+                        break;
+                }
+                if (depth == 0) {
+                    return;
+                }
+                reader.next();
+            } while (true);
+        }
+
+        private static void writeStartElement(XMLStreamReader reader, XMLStreamWriter writer)
+                throws XMLStreamException {
+            String ns = reader.getNamespaceURI();
+            String prefix = reader.getPrefix();
+            writer.writeStartElement(prefix != null ? prefix : "", reader.getLocalName(),
+                    ns != null ? ns : "");
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                String nsPrefix = reader.getNamespacePrefix(i);
+                if (nsPrefix == null || nsPrefix.length() == 0) {
+                    writer.writeDefaultNamespace(reader.getNamespaceURI(i));
+                } else {
+                    writer.writeNamespace(nsPrefix, reader.getNamespaceURI(i));
+                }
+            }
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                String attributeNs = reader.getAttributeNamespace(i);
+                String attributePrefix = reader.getAttributePrefix(i);
+                if (attributeNs == null || attributeNs.length() == 0) {
+                    writer.writeAttribute(reader.getAttributeLocalName(i),
+                            reader.getAttributeValue(i));
+                } else {
+                    writer.writeAttribute(attributePrefix != null ? attributePrefix : "",
+                            attributeNs, reader.getAttributeLocalName(i),
+                            reader.getAttributeValue(i));
+                }
+            }
+        }
+    }
+}
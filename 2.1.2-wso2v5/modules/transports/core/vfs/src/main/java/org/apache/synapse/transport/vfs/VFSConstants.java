@@ -59,6 +59,29 @@ public final class VFSConstants {
     public static final String RECONNECT_TIMEOUT = "transport.vfs.ReconnectTimeout";
     public static final String APPEND = "transport.vfs.Append";
 
+    /**
+     * Messages appended to a local file are buffered by a writer kept open for the file, and
+     * written in batches
+     */
+    public static final String BUFFERED_APPEND = "transport.vfs.BufferedAppend";
+    /** Milliseconds after which buffered messages are written to the file */
+    public static final String FLUSH_INTERVAL = "transport.vfs.FlushInterval";
+    /** Bytes of buffered messages which are written to the file at once */
+    public static final String FLUSH_SIZE = "transport.vfs.FlushSize";
+    /** Bytes after which a buffered file is rotated */
+    public static final String ROTATE_SIZE = "transport.vfs.RotateSize";
+    /** Milliseconds after which a buffered file is rotated */
+    public static final String ROTATE_INTERVAL = "transport.vfs.RotateInterval";
+    /**
+     * Milliseconds without a message after which the writer of a buffered file is closed, or 0
+     * to keep it open until the transport is stopped
+     */
+    public static final String IDLE_TIMEOUT = "transport.vfs.IdleTimeout";
+
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+    public static final int DEFAULT_FLUSH_SIZE = 64 * 1024;
+    public static final long DEFAULT_IDLE_TIMEOUT = 5 * 60 * 1000;
+
     /**
     * If a rename/move operation failed, we'll keep track of a list in a text file and this will
      * provide the ability to configure that property file name
@@ -113,7 +136,41 @@ public final class VFSConstants {
      * This specify the file count that will be processed in a cycle/batch 
      * */    
     public static final String TRANSPORT_FILE_COUNT = "transport.vfs.FileProcessCount";
-    
+
+    /**
+     * This specify whether the files of a directory are processed in parallel by the file processor
+     * threads of the transport, instead of one after the other by the polling thread
+     */
+    public static final String TRANSPORT_FILE_PARALLEL_PROCESSING = "transport.vfs.ParallelProcessing";
+    /**
+     * This specify the maximum number of files of a directory processed at the same time, when
+     * processing files in parallel
+     */
+    public static final String TRANSPORT_FILE_MAX_IN_FLIGHT = "transport.vfs.MaxInFlightFiles";
+
+    public static final int DEFAULT_MAX_IN_FLIGHT_FILES = 10;
+
+    /**
+     * This specify, at the transport level, the number of threads processing the files of all the
+     * directories processed in parallel. When they are all busy the polling thread processes the
+     * next file itself
+     */
+    public static final String TRANSPORT_FILE_PARALLEL_THREADS = "transport.vfs.ParallelProcessingThreads";
+
+    public static final int DEFAULT_PARALLEL_THREADS = 10;
+
+    /**
+     * This specify whether a local directory is listed only when it has changed since it was
+     * last found without any file to process
+     */
+    public static final String TRANSPORT_FILE_WATCH_DIRECTORY = "transport.vfs.WatchDirectory";
+
+    /**
+     * This specify how a file is split into records, each processed as a separate message :
+     * line, csv or xml:{element local name}
+     */
+    public static final String TRANSPORT_FILE_RECORD_SPLITTING = "transport.vfs.RecordSplitting";
+
     public static final String FAILED_RECORD_DELIMITER = " ";
 
     public static final int DEFAULT_MAX_RETRY_COUNT = 3;
@@ -125,4 +182,5 @@ public final class VFSConstants {
     public static final String FILE_NAME = "FILE_NAME";
     public static final String FILE_LENGTH = "FILE_LENGTH";
     public static final String LAST_MODIFIED = "LAST_MODIFIED";
+    public static final String RECORD_NUMBER = "RECORD_NUMBER";
 }
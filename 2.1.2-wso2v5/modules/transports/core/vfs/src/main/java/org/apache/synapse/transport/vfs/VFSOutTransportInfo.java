@@ -45,9 +45,20 @@ public class VFSOutTransportInfo implements OutTransportInfo {
     private long reconnectTimeout = 30000;
     private boolean append;
     private boolean fileLocking;
+    private boolean bufferedAppend;
+    private long flushInterval = VFSConstants.DEFAULT_FLUSH_INTERVAL;
+    private int flushSize = VFSConstants.DEFAULT_FLUSH_SIZE;
+    private long rotateSize;
+    private long rotateInterval;
+    private long idleTimeout = VFSConstants.DEFAULT_IDLE_TIMEOUT;
 
     private static final String[] uriParamsToDelete = {VFSConstants.APPEND+"=true", VFSConstants.APPEND+"=false"};
 
+    /** Parameters of the sender which are removed from the URI of the file */
+    private static final String[] senderParams = {VFSConstants.BUFFERED_APPEND,
+            VFSConstants.FLUSH_INTERVAL, VFSConstants.FLUSH_SIZE, VFSConstants.ROTATE_SIZE,
+            VFSConstants.ROTATE_INTERVAL, VFSConstants.IDLE_TIMEOUT};
+
     /**
      * Constructs the VFSOutTransportInfo containing the information about the file to which the
      * response has to be submitted to.
@@ -61,7 +72,7 @@ public class VFSOutTransportInfo implements OutTransportInfo {
             String queryParams = UriParser.extractQueryString(new StringBuilder(vfsURI));
 
             //Lets get rid of unwanted query params and clean the URI
-            if(null != queryParams && !"".equals(queryParams) && vfsURI.contains(VFSConstants.APPEND)) {
+            if(null != queryParams && !"".equals(queryParams) && containsSenderParams(vfsURI)) {
                this.outFileURI = cleanURI(vfsURI, queryParams, outFileURI);
             } else {
                 this.outFileURI = vfsURI;
@@ -101,11 +112,56 @@ public class VFSOutTransportInfo implements OutTransportInfo {
             append = Boolean.parseBoolean(strAppend);
         }
 
+        if (properties.containsKey(VFSConstants.BUFFERED_APPEND)) {
+            bufferedAppend = Boolean.parseBoolean(properties.get(VFSConstants.BUFFERED_APPEND));
+        }
+        if (properties.containsKey(VFSConstants.FLUSH_INTERVAL)) {
+            String strFlushInterval = properties.get(VFSConstants.FLUSH_INTERVAL);
+            try {
+                flushInterval = Long.parseLong(strFlushInterval);
+            } catch (NumberFormatException nfe) {
+                log.warn("VFS Flush Interval not set correctly. Current value is : " + strFlushInterval, nfe);
+            }
+        }
+        if (properties.containsKey(VFSConstants.FLUSH_SIZE)) {
+            String strFlushSize = properties.get(VFSConstants.FLUSH_SIZE);
+            try {
+                flushSize = Integer.parseInt(strFlushSize);
+            } catch (NumberFormatException nfe) {
+                log.warn("VFS Flush Size not set correctly. Current value is : " + strFlushSize, nfe);
+            }
+        }
+        if (properties.containsKey(VFSConstants.ROTATE_SIZE)) {
+            String strRotateSize = properties.get(VFSConstants.ROTATE_SIZE);
+            try {
+                rotateSize = Long.parseLong(strRotateSize);
+            } catch (NumberFormatException nfe) {
+                log.warn("VFS Rotate Size not set correctly. Current value is : " + strRotateSize, nfe);
+            }
+        }
+        if (properties.containsKey(VFSConstants.ROTATE_INTERVAL)) {
+            String strRotateInterval = properties.get(VFSConstants.ROTATE_INTERVAL);
+            try {
+                rotateInterval = Long.parseLong(strRotateInterval);
+            } catch (NumberFormatException nfe) {
+                log.warn("VFS Rotate Interval not set correctly. Current value is : " + strRotateInterval, nfe);
+            }
+        }
+        if (properties.containsKey(VFSConstants.IDLE_TIMEOUT)) {
+            String strIdleTimeout = properties.get(VFSConstants.IDLE_TIMEOUT);
+            try {
+                idleTimeout = Long.parseLong(strIdleTimeout);
+            } catch (NumberFormatException nfe) {
+                log.warn("VFS Idle Timeout not set correctly. Current value is : " + strIdleTimeout, nfe);
+            }
+        }
+
         if (log.isDebugEnabled()) {
             log.debug("Using the fileURI        : " + this.outFileURI);
             log.debug("Using the maxRetryCount  : " + maxRetryCount);
             log.debug("Using the reconnectionTimeout : " + reconnectTimeout);
             log.debug("Using the append         : " + append);
+            log.debug("Using the buffered append : " + bufferedAppend);
             log.debug("File locking             : " + (this.fileLocking ? "ON" : "OFF"));
         }
     }
@@ -130,9 +186,15 @@ public class VFSOutTransportInfo implements OutTransportInfo {
         StringBuilder newQueryParams = new StringBuilder("");
         if(queryParamsArray.length > 0) {
             for(String param : queryParamsArray) {
+                if (isSenderParam(param)) {
+                    continue;
+                }
                 newQueryParams.append(param);
                 newQueryParams.append("&");
             }
+            if (newQueryParams.length() == 0) {
+                return vfsURI;
+            }
             newQueryParams = newQueryParams.deleteCharAt(newQueryParams.length()-1);
             if(!"".equals(newQueryParams)) {
                 return vfsURI + "?" + newQueryParams;
@@ -144,6 +206,29 @@ public class VFSOutTransportInfo implements OutTransportInfo {
         }
     }
 
+    private static boolean containsSenderParams(String vfsURI) {
+        if (vfsURI.contains(VFSConstants.APPEND)) {
+            return true;
+        }
+        for (String param : senderParams) {
+            if (vfsURI.contains(param)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSenderParam(String param) {
+        int index = param.indexOf('=');
+        String name = index > 0 ? param.substring(0, index) : param;
+        for (String senderParam : senderParams) {
+            if (senderParam.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void setContentType(String contentType) {
         this.contentType = contentType;
     }
@@ -187,4 +272,28 @@ public class VFSOutTransportInfo implements OutTransportInfo {
     public boolean isFileLockingEnabled() {
         return fileLocking;
     }
+
+    public boolean isBufferedAppend() {
+        return bufferedAppend;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public int getFlushSize() {
+        return flushSize;
+    }
+
+    public long getRotateSize() {
+        return rotateSize;
+    }
+
+    public long getRotateInterval() {
+        return rotateInterval;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
 }
\ No newline at end of file
@@ -39,13 +39,32 @@ import org.apache.commons.vfs2.FileSystemManager;
 import org.apache.commons.vfs2.FileType;
 import org.apache.commons.vfs2.impl.StandardFileSystemManager;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * axis2.xml - transport definition
  *  <transportSender name="file" class="org.apache.synapse.transport.vfs.VFSTransportSender">
  *      <parameter name="transport.vfs.Locking">enable|disable</parameter> ?
  *  </transportSender>
+ *
+ * Messages appended to a local file at a high rate can be buffered by a writer kept open for
+ * the file, which writes them in batches and rotates the file by size or time. The writer is
+ * the only writer of the file, so the lock of the file is acquired once when the writer is
+ * opened, instead of once per message. A writer which has not been written to for the idle
+ * timeout is closed, and reopened by the next message for its file
+ *  vfs:file:///logs/feed.log?transport.vfs.BufferedAppend=true
+ *      &transport.vfs.FlushInterval=1000&transport.vfs.FlushSize=65536
+ *      &transport.vfs.RotateSize=104857600&transport.vfs.RotateInterval=86400000
+ *      &transport.vfs.IdleTimeout=300000
  */
 public class VFSTransportSender extends AbstractTransportSender implements ManagementSupport {
 
@@ -62,6 +81,13 @@ public class VFSTransportSender extends AbstractTransportSender implements Manag
      */
     private boolean globalFileLockingFlag = true;
 
+    /** The open buffered writers by the path of their file, idle writers are closed and removed */
+    private final ConcurrentMap<String, BufferedTarget> bufferedTargets =
+            new ConcurrentHashMap<String, BufferedTarget>();
+
+    /** Writes the messages buffered for a file once its flush interval has elapsed */
+    private ScheduledExecutorService flushScheduler;
+
     /**
      * The public constructor
      */
@@ -97,6 +123,25 @@ public class VFSTransportSender extends AbstractTransportSender implements Manag
         }
     }
 
+    /**
+     * Write the buffered messages and close the files kept open
+     */
+    public void stop() {
+        for (String path : bufferedTargets.keySet()) {
+            BufferedTarget target = bufferedTargets.get(path);
+            if (target != null) {
+                closeBufferedTarget(path, target);
+            }
+        }
+        synchronized (this) {
+            if (flushScheduler != null) {
+                flushScheduler.shutdown();
+                flushScheduler = null;
+            }
+        }
+        super.stop();
+    }
+
     /**
      * Send the given message over the VFS transport
      *
@@ -158,7 +203,14 @@ public class VFSTransportSender extends AbstractTransportSender implements Manag
                     }
                 }
                 
-                if (replyFile.exists()) {
+                File localFile;
+                if (vfsOutInfo.isBufferedAppend() && (!replyFile.exists() ||
+                        replyFile.getType() == FileType.FILE) &&
+                        (localFile = VFSUtils.getLocalFile(replyFile)) != null) {
+
+                    appendBuffered(localFile, replyFile, msgCtx, vfsOutInfo);
+
+                } else if (replyFile.exists()) {
 
                     if (replyFile.getType() == FileType.FOLDER) {
                         // we need to write a file containing the message to this folder
@@ -276,6 +328,132 @@ public class VFSTransportSender extends AbstractTransportSender implements Manag
         }
     }
 
+    /**
+     * Append the message to a local file through the writer kept open for the file
+     */
+    private void appendBuffered(File file, FileObject replyFile, MessageContext msgContext,
+                                VFSOutTransportInfo vfsOutInfo) throws AxisFault {
+
+        String path = file.getAbsolutePath();
+        MessageFormatter messageFormatter = getMessageFormatter(msgContext);
+        OMOutputFormat format = BaseUtils.getOMOutputFormat(msgContext);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try {
+            messageFormatter.writeTo(msgContext, format, os, true);
+        } catch (IOException e) {
+            metrics.incrementFaultsSending();
+            handleException("IO Error while appending to file : " + path, e);
+        }
+
+        while (true) {
+            BufferedTarget target = bufferedTargets.get(path);
+            if (target == null) {
+                target = openBufferedTarget(path, file, replyFile, vfsOutInfo);
+            }
+            try {
+                target.writer.append(os.toByteArray());
+                break;
+            } catch (IOException e) {
+                closeBufferedTarget(path, target);
+                if (!target.writer.isClosedIdle()) {
+                    metrics.incrementFaultsSending();
+                    handleException("IO Error while appending to file : " + path, e);
+                }
+                // the writer has been closed for being idle in the meantime, append the
+                // message through a new one
+            }
+        }
+
+        // update metrics
+        metrics.incrementMessagesSent(msgContext);
+        metrics.incrementBytesSent(msgContext, os.size());
+    }
+
+    private synchronized BufferedTarget openBufferedTarget(final String path, File file,
+                                                           FileObject replyFile,
+                                                           VFSOutTransportInfo vfsOutInfo)
+            throws AxisFault {
+
+        BufferedTarget target = bufferedTargets.get(path);
+        if (target != null) {
+            return target;
+        }
+
+        FileObject lockedFile = null;
+        if (vfsOutInfo.isFileLockingEnabled()) {
+            acquireLockForSending(replyFile, vfsOutInfo);
+            lockedFile = replyFile;
+        }
+
+        final BufferedTarget newTarget = new BufferedTarget(new BufferedFileWriter(file,
+                vfsOutInfo.getFlushSize(), vfsOutInfo.getFlushInterval(),
+                vfsOutInfo.getRotateSize(), vfsOutInfo.getRotateInterval()), lockedFile);
+
+        if (flushScheduler == null) {
+            flushScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "vfs-sender-flush");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        long interval = Math.max(vfsOutInfo.getFlushInterval(), 1);
+        final long idleTimeout = vfsOutInfo.getIdleTimeout();
+        newTarget.flushTask = flushScheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                if (idleTimeout > 0 && newTarget.writer.closeIfIdle(idleTimeout)) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Closed the idle buffered writer of the file : " + path);
+                    }
+                    closeBufferedTarget(path, newTarget);
+                    return;
+                }
+                try {
+                    newTarget.writer.flush();
+                } catch (IOException e) {
+                    log.error("Error writing the buffered messages to the file : " + path, e);
+                    closeBufferedTarget(path, newTarget);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+
+        bufferedTargets.put(path, newTarget);
+        if (log.isDebugEnabled()) {
+            log.debug("Opened a buffered writer for the file : " + path);
+        }
+        return newTarget;
+    }
+
+    private void closeBufferedTarget(String path, BufferedTarget target) {
+        if (!bufferedTargets.remove(path, target)) {
+            return;
+        }
+        if (target.flushTask != null) {
+            target.flushTask.cancel(false);
+        }
+        target.writer.close();
+        if (target.lockedFile != null) {
+            VFSUtils.releaseLock(fsManager, target.lockedFile);
+        }
+    }
+
+    /**
+     * A local file written through a buffered writer, and the file whose lock is held while
+     * the writer is open
+     */
+    private static class BufferedTarget {
+
+        private final BufferedFileWriter writer;
+        private final FileObject lockedFile;
+        private ScheduledFuture<?> flushTask;
+
+        BufferedTarget(BufferedFileWriter writer, FileObject lockedFile) {
+            this.writer = writer;
+            this.lockedFile = lockedFile;
+        }
+    }
+
     private void acquireLockForSending(FileObject responseFile, VFSOutTransportInfo vfsOutInfo)
             throws AxisFault {
         
@@ -29,9 +29,12 @@ import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileSystemManager;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
@@ -205,6 +208,25 @@ public class VFSUtils extends BaseUtils {
         return url;
     }
 
+    /**
+     * Get the file of the local file system a file object refers to, to access it directly
+     *
+     * @param fo the file object
+     * @return the local file or null if the file object is not on the local file system
+     */
+    public static File getLocalFile(FileObject fo) {
+        if (!"file".equals(fo.getName().getScheme())) {
+            return null;
+        }
+        try {
+            return new File(new URI(fo.getName().getURI()));
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     public static String getSystemTime(String dateFormat) {
         return new SimpleDateFormat(dateFormat).format(new Date());
     }
@@ -0,0 +1,139 @@
+/*
+*  Licensed to the Apache Software Foundation (ASF) under one
+*  or more contributor license agreements.  See the NOTICE file
+*  distributed with this work for additional information
+*  regarding copyright ownership.  The ASF licenses this file
+*  to you under the Apache License, Version 2.0 (the
+*  "License"); you may not use this file except in compliance
+*  with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*  Unless required by applicable law or agreed to in writing,
+*  software distributed under the License is distributed on an
+*   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+*  KIND, either express or implied.  See the License for the
+*  specific language governing permissions and limitations
+*  under the License.
+*/
+package org.apache.synapse.transport.vfs;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class BufferedFileWriterTest extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = new File(System.getProperty("java.io.tmpdir"),
+                "vfs-buffered-" + System.currentTimeMillis());
+        assertTrue(dir.mkdirs());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    public void testBuffering() throws Exception {
+        File file = new File(dir, "feed.log");
+        BufferedFileWriter writer = new BufferedFileWriter(file, 1024, 60000, 0, 0);
+        writer.append("first\n".getBytes("UTF-8"));
+        writer.append("second\n".getBytes("UTF-8"));
+        // nothing is written before the flush
+        assertEquals(0, file.length());
+        writer.flush();
+        assertEquals("first\nsecond\n", read(file));
+
+        // messages larger than the buffer are written as they come
+        byte[] large = new byte[4096];
+        writer.append(large);
+        assertEquals(13 + large.length, file.length());
+
+        writer.append("last\n".getBytes("UTF-8"));
+        writer.close();
+        assertTrue(read(file).endsWith("last\n"));
+        try {
+            writer.append("closed".getBytes("UTF-8"));
+            fail("Appended to a closed writer");
+        } catch (IOException expected) {
+        }
+    }
+
+    public void testAppendsToExistingFile() throws Exception {
+        File file = new File(dir, "feed.log");
+        BufferedFileWriter writer = new BufferedFileWriter(file, 1024, 60000, 0, 0);
+        writer.append("a".getBytes("UTF-8"));
+        writer.close();
+        writer = new BufferedFileWriter(file, 1024, 60000, 0, 0);
+        writer.append("b".getBytes("UTF-8"));
+        writer.close();
+        assertEquals("ab", read(file));
+    }
+
+    public void testSizeRotation() throws Exception {
+        File file = new File(dir, "feed.log");
+        BufferedFileWriter writer = new BufferedFileWriter(file, 1024, 60000, 10, 0);
+        for (int i = 0; i < 5; i++) {
+            writer.append("12345\n".getBytes("UTF-8"));
+        }
+        writer.close();
+        File[] files = dir.listFiles();
+        assertEquals(5, files.length);
+        for (File f : files) {
+            assertEquals("12345\n", read(f));
+        }
+    }
+
+    public void testTimeRotation() throws Exception {
+        File file = new File(dir, "feed.log");
+        BufferedFileWriter writer = new BufferedFileWriter(file, 1024, 60000, 0, 50);
+        writer.append("one\n".getBytes("UTF-8"));
+        Thread.sleep(100);
+        writer.flush();
+        writer.append("two\n".getBytes("UTF-8"));
+        writer.close();
+        assertEquals(2, dir.listFiles().length);
+        assertEquals("two\n", read(file));
+    }
+
+    public void testCloseIfIdle() throws Exception {
+        File file = new File(dir, "feed.log");
+        BufferedFileWriter writer = new BufferedFileWriter(file, 1024, 60000, 0, 0);
+        writer.append("one\n".getBytes("UTF-8"));
+        assertFalse(writer.closeIfIdle(60000));
+        Thread.sleep(100);
+        assertTrue(writer.closeIfIdle(50));
+        assertTrue(writer.isClosed());
+        assertTrue(writer.isClosedIdle());
+        // the buffered messages are written when an idle writer is closed
+        assertEquals("one\n", read(file));
+        assertFalse(writer.closeIfIdle(50));
+    }
+
+    private static String read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            int n = 0;
+            while (n < bytes.length) {
+                n += in.read(bytes, n, bytes.length - n);
+            }
+            return new String(bytes, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+*  Licensed to the Apache Software Foundation (ASF) under one
+*  or more contributor license agreements.  See the NOTICE file
+*  distributed with this work for additional information
+*  regarding copyright ownership.  The ASF licenses this file
+*  to you under the Apache License, Version 2.0 (the
+*  "License"); you may not use this file except in compliance
+*  with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+*  Unless required by applicable law or agreed to in writing,
+*  software distributed under the License is distributed on an
+*   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+*  KIND, either express or implied.  See the License for the
+*  specific language governing permissions and limitations
+*  under the License.
+*/
+package org.apache.synapse.transport.vfs;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RecordSplitterTest extends TestCase {
+
+    public void testLines() throws Exception {
+        List<String> records = split("line", "first\r\nsecond\n\nthird");
+        assertEquals(3, records.size());
+        assertEquals("first", records.get(0));
+        assertEquals("second", records.get(1));
+        assertEquals("third", records.get(2));
+    }
+
+    public void testCSV() throws Exception {
+        List<String> records = split("csv", "id,note\n1,\"two\nlines\"\n2,plain\n");
+        assertEquals(3, records.size());
+        assertEquals("id,note", records.get(0));
+        assertEquals("1,\"two\nlines\"", records.get(1));
+        assertEquals("2,plain", records.get(2));
+    }
+
+    public void testXMLElements() throws Exception {
+        List<String> records = split("xml:order",
+                "<orders xmlns=\"urn:orders\" xmlns:p=\"urn:p\"><order id=\"1\"><p:item>a</p:item>" +
+                "</order>\n<order id=\"2\"/></orders>");
+        assertEquals(2, records.size());
+        assertTrue(records.get(0).contains("urn:orders"));
+        assertTrue(records.get(0).contains("urn:p"));
+        assertTrue(records.get(0).contains(">a<"));
+        assertTrue(records.get(1).contains("id=\"2\""));
+        assertFalse(records.get(1).contains("item"));
+    }
+
+    public void testUnsupportedMode() {
+        try {
+            RecordSplitter.create("json");
+            fail("Unsupported mode accepted");
+        } catch (IOException expected) {
+        }
+    }
+
+    private List<String> split(String mode, String content) throws Exception {
+        final List<String> records = new ArrayList<String>();
+        int count = RecordSplitter.create(mode).split(
+                new ByteArrayInputStream(content.getBytes("UTF-8")), "UTF-8",
+                new RecordSplitter.RecordHandler() {
+                    public void handleRecord(byte[] record, String charset, int number) {
+                        assertEquals(records.size() + 1, number);
+                        try {
+                            records.add(new String(record, charset));
+                        } catch (UnsupportedEncodingException e) {
+                            fail(e.getMessage());
+                        }
+                    }
+                });
+        assertEquals(records.size(), count);
+        return records;
+    }
+}
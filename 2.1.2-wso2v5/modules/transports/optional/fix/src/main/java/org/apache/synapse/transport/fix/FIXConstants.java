@@ -106,8 +106,13 @@ public class FIXConstants {
     public static final String FIX_ACCEPTOR_EVENT_HANDLER = "transport.fix.AcceptorSessionEventHandler";
     public static final String FIX_INITIATOR_EVENT_HANDLER = "transport.fix.InitiatorSessionEventHandler";
 
+    public static final String FIX_PASS_THROUGH = "transport.fix.PassThrough";
+
     //--------------------------- Message level properties -----------------------------------
 
     public static final String FIX_IGNORE_ORDER = "transport.fix.IgnoreOrder";
 
+    /** The FIXMessageView of a message received in pass through mode */
+    public static final String FIX_MESSAGE_VIEW = "FIX_MESSAGE_VIEW";
+
 }
\ No newline at end of file
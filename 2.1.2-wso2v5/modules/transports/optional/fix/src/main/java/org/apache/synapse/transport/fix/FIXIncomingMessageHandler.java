@@ -68,6 +68,8 @@ public class FIXIncomingMessageHandler implements Application {
     private Queue<MessageContext> outgoingMessages;
     private boolean allNewApproach = true;
     private boolean dropExtraResponses = false;
+    /** Whether messages are handed over without converting them into XML up front */
+    private boolean passThrough = false;
     private Semaphore semaphore;
     private SessionEventHandler eventHandler;
 
@@ -116,6 +118,11 @@ public class FIXIncomingMessageHandler implements Application {
         if (dropResponsesParam != null && "true".equals(dropResponsesParam.getValue().toString())) {
             dropExtraResponses = true;
         }
+
+        Parameter passThroughParam = service.getParameter(FIXConstants.FIX_PASS_THROUGH);
+        if (passThroughParam != null && "true".equals(passThroughParam.getValue().toString())) {
+            passThrough = true;
+        }
     }
 
     public void setOutgoingMessageContext(MessageContext msgCtx) {
@@ -374,7 +381,7 @@ public class FIXIncomingMessageHandler implements Application {
 
             try {
                 //Put the FIX message in a SOAPEnvelope
-                FIXUtils.getInstance().setSOAPEnvelope(message, counter, sessionID.toString(), msgCtx);
+                setSOAPEnvelope(msgCtx);
                 trpListener.handleIncomingMessage(
                         msgCtx,
                         FIXUtils.getTransportHeaders(service.getName(), fixApplication),
@@ -394,7 +401,7 @@ public class FIXIncomingMessageHandler implements Application {
 
             try {
                 //Put the FIX message in a SOAPEnvelope
-                FIXUtils.getInstance().setSOAPEnvelope(message, counter, sessionID.toString(), msgCtx);
+                setSOAPEnvelope(msgCtx);
                 msgCtx.setServerSide(true);
                 trpSender.handleIncomingMessage(
                         msgCtx,
@@ -407,6 +414,16 @@ public class FIXIncomingMessageHandler implements Application {
             }
         }
 
+        private void setSOAPEnvelope(MessageContext msgCtx) throws AxisFault {
+            if (passThrough) {
+                FIXUtils.getInstance().setPassThroughSOAPEnvelope(message, counter,
+                        sessionID.toString(), msgCtx);
+            } else {
+                FIXUtils.getInstance().setSOAPEnvelope(message, counter, sessionID.toString(),
+                        msgCtx);
+            }
+        }
+
         public void run() {
 
             if (allNewApproach) {
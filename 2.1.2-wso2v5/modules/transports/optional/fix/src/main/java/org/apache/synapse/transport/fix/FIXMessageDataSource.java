@@ -0,0 +1,83 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.transport.fix;
+
+import org.apache.axiom.om.OMDataSource;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMOutputFormat;
+import org.apache.axiom.soap.impl.llom.soap11.SOAP11Factory;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.context.MessageContext;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * The payload of a FIX message received in pass through mode. The XML infoset of the message
+ * is built, the same way FIXUtils#setSOAPEnvelope builds it, only when the payload is
+ * expanded or serialized, that is when a mediator actually accesses the message content.
+ * Binary fields of the message are added as attachments of the message context the message
+ * was received with at that time.
+ */
+class FIXMessageDataSource implements OMDataSource {
+
+    private final FIXMessageView view;
+    private final MessageContext msgCtx;
+    private OMElement element;
+
+    FIXMessageDataSource(FIXMessageView view, MessageContext msgCtx) {
+        this.view = view;
+        this.msgCtx = msgCtx;
+    }
+
+    FIXMessageView getView() {
+        return view;
+    }
+
+    private synchronized OMElement getElement() throws XMLStreamException {
+        if (element == null) {
+            try {
+                element = FIXUtils.getInstance().createMessageElement(view.getMessage(),
+                        view.getCounter(), view.getSourceSession(), msgCtx, new SOAP11Factory());
+            } catch (AxisFault e) {
+                throw new XMLStreamException("Error while converting the FIX message to XML", e);
+            }
+        }
+        return element;
+    }
+
+    public void serialize(OutputStream output, OMOutputFormat format) throws XMLStreamException {
+        getElement().serialize(output, format);
+    }
+
+    public void serialize(Writer writer, OMOutputFormat format) throws XMLStreamException {
+        getElement().serialize(writer, format);
+    }
+
+    public void serialize(XMLStreamWriter xmlWriter) throws XMLStreamException {
+        getElement().serialize(xmlWriter);
+    }
+
+    public XMLStreamReader getReader() throws XMLStreamException {
+        return getElement().getXMLStreamReader();
+    }
+}
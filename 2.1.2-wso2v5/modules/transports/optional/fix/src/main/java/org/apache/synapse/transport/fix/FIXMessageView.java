@@ -0,0 +1,174 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.transport.fix;
+
+import quickfix.FieldMap;
+import quickfix.FieldNotFound;
+import quickfix.Group;
+import quickfix.Message;
+
+import java.util.List;
+
+/**
+ * A read only view of a FIX message received in pass through mode. Individual tags are read
+ * straight from the QuickFIX/J message when they are requested, so that routing on a few tags
+ * never converts the message into XML. Tags are addressed with a path of the form
+ * <p/>
+ * 35                   - the tag in the header, the body or the trailer, in that order
+ * header/49            - the tag in the header
+ * body/55              - the tag in the body
+ * trailer/10           - the tag in the trailer
+ * body/453[2]/448      - the tag in the second instance of the repeating group 453
+ * <p/>
+ * The view is placed in the message context under FIXConstants.FIX_MESSAGE_VIEW.
+ */
+public class FIXMessageView {
+
+    private static final String HEADER = FIXConstants.FIX_HEADER + "/";
+    private static final String BODY = FIXConstants.FIX_BODY + "/";
+    private static final String TRAILER = FIXConstants.FIX_TRAILER + "/";
+
+    private final Message message;
+    private final int counter;
+    private final String sourceSession;
+
+    public FIXMessageView(Message message, int counter, String sourceSession) {
+        this.message = message;
+        this.counter = counter;
+        this.sourceSession = sourceSession;
+    }
+
+    /**
+     * @return the received FIX message, which must not be modified
+     */
+    public Message getMessage() {
+        return message;
+    }
+
+    /**
+     * @return application level sequence number of the message
+     */
+    public int getCounter() {
+        return counter;
+    }
+
+    /**
+     * @return the session the message was received from
+     */
+    public String getSourceSession() {
+        return sourceSession;
+    }
+
+    /**
+     * Get the value of a tag from the header, the body or the trailer of the message
+     *
+     * @param tag the FIX tag
+     * @return the value or null if the tag is not set
+     */
+    public String getString(int tag) {
+        String value = getString(message.getHeader(), tag);
+        if (value == null) {
+            value = getString(message, tag);
+        }
+        if (value == null) {
+            value = getString(message.getTrailer(), tag);
+        }
+        return value;
+    }
+
+    /**
+     * Get the value of a tag addressed by a path
+     *
+     * @param path the path of the tag
+     * @return the value or null if the tag is not set
+     * @throws IllegalArgumentException if the path is malformed
+     */
+    public String getValue(String path) {
+        String p = path.trim();
+        FieldMap map;
+        if (p.startsWith(HEADER)) {
+            map = message.getHeader();
+            p = p.substring(HEADER.length());
+        } else if (p.startsWith(BODY)) {
+            map = message;
+            p = p.substring(BODY.length());
+        } else if (p.startsWith(TRAILER)) {
+            map = message.getTrailer();
+            p = p.substring(TRAILER.length());
+        } else if (p.indexOf('/') == -1) {
+            return getString(parseTag(p, path));
+        } else {
+            map = message;
+        }
+
+        String[] steps = p.split("/");
+        for (int i = 0; i < steps.length - 1; i++) {
+            map = getGroup(map, steps[i], path);
+            if (map == null) {
+                return null;
+            }
+        }
+        return getString(map, parseTag(steps[steps.length - 1], path));
+    }
+
+    /**
+     * @return the group addressed by a step of the form tag[index], or the first group of the
+     *         tag if no index is given
+     */
+    private static Group getGroup(FieldMap map, String step, String path) {
+        int index = 1;
+        String tag = step;
+        int open = step.indexOf('[');
+        if (open != -1) {
+            if (!step.endsWith("]")) {
+                throw new IllegalArgumentException("Malformed FIX tag path : " + path);
+            }
+            tag = step.substring(0, open);
+            index = parseTag(step.substring(open + 1, step.length() - 1), path);
+        }
+        List<Group> groups = map.getGroups(parseTag(tag, path));
+        if (groups == null || index < 1 || index > groups.size()) {
+            return null;
+        }
+        return groups.get(index - 1);
+    }
+
+    private static int parseTag(String tag, String path) {
+        try {
+            return Integer.parseInt(tag.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed FIX tag path : " + path);
+        }
+    }
+
+    private static String getString(FieldMap map, int tag) {
+        if (!map.isSetField(tag)) {
+            return null;
+        }
+        try {
+            return map.getString(tag);
+        } catch (FieldNotFound e) {
+            return null;
+        }
+    }
+
+    public String toString() {
+        return message.toString();
+    }
+}
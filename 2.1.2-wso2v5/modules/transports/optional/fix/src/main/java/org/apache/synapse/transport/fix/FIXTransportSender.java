@@ -102,13 +102,24 @@ public class FIXTransportSender extends AbstractTransportSender {
         Message fixMessage = null;
         String serviceName = FIXUtils.getServiceName(msgCtx);
         String fixApplication = FIXUtils.getFixApplication(msgCtx);
-        String sourceSession = FIXUtils.getSourceSession(msgCtx);
-        int counter = FIXUtils.getSequenceNumber(msgCtx);
-
-        try {
-            fixMessage = FIXUtils.getInstance().createFIXMessage(msgCtx);
-        } catch (IOException e) {
-            handleException("Exception occurred while creating the FIX message from SOAP Envelope", e);
+        String sourceSession;
+        int counter;
+
+        FIXMessageView view = FIXUtils.getPassThroughView(msgCtx);
+        if (view != null) {
+            // the content of the message has not been accessed, send the received message
+            // as it is, a copy as sending sets the session fields of the header
+            sourceSession = view.getSourceSession();
+            counter = view.getCounter();
+            fixMessage = (Message) view.getMessage().clone();
+        } else {
+            sourceSession = FIXUtils.getSourceSession(msgCtx);
+            counter = FIXUtils.getSequenceNumber(msgCtx);
+            try {
+                fixMessage = FIXUtils.getInstance().createFIXMessage(msgCtx);
+            } catch (IOException e) {
+                handleException("Exception occurred while creating the FIX message from SOAP Envelope", e);
+            }
         }
 
         if (FIXConstants.FIX_ACCEPTOR.equals(fixApplication)) {
@@ -20,8 +20,10 @@
 package org.apache.synapse.transport.fix;
 
 import org.apache.axiom.attachments.ByteArrayDataSource;
+import org.apache.axiom.om.OMDataSource;
 import org.apache.axiom.om.OMElement;
 import org.apache.axiom.om.OMNamespace;
+import org.apache.axiom.om.OMSourcedElement;
 import org.apache.axiom.soap.SOAPBody;
 import org.apache.axiom.soap.SOAPEnvelope;
 import org.apache.axiom.soap.SOAPFactory;
@@ -81,6 +83,80 @@ public class FIXUtils {
         }
 
         SOAPFactory soapFactory = new SOAP11Factory();
+        OMElement msg = createMessageElement(message, counter, sessionID, msgCtx, soapFactory);
+        SOAPEnvelope envelope = soapFactory.getDefaultEnvelope();
+        envelope.getBody().addChild(msg);
+        msgCtx.setEnvelope(envelope);
+    }
+
+    /**
+     * Put the FIX message into an Axis2 MessageContext without converting it into XML. The
+     * SOAP body holds a message element whose content is built only when it is accessed, and
+     * the FIX message is made available through a FIXMessageView under the
+     * FIXConstants.FIX_MESSAGE_VIEW property. A message which is sent out again without its
+     * content being accessed is sent as it was received.
+     *
+     * @param message   the FIX message
+     * @param counter   application level sequence number of the message
+     * @param sessionID the incoming session
+     * @param msgCtx    the Axis2 MessageContext to hold the FIX message
+     * @throws AxisFault the exception thrown when invalid soap envelopes are set to the msgCtx
+     */
+    public void setPassThroughSOAPEnvelope(Message message, int counter, String sessionID,
+                                           MessageContext msgCtx) throws AxisFault {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Creating pass through SOAP envelope for FIX message...");
+        }
+
+        FIXMessageView view = new FIXMessageView(message, counter, sessionID);
+        SOAPFactory soapFactory = new SOAP11Factory();
+        OMElement msg = soapFactory.createOMElement(new FIXMessageDataSource(view, msgCtx),
+                FIXConstants.FIX_MESSAGE, null);
+        SOAPEnvelope envelope = soapFactory.getDefaultEnvelope();
+        envelope.getBody().addChild(msg);
+        msgCtx.setEnvelope(envelope);
+        msgCtx.setProperty(FIXConstants.FIX_MESSAGE_VIEW, view);
+    }
+
+    /**
+     * Get the FIX message received in pass through mode, if the content of the message has
+     * not been accessed since it was received
+     *
+     * @param msgCtx the Axis2 MessageContext
+     * @return the view of the received message or null if the message has to be extracted
+     *         from the SOAP envelope
+     */
+    public static FIXMessageView getPassThroughView(MessageContext msgCtx) {
+        if (!(msgCtx.getProperty(FIXConstants.FIX_MESSAGE_VIEW) instanceof FIXMessageView) ||
+                msgCtx.getEnvelope() == null) {
+            return null;
+        }
+        OMElement payload = msgCtx.getEnvelope().getBody().getFirstElement();
+        if (payload instanceof OMSourcedElement && !((OMSourcedElement) payload).isExpanded()) {
+            OMDataSource dataSource = ((OMSourcedElement) payload).getDataSource();
+            if (dataSource instanceof FIXMessageDataSource) {
+                return ((FIXMessageDataSource) dataSource).getView();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Convert the FIX message into the XML infoset placed in the SOAP body
+     *
+     * @param message     the FIX message
+     * @param counter     application level sequence number of the message
+     * @param sessionID   the incoming session
+     * @param msgCtx      the Axis2 MessageContext to which binary fields are attached
+     * @param soapFactory the SOAP factory to create XML elements
+     * @return the message element
+     * @throws AxisFault on error
+     */
+    OMElement createMessageElement(Message message, int counter, String sessionID,
+                                   MessageContext msgCtx, SOAPFactory soapFactory)
+            throws AxisFault {
+
         OMElement msg = soapFactory.createOMElement(FIXConstants.FIX_MESSAGE, null);
         msg.addAttribute(soapFactory.createOMAttribute(FIXConstants.FIX_MESSAGE_INCOMING_SESSION,
                 null, sessionID));
@@ -149,9 +225,7 @@ public class FIXUtils {
         msg.addChild(header);
         msg.addChild(body);
         msg.addChild(trailer);
-        SOAPEnvelope envelope = soapFactory.getDefaultEnvelope();
-        envelope.getBody().addChild(msg);
-        msgCtx.setEnvelope(envelope);
+        return msg;
     }
     
 
@@ -717,6 +791,10 @@ public class FIXUtils {
      * @return application level sequence number or -1
      */
     public static int getSequenceNumber(MessageContext msgCtx) {
+        FIXMessageView view = getPassThroughView(msgCtx);
+        if (view != null) {
+            return view.getCounter();
+        }
         int seqNum;
         SOAPBody body = msgCtx.getEnvelope().getBody();
         OMNamespace ns = getNamespaceOfFIXPayload(body);
@@ -762,6 +840,10 @@ public class FIXUtils {
      * @return a String uniquely identifying a session or null
      */
     public static String getSourceSession(MessageContext msgCtx) {
+        FIXMessageView view = getPassThroughView(msgCtx);
+        if (view != null) {
+            return view.getSourceSession();
+        }
         String srcSession;
         SOAPBody body = msgCtx.getEnvelope().getBody();
         OMNamespace ns = getNamespaceOfFIXPayload(body);
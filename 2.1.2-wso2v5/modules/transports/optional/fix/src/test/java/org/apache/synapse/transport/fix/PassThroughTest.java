@@ -0,0 +1,94 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *   * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.apache.synapse.transport.fix;
+
+import junit.framework.TestCase;
+import org.apache.axiom.om.OMElement;
+import org.apache.axis2.context.MessageContext;
+import quickfix.Group;
+import quickfix.Message;
+import quickfix.field.*;
+import quickfix.fix44.QuoteRequest;
+
+import javax.xml.namespace.QName;
+
+public class PassThroughTest extends TestCase {
+
+    public void testPassThroughView() throws Exception {
+        Message message = createMessage();
+        MessageContext msgCtx = new MessageContext();
+        FIXUtils.getInstance().setPassThroughSOAPEnvelope(message, 7, "TestSession", msgCtx);
+
+        FIXMessageView view = FIXUtils.getPassThroughView(msgCtx);
+        assertNotNull(view);
+        assertSame(view, msgCtx.getProperty(FIXConstants.FIX_MESSAGE_VIEW));
+        assertEquals(7, FIXUtils.getSequenceNumber(msgCtx));
+        assertEquals("TestSession", FIXUtils.getSourceSession(msgCtx));
+
+        assertEquals("R", view.getString(MsgType.FIELD));
+        assertEquals("R", view.getValue("header/35"));
+        assertEquals("20101110-2", view.getValue("131"));
+        assertEquals("20101110-2", view.getValue("body/131"));
+        assertNull(view.getValue("header/131"));
+        assertEquals("First", view.getValue("body/146/55"));
+        assertEquals("Second", view.getValue("body/146[2]/55"));
+        assertNull(view.getValue("body/146[3]/55"));
+        try {
+            view.getValue("body/Symbol");
+            fail("Malformed path accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+        // nothing read so far converts the message into XML
+        assertNotNull(FIXUtils.getPassThroughView(msgCtx));
+    }
+
+    public void testExpansion() throws Exception {
+        Message message = createMessage();
+        MessageContext msgCtx = new MessageContext();
+        FIXUtils.getInstance().setPassThroughSOAPEnvelope(message, 1, "TestSession", msgCtx);
+
+        // a mediator accessing the content builds the same infoset as a regular conversion
+        OMElement msgElt = msgCtx.getEnvelope().getBody().getFirstElement();
+        assertEquals("TestSession", msgElt.getAttributeValue(
+                new QName(FIXConstants.FIX_MESSAGE_INCOMING_SESSION)));
+        OMElement groupsElt = msgElt.getFirstChildWithName(new QName(FIXConstants.FIX_BODY)).
+                getFirstChildWithName(new QName(FIXConstants.FIX_GROUPS));
+        assertEquals(NoRelatedSym.FIELD, Integer.parseInt(groupsElt.getAttributeValue(
+                new QName(FIXConstants.FIX_FIELD_ID))));
+
+        // the message is then extracted from the envelope, which may have been modified
+        assertNull(FIXUtils.getPassThroughView(msgCtx));
+        Message copy = FIXUtils.getInstance().createFIXMessage(msgCtx);
+        assertEquals(message.toString(), copy.toString());
+    }
+
+    private static Message createMessage() {
+        Message message = new QuoteRequest(new QuoteReqID("20101110-2"));
+        int[] order = new int[] { Symbol.FIELD, OrderQty.FIELD };
+        Group first = new Group(NoRelatedSym.FIELD, Symbol.FIELD, order);
+        first.setField(new Symbol("First"));
+        first.setField(new OrderQty(100));
+        message.addGroup(first);
+        Group second = new Group(NoRelatedSym.FIELD, Symbol.FIELD, order);
+        second.setField(new Symbol("Second"));
+        second.setField(new OrderQty(200));
+        message.addGroup(second);
+        return message;
+    }
+}